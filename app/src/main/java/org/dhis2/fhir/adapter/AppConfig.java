@@ -30,6 +30,7 @@ package org.dhis2.fhir.adapter;
 
 import org.dhis2.fhir.adapter.converter.ZonedDateTimeToDateConverter;
 import org.dhis2.fhir.adapter.dhis.config.DhisEndpointConfig;
+import org.dhis2.fhir.adapter.dhis.security.DhisAuthenticationCache;
 import org.dhis2.fhir.adapter.dhis.security.DhisWebApiAuthenticationProvider;
 import org.dhis2.fhir.adapter.dhis.security.SecurityConfig;
 import org.dhis2.fhir.adapter.rest.RestTemplateCookieStore;
@@ -60,9 +61,10 @@ public class AppConfig
     @Bean
     @Nonnull
     public AbstractUserDetailsAuthenticationProvider dhisWebApiAuthenticationProvider( @Nonnull RestTemplateBuilder restTemplateBuilder, @Nonnull DhisEndpointConfig dhisEndpointConfig, @Nonnull SecurityConfig securityConfig,
-        @Nonnull @Qualifier( "dhisClientHttpRequestFactory" ) ClientHttpRequestFactory clientHttpRequestFactory, @Nonnull @Qualifier( "dhisCookieStore" ) RestTemplateCookieStore cookieStore )
+        @Nonnull @Qualifier( "dhisClientHttpRequestFactory" ) ClientHttpRequestFactory clientHttpRequestFactory, @Nonnull @Qualifier( "dhisCookieStore" ) RestTemplateCookieStore cookieStore,
+        @Nonnull DhisAuthenticationCache authenticationCache )
     {
-        return new DhisWebApiAuthenticationProvider( restTemplateBuilder, dhisEndpointConfig, securityConfig, clientHttpRequestFactory, cookieStore );
+        return new DhisWebApiAuthenticationProvider( restTemplateBuilder, dhisEndpointConfig, securityConfig, clientHttpRequestFactory, cookieStore, authenticationCache );
     }
 
     @Bean
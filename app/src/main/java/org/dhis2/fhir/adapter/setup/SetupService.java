@@ -57,6 +57,7 @@ import org.dhis2.fhir.adapter.fhir.metadata.repository.MappedTrackedEntityReposi
 import org.dhis2.fhir.adapter.fhir.metadata.repository.ScriptRepository;
 import org.dhis2.fhir.adapter.fhir.metadata.repository.SystemCodeRepository;
 import org.dhis2.fhir.adapter.fhir.metadata.repository.SystemRepository;
+import org.dhis2.fhir.adapter.fhir.metadata.service.CodeDictionaryService;
 import org.dhis2.fhir.adapter.fhir.model.FhirVersion;
 import org.dhis2.fhir.adapter.fhir.security.AdapterSystemAuthenticationToken;
 import org.dhis2.fhir.adapter.model.VersionedBaseMetadata;
@@ -66,6 +67,8 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.annotation.Nonnull;
 import java.time.Instant;
@@ -114,11 +117,14 @@ public class SetupService
 
     private final ScriptRepository scriptRepository;
 
+    private final CodeDictionaryService codeDictionaryService;
+
     public SetupService( @Nonnull TrackedEntityMetadataService trackedEntityMetadataService,
         @Nonnull CodeCategoryRepository codeCategoryRepository, @Nonnull CodeRepository codeRepository,
         @Nonnull SystemRepository systemRepository, @Nonnull SystemCodeRepository systemCodeRepository,
         @Nonnull ExecutableScriptArgRepository executableScriptArgRepository, @Nonnull FhirClientRepository fhirClientRepository,
-        @Nonnull ScriptRepository scriptRepository, @Nonnull MappedTrackedEntityRepository trackedEntityRepository )
+        @Nonnull ScriptRepository scriptRepository, @Nonnull MappedTrackedEntityRepository trackedEntityRepository,
+        @Nonnull CodeDictionaryService codeDictionaryService )
     {
         this.trackedEntityMetadataService = trackedEntityMetadataService;
         this.codeCategoryRepository = codeCategoryRepository;
@@ -129,6 +135,7 @@ public class SetupService
         this.fhirClientRepository = fhirClientRepository;
         this.scriptRepository = scriptRepository;
         this.trackedEntityRepository = trackedEntityRepository;
+        this.codeDictionaryService = codeDictionaryService;
     }
 
     public boolean hasCompletedSetup()
@@ -163,6 +170,15 @@ public class SetupService
             setupResult = createFhirClient( setup.getFhirClientSetup(), FhirVersion.DSTU3, "", organizationSystem, patientSystem,
                 additionalFhirResourceTypes, createSubscriptions );
             createSystemCodes( setup.getOrganizationCodeSetup(), organizationSystem );
+
+            TransactionSynchronizationManager.registerSynchronization( new TransactionSynchronizationAdapter()
+            {
+                @Override
+                public void afterCommit()
+                {
+                    codeDictionaryService.invalidate();
+                }
+            } );
         }
         updateTrackedEntity( setup.getTrackedEntitySetup(), useRelatedPerson, verifyDhis );
         return setupResult;
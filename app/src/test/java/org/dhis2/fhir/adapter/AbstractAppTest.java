@@ -43,6 +43,7 @@ import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.dhis2.fhir.adapter.dhis.model.DhisResourceId;
 import org.dhis2.fhir.adapter.fhir.data.repository.FhirDhisAssignmentRepository;
+import org.dhis2.fhir.adapter.fhir.data.repository.impl.FhirDhisAssignmentIndex;
 import org.dhis2.fhir.adapter.fhir.metadata.model.FhirResourceType;
 import org.dhis2.fhir.adapter.fhir.metadata.repository.FhirClientRepository;
 import org.dhis2.fhir.adapter.fhir.metadata.repository.RuleRepository;
@@ -185,6 +186,9 @@ public abstract class AbstractAppTest
     @Autowired
     protected FhirDhisAssignmentRepository assignmentRepository;
 
+    @Autowired
+    protected FhirDhisAssignmentIndex assignmentIndex;
+
     @Autowired
     protected RuleRepository ruleRepository;
 
@@ -430,6 +434,7 @@ public abstract class AbstractAppTest
         {
             transactionManager.commit( transactionStatus );
         }
+        assignmentIndex.invalidateAll();
 
         resourceDlQueueCount = getQueueMessageCount( fhirResourceQueueJmsTemplate, RESOURCE_DL_QUEUE_NAME );
 
@@ -0,0 +1,113 @@
+package org.dhis2.fhir.adapter.fhir.security;
+
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.dhis2.fhir.adapter.AbstractAppTest;
+import org.dhis2.fhir.adapter.dhis.security.DhisAuthenticationCache;
+import org.dhis2.fhir.adapter.fhir.model.FhirVersion;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import javax.annotation.Nonnull;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Tests revocation of cached authentications.
+ *
+ * @author volsch
+ */
+public class AuthenticationCacheRestControllerAppTest extends AbstractAppTest
+{
+    private static final String ADMIN_AUTHORIZATION = "Basic " + Base64.getEncoder().encodeToString( "admin:district".getBytes( StandardCharsets.UTF_8 ) );
+
+    private static final String OTHER_AUTHORIZATION = "Basic " + Base64.getEncoder().encodeToString( "other:district".getBytes( StandardCharsets.UTF_8 ) );
+
+    @Autowired
+    private DhisAuthenticationCache authenticationCache;
+
+    @Nonnull
+    @Override
+    protected FhirVersion getFhirVersion()
+    {
+        return FhirVersion.DSTU3;
+    }
+
+    @After
+    public void revokeAll()
+    {
+        authenticationCache.revokeAll();
+    }
+
+    @Test
+    public void revokeAllAuthorized() throws Exception
+    {
+        authenticationCache.authenticated( ADMIN_AUTHORIZATION );
+        authenticationCache.authenticated( OTHER_AUTHORIZATION );
+
+        mockMvc.perform( MockMvcRequestBuilders.delete( "/api/authentications" )
+            .header( "Authorization", "Basic " + Base64.getEncoder().encodeToString( "administration:administration_1"
+                .getBytes( StandardCharsets.UTF_8 ) ) ) ).andExpect( status().isNoContent() );
+
+        Assert.assertFalse( authenticationCache.isAuthenticated( ADMIN_AUTHORIZATION ) );
+        Assert.assertFalse( authenticationCache.isAuthenticated( OTHER_AUTHORIZATION ) );
+    }
+
+    @Test
+    public void revokeAuthorized() throws Exception
+    {
+        authenticationCache.authenticated( ADMIN_AUTHORIZATION );
+        authenticationCache.authenticated( OTHER_AUTHORIZATION );
+
+        mockMvc.perform( MockMvcRequestBuilders.delete( "/api/authentications/admin" )
+            .header( "Authorization", "Basic " + Base64.getEncoder().encodeToString( "administration:administration_1"
+                .getBytes( StandardCharsets.UTF_8 ) ) ) ).andExpect( status().isNoContent() );
+
+        Assert.assertFalse( authenticationCache.isAuthenticated( ADMIN_AUTHORIZATION ) );
+        Assert.assertTrue( authenticationCache.isAuthenticated( OTHER_AUTHORIZATION ) );
+    }
+
+    @Test
+    public void revokeUnauthorized() throws Exception
+    {
+        authenticationCache.authenticated( ADMIN_AUTHORIZATION );
+
+        mockMvc.perform( MockMvcRequestBuilders.delete( "/api/authentications/admin" )
+            .header( "Authorization", "Basic " + Base64.getEncoder().encodeToString( "code_mapping:code_mapping_1"
+                .getBytes( StandardCharsets.UTF_8 ) ) ) ).andExpect( status().isForbidden() );
+
+        Assert.assertTrue( authenticationCache.isAuthenticated( ADMIN_AUTHORIZATION ) );
+    }
+}
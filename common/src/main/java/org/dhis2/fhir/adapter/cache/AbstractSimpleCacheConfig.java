@@ -28,6 +28,7 @@ package org.dhis2.fhir.adapter.cache;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import io.micrometer.core.instrument.Metrics;
 import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.context.properties.NestedConfigurationProperty;
 import org.springframework.cache.CacheManager;
@@ -43,6 +44,7 @@ import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.validation.annotation.Validated;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import java.io.Serializable;
@@ -107,13 +109,17 @@ public abstract class AbstractSimpleCacheConfig implements Serializable
                 defaultCacheManager = new NoOpCacheManager();
                 break;
             case CAFFEINE:
-                final CaffeineCacheManager caffeineCacheManager = new CaffeineCacheManager();
-                caffeineCacheManager.setCacheSpecification( caffeine.getSpec() );
-                defaultCacheManager = caffeineCacheManager;
+                defaultCacheManager = createCaffeineCacheManager();
                 break;
             case REDIS:
                 defaultCacheManager = RedisCacheManager.builder( redisConnectionFactoryProvider.getObject() ).cacheDefaults( createRedisCacheConfiguration( redisSerializer ) ).build();
                 break;
+            case TIERED:
+                final RedisConnectionFactory redisConnectionFactory = redisConnectionFactoryProvider.getObject();
+                defaultCacheManager = new TieredCacheManager( getCacheManagerName(), createCaffeineCacheManager(),
+                    RedisCacheManager.builder( redisConnectionFactory ).cacheDefaults( createRedisCacheConfiguration( redisSerializer ) ).build(),
+                    redisConnectionFactory, getRedis().getKeyPrefix() + ":invalidation", Metrics.globalRegistry );
+                break;
             default:
                 throw new AssertionError( "Unhandled cache type: " + getType() );
         }
@@ -121,8 +127,32 @@ public abstract class AbstractSimpleCacheConfig implements Serializable
     }
 
     @Nonnull
-    protected <R> RedisCacheConfiguration createRedisCacheConfiguration( @Nonnull RedisSerializer<R> redisSerializer )
+    protected CaffeineCacheManager createCaffeineCacheManager()
+    {
+        final CaffeineCacheManager caffeineCacheManager = new CaffeineCacheManager();
+        caffeineCacheManager.setCacheSpecification( caffeine.getSpec() );
+        return caffeineCacheManager;
+    }
+
+    /**
+     * Returns the preset dictionary that is used when compressing cached values in Redis.
+     * The dictionary must not be changed as long as there are values in Redis that have
+     * been compressed with the dictionary.
+     *
+     * @return the preset dictionary or <code>null</code> if no dictionary should be used.
+     */
+    @Nullable
+    protected byte[] getRedisCompressionDictionary()
+    {
+        return null;
+    }
+
+    @Nonnull
+    protected <R> RedisCacheConfiguration createRedisCacheConfiguration( @Nonnull RedisSerializer<R> defaultRedisSerializer )
     {
+        // compressed values can always be read so that compression can be enabled and disabled
+        final RedisSerializer<R> redisSerializer = new CompressedRedisSerializer<>(
+            defaultRedisSerializer, getRedisCompressionDictionary(), getRedis().isCompressed() );
         return RedisCacheConfiguration.defaultCacheConfig().computePrefixWith( getRedis().getCacheKeyPrefix() )
             .entryTtl( getRedis().getTimeToLive() ).serializeValuesWith( new RedisSerializationContext.SerializationPair<R>()
             {
@@ -0,0 +1,173 @@
+package org.dhis2.fhir.adapter.cache;
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Redis serializer that compresses the serialized data of another serializer with
+ * deflate and an optional preset dictionary. The compressed data is prefixed with
+ * a header that contains the format version. Data without this header is passed
+ * to the other serializer unchanged. This allows switching compression on and off
+ * while the data remains in the cache.
+ *
+ * @param <T> the concrete type of the serialized object.
+ * @author volsch
+ */
+public class CompressedRedisSerializer<T> implements RedisSerializer<T>
+{
+    /**
+     * Neither a valid start of an UTF-8 encoded JSON document nor of a Java
+     * modified UTF-8 string (which starts with its length).
+     */
+    public static final byte MAGIC = (byte) 0xC7;
+
+    public static final byte VERSION = 1;
+
+    private static final int HEADER_LENGTH = 2;
+
+    private final RedisSerializer<T> serializer;
+
+    private final byte[] dictionary;
+
+    private final boolean compress;
+
+    /**
+     * @param serializer the serializer that serializes the object.
+     * @param dictionary the optional preset dictionary that contains byte sequences
+     *                   that are expected to be contained in the serialized data.
+     * @param compress   <code>true</code> if serialized data should be compressed,
+     *                   <code>false</code> if compressed data is only read.
+     */
+    public CompressedRedisSerializer( @Nonnull RedisSerializer<T> serializer, @Nullable byte[] dictionary, boolean compress )
+    {
+        this.serializer = serializer;
+        this.dictionary = dictionary;
+        this.compress = compress;
+    }
+
+    @Override
+    public byte[] serialize( @Nullable T t ) throws SerializationException
+    {
+        final byte[] bytes = serializer.serialize( t );
+        if ( !compress || (bytes == null) || (bytes.length == 0) )
+        {
+            return bytes;
+        }
+
+        final Deflater deflater = new Deflater( Deflater.BEST_SPEED );
+        try
+        {
+            if ( dictionary != null )
+            {
+                deflater.setDictionary( dictionary );
+            }
+            deflater.setInput( bytes );
+            deflater.finish();
+
+            final ByteArrayOutputStream out = new ByteArrayOutputStream( HEADER_LENGTH + bytes.length / 2 );
+            out.write( MAGIC );
+            out.write( VERSION );
+            final byte[] buffer = new byte[4096];
+            while ( !deflater.finished() )
+            {
+                out.write( buffer, 0, deflater.deflate( buffer ) );
+            }
+            return out.toByteArray();
+        }
+        finally
+        {
+            deflater.end();
+        }
+    }
+
+    @Override
+    public T deserialize( @Nullable byte[] bytes ) throws SerializationException
+    {
+        if ( (bytes == null) || (bytes.length < HEADER_LENGTH) || (bytes[0] != MAGIC) )
+        {
+            return serializer.deserialize( bytes );
+        }
+        if ( bytes[1] != VERSION )
+        {
+            throw new SerializationException( "Unsupported version of compressed data: " + bytes[1] );
+        }
+
+        final Inflater inflater = new Inflater();
+        try
+        {
+            inflater.setInput( bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH );
+
+            byte[] result = new byte[Math.max( 256, bytes.length * 4 )];
+            int length = 0;
+            while ( !inflater.finished() )
+            {
+                if ( length == result.length )
+                {
+                    result = Arrays.copyOf( result, result.length * 2 );
+                }
+                final int count = inflater.inflate( result, length, result.length - length );
+                if ( count == 0 )
+                {
+                    if ( inflater.needsDictionary() )
+                    {
+                        if ( dictionary == null )
+                        {
+                            throw new SerializationException( "Compressed data requires a dictionary." );
+                        }
+                        inflater.setDictionary( dictionary );
+                    }
+                    else if ( inflater.needsInput() )
+                    {
+                        throw new SerializationException( "Compressed data is incomplete." );
+                    }
+                }
+                length += count;
+            }
+            return serializer.deserialize( Arrays.copyOf( result, length ) );
+        }
+        catch ( DataFormatException | IllegalArgumentException e )
+        {
+            throw new SerializationException( "Could not decompress data.", e );
+        }
+        finally
+        {
+            inflater.end();
+        }
+    }
+}
@@ -28,6 +28,7 @@ package org.dhis2.fhir.adapter.cache;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
 
@@ -45,7 +46,7 @@ import java.util.Objects;
  *
  * @author volsch
  */
-public class RequestCacheManager implements CacheManager
+public class RequestCacheManager implements CacheManager, DisposableBean
 {
     private final String cacheManagerName;
 
@@ -92,4 +93,13 @@ public class RequestCacheManager implements CacheManager
         }
         return names;
     }
+
+    @Override
+    public void destroy() throws Exception
+    {
+        if ( defaultCacheManager instanceof DisposableBean )
+        {
+            ((DisposableBean) defaultCacheManager).destroy();
+        }
+    }
 }
@@ -35,5 +35,5 @@ package org.dhis2.fhir.adapter.cache;
  */
 public enum SimpleCacheType
 {
-    NONE, CAFFEINE, REDIS
+    NONE, CAFFEINE, REDIS, TIERED
 }
@@ -53,6 +53,8 @@ public class SimpleRedisCacheConfig implements Serializable
     @NotNull
     private String keyPrefix = UUID.randomUUID().toString();
 
+    private boolean compressed;
+
     @Nonnull
     public Duration getTimeToLive()
     {
@@ -93,4 +95,14 @@ public class SimpleRedisCacheConfig implements Serializable
     {
         this.keyPrefix = keyPrefix;
     }
+
+    public boolean isCompressed()
+    {
+        return compressed;
+    }
+
+    public void setCompressed( boolean compressed )
+    {
+        this.compressed = compressed;
+    }
 }
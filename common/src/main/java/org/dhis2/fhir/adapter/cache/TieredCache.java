@@ -0,0 +1,310 @@
+package org.dhis2.fhir.adapter.cache;
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.springframework.cache.Cache;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Cache that uses a local cache of the adapter instance in front of a remote cache
+ * that is shared by all adapter instances. Every modification is propagated to the
+ * remote cache and the local caches of the other adapter instances are notified to
+ * invalidate the affected entry. Only loading an entry that has not yet been available
+ * in the remote cache does not notify the other adapter instances. Since the
+ * notifications are exchanged between adapter instances, keys are identified by their
+ * string representation.
+ *
+ * @author volsch
+ */
+public class TieredCache implements Cache
+{
+    private final Cache localCache;
+
+    private final Cache remoteCache;
+
+    private final Consumer<String> invalidationPublisher;
+
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder localHitCount = new LongAdder();
+
+    private final LongAdder remoteHitCount = new LongAdder();
+
+    private final LongAdder missCount = new LongAdder();
+
+    private final LongAdder localNanos = new LongAdder();
+
+    private final LongAdder remoteNanos = new LongAdder();
+
+    /**
+     * @param localCache            the local cache of this adapter instance.
+     * @param remoteCache           the remote cache that is shared by all adapter instances.
+     * @param invalidationPublisher publishes the invalidation of the specified key string to all
+     *                              other adapter instances (<code>null</code> if the cache has been cleared).
+     */
+    public TieredCache( @Nonnull Cache localCache, @Nonnull Cache remoteCache, @Nonnull Consumer<String> invalidationPublisher )
+    {
+        this.localCache = localCache;
+        this.remoteCache = remoteCache;
+        this.invalidationPublisher = invalidationPublisher;
+    }
+
+    @Nonnull
+    @Override
+    public String getName()
+    {
+        return remoteCache.getName();
+    }
+
+    @Nonnull
+    @Override
+    public Object getNativeCache()
+    {
+        return remoteCache.getNativeCache();
+    }
+
+    @Nonnull
+    public Cache getLocalCache()
+    {
+        return localCache;
+    }
+
+    @Override
+    public ValueWrapper get( @Nonnull Object key )
+    {
+        final long begin = System.nanoTime();
+        ValueWrapper valueWrapper = localCache.get( key );
+        final long localEnd = System.nanoTime();
+        localNanos.add( localEnd - begin );
+        if ( valueWrapper != null )
+        {
+            localHitCount.increment();
+            return valueWrapper;
+        }
+
+        // must be taken before the remote value is read
+        final long localGeneration = generation.get();
+        valueWrapper = remoteCache.get( key );
+        remoteNanos.add( System.nanoTime() - localEnd );
+        if ( valueWrapper == null )
+        {
+            missCount.increment();
+            return null;
+        }
+        remoteHitCount.increment();
+        putLocal( key, valueWrapper.get(), localGeneration );
+        return valueWrapper;
+    }
+
+    @SuppressWarnings( "unchecked" )
+    @Override
+    public <T> T get( @Nonnull Object key, Class<T> type )
+    {
+        final ValueWrapper valueWrapper = get( key );
+        if ( valueWrapper == null )
+        {
+            return null;
+        }
+        if ( type == null )
+        {
+            return (T) valueWrapper.get();
+        }
+        return type.cast( valueWrapper.get() );
+    }
+
+    @SuppressWarnings( "unchecked" )
+    @Override
+    public <T> T get( @Nonnull Object key, @Nonnull Callable<T> valueLoader )
+    {
+        final ValueWrapper valueWrapper = get( key );
+        if ( valueWrapper != null )
+        {
+            return (T) valueWrapper.get();
+        }
+
+        final long localGeneration = generation.get();
+        final T value;
+        try
+        {
+            value = valueLoader.call();
+        }
+        catch ( Throwable ex )
+        {
+            throw new ValueRetrievalException( key, valueLoader, ex );
+        }
+
+        // the value has not been available in the remote cache and other adapter instances need not to be notified
+        final ValueWrapper existingValueWrapper = remoteCache.putIfAbsent( key, value );
+        if ( existingValueWrapper != null )
+        {
+            putLocal( key, existingValueWrapper.get(), localGeneration );
+            return (T) existingValueWrapper.get();
+        }
+        putLocal( key, value, localGeneration );
+        return value;
+    }
+
+    @Override
+    public void put( @Nonnull Object key, @Nullable Object value )
+    {
+        // equal values may differ in their details and other adapter instances may still have a previous value
+        remoteCache.put( key, value );
+        localCache.put( key, value );
+        invalidationPublisher.accept( key.toString() );
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent( @Nonnull Object key, @Nullable Object value )
+    {
+        final long localGeneration = generation.get();
+        final ValueWrapper existingValueWrapper = remoteCache.putIfAbsent( key, value );
+        putLocal( key, (existingValueWrapper == null) ? value : existingValueWrapper.get(), localGeneration );
+        return existingValueWrapper;
+    }
+
+    @Override
+    public void evict( @Nonnull Object key )
+    {
+        remoteCache.evict( key );
+        localCache.evict( key );
+        invalidationPublisher.accept( key.toString() );
+    }
+
+    @Override
+    public void clear()
+    {
+        remoteCache.clear();
+        localCache.clear();
+        invalidationPublisher.accept( null );
+    }
+
+    /**
+     * Invalidates the specified entry of the local cache since it has been
+     * modified by another adapter instance. Values that are currently read
+     * from the remote cache are not stored in the local cache afterwards.
+     *
+     * @param key the string representation of the key of the entry that has been
+     *            modified or <code>null</code> if the whole cache has been cleared.
+     */
+    public void invalidateLocal( @Nullable String key )
+    {
+        generation.incrementAndGet();
+        final Map<Object, Object> localMap = getLocalMap();
+        if ( (key == null) || (localMap == null) )
+        {
+            localCache.clear();
+        }
+        else
+        {
+            localMap.keySet().removeIf( k -> key.equals( k.toString() ) );
+        }
+    }
+
+    @Nullable
+    @SuppressWarnings( "unchecked" )
+    private Map<Object, Object> getLocalMap()
+    {
+        final Object nativeCache = localCache.getNativeCache();
+        if ( nativeCache instanceof com.github.benmanes.caffeine.cache.Cache )
+        {
+            return ((com.github.benmanes.caffeine.cache.Cache<Object, Object>) nativeCache).asMap();
+        }
+        if ( nativeCache instanceof Map )
+        {
+            return (Map<Object, Object>) nativeCache;
+        }
+        return null;
+    }
+
+    private void putLocal( @Nonnull Object key, @Nullable Object value, long localGeneration )
+    {
+        if ( generation.get() != localGeneration )
+        {
+            // value may have been read before an invalidation has been received
+            return;
+        }
+
+        localCache.put( key, value );
+        if ( generation.get() != localGeneration )
+        {
+            // invalidation has been received while storing the value
+            localCache.evict( key );
+        }
+    }
+
+    public long getLocalHitCount()
+    {
+        return localHitCount.sum();
+    }
+
+    public long getRemoteHitCount()
+    {
+        return remoteHitCount.sum();
+    }
+
+    public long getMissCount()
+    {
+        return missCount.sum();
+    }
+
+    public long getLocalNanos()
+    {
+        return localNanos.sum();
+    }
+
+    public long getRemoteNanos()
+    {
+        return remoteNanos.sum();
+    }
+
+    /**
+     * @return the ratio of all requests that could be served by the local cache.
+     */
+    public double getLocalHitRatio()
+    {
+        final double total = getLocalHitCount() + getRemoteHitCount() + getMissCount();
+        return (total == 0) ? 0 : (getLocalHitCount() / total);
+    }
+
+    /**
+     * @return the ratio of all requests that could be served by the local or remote cache.
+     */
+    public double getHitRatio()
+    {
+        final double total = getLocalHitCount() + getRemoteHitCount() + getMissCount();
+        return (total == 0) ? 0 : ((getLocalHitCount() + getRemoteHitCount()) / total);
+    }
+}
@@ -1,4 +1,4 @@
-package org.dhis2.fhir.adapter.fhir.server.provider;
+package org.dhis2.fhir.adapter.cache;
 
 /*
  * Copyright (c) 2004-2019, University of Oslo
@@ -28,51 +28,54 @@ package org.dhis2.fhir.adapter.fhir.server.provider;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
-import ca.uhn.fhir.rest.api.server.IBundleProvider;
-import ca.uhn.fhir.rest.server.IPagingProvider;
-import org.dhis2.fhir.adapter.fhir.transform.config.FhirRestInterfaceConfig;
-import org.springframework.stereotype.Component;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 /**
- * A paging provider that do not support paging.
+ * Invalidation of a local cache entry of a {@link TieredCache} that is sent to
+ * all other adapter instances as JSON.
  *
  * @author volsch
  */
-@Component
-public class NonPagingProvider implements IPagingProvider
+public class TieredCacheInvalidation
 {
-    private final FhirRestInterfaceConfig restInterfaceConfig;
+    private final String instanceId;
 
-    public NonPagingProvider( @Nonnull FhirRestInterfaceConfig restInterfaceConfig )
-    {
-        this.restInterfaceConfig = restInterfaceConfig;
-    }
+    private final String cacheName;
+
+    private final String key;
 
-    @Override
-    public int getDefaultPageSize()
+    @JsonCreator
+    public TieredCacheInvalidation( @JsonProperty( "instanceId" ) @Nonnull String instanceId, @JsonProperty( "cacheName" ) @Nonnull String cacheName,
+        @JsonProperty( "key" ) @Nullable String key )
     {
-        return restInterfaceConfig.getDefaultSearchCount();
+        this.instanceId = instanceId;
+        this.cacheName = cacheName;
+        this.key = key;
     }
 
-    @Override
-    public int getMaximumPageSize()
+    @Nonnull
+    public String getInstanceId()
     {
-        return restInterfaceConfig.getMaxSearchCount();
+        return instanceId;
     }
 
-    @Override
-    public IBundleProvider retrieveResultList( String theSearchId )
+    @Nonnull
+    public String getCacheName()
     {
-        // retrieving result list is not supported
-        return null;
+        return cacheName;
     }
 
-    @Override
-    public String storeResultList( IBundleProvider theList )
+    /**
+     * @return the string representation of the key of the cache entry that has been
+     * invalidated or <code>null</code> if the whole cache has been cleared.
+     */
+    @Nullable
+    public String getKey()
     {
-        // storing result list is not supported
-        return null;
+        return key;
     }
 }
@@ -0,0 +1,226 @@
+package org.dhis2.fhir.adapter.cache;
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache manager that creates {@linkplain TieredCache tiered caches} with a local
+ * cache in front of a remote Redis cache. Local cache entries of all other adapter
+ * instances are invalidated by Redis publish/subscribe messages when a cache entry
+ * is modified. The invalidation messages are plain JSON and no Java serialization
+ * is used for messages that are received from the network. Hit and latency statistics of local and remote caches are exposed
+ * as metrics.
+ *
+ * @author volsch
+ */
+public class TieredCacheManager implements CacheManager, DisposableBean
+{
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    private final String cacheManagerName;
+
+    private final CacheManager localCacheManager;
+
+    private final CacheManager remoteCacheManager;
+
+    private final RedisConnectionFactory redisConnectionFactory;
+
+    private final byte[] channel;
+
+    private final MeterRegistry meterRegistry;
+
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private final RedisSerializer<TieredCacheInvalidation> invalidationSerializer = new Jackson2JsonRedisSerializer<>( TieredCacheInvalidation.class );
+
+    private final ConcurrentMap<String, TieredCache> caches = new ConcurrentHashMap<>();
+
+    private final RedisMessageListenerContainer listenerContainer;
+
+    public TieredCacheManager( @Nonnull String cacheManagerName, @Nonnull CacheManager localCacheManager, @Nonnull CacheManager remoteCacheManager,
+        @Nonnull RedisConnectionFactory redisConnectionFactory, @Nonnull String channel, @Nonnull MeterRegistry meterRegistry )
+    {
+        this.cacheManagerName = cacheManagerName;
+        this.localCacheManager = localCacheManager;
+        this.remoteCacheManager = remoteCacheManager;
+        this.redisConnectionFactory = redisConnectionFactory;
+        this.channel = channel.getBytes( StandardCharsets.UTF_8 );
+        this.meterRegistry = meterRegistry;
+
+        listenerContainer = new RedisMessageListenerContainer();
+        listenerContainer.setConnectionFactory( redisConnectionFactory );
+        listenerContainer.addMessageListener( new InvalidationMessageListener(), new ChannelTopic( channel ) );
+        listenerContainer.afterPropertiesSet();
+        listenerContainer.start();
+    }
+
+    @Nullable
+    @Override
+    public Cache getCache( @Nonnull String name )
+    {
+        final TieredCache cache = caches.get( name );
+        if ( cache != null )
+        {
+            return cache;
+        }
+
+        final Cache localCache = localCacheManager.getCache( name );
+        final Cache remoteCache = remoteCacheManager.getCache( name );
+        if ( (localCache == null) || (remoteCache == null) )
+        {
+            return null;
+        }
+        return caches.computeIfAbsent( name, n -> {
+            final TieredCache tieredCache = new TieredCache( localCache, remoteCache, key -> publishInvalidation( name, key ) );
+            bindMetrics( tieredCache );
+            return tieredCache;
+        } );
+    }
+
+    @Nonnull
+    @Override
+    public Collection<String> getCacheNames()
+    {
+        return remoteCacheManager.getCacheNames();
+    }
+
+    @Override
+    public void destroy() throws Exception
+    {
+        listenerContainer.destroy();
+    }
+
+    protected void publishInvalidation( @Nonnull String cacheName, @Nullable String key )
+    {
+        final byte[] message = Objects.requireNonNull( invalidationSerializer.serialize( new TieredCacheInvalidation( instanceId, cacheName, key ) ) );
+        final RedisConnection connection = redisConnectionFactory.getConnection();
+        try
+        {
+            connection.publish( channel, message );
+        }
+        finally
+        {
+            connection.close();
+        }
+    }
+
+    protected void invalidate( @Nonnull TieredCacheInvalidation invalidation )
+    {
+        if ( instanceId.equals( invalidation.getInstanceId() ) )
+        {
+            return;
+        }
+
+        final TieredCache cache = caches.get( invalidation.getCacheName() );
+        if ( cache != null )
+        {
+            if ( invalidation.getKey() == null )
+            {
+                logger.debug( "Clearing local cache {} of cache manager {}.", invalidation.getCacheName(), cacheManagerName );
+                cache.invalidateLocal( null );
+            }
+            else
+            {
+                logger.debug( "Evicting {} from local cache {} of cache manager {}.", invalidation.getKey(), invalidation.getCacheName(), cacheManagerName );
+                cache.invalidateLocal( invalidation.getKey() );
+            }
+        }
+    }
+
+    private void bindMetrics( @Nonnull TieredCache cache )
+    {
+        final Tags tags = Tags.of( "cacheManager", cacheManagerName, "cache", cache.getName() );
+        FunctionCounter.builder( "cache.tiered.gets", cache, TieredCache::getLocalHitCount ).tags( tags ).tag( "result", "local-hit" )
+            .description( "The number of cache lookups that have been served by the local cache" ).register( meterRegistry );
+        FunctionCounter.builder( "cache.tiered.gets", cache, TieredCache::getRemoteHitCount ).tags( tags ).tag( "result", "remote-hit" )
+            .description( "The number of cache lookups that have been served by the remote cache" ).register( meterRegistry );
+        FunctionCounter.builder( "cache.tiered.gets", cache, TieredCache::getMissCount ).tags( tags ).tag( "result", "miss" )
+            .description( "The number of cache lookups that could not be served by any cache" ).register( meterRegistry );
+        FunctionTimer.builder( "cache.tiered.latency", cache, c -> c.getLocalHitCount() + c.getRemoteHitCount() + c.getMissCount(),
+            TieredCache::getLocalNanos, TimeUnit.NANOSECONDS ).tags( tags ).tag( "tier", "local" )
+            .description( "The time spent for lookups in the local cache" ).register( meterRegistry );
+        FunctionTimer.builder( "cache.tiered.latency", cache, c -> c.getRemoteHitCount() + c.getMissCount(),
+            TieredCache::getRemoteNanos, TimeUnit.NANOSECONDS ).tags( tags ).tag( "tier", "remote" )
+            .description( "The time spent for lookups in the remote cache" ).register( meterRegistry );
+        Gauge.builder( "cache.tiered.hit.ratio", cache, TieredCache::getLocalHitRatio ).tags( tags ).tag( "tier", "local" )
+            .description( "The ratio of cache lookups that have been served by the local cache" ).register( meterRegistry );
+        Gauge.builder( "cache.tiered.hit.ratio", cache, TieredCache::getHitRatio ).tags( tags ).tag( "tier", "all" )
+            .description( "The ratio of cache lookups that have been served by any cache" ).register( meterRegistry );
+    }
+
+    private class InvalidationMessageListener implements MessageListener
+    {
+        @Override
+        public void onMessage( @Nonnull Message message, @Nullable byte[] pattern )
+        {
+            final TieredCacheInvalidation invalidation;
+            try
+            {
+                invalidation = invalidationSerializer.deserialize( message.getBody() );
+            }
+            catch ( RuntimeException e )
+            {
+                logger.error( "Could not deserialize cache invalidation message of cache manager " + cacheManagerName + ".", e );
+                return;
+            }
+            if ( invalidation != null )
+            {
+                invalidate( invalidation );
+            }
+        }
+    }
+}
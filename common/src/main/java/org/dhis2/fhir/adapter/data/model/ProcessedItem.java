@@ -34,6 +34,9 @@ import javax.persistence.MappedSuperclass;
 import javax.persistence.Transient;
 import java.io.Serializable;
 import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 
 /**
  * Contains the reference of an item that has already been processed recently and
@@ -50,6 +53,8 @@ public abstract class ProcessedItem<I extends ProcessedItemId<G>, G extends Data
 
     private Instant processedAt;
 
+    private LocalDate processedDay;
+
     public ProcessedItem()
     {
         super();
@@ -58,6 +63,7 @@ public abstract class ProcessedItem<I extends ProcessedItemId<G>, G extends Data
     public ProcessedItem( @Nonnull Instant processedAt )
     {
         this.processedAt = processedAt;
+        this.processedDay = LocalDateTime.ofInstant( processedAt, ZoneOffset.UTC ).toLocalDate();
     }
 
     @Transient
@@ -75,4 +81,19 @@ public abstract class ProcessedItem<I extends ProcessedItemId<G>, G extends Data
     {
         this.processedAt = processedAt;
     }
+
+    /**
+     * @return the UTC day of the processing timestamp. The processed ID is unique
+     * within this day, which is also the partition key of partitioned tables.
+     */
+    @Column( name = "processed_day", nullable = false )
+    public LocalDate getProcessedDay()
+    {
+        return processedDay;
+    }
+
+    public void setProcessedDay( LocalDate processedDay )
+    {
+        this.processedDay = processedDay;
+    }
 }
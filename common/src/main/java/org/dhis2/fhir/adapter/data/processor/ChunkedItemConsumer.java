@@ -0,0 +1,164 @@
+package org.dhis2.fhir.adapter.data.processor;
+
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.dhis2.fhir.adapter.data.model.ProcessedItemInfo;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Hands off polled items to a consumer in chunks of a bounded size as soon as
+ * the chunk has been filled. Duplicates are detected only within a bounded window
+ * of the most recently added items. Since processed items are checked again by
+ * the data processor before they are enqueued, duplicates that are older than the
+ * window may be passed to the consumer. This instance is not thread safe.
+ *
+ * @author volsch
+ */
+public class ChunkedItemConsumer
+{
+    private final Consumer<Collection<ProcessedItemInfo>> consumer;
+
+    private final int maxConsumedSize;
+
+    private final Map<ProcessedItemInfo, Boolean> window;
+
+    private List<ProcessedItemInfo> chunk;
+
+    private Instant maxLastUpdated;
+
+    private long count;
+
+    public ChunkedItemConsumer( @Nonnull Consumer<Collection<ProcessedItemInfo>> consumer, int maxConsumedSize, int maxWindowSize )
+    {
+        if ( maxConsumedSize < 1 )
+        {
+            throw new IllegalArgumentException( "Maximum consumed size must be positive: " + maxConsumedSize );
+        }
+        if ( maxWindowSize < 1 )
+        {
+            throw new IllegalArgumentException( "Maximum window size must be positive: " + maxWindowSize );
+        }
+
+        this.consumer = consumer;
+        this.maxConsumedSize = maxConsumedSize;
+        this.window = new LinkedHashMap<ProcessedItemInfo, Boolean>( Math.min( maxWindowSize, 1024 ) )
+        {
+            private static final long serialVersionUID = -1726353707458545236L;
+
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<ProcessedItemInfo, Boolean> eldest )
+            {
+                return size() > maxWindowSize;
+            }
+        };
+        this.chunk = new ArrayList<>( maxConsumedSize );
+    }
+
+    /**
+     * Adds the specified item unless it is contained in the window of recently added items.
+     * If the current chunk is full, it will be passed to the consumer.
+     *
+     * @param item the item to be added.
+     * @return <code>true</code> if the item has been added, <code>false</code> if it is a duplicate.
+     */
+    public boolean add( @Nonnull ProcessedItemInfo item )
+    {
+        if ( window.put( item, Boolean.TRUE ) != null )
+        {
+            return false;
+        }
+
+        chunk.add( item );
+        if ( chunk.size() >= maxConsumedSize )
+        {
+            flush();
+        }
+        return true;
+    }
+
+    public void addAll( @Nonnull Collection<ProcessedItemInfo> items )
+    {
+        items.forEach( this::add );
+    }
+
+    /**
+     * Passes the pending items to the consumer.
+     */
+    public void flush()
+    {
+        if ( chunk.isEmpty() )
+        {
+            return;
+        }
+
+        final List<ProcessedItemInfo> consumedChunk = chunk;
+        chunk = new ArrayList<>( maxConsumedSize );
+        consumer.accept( Collections.unmodifiableList( consumedChunk ) );
+
+        // the timestamp must only be updated after the consumer has processed the items
+        for ( final ProcessedItemInfo item : consumedChunk )
+        {
+            final Instant lastUpdated = item.getLastUpdated();
+            if ( (lastUpdated != null) && ((maxLastUpdated == null) || lastUpdated.isAfter( maxLastUpdated )) )
+            {
+                maxLastUpdated = lastUpdated;
+            }
+        }
+        count += consumedChunk.size();
+    }
+
+    /**
+     * @return the maximum last updated timestamp of all items that have been passed
+     * to the consumer or <code>null</code> if no such item has a last updated timestamp.
+     */
+    @Nullable
+    public Instant getMaxLastUpdated()
+    {
+        return maxLastUpdated;
+    }
+
+    /**
+     * @return the number of items that have been passed to the consumer.
+     */
+    public long getCount()
+    {
+        return count;
+    }
+}
@@ -47,4 +47,24 @@ public interface DataProcessorItemRetriever<G extends DataGroup>
 {
     @Nonnull
     Instant poll( @Nonnull G group, @Nonnull Instant lastUpdated, int maxSearchCount, @Nonnull Consumer<Collection<ProcessedItemInfo>> consumer );
+
+    /**
+     * Polls the data items in streaming mode. Items are passed to the consumer in chunks
+     * while they are being retrieved. Whenever all items up to a specific last updated
+     * timestamp have been passed to the consumer, the checkpoint consumer receives that
+     * timestamp. A retriever that does not support streaming, polls all items at once.
+     *
+     * @param group              the group for which items should be polled.
+     * @param lastUpdated        the last updated timestamp from which on items should be polled.
+     * @param maxSearchCount     the maximum number of items that should be retrieved at once.
+     * @param consumer           the consumer of chunks of polled items.
+     * @param checkpointConsumer the consumer of the last updated timestamps that can be used
+     *                           to continue polling after an aborted poll.
+     * @return the last updated timestamp that should be used for the next poll.
+     */
+    @Nonnull
+    default Instant pollStreaming( @Nonnull G group, @Nonnull Instant lastUpdated, int maxSearchCount, @Nonnull Consumer<Collection<ProcessedItemInfo>> consumer, @Nonnull Consumer<Instant> checkpointConsumer )
+    {
+        return poll( group, lastUpdated, maxSearchCount, consumer );
+    }
 }
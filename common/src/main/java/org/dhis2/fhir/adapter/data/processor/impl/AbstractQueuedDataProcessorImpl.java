@@ -46,24 +46,40 @@ import org.dhis2.fhir.adapter.data.processor.StoredItemService;
 import org.dhis2.fhir.adapter.data.repository.DataGroupUpdateRepository;
 import org.dhis2.fhir.adapter.data.repository.ProcessedItemRepository;
 import org.dhis2.fhir.adapter.security.SystemAuthenticationToken;
+import org.dhis2.fhir.adapter.util.SqlExceptionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jms.connection.ConnectionFactoryUtils;
 import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.support.JmsUtils;
+import org.springframework.jms.support.converter.MessageConverter;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.transaction.PlatformTransactionManager;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.jms.ConnectionFactory;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -83,6 +99,11 @@ import java.util.stream.Collectors;
 public abstract class AbstractQueuedDataProcessorImpl<P extends ProcessedItem<PI, G>, PI extends ProcessedItemId<G>, S extends StoredItem<SI, SG>, SI extends StoredItemId<SG>, SG extends DataGroup, QG extends QueuedItemId<G>, QI extends QueuedItemId<G>,
     G extends DataGroup, GI extends DataGroupId> implements QueuedDataProcessor<G>
 {
+    /**
+     * The delay between two maintenances of the partitions of the processed and stored items.
+     */
+    protected static final long PARTITION_MAINTENANCE_DELAY_MILLIS = 60 * 60_000L;
+
     private final Logger logger = LoggerFactory.getLogger( getClass() );
 
     private final JmsTemplate groupQueueJmsTemplate;
@@ -95,12 +116,16 @@ public abstract class AbstractQueuedDataProcessorImpl<P extends ProcessedItem<PI
 
     private final JmsTemplate itemQueueJmsTemplate;
 
+    private final JmsTemplate transactedItemQueueJmsTemplate;
+
     private final PlatformTransactionManager platformTransactionManager;
 
     private final SystemAuthenticationToken systemAuthenticationToken;
 
     private final ForkJoinPool itemProcessorForkJoinPool;
 
+    private final Map<DataGroupId, Instant> lastPurgedByGroupId = new ConcurrentHashMap<>();
+
     private boolean periodicInfoLogging = true;
 
     public AbstractQueuedDataProcessorImpl(
@@ -118,6 +143,7 @@ public abstract class AbstractQueuedDataProcessorImpl<P extends ProcessedItem<PI
         this.storedItemService = storedItemService;
         this.processedItemRepository = processedItemRepository;
         this.itemQueueJmsTemplate = itemQueueJmsTemplate;
+        this.transactedItemQueueJmsTemplate = createTransactedJmsTemplate( itemQueueJmsTemplate );
         this.platformTransactionManager = platformTransactionManager;
         this.systemAuthenticationToken = systemAuthenticationToken;
         this.itemProcessorForkJoinPool = itemProcessorForkJoinPool;
@@ -207,27 +233,54 @@ public abstract class AbstractQueuedDataProcessorImpl<P extends ProcessedItem<PI
         final Instant begin = Instant.now();
         final DataProcessorItemRetriever<G> itemRetriever = getDataProcessorItemRetriever( group );
         final AtomicLong count = new AtomicLong();
-        final Instant lastUpdated = itemRetriever.poll( group, origLastUpdated, getMaxSearchCount(), items -> {
+        final Consumer<Collection<ProcessedItemInfo>> consumer = items -> {
             final Instant processedAt = Instant.now();
+            final Instant processedFrom = processedAt.minus( getMaxProcessedAgeMinutes(), ChronoUnit.MINUTES );
             final List<String> processableIds = items.stream().map( sr -> sr.toIdString( processedAt ) ).collect( Collectors.toList() );
-            final Set<String> processedIds = processedItemRepository.find( group, processableIds );
-            final Set<String> storedIds = storedItemService.findProcessedIds( storedItemGroup, processableIds );
+            final Set<String> processedIds = processedItemRepository.find( group, processableIds, processedFrom );
+            final Set<String> storedIds = storedItemService.findProcessedIds( storedItemGroup, processableIds, processedFrom );
 
-            final ForkJoinTask<?> task = itemProcessorForkJoinPool.submit( () -> items.parallelStream().forEach( item -> {
+            // a polled chunk may contain the same item more than once
+            final Set<String> processableIdSet = new HashSet<>();
+            final List<ProcessedItemInfo> processableItems = items.stream().filter( item -> {
                 final String processedId = item.toIdString( processedAt );
-                if ( !processedIds.contains( processedId ) && !storedIds.contains( processedId ) )
-                {
-                    // persist processed item
-                    processedItemRepository.process( createProcessedItem( group, processedId, processedAt ), p -> {
-                        if ( enqueueDataItem( group, item, false ) )
-                        {
-                            count.incrementAndGet();
-                        }
-                    } );
-                }
+                return !processedIds.contains( processedId ) && !storedIds.contains( processedId ) && processableIdSet.add( processedId );
+            } ).collect( Collectors.toList() );
+            if ( processableItems.isEmpty() )
+            {
+                return;
+            }
+            prefetchDataItems( group, processableItems );
+            if ( isBatchedEnqueue() && ( processableItems.size() > 1 ) && enqueueDataItems( group, processableItems, processedAt ) )
+            {
+                count.addAndGet( processableItems.size() );
+                return;
+            }
+
+            final ForkJoinTask<?> task = itemProcessorForkJoinPool.submit( () -> processableItems.parallelStream().forEach( item -> {
+                // persist processed item
+                processedItemRepository.process( createProcessedItem( group, item.toIdString( processedAt ), processedAt ), p -> {
+                    if ( enqueueDataItem( group, item, false ) )
+                    {
+                        count.incrementAndGet();
+                    }
+                } );
             } ) );
             awaitTaskTermination( task );
-        } );
+        };
+        final Instant lastUpdated;
+        if ( isStreamingPoll() )
+        {
+            lastUpdated = itemRetriever.pollStreaming( group, origLastUpdated, getMaxSearchCount(), consumer, checkpoint -> {
+                // continues with the checkpoint if processing is aborted before all items have been polled
+                logger.debug( "Reached checkpoint {} for group {}.", checkpoint, group.getGroupId() );
+                dataGroupUpdateRepository.updateLastUpdated( group, checkpoint );
+            } );
+        }
+        else
+        {
+            lastUpdated = itemRetriever.poll( group, origLastUpdated, getMaxSearchCount(), consumer );
+        }
         dataGroupUpdateRepository.updateLastUpdated( group, lastUpdated );
         final Instant end = Instant.now();
 
@@ -250,6 +303,20 @@ public abstract class AbstractQueuedDataProcessorImpl<P extends ProcessedItem<PI
         }
     }
 
+    /**
+     * Invoked with the items of a polled chunk before they are enqueued. Implementations
+     * may read the data of all items at once so that the processing of the enqueued
+     * items need not to read the data of each item separately. A failure must not
+     * prevent the items from being enqueued. The default implementation does nothing.
+     *
+     * @param group the group to which the items belong to.
+     * @param items the items that will be enqueued.
+     */
+    protected void prefetchDataItems( @Nonnull G group, @Nonnull Collection<ProcessedItemInfo> items )
+    {
+        // nothing to be prefetched by default
+    }
+
     protected boolean enqueueDataItem( @Nonnull G group, @Nonnull ProcessedItemInfo item, boolean persistedDataItem )
     {
         final QI queuedItemId = createQueuedItemId( group, item );
@@ -258,6 +325,119 @@ public abstract class AbstractQueuedDataProcessorImpl<P extends ProcessedItem<PI
         return true;
     }
 
+    /**
+     * Persists the processed items of all specified items with a single batch and
+     * enqueues all items within a single transacted JMS session. If one of the items
+     * has been processed concurrently in the meantime, nothing is persisted and nothing
+     * is enqueued. The items must then be processed one by one.
+     *
+     * @param group       the group to which the items belong to.
+     * @param items       the items that should be enqueued.
+     * @param processedAt the timestamp when the items have been processed.
+     * @return <code>true</code> if the items have been enqueued, <code>false</code> if
+     * at least one of the items has been processed concurrently.
+     */
+    protected boolean enqueueDataItems( @Nonnull G group, @Nonnull Collection<ProcessedItemInfo> items, @Nonnull Instant processedAt )
+    {
+        final List<P> processedItems = items.stream().map( item -> createProcessedItem( group, item.toIdString( processedAt ), processedAt ) )
+            .collect( Collectors.toList() );
+        try
+        {
+            if ( !processedItemRepository.processAll( processedItems, p -> sendDataItems( group, items ) ) )
+            {
+                logger.debug( "Some of {} items of group {} have already been processed. Processing items one by one.",
+                    items.size(), group.getGroupId() );
+                return false;
+            }
+        }
+        catch ( DataIntegrityViolationException e )
+        {
+            if ( !SqlExceptionUtils.isUniqueKeyViolation( e.getMostSpecificCause() ) )
+            {
+                throw e;
+            }
+            logger.debug( "Some of {} items of group {} have been processed concurrently. Processing items one by one.",
+                items.size(), group.getGroupId() );
+            return false;
+        }
+        logger.debug( "{} items of group {} have been enqueued.", items.size(), group.getGroupId() );
+        return true;
+    }
+
+    private void sendDataItems( @Nonnull G group, @Nonnull Collection<ProcessedItemInfo> items )
+    {
+        final ConnectionFactory connectionFactory = Objects.requireNonNull( transactedItemQueueJmsTemplate.getConnectionFactory() );
+        final MessageConverter messageConverter = Objects.requireNonNull( transactedItemQueueJmsTemplate.getMessageConverter() );
+        transactedItemQueueJmsTemplate.execute( session -> {
+            final MessageProducer producer = session.createProducer( getItemQueueDestination( session ) );
+            try
+            {
+                for ( final ProcessedItemInfo item : items )
+                {
+                    producer.send( messageConverter.toMessage( createDataItemQueueItem( group, item, false ), session ) );
+                }
+                // all items are made available at once (a session that is synchronized with the
+                // current transaction is committed when the transaction has been committed)
+                if ( session.getTransacted() && !ConnectionFactoryUtils.isSessionTransactional( session, connectionFactory ) )
+                {
+                    session.commit();
+                }
+            }
+            catch ( JMSException | RuntimeException e )
+            {
+                if ( !ConnectionFactoryUtils.isSessionTransactional( session, connectionFactory ) )
+                {
+                    JmsUtils.rollbackIfNecessary( session );
+                }
+                throw e;
+            }
+            finally
+            {
+                JmsUtils.closeMessageProducer( producer );
+            }
+            return null;
+        } );
+    }
+
+    @Nonnull
+    private Destination getItemQueueDestination( @Nonnull Session session ) throws JMSException
+    {
+        final Destination destination = transactedItemQueueJmsTemplate.getDefaultDestination();
+        if ( destination != null )
+        {
+            return destination;
+        }
+        return transactedItemQueueJmsTemplate.getDestinationResolver().resolveDestinationName( session,
+            Objects.requireNonNull( transactedItemQueueJmsTemplate.getDefaultDestinationName() ), transactedItemQueueJmsTemplate.isPubSubDomain() );
+    }
+
+    /**
+     * Creates a JMS template that sends to the same destination as the specified JMS
+     * template, but uses transacted sessions. Within a transaction the session is
+     * synchronized with the transaction.
+     *
+     * @param jmsTemplate the JMS template from which the settings are taken.
+     * @return the created JMS template with transacted sessions.
+     */
+    @Nonnull
+    private static JmsTemplate createTransactedJmsTemplate( @Nonnull JmsTemplate jmsTemplate )
+    {
+        final JmsTemplate transactedJmsTemplate = new JmsTemplate( Objects.requireNonNull( jmsTemplate.getConnectionFactory() ) );
+        transactedJmsTemplate.setDestinationResolver( jmsTemplate.getDestinationResolver() );
+        transactedJmsTemplate.setPubSubDomain( jmsTemplate.isPubSubDomain() );
+        if ( jmsTemplate.getDefaultDestination() == null )
+        {
+            transactedJmsTemplate.setDefaultDestinationName( jmsTemplate.getDefaultDestinationName() );
+        }
+        else
+        {
+            transactedJmsTemplate.setDefaultDestination( jmsTemplate.getDefaultDestination() );
+        }
+        transactedJmsTemplate.setMessageConverter( jmsTemplate.getMessageConverter() );
+        transactedJmsTemplate.setSessionTransacted( true );
+        return transactedJmsTemplate;
+    }
+
     private void awaitTaskTermination( @Nonnull ForkJoinTask<?> task )
     {
         try
@@ -288,21 +468,61 @@ public abstract class AbstractQueuedDataProcessorImpl<P extends ProcessedItem<PI
     }
 
     protected void purgeOldestProcessed( @Nonnull G group, @Nonnull SG storedItemGroup )
+    {
+        final Instant now = Instant.now();
+        final Instant lastPurged = lastPurgedByGroupId.get( group.getGroupId() );
+        if ( (lastPurged != null) && lastPurged.plus( getPurgeIntervalMinutes(), ChronoUnit.MINUTES ).isAfter( now ) )
+        {
+            // purged items are only used to prevent duplicate processing and can remain a little longer
+            logger.debug( "Purging oldest items for group {} has already been performed at {}.", group.getGroupId(), lastPurged );
+            return;
+        }
+
+        final Instant from = now.minus( getMaxProcessedAgeMinutes(), ChronoUnit.MINUTES );
+
+        // items of partitioned tables are removed by dropping their partitions (see maintainPartitions)
+        if ( !processedItemRepository.isPartitioned() )
+        {
+            logger.debug( "Purging oldest processed items before {} for group {}.", from, group.getGroupId() );
+            final int count = processedItemRepository.deleteOldest( group, from );
+            if ( count > 0 )
+            {
+                logger.info( "Purged {} oldest processed items before {} for group {}.", count, from, group.getGroupId() );
+            }
+        }
+        if ( !storedItemService.isPartitioned() )
+        {
+            logger.debug( "Purging oldest stored items before {} for group {}.", from, group.getGroupId() );
+            final int count = storedItemService.deleteOldest( storedItemGroup, from );
+            if ( count > 0 )
+            {
+                logger.info( "Purged {} oldest stored items before {} for group {}.", count, from, group.getGroupId() );
+            }
+        }
+
+        // a failed purge is not recorded so that it is retried after the next poll
+        lastPurgedByGroupId.put( group.getGroupId(), now );
+    }
+
+    /**
+     * Creates the partitions of the processed and stored items of the next days and
+     * drops the partitions that contain only items that have exceeded their maximum
+     * age. Nothing is done for items that are not stored in partitioned tables.
+     */
+    public void maintainPartitions()
     {
         final Instant from = Instant.now().minus( getMaxProcessedAgeMinutes(), ChronoUnit.MINUTES );
 
-        logger.debug( "Purging oldest processed items before {} for group {}.", from, group.getGroupId() );
-        int count = processedItemRepository.deleteOldest( group, from );
+        logger.debug( "Maintaining partitions of processed and stored items before {}.", from );
+        int count = processedItemRepository.maintainPartitions( from );
         if ( count > 0 )
         {
-            logger.info( "Purged {} oldest processed items before {} for group {}.", count, from, group.getGroupId() );
+            logger.info( "Dropped {} partitions of processed items before {}.", count, from );
         }
-
-        logger.debug( "Purging oldest stored items before {} for group {}.", from, group.getGroupId() );
-        count = storedItemService.deleteOldest( storedItemGroup, from );
+        count = storedItemService.maintainPartitions( from );
         if ( count > 0 )
         {
-            logger.info( "Purged {} oldest stored items before {} for group {}.", count, from, group.getGroupId() );
+            logger.info( "Dropped {} partitions of stored items before {}.", count, from );
         }
     }
 
@@ -324,6 +544,36 @@ public abstract class AbstractQueuedDataProcessorImpl<P extends ProcessedItem<PI
 
     protected abstract int getMaxSearchCount();
 
+    /**
+     * @return <code>true</code> if polled items should be enqueued while polling is
+     * still in progress and if the last updated timestamp of the group should be
+     * updated with intermediate checkpoints, <code>false</code> otherwise.
+     */
+    protected boolean isStreamingPoll()
+    {
+        return false;
+    }
+
+    /**
+     * @return the minimum number of minutes between two purges of the oldest processed
+     * and stored items of a group by this instance. If this is <code>0</code>, the
+     * oldest items are purged after every poll.
+     */
+    protected int getPurgeIntervalMinutes()
+    {
+        return 0;
+    }
+
+    /**
+     * @return <code>true</code> if the processed items of a polled chunk should be
+     * persisted with a single batch and if the items should be enqueued within a
+     * single transacted JMS session, <code>false</code> otherwise.
+     */
+    protected boolean isBatchedEnqueue()
+    {
+        return false;
+    }
+
     @Nonnull
     protected abstract DataProcessorItemRetriever<G> getDataProcessorItemRetriever( @Nonnull G group );
 
@@ -89,13 +89,13 @@ public abstract class AbstractStoredItemService<S extends StoredItem<I, G>, I ex
 
     @Nonnull
     @Override
-    public Set<String> findProcessedIds( @Nonnull G prefix, @Nonnull Collection<String> processedIds )
+    public Set<String> findProcessedIds( @Nonnull G prefix, @Nonnull Collection<String> processedIds, @Nonnull Instant from )
     {
         if ( !isEnabled() )
         {
             return Collections.emptySet();
         }
-        return repository.findProcessedIds( prefix, processedIds );
+        return repository.findProcessedIds( prefix, processedIds, from );
     }
 
     @Override
@@ -107,4 +107,16 @@ public abstract class AbstractStoredItemService<S extends StoredItem<I, G>, I ex
         }
         return repository.deleteOldest( prefix, timestamp );
     }
+
+    @Override
+    public boolean isPartitioned()
+    {
+        return repository.isPartitioned();
+    }
+
+    @Override
+    public int maintainPartitions( @Nonnull Instant timestamp )
+    {
+        return repository.maintainPartitions( timestamp );
+    }
 }
@@ -48,10 +48,60 @@ import java.util.function.Consumer;
  */
 public interface ProcessedItemRepository<T extends ProcessedItem<I, G>, I extends ProcessedItemId<G>, G extends DataGroup>
 {
+    /**
+     * Returns the processed IDs of the specified group that have been processed at
+     * or after the specified timestamp.
+     *
+     * @param prefix       the group of the processed IDs.
+     * @param processedIds the processed IDs that should be checked.
+     * @param from         the timestamp from which on processed items are considered.
+     * @return the processed IDs that have been processed at or after the timestamp.
+     */
     @Nonnull
-    Set<String> find( @Nonnull G prefix, @Nonnull Collection<String> processedIds );
+    Set<String> find( @Nonnull G prefix, @Nonnull Collection<String> processedIds, @Nonnull Instant from );
 
-    void process( @Nonnull T processedItem, @Nonnull Consumer<T> consumer );
+    /**
+     * Persists the specified processed item and passes it to the consumer before the
+     * transaction is committed. If the item has already been processed on the same
+     * UTC day, the item is not persisted and the consumer is not invoked.
+     *
+     * @param processedItem the processed item that should be persisted.
+     * @param consumer      the consumer that is invoked after the item has been persisted.
+     * @return <code>true</code> if the item has been persisted, <code>false</code> if
+     * the item has already been processed.
+     */
+    boolean process( @Nonnull T processedItem, @Nonnull Consumer<T> consumer );
+
+    /**
+     * Persists all specified processed items within a single transaction and
+     * passes them to the consumer before the transaction is committed. If one of
+     * the items has already been processed on the same UTC day, the transaction is
+     * rolled back and no item is persisted at all. All items
+     * must belong to the same group and must have distinct processed IDs.
+     *
+     * @param processedItems the processed items that should be persisted.
+     * @param consumer       the consumer that is invoked after all items have been
+     *                       persisted.
+     * @return <code>true</code> if the items have been persisted, <code>false</code>
+     * if at least one of the items has already been processed.
+     */
+    boolean processAll( @Nonnull Collection<T> processedItems, @Nonnull Consumer<Collection<T>> consumer );
 
     int deleteOldest( @Nonnull G prefix, @Nonnull Instant timestamp );
+
+    /**
+     * @return <code>true</code> if the processed items are stored in a table that is
+     * partitioned by day, <code>false</code> otherwise.
+     */
+    boolean isPartitioned();
+
+    /**
+     * Creates the partitions of the next days in advance and drops the partitions
+     * that contain only processed items before the specified timestamp. Nothing is
+     * done if the processed items are not stored in a partitioned table.
+     *
+     * @param timestamp the timestamp before which processed items may be removed.
+     * @return the number of dropped partitions.
+     */
+    int maintainPartitions( @Nonnull Instant timestamp );
 }
@@ -51,8 +51,33 @@ public interface StoredItemRepository<T extends StoredItem<I, G>, I extends Stor
 
     boolean contains( @Nonnull G prefix, @Nonnull String storedId );
 
+    /**
+     * Returns the stored IDs of the specified group that have been stored at or
+     * after the specified timestamp.
+     *
+     * @param prefix       the group of the stored IDs.
+     * @param processedIds the IDs that should be checked.
+     * @param from         the timestamp from which on stored items are considered.
+     * @return the IDs that have been stored at or after the timestamp.
+     */
     @Nonnull
-    Set<String> findProcessedIds( @Nonnull G prefix, @Nonnull Collection<String> processedIds );
+    Set<String> findProcessedIds( @Nonnull G prefix, @Nonnull Collection<String> processedIds, @Nonnull Instant from );
 
     int deleteOldest( @Nonnull G prefix, @Nonnull Instant timestamp );
+
+    /**
+     * @return <code>true</code> if the stored items are stored in a table that is
+     * partitioned by day, <code>false</code> otherwise.
+     */
+    boolean isPartitioned();
+
+    /**
+     * Creates the partitions of the next days in advance and drops the partitions
+     * that contain only stored items before the specified timestamp. Nothing is
+     * done if the stored items are not stored in a partitioned table.
+     *
+     * @param timestamp the timestamp before which stored items may be removed.
+     * @return the number of dropped partitions.
+     */
+    int maintainPartitions( @Nonnull Instant timestamp );
 }
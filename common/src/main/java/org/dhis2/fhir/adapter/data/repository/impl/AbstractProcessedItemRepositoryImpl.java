@@ -32,23 +32,36 @@ import org.dhis2.fhir.adapter.data.model.DataGroup;
 import org.dhis2.fhir.adapter.data.model.ProcessedItem;
 import org.dhis2.fhir.adapter.data.model.ProcessedItemId;
 import org.dhis2.fhir.adapter.data.repository.ProcessedItemRepository;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
 
 import javax.annotation.Nonnull;
 import javax.persistence.EntityManager;
-import javax.persistence.PersistenceContext;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaDelete;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Root;
+import java.sql.Date;
+import java.sql.Timestamp;
 import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /**
- * Implementation of a repository that stores already processed items.
+ * Implementation of a repository that stores already processed items. A processed
+ * ID is unique per group and UTC day of processing. Items are inserted first and
+ * the database decides which one of concurrent inserts of the same processed ID
+ * wins. Processed IDs are only looked up within the specified age, so that only
+ * the partitions of the last days of partitioned tables are queried.
  *
  * @param <T> the concrete type of the processed item.
  * @param <I> the concrete type of the ID of the processed item.
@@ -57,34 +70,64 @@ import java.util.function.Consumer;
  */
 public abstract class AbstractProcessedItemRepositoryImpl<T extends ProcessedItem<I, G>, I extends ProcessedItemId<G>, G extends DataGroup> implements ProcessedItemRepository<T, I, G>
 {
-    @PersistenceContext
-    private EntityManager entityManager;
+    private final EntityManager entityManager;
 
-    protected AbstractProcessedItemRepositoryImpl( @Nonnull EntityManager entityManager )
+    private final JdbcTemplate jdbcTemplate;
+
+    private final DayPartitionManager partitionManager;
+
+    private final String insertSql;
+
+    protected AbstractProcessedItemRepositoryImpl( @Nonnull EntityManager entityManager, @Nonnull JdbcTemplate jdbcTemplate, @Nonnull DayPartitionManager partitionManager,
+        @Nonnull String groupColumnName, @Nonnull String processedIdColumnName )
     {
         this.entityManager = entityManager;
+        this.jdbcTemplate = jdbcTemplate;
+        this.partitionManager = partitionManager;
+        this.insertSql = "INSERT INTO " + partitionManager.getTableName() + " (" + groupColumnName + "," + processedIdColumnName +
+            ",processed_at,processed_day) VALUES (?,?,?,?) ON CONFLICT DO NOTHING";
     }
 
     @Override
     @Nonnull
-    public Set<String> find( @Nonnull G prefix, @Nonnull Collection<String> processedIds )
+    public Set<String> find( @Nonnull G prefix, @Nonnull Collection<String> processedIds, @Nonnull Instant from )
     {
         final CriteriaBuilder cb = entityManager.getCriteriaBuilder();
         final CriteriaQuery<String> criteria = cb.createQuery( String.class );
         final Root<T> root = criteria.from( getProcessedItemClass() );
-        return new HashSet<>( entityManager.createQuery( criteria.select( root.get( "id" ).get( "processedId" ) )
-            .where( cb.equal( root.get( "id" ).get( "group" ), prefix ),
-                root.get( "id" ).get( "processedId" ).in( processedIds ) ) )
+        // restricting the processing day limits the query to the partitions of the last days
+        return new HashSet<>( entityManager.createQuery( criteria.select( root.get( "id" ).get( "processedId" ) ).where(
+            cb.equal( root.get( "id" ).get( "group" ), prefix ),
+            root.get( "id" ).get( "processedId" ).in( processedIds ),
+            cb.greaterThanOrEqualTo( root.get( "processedDay" ), LocalDateTime.ofInstant( from, ZoneOffset.UTC ).toLocalDate() ),
+            cb.greaterThanOrEqualTo( root.get( "processedAt" ), from ) ) )
             .setHint( "org.hibernate.fetchSize", 1000 ).getResultList() );
     }
 
     @Override
     @Transactional
-    public void process( @Nonnull T processedItem, @Nonnull Consumer<T> consumer )
+    public boolean process( @Nonnull T processedItem, @Nonnull Consumer<T> consumer )
     {
-        entityManager.persist( processedItem );
-        entityManager.flush();
+        if ( !insert( Collections.singletonList( processedItem ) ) )
+        {
+            return false;
+        }
         consumer.accept( processedItem );
+        return true;
+    }
+
+    @Override
+    @Transactional
+    public boolean processAll( @Nonnull Collection<T> processedItems, @Nonnull Consumer<Collection<T>> consumer )
+    {
+        if ( !insert( processedItems ) )
+        {
+            // the items that have been inserted must not be kept without the others
+            setRollbackOnly();
+            return false;
+        }
+        consumer.accept( processedItems );
+        return true;
     }
 
     @Override
@@ -99,6 +142,51 @@ public abstract class AbstractProcessedItemRepositoryImpl<T extends ProcessedIte
             cb.lessThan( root.get( "processedAt" ), timestamp ) ) ).executeUpdate();
     }
 
+    @Override
+    public boolean isPartitioned()
+    {
+        return partitionManager.isPartitioned();
+    }
+
+    @Override
+    public int maintainPartitions( @Nonnull Instant timestamp )
+    {
+        return partitionManager.maintain( timestamp );
+    }
+
+    /**
+     * Inserts the specified processed items. On partitioned tables the processed items
+     * are inserted with a single batch and items that have already been processed on the
+     * same day are skipped by the database. Otherwise the items are persisted and a
+     * unique key violation is raised if one of them has already been processed.
+     *
+     * @param processedItems the processed items that should be inserted.
+     * @return <code>true</code> if all items have been inserted, <code>false</code> if
+     * at least one of the items has already been processed.
+     */
+    protected boolean insert( @Nonnull Collection<T> processedItems )
+    {
+        if ( !partitionManager.isPartitioned() )
+        {
+            // items are written with a single flush so that JDBC batching can be used
+            processedItems.forEach( entityManager::persist );
+            entityManager.flush();
+            return true;
+        }
+
+        final List<Object[]> args = processedItems.stream().map( pi -> new Object[]{
+            entityManager.getEntityManagerFactory().getPersistenceUnitUtil().getIdentifier( pi.getId().getGroup() ),
+            pi.getId().getProcessedId(),
+            Timestamp.valueOf( LocalDateTime.ofInstant( pi.getProcessedAt(), ZoneOffset.UTC ) ),
+            Date.valueOf( pi.getProcessedDay() ) } ).collect( Collectors.toList() );
+        return Arrays.stream( jdbcTemplate.batchUpdate( insertSql, args ) ).noneMatch( count -> count == 0 );
+    }
+
+    protected void setRollbackOnly()
+    {
+        TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+    }
+
     @Nonnull
     protected abstract Class<T> getProcessedItemClass();
 }
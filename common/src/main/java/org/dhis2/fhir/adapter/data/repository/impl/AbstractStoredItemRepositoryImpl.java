@@ -72,11 +72,15 @@ public abstract class AbstractStoredItemRepositoryImpl<T extends StoredItem<I, G
 
     private final PersistenceExceptionTranslator persistenceExceptionTranslator;
 
-    protected AbstractStoredItemRepositoryImpl( @Nonnull EntityManager entityManager, @Nonnull PlatformTransactionManager platformTransactionManager, @Nonnull PersistenceExceptionTranslator persistenceExceptionTranslator )
+    private final DayPartitionManager partitionManager;
+
+    protected AbstractStoredItemRepositoryImpl( @Nonnull EntityManager entityManager, @Nonnull PlatformTransactionManager platformTransactionManager, @Nonnull PersistenceExceptionTranslator persistenceExceptionTranslator,
+        @Nonnull DayPartitionManager partitionManager )
     {
         this.entityManager = entityManager;
         this.platformTransactionManager = platformTransactionManager;
         this.persistenceExceptionTranslator = persistenceExceptionTranslator;
+        this.partitionManager = partitionManager;
     }
 
     @Override
@@ -86,6 +90,11 @@ public abstract class AbstractStoredItemRepositoryImpl<T extends StoredItem<I, G
         final TransactionStatus transactionStatus = platformTransactionManager.getTransaction( new DefaultTransactionDefinition() );
         try
         {
+            // the stored items are not unique by their IDs in a partitioned table
+            if ( contains( prefix, storedId ) )
+            {
+                return false;
+            }
             entityManager.persist( createStoredItem( prefix, storedId ) );
             entityManager.flush();
         }
@@ -131,14 +140,15 @@ public abstract class AbstractStoredItemRepositoryImpl<T extends StoredItem<I, G
 
     @Override
     @Nonnull
-    public Set<String> findProcessedIds( @Nonnull G prefix, @Nonnull Collection<String> processedIds )
+    public Set<String> findProcessedIds( @Nonnull G prefix, @Nonnull Collection<String> processedIds, @Nonnull Instant from )
     {
         final CriteriaBuilder cb = entityManager.getCriteriaBuilder();
         final CriteriaQuery<String> criteria = cb.createQuery( String.class );
         final Root<T> root = criteria.from( getStoredItemClass() );
         return new HashSet<>( entityManager.createQuery( criteria.select( root.get( "id" ).get( "storedId" ) )
             .where( cb.equal( root.get( "id" ).get( "group" ), prefix ),
-                root.get( "id" ).get( "storedId" ).in( processedIds ) ) )
+                root.get( "id" ).get( "storedId" ).in( processedIds ),
+                cb.greaterThanOrEqualTo( root.get( "storedAt" ), from ) ) )
             .setHint( "org.hibernate.fetchSize", 1000 ).getResultList() );
     }
 
@@ -154,6 +164,18 @@ public abstract class AbstractStoredItemRepositoryImpl<T extends StoredItem<I, G
             cb.lessThan( root.get( "storedAt" ), timestamp ) ) ).executeUpdate();
     }
 
+    @Override
+    public boolean isPartitioned()
+    {
+        return partitionManager.isPartitioned();
+    }
+
+    @Override
+    public int maintainPartitions( @Nonnull Instant timestamp )
+    {
+        return partitionManager.maintain( timestamp );
+    }
+
     @Nonnull
     protected abstract Class<T> getStoredItemClass();
 
@@ -0,0 +1,279 @@
+package org.dhis2.fhir.adapter.data.repository.impl;
+
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Manages the day range partitions of a PostgreSQL table that is partitioned by a
+ * timestamp or date column. Expired rows of the default partition are deleted by
+ * the specified timestamp column. The partition of a day is named by the table name and the day
+ * (e.g. <code>fhir_processed_resource_p20190131</code>). Rows for which no partition
+ * of their day exists are stored in the default partition of the table (e.g.
+ * <code>fhir_processed_resource_default</code>). If the database is not PostgreSQL or
+ * the table is not partitioned, no partitions are managed.
+ * <p>
+ * The timestamps of the rows and the bounds of the partitions are UTC, since this is
+ * also used when timestamps are stored by Hibernate.
+ *
+ * @author volsch
+ */
+public class DayPartitionManager
+{
+    /**
+     * The number of days after the current day for which partitions are created in advance.
+     */
+    public static final int AHEAD_DAYS = 3;
+
+    protected static final String POSTGRESQL_PRODUCT_NAME = "PostgreSQL";
+
+    protected static final String PARTITIONED_SQL = "SELECT COUNT(*) FROM pg_partitioned_table pt JOIN pg_class c ON c.oid=pt.partrelid WHERE c.relname=?";
+
+    protected static final String PARTITIONS_SQL = "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid=i.inhrelid JOIN pg_class p ON p.oid=i.inhparent WHERE p.relname=?";
+
+    protected static final String TRY_LOCK_SQL = "SELECT pg_try_advisory_lock(hashtext(?))";
+
+    protected static final String UNLOCK_SQL = "SELECT pg_advisory_unlock(hashtext(?))";
+
+    protected static final String DAY_PARTITION_SUFFIX = "_p";
+
+    protected static final String DEFAULT_PARTITION_SUFFIX = "_default";
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final String tableName;
+
+    private final String columnName;
+
+    private volatile Boolean partitioned;
+
+    public DayPartitionManager( @Nonnull JdbcTemplate jdbcTemplate, @Nonnull String tableName, @Nonnull String columnName )
+    {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tableName = tableName;
+        this.columnName = columnName;
+    }
+
+    @Nonnull
+    public String getTableName()
+    {
+        return tableName;
+    }
+
+    /**
+     * @return <code>true</code> if the table is a PostgreSQL table that is partitioned,
+     * <code>false</code> otherwise.
+     */
+    public boolean isPartitioned()
+    {
+        Boolean result = partitioned;
+        if ( result == null )
+        {
+            result = POSTGRESQL_PRODUCT_NAME.equals( jdbcTemplate.execute( (ConnectionCallback<String>) c -> c.getMetaData().getDatabaseProductName() ) ) &&
+                (Objects.requireNonNull( jdbcTemplate.queryForObject( PARTITIONED_SQL, Integer.class, tableName ) ) > 0);
+            partitioned = result;
+        }
+        return result;
+    }
+
+    /**
+     * Creates the missing partitions from the current day until {@link #AHEAD_DAYS} days
+     * ahead and drops the partitions that contain only rows before the specified timestamp.
+     * Rows of the default partition before the specified timestamp are deleted. If another
+     * adapter instance maintains the partitions of the table currently, nothing is done.
+     *
+     * @param timestamp the timestamp before which all rows may be removed.
+     * @return the number of dropped partitions.
+     */
+    public int maintain( @Nonnull Instant timestamp )
+    {
+        if ( !isPartitioned() )
+        {
+            return 0;
+        }
+        return Objects.requireNonNull( jdbcTemplate.execute( (ConnectionCallback<Integer>) c -> maintain( c, timestamp ) ) );
+    }
+
+    private int maintain( @Nonnull Connection connection, @Nonnull Instant timestamp ) throws SQLException
+    {
+        // an advisory lock of the session is used since statements that fail must not abort the others
+        if ( !executeLock( connection, TRY_LOCK_SQL ) )
+        {
+            logger.debug( "Partitions of table {} are maintained by another instance currently.", tableName );
+            return 0;
+        }
+        try
+        {
+            final LocalDateTime before = LocalDateTime.ofInstant( timestamp, ZoneOffset.UTC );
+            final Set<String> partitionNames = findPartitionNames( connection );
+            createPartitions( connection, partitionNames );
+
+            final String defaultPartitionName = tableName + DEFAULT_PARTITION_SUFFIX;
+            if ( partitionNames.contains( defaultPartitionName ) )
+            {
+                try ( final PreparedStatement ps = connection.prepareStatement( "DELETE FROM " + defaultPartitionName + " WHERE " + columnName + "<?" ) )
+                {
+                    ps.setTimestamp( 1, Timestamp.valueOf( before ) );
+                    final int count = ps.executeUpdate();
+                    if ( count > 0 )
+                    {
+                        logger.info( "Deleted {} rows before {} from default partition of table {}.", count, timestamp, tableName );
+                    }
+                }
+            }
+
+            return dropPartitions( connection, partitionNames, before );
+        }
+        finally
+        {
+            executeLock( connection, UNLOCK_SQL );
+        }
+    }
+
+    private void createPartitions( @Nonnull Connection connection, @Nonnull Set<String> partitionNames ) throws SQLException
+    {
+        final LocalDate today = LocalDate.now( ZoneOffset.UTC );
+        for ( int i = 0; i <= AHEAD_DAYS; i++ )
+        {
+            final LocalDate day = today.plusDays( i );
+            final String partitionName = getPartitionName( day );
+            if ( !partitionNames.contains( partitionName ) )
+            {
+                try ( final Statement statement = connection.createStatement() )
+                {
+                    statement.execute( "CREATE TABLE " + partitionName + " PARTITION OF " + tableName +
+                        " FOR VALUES FROM ('" + day + "') TO ('" + day.plusDays( 1 ) + "')" );
+                    logger.info( "Created partition {} of table {}.", partitionName, tableName );
+                }
+                catch ( SQLException e )
+                {
+                    // e.g. the default partition contains already rows of the day (will be retried)
+                    logger.warn( "Could not create partition " + partitionName + " of table " + tableName + ".", e );
+                }
+            }
+        }
+    }
+
+    private int dropPartitions( @Nonnull Connection connection, @Nonnull Set<String> partitionNames, @Nonnull LocalDateTime before ) throws SQLException
+    {
+        int count = 0;
+        for ( final String partitionName : partitionNames )
+        {
+            final LocalDate day = getPartitionDay( partitionName );
+            if ( (day != null) && !day.plusDays( 1 ).atStartOfDay().isAfter( before ) )
+            {
+                try ( final Statement statement = connection.createStatement() )
+                {
+                    statement.execute( "DROP TABLE " + partitionName );
+                }
+                logger.info( "Dropped partition {} of table {}.", partitionName, tableName );
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Nonnull
+    private Set<String> findPartitionNames( @Nonnull Connection connection ) throws SQLException
+    {
+        final Set<String> partitionNames = new HashSet<>();
+        try ( final PreparedStatement ps = connection.prepareStatement( PARTITIONS_SQL ) )
+        {
+            ps.setString( 1, tableName );
+            try ( final ResultSet rs = ps.executeQuery() )
+            {
+                while ( rs.next() )
+                {
+                    partitionNames.add( rs.getString( 1 ) );
+                }
+            }
+        }
+        return partitionNames;
+    }
+
+    private boolean executeLock( @Nonnull Connection connection, @Nonnull String sql ) throws SQLException
+    {
+        try ( final PreparedStatement ps = connection.prepareStatement( sql ) )
+        {
+            ps.setString( 1, tableName );
+            try ( final ResultSet rs = ps.executeQuery() )
+            {
+                return rs.next() && rs.getBoolean( 1 );
+            }
+        }
+    }
+
+    @Nonnull
+    protected String getPartitionName( @Nonnull LocalDate day )
+    {
+        return tableName + DAY_PARTITION_SUFFIX + DateTimeFormatter.BASIC_ISO_DATE.format( day );
+    }
+
+    @Nullable
+    protected LocalDate getPartitionDay( @Nonnull String partitionName )
+    {
+        final String prefix = tableName + DAY_PARTITION_SUFFIX;
+        if ( !partitionName.startsWith( prefix ) )
+        {
+            return null;
+        }
+        try
+        {
+            return LocalDate.parse( partitionName.substring( prefix.length() ), DateTimeFormatter.BASIC_ISO_DATE );
+        }
+        catch ( DateTimeParseException e )
+        {
+            return null;
+        }
+    }
+}
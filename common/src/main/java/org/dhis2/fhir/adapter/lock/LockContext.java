@@ -29,6 +29,7 @@ package org.dhis2.fhir.adapter.lock;
  */
 
 import javax.annotation.Nonnull;
+import java.util.Collection;
 
 /**
  * The lock context to obtain distributed locks on names. All locks will be
@@ -44,6 +45,18 @@ public interface LockContext extends AutoCloseable
      */
     void lock( @Nonnull String key );
 
+    /**
+     * Locks all specified keys. The method may block until all keys can be locked.
+     * Implementations may lock all keys at once and in a defined order in order to
+     * avoid deadlocks.
+     *
+     * @param keys the keys that should be locked.
+     */
+    default void lockAll( @Nonnull Collection<String> keys )
+    {
+        keys.forEach( this::lock );
+    }
+
     /**
      * Unlocks all keys that have been locked with this lock context.
      */
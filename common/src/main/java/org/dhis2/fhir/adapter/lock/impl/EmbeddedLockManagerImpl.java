@@ -28,26 +28,93 @@ package org.dhis2.fhir.adapter.lock.impl;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import org.dhis2.fhir.adapter.lock.LockContext;
 import org.dhis2.fhir.adapter.lock.LockException;
 import org.dhis2.fhir.adapter.lock.LockManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Lock manager that creates a lock context that uses internal JVM locks. These
- * cannot be used in a clustered environment.
+ * cannot be used in a clustered environment. Each locked key has its own lock so
+ * that releasing a lock wakes up only threads that wait for the same key. Lock
+ * statistics are exposed as metrics when the lock manager has been bound to a
+ * meter registry.
  *
  * @author volsch
  */
-public class EmbeddedLockManagerImpl implements LockManager
+public class EmbeddedLockManagerImpl implements LockManager, MeterBinder
 {
+    /**
+     * The key prefix that is used for all keys that do not have a known key prefix.
+     */
+    public static final String OTHER_KEY_PREFIX = "other";
+
+    /**
+     * The known key prefixes. Statistics are kept per known key prefix only in
+     * order to limit the number of exposed metrics.
+     */
+    public static final Set<String> KEY_PREFIXES = Collections.unmodifiableSet( new HashSet<>( Arrays.asList(
+        "in-te", "in-te-fhir-resource-id", "out-te", "out-en", "out-ev", "out-ps", "fhir-identifier" ) ) );
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
     private final ThreadLocal<LockContext> threadLocal = new ThreadLocal<>();
 
-    private final Set<String> locks = new HashSet<>();
+    private final ConcurrentMap<String, KeyLock> locks = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, LockStatistics> statistics = new ConcurrentHashMap<>();
+
+    private final long lockTimeoutMillis;
+
+    private volatile MeterRegistry meterRegistry;
+
+    public EmbeddedLockManagerImpl()
+    {
+        this( 0 );
+    }
+
+    /**
+     * @param lockTimeoutMillis the maximum number of milliseconds to wait for a lock
+     *                          or <code>0</code> if there is no limit.
+     */
+    public EmbeddedLockManagerImpl( long lockTimeoutMillis )
+    {
+        if ( lockTimeoutMillis < 0 )
+        {
+            throw new IllegalArgumentException( "Lock timeout must not be negative." );
+        }
+        this.lockTimeoutMillis = lockTimeoutMillis;
+    }
+
+    /**
+     * @return the maximum number of milliseconds to wait for a lock or <code>0</code>
+     * if there is no limit.
+     */
+    public long getLockTimeoutMillis()
+    {
+        return lockTimeoutMillis;
+    }
 
     @Nonnull
     @Override
@@ -69,35 +136,97 @@ public class EmbeddedLockManagerImpl implements LockManager
         return Optional.ofNullable( threadLocal.get() );
     }
 
+    /**
+     * Returns the lock statistics per key prefix. The key prefix is the part of
+     * the key before the first colon (e.g. <code>out-te</code>). Keys without a
+     * known key prefix are counted with key prefix {@link #OTHER_KEY_PREFIX}.
+     *
+     * @return the unmodifiable lock statistics per key prefix.
+     */
+    @Nonnull
+    public Map<String, LockStatistics> getStatistics()
+    {
+        return Collections.unmodifiableMap( statistics );
+    }
+
+    @Override
+    public void bindTo( @Nonnull MeterRegistry registry )
+    {
+        meterRegistry = registry;
+        // statistics of key prefixes that are used later are bound when they are created
+        statistics.forEach( ( keyPrefix, lockStatistics ) -> bindMetrics( registry, keyPrefix, lockStatistics ) );
+    }
+
     void lock( @Nonnull String key )
     {
-        synchronized ( locks )
+        final KeyLock keyLock = locks.compute( key, ( k, v ) -> {
+            final KeyLock result = (v == null) ? new KeyLock() : v;
+            result.references++;
+            return result;
+        } );
+        final LockStatistics lockStatistics = statistics.computeIfAbsent( getKeyPrefix( key ), this::createStatistics );
+
+        boolean acquired = false;
+        try
         {
-            while ( locks.contains( key ) )
+            if ( keyLock.semaphore.tryAcquire() )
+            {
+                acquired = true;
+                lockStatistics.acquired( false, 0 );
+            }
+            else
             {
-                try
+                final long begin = System.nanoTime();
+                if ( lockTimeoutMillis > 0 )
+                {
+                    acquired = keyLock.semaphore.tryAcquire( lockTimeoutMillis, TimeUnit.MILLISECONDS );
+                }
+                else
+                {
+                    keyLock.semaphore.acquire();
+                    acquired = true;
+                }
+
+                final long waitNanos = System.nanoTime() - begin;
+                if ( acquired )
                 {
-                    locks.wait();
+                    lockStatistics.acquired( true, waitNanos );
+                    logger.debug( "Waited {} ms for lock on {}.", TimeUnit.NANOSECONDS.toMillis( waitNanos ), key );
                 }
-                catch ( InterruptedException e )
+                else
                 {
-                    throw new LockException( "Waiting for lock has been interrupted.", e );
+                    lockStatistics.timedOut( waitNanos );
                 }
             }
-            locks.add( key );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new LockException( "Waiting for lock has been interrupted.", e );
+        }
+        finally
+        {
+            if ( !acquired )
+            {
+                release( key );
+            }
+        }
+
+        if ( !acquired )
+        {
+            throw new LockException( "Waiting for lock on " + key + " timed out after " + lockTimeoutMillis + " ms." );
         }
     }
 
     void unlock( @Nonnull String key )
     {
-        synchronized ( locks )
+        final KeyLock keyLock = locks.get( key );
+        if ( (keyLock == null) || (keyLock.semaphore.availablePermits() > 0) )
         {
-            if ( !locks.remove( key ) )
-            {
-                throw new IllegalStateException( "Lock on " + key + " does not exist." );
-            }
-            locks.notifyAll();
+            throw new IllegalStateException( "Lock on " + key + " does not exist." );
         }
+        keyLock.semaphore.release();
+        release( key );
     }
 
     void removeFromThread( @Nonnull EmbeddedLockContextImpl lockContext )
@@ -108,4 +237,119 @@ public class EmbeddedLockManagerImpl implements LockManager
         }
         threadLocal.set( null );
     }
+
+    private void release( @Nonnull String key )
+    {
+        // lock is removed as soon as there is no thread that owns or waits for the lock
+        locks.computeIfPresent( key, ( k, v ) -> (--v.references == 0) ? null : v );
+    }
+
+    @Nonnull
+    private LockStatistics createStatistics( @Nonnull String keyPrefix )
+    {
+        final LockStatistics lockStatistics = new LockStatistics();
+        final MeterRegistry registry = meterRegistry;
+        if ( registry != null )
+        {
+            bindMetrics( registry, keyPrefix, lockStatistics );
+        }
+        return lockStatistics;
+    }
+
+    private static void bindMetrics( @Nonnull MeterRegistry registry, @Nonnull String keyPrefix, @Nonnull LockStatistics lockStatistics )
+    {
+        final Tags tags = Tags.of( "keyPrefix", keyPrefix );
+        FunctionCounter.builder( "lock.acquired", lockStatistics, LockStatistics::getAcquiredCount ).tags( tags )
+            .description( "The number of locks that have been acquired" ).register( registry );
+        FunctionCounter.builder( "lock.timed.out", lockStatistics, LockStatistics::getTimedOutCount ).tags( tags )
+            .description( "The number of locks that could not be acquired within the lock timeout" ).register( registry );
+        FunctionTimer.builder( "lock.wait", lockStatistics, LockStatistics::getContendedCount,
+            LockStatistics::getWaitMillis, TimeUnit.MILLISECONDS ).tags( tags )
+            .description( "The time spent waiting for locks that have been held by other threads" ).register( registry );
+        TimeGauge.builder( "lock.wait.max", lockStatistics, TimeUnit.MILLISECONDS, LockStatistics::getMaxWaitMillis ).tags( tags )
+            .description( "The maximum time spent waiting for a single lock" ).register( registry );
+    }
+
+    @Nonnull
+    private static String getKeyPrefix( @Nonnull String key )
+    {
+        final int index = key.indexOf( ':' );
+        final String keyPrefix = (index < 0) ? key : key.substring( 0, index );
+        return KEY_PREFIXES.contains( keyPrefix ) ? keyPrefix : OTHER_KEY_PREFIX;
+    }
+
+    /**
+     * Lock of a single key. The references are only modified while the map entry
+     * of the key is being computed.
+     */
+    private static class KeyLock
+    {
+        private final Semaphore semaphore = new Semaphore( 1 );
+
+        private int references;
+    }
+
+    /**
+     * Contention statistics of all locks with the same key prefix.
+     */
+    public static class LockStatistics
+    {
+        private final LongAdder acquiredCount = new LongAdder();
+
+        private final LongAdder contendedCount = new LongAdder();
+
+        private final LongAdder timedOutCount = new LongAdder();
+
+        private final LongAdder waitNanos = new LongAdder();
+
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+
+        public long getAcquiredCount()
+        {
+            return acquiredCount.sum();
+        }
+
+        public long getContendedCount()
+        {
+            return contendedCount.sum();
+        }
+
+        public long getTimedOutCount()
+        {
+            return timedOutCount.sum();
+        }
+
+        public long getWaitMillis()
+        {
+            return TimeUnit.NANOSECONDS.toMillis( waitNanos.sum() );
+        }
+
+        public long getMaxWaitMillis()
+        {
+            return TimeUnit.NANOSECONDS.toMillis( maxWaitNanos.get() );
+        }
+
+        protected void acquired( boolean contended, long nanos )
+        {
+            acquiredCount.increment();
+            if ( contended )
+            {
+                contendedCount.increment();
+                waited( nanos );
+            }
+        }
+
+        protected void timedOut( long nanos )
+        {
+            timedOutCount.increment();
+            contendedCount.increment();
+            waited( nanos );
+        }
+
+        private void waited( long nanos )
+        {
+            waitNanos.add( nanos );
+            maxWaitNanos.accumulateAndGet( nanos, Math::max );
+        }
+    }
 }
@@ -0,0 +1,104 @@
+package org.dhis2.fhir.adapter.lock.impl;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+import javax.annotation.Nonnull;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.io.Serializable;
+
+/**
+ * Configuration of distributed locks.
+ *
+ * @author volsch
+ */
+@Configuration
+@ConfigurationProperties( "dhis2.fhir-adapter.lock" )
+@Validated
+public class LockConfig implements Serializable
+{
+    private static final long serialVersionUID = 2497722437285385427L;
+
+    @NotNull
+    private LockMode mode = LockMode.TRANSACTION;
+
+    @Min( 1 )
+    private int sharedConnectionCount = 2;
+
+    @Min( 0 )
+    private long timeoutMillis;
+
+    @Min( 1 )
+    private long distributedTimeoutMillis = 30_000;
+
+    @Nonnull
+    public LockMode getMode()
+    {
+        return mode;
+    }
+
+    public void setMode( @Nonnull LockMode mode )
+    {
+        this.mode = mode;
+    }
+
+    public int getSharedConnectionCount()
+    {
+        return sharedConnectionCount;
+    }
+
+    public void setSharedConnectionCount( int sharedConnectionCount )
+    {
+        this.sharedConnectionCount = sharedConnectionCount;
+    }
+
+    public long getTimeoutMillis()
+    {
+        return timeoutMillis;
+    }
+
+    public void setTimeoutMillis( long timeoutMillis )
+    {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public long getDistributedTimeoutMillis()
+    {
+        return distributedTimeoutMillis;
+    }
+
+    public void setDistributedTimeoutMillis( long distributedTimeoutMillis )
+    {
+        this.distributedTimeoutMillis = distributedTimeoutMillis;
+    }
+}
@@ -34,15 +34,18 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
-import java.nio.ByteBuffer;
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.sql.CallableStatement;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
 /**
  * Implementation of a lock context that uses the PostgreSQL Advisory Locking system
@@ -70,62 +73,61 @@ public class PostgreSqlAdvisoryLockContextImpl implements LockContext
     @Override
     public void lock( @Nonnull String key )
     {
-        if ( lockedKeys.contains( key ) )
+        lockAll( Collections.singleton( key ) );
+    }
+
+    @Override
+    public void lockAll( @Nonnull Collection<String> keys )
+    {
+        final List<String> newKeys = keys.stream().filter( key -> !lockedKeys.contains( key ) ).distinct().collect( Collectors.toList() );
+        if ( newKeys.isEmpty() )
         {
             return;
         }
 
         if ( connection == null )
         {
-            boolean ok = false;
-            try
+            openConnection();
+        }
+
+        // locks are always acquired in the same order to avoid deadlocks
+        final long[] fingerprints = newKeys.stream().mapToLong( PostgreSqlAdvisoryLockManagerImpl::createFingerprint ).distinct().sorted().toArray();
+        logger.debug( "Locking {} with fingerprints {}.", newKeys, fingerprints );
+        if ( fingerprints.length == 1 )
+        {
+            try ( final CallableStatement call = connection.prepareCall( "{call pg_advisory_xact_lock(?)}" ) )
             {
-                connection = lockManager.getDataSource().getConnection();
-                resetAutoCommit = connection.getAutoCommit();
-                if ( resetAutoCommit )
-                {
-                    connection.setAutoCommit( false );
-                }
-                ok = true;
+                call.setLong( 1, fingerprints[0] );
+                call.execute();
             }
             catch ( SQLException e )
             {
-                throw new LockException( "Unable to acquire lock due to a technical error.", e );
+                throw new LockException( "Could not lock cache " + newKeys + " due to a technical error.", e );
             }
-            finally
+        }
+        else
+        {
+            // all locks are acquired with a single round trip
+            try ( final PreparedStatement statement = connection.prepareStatement(
+                "SELECT pg_advisory_xact_lock(f) FROM (SELECT f FROM unnest(?) AS f ORDER BY f) l" ) )
             {
-                if ( !ok && (connection != null) )
+                statement.setArray( 1, connection.createArrayOf( "bigint", LongStream.of( fingerprints ).boxed().toArray() ) );
+                try ( final ResultSet rs = statement.executeQuery() )
                 {
-                    try
-                    {
-                        connection.close();
-                    }
-                    catch ( SQLException e )
+                    while ( rs.next() )
                     {
-                        logger.error( "Could not close database connection.", e );
-                    }
-                    finally
-                    {
-                        connection = null;
+                        // all rows must be fetched
                     }
                 }
             }
+            catch ( SQLException e )
+            {
+                throw new LockException( "Could not lock caches " + newKeys + " due to a technical error.", e );
+            }
         }
 
-        final long fingerprint = Math.abs( createHash( key ) );
-        logger.debug( "Locking {} with fingerprint {}.", key, fingerprint );
-        try ( final CallableStatement call = connection.prepareCall( "{call pg_advisory_xact_lock(?)}" ) )
-        {
-            call.setLong( 1, fingerprint );
-            call.execute();
-        }
-        catch ( SQLException e )
-        {
-            throw new LockException( "Could not lock cache " + key + " due to a technical error.", e );
-        }
-
-        lockedKeys.add( key );
-        logger.debug( "Locked {} with fingerprint {}.", key, fingerprint );
+        lockedKeys.addAll( newKeys );
+        logger.debug( "Locked {} with fingerprints {}.", newKeys, fingerprints );
     }
 
     @Override
@@ -176,19 +178,40 @@ public class PostgreSqlAdvisoryLockContextImpl implements LockContext
         lockManager.removeFromThread( this );
     }
 
-    protected long createHash( @Nonnull String key )
+    private void openConnection()
     {
-        final MessageDigest md;
+        boolean ok = false;
         try
         {
-            md = MessageDigest.getInstance( "MD5" );
+            connection = lockManager.getDataSource().getConnection();
+            resetAutoCommit = connection.getAutoCommit();
+            if ( resetAutoCommit )
+            {
+                connection.setAutoCommit( false );
+            }
+            ok = true;
+        }
+        catch ( SQLException e )
+        {
+            throw new LockException( "Unable to acquire lock due to a technical error.", e );
         }
-        catch ( NoSuchAlgorithmException e )
+        finally
         {
-            throw new LockException( "MD5 is not available.", e );
+            if ( !ok && (connection != null) )
+            {
+                try
+                {
+                    connection.close();
+                }
+                catch ( SQLException e )
+                {
+                    logger.error( "Could not close database connection.", e );
+                }
+                finally
+                {
+                    connection = null;
+                }
+            }
         }
-        md.update( key.getBytes( StandardCharsets.UTF_8 ) );
-        final ByteBuffer bb = ByteBuffer.wrap( md.digest(), 0, 8 );
-        return bb.getLong();
     }
 }
@@ -28,30 +28,66 @@ package org.dhis2.fhir.adapter.lock.impl;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import org.dhis2.fhir.adapter.lock.LockContext;
+import org.dhis2.fhir.adapter.lock.LockException;
 import org.dhis2.fhir.adapter.lock.LockManager;
+import org.dhis2.fhir.adapter.lock.LockTimeoutException;
+import org.dhis2.fhir.adapter.util.SqlExceptionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.PreDestroy;
 import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.Optional;
 
 /**
  * Lock manager that creates a lock context that uses the PostgreSQL Advisory Lock
- * to implement a distributed lock.
+ * to implement a distributed lock. The statistics of the local locks are exposed
+ * as metrics.
  *
  * @author volsch
  */
 @Service
-public class PostgreSqlAdvisoryLockManagerImpl implements LockManager
+public class PostgreSqlAdvisoryLockManagerImpl implements LockManager, MeterBinder
 {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
     private final ThreadLocal<LockContext> threadLocal = new ThreadLocal<>();
 
     private final DataSource dataSource;
 
-    public PostgreSqlAdvisoryLockManagerImpl( @Nonnull DataSource dataSource )
+    private final LockConfig lockConfig;
+
+    private final EmbeddedLockManagerImpl localLockManager;
+
+    private final SharedConnection[] sharedConnections;
+
+    public PostgreSqlAdvisoryLockManagerImpl( @Nonnull DataSource dataSource, @Nonnull LockConfig lockConfig )
     {
         this.dataSource = dataSource;
+        this.lockConfig = lockConfig;
+        this.localLockManager = new EmbeddedLockManagerImpl( lockConfig.getTimeoutMillis() );
+
+        sharedConnections = new SharedConnection[lockConfig.getSharedConnectionCount()];
+        for ( int i = 0; i < sharedConnections.length; i++ )
+        {
+            sharedConnections[i] = new SharedConnection();
+        }
     }
 
     @Nonnull
@@ -62,7 +98,8 @@ public class PostgreSqlAdvisoryLockManagerImpl implements LockManager
         {
             throw new IllegalStateException( "The current thread already owns a lock context." );
         }
-        final LockContext lockContext = new PostgreSqlAdvisoryLockContextImpl( this );
+        final LockContext lockContext = (lockConfig.getMode() == LockMode.SHARED_SESSION) ?
+            new PostgreSqlSharedAdvisoryLockContextImpl( this ) : new PostgreSqlAdvisoryLockContextImpl( this );
         threadLocal.set( lockContext );
         return lockContext;
     }
@@ -74,13 +111,37 @@ public class PostgreSqlAdvisoryLockManagerImpl implements LockManager
         return Optional.ofNullable( threadLocal.get() );
     }
 
+    @Override
+    public void bindTo( @Nonnull MeterRegistry registry )
+    {
+        localLockManager.bindTo( registry );
+    }
+
+    @PreDestroy
+    public void close()
+    {
+        for ( final SharedConnection sharedConnection : sharedConnections )
+        {
+            synchronized ( sharedConnection )
+            {
+                sharedConnection.close();
+            }
+        }
+    }
+
     @Nonnull
     DataSource getDataSource()
     {
         return dataSource;
     }
 
-    void removeFromThread( @Nonnull PostgreSqlAdvisoryLockContextImpl lockContext )
+    @Nonnull
+    EmbeddedLockManagerImpl getLocalLockManager()
+    {
+        return localLockManager;
+    }
+
+    void removeFromThread( @Nonnull LockContext lockContext )
     {
         if ( threadLocal.get() == null )
         {
@@ -88,4 +149,217 @@ public class PostgreSqlAdvisoryLockManagerImpl implements LockManager
         }
         threadLocal.set( null );
     }
+
+    /**
+     * Tries to lock the specified fingerprint with a session level lock on one of the
+     * shared connections. Since the connection must not be blocked for other threads,
+     * the lock is only tried once.
+     *
+     * @param fingerprint the fingerprint that should be locked.
+     * @return <code>true</code> if the lock has been obtained, <code>false</code> if
+     * the lock is held by another session.
+     */
+    boolean tryLockShared( long fingerprint )
+    {
+        return executeShared( fingerprint, "SELECT pg_try_advisory_lock(?)" );
+    }
+
+    /**
+     * Locks the specified fingerprint with a session level lock on a dedicated
+     * connection. The call blocks until the lock can be obtained or until the
+     * distributed lock timeout has elapsed. Since PostgreSQL cannot detect deadlocks
+     * with locks that are held by the shared connections, the wait must be bounded.
+     * The returned connection holds the lock and must be passed to {@link #unlockDedicated(Connection, long)}.
+     *
+     * @param fingerprint the fingerprint that should be locked.
+     * @return the dedicated connection that holds the lock.
+     * @throws LockTimeoutException thrown if the lock could not be obtained within the timeout.
+     */
+    @Nonnull
+    Connection lockDedicated( long fingerprint )
+    {
+        Connection connection = null;
+        try
+        {
+            connection = dataSource.getConnection();
+            if ( !connection.getAutoCommit() )
+            {
+                connection.setAutoCommit( true );
+            }
+            try ( final Statement statement = connection.createStatement() )
+            {
+                statement.execute( "SET lock_timeout=" + lockConfig.getDistributedTimeoutMillis() );
+            }
+            try ( final PreparedStatement statement = connection.prepareStatement( "SELECT pg_advisory_lock(?)" ) )
+            {
+                statement.setLong( 1, fingerprint );
+                statement.execute();
+            }
+            finally
+            {
+                try ( final Statement statement = connection.createStatement() )
+                {
+                    statement.execute( "RESET lock_timeout" );
+                }
+            }
+            return connection;
+        }
+        catch ( SQLException e )
+        {
+            closeDedicated( connection );
+            if ( SqlExceptionUtils.isLockNotAvailable( e ) )
+            {
+                throw new LockTimeoutException( "Waiting for lock with fingerprint " + fingerprint + " timed out after " +
+                    lockConfig.getDistributedTimeoutMillis() + " ms.", e );
+            }
+            throw new LockException( "Could not lock fingerprint " + fingerprint + " due to a technical error.", e );
+        }
+    }
+
+    void unlockDedicated( @Nonnull Connection connection, long fingerprint )
+    {
+        try ( final PreparedStatement statement = connection.prepareStatement( "SELECT pg_advisory_unlock(?)" ) )
+        {
+            statement.setLong( 1, fingerprint );
+            try ( final ResultSet rs = statement.executeQuery() )
+            {
+                if ( !rs.next() || !rs.getBoolean( 1 ) )
+                {
+                    logger.warn( "Lock with fingerprint {} was no longer held by dedicated connection.", fingerprint );
+                }
+            }
+        }
+        catch ( SQLException e )
+        {
+            throw new LockException( "Could not unlock fingerprint " + fingerprint + " due to a technical error.", e );
+        }
+        finally
+        {
+            closeDedicated( connection );
+        }
+    }
+
+    private void closeDedicated( @Nullable Connection connection )
+    {
+        if ( connection != null )
+        {
+            // closing the connection must not return a connection with a held lock to the pool
+            try ( final PreparedStatement statement = connection.prepareStatement( "SELECT pg_advisory_unlock_all()" ) )
+            {
+                statement.execute();
+            }
+            catch ( SQLException e )
+            {
+                logger.debug( "Could not release locks of database connection.", e );
+            }
+
+            try
+            {
+                connection.close();
+            }
+            catch ( SQLException e )
+            {
+                logger.error( "Could not close database connection.", e );
+            }
+        }
+    }
+
+    void unlockShared( long fingerprint )
+    {
+        if ( !executeShared( fingerprint, "SELECT pg_advisory_unlock(?)" ) )
+        {
+            logger.warn( "Lock with fingerprint {} was no longer held by shared connection.", fingerprint );
+        }
+    }
+
+    private boolean executeShared( long fingerprint, @Nonnull String sql )
+    {
+        // session level locks must be released by the same connection that obtained them
+        final SharedConnection sharedConnection = sharedConnections[(int) (fingerprint % sharedConnections.length)];
+        synchronized ( sharedConnection )
+        {
+            try
+            {
+                try ( final PreparedStatement statement = sharedConnection.getConnection().prepareStatement( sql ) )
+                {
+                    statement.setLong( 1, fingerprint );
+                    try ( final ResultSet rs = statement.executeQuery() )
+                    {
+                        return rs.next() && rs.getBoolean( 1 );
+                    }
+                }
+            }
+            catch ( SQLException e )
+            {
+                // all session level locks of the connection are lost
+                sharedConnection.close();
+                throw new LockException( "Could not process lock with fingerprint " + fingerprint + " due to a technical error.", e );
+            }
+        }
+    }
+
+    /**
+     * Creates the non-negative 64 bit FNV-1a hash of the specified key.
+     *
+     * @param key the key for which the fingerprint should be created.
+     * @return the fingerprint of the key.
+     */
+    static long createFingerprint( @Nonnull String key )
+    {
+        long hash = FNV_OFFSET_BASIS;
+        for ( final byte b : key.getBytes( StandardCharsets.UTF_8 ) )
+        {
+            hash ^= (b & 0xff);
+            hash *= FNV_PRIME;
+        }
+        return hash & Long.MAX_VALUE;
+    }
+
+    private class SharedConnection
+    {
+        private Connection connection;
+
+        @Nonnull
+        private Connection getConnection() throws SQLException
+        {
+            if ( connection == null )
+            {
+                connection = dataSource.getConnection();
+                if ( !connection.getAutoCommit() )
+                {
+                    connection.setAutoCommit( true );
+                }
+            }
+            return connection;
+        }
+
+        private void close()
+        {
+            if ( connection != null )
+            {
+                // connection is returned to the pool and must not hold any lock
+                try ( final PreparedStatement statement = connection.prepareStatement( "SELECT pg_advisory_unlock_all()" ) )
+                {
+                    statement.execute();
+                }
+                catch ( SQLException e )
+                {
+                    logger.debug( "Could not release locks of database connection.", e );
+                }
+
+                try
+                {
+                    connection.close();
+                }
+                catch ( SQLException e )
+                {
+                    logger.error( "Could not close database connection.", e );
+                }
+                finally
+                {
+                    connection = null;
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,175 @@
+package org.dhis2.fhir.adapter.lock.impl;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.dhis2.fhir.adapter.lock.LockContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.sql.Connection;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Implementation of a lock context that uses the PostgreSQL Advisory Locking system
+ * with session level locks on connections that are shared by all lock contexts.
+ * Threads of the same JVM are synchronized locally before the distributed lock is
+ * requested. This implementation does not require a database connection for each
+ * lock context. Only if a lock is held by another adapter instance, a dedicated
+ * database connection blocks until the lock has been released by the other instance.
+ *
+ * @author volsch
+ */
+public class PostgreSqlSharedAdvisoryLockContextImpl implements LockContext
+{
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    private final PostgreSqlAdvisoryLockManagerImpl lockManager;
+
+    private final Map<String, LockedKey> lockedKeys = new LinkedHashMap<>();
+
+    public PostgreSqlSharedAdvisoryLockContextImpl( @Nonnull PostgreSqlAdvisoryLockManagerImpl lockManager )
+    {
+        this.lockManager = lockManager;
+    }
+
+    @Override
+    public void lock( @Nonnull String key )
+    {
+        if ( lockedKeys.containsKey( key ) )
+        {
+            return;
+        }
+
+        final long fingerprint = PostgreSqlAdvisoryLockManagerImpl.createFingerprint( key );
+        logger.debug( "Locking {} with fingerprint {}.", key, fingerprint );
+        lockManager.getLocalLockManager().lock( key );
+        boolean ok = false;
+        try
+        {
+            if ( lockManager.tryLockShared( fingerprint ) )
+            {
+                lockedKeys.put( key, new LockedKey( fingerprint, null ) );
+            }
+            else
+            {
+                // lock is held by another adapter instance and blocking must not occupy a shared connection
+                logger.debug( "Waiting for lock {} with fingerprint {} on dedicated connection.", key, fingerprint );
+                lockedKeys.put( key, new LockedKey( fingerprint, lockManager.lockDedicated( fingerprint ) ) );
+            }
+            ok = true;
+        }
+        finally
+        {
+            if ( !ok )
+            {
+                lockManager.getLocalLockManager().unlock( key );
+            }
+        }
+        logger.debug( "Locked {} with fingerprint {}.", key, fingerprint );
+    }
+
+    @Override
+    public void lockAll( @Nonnull Collection<String> keys )
+    {
+        // locks are always acquired in the same order to avoid deadlocks
+        keys.stream().distinct().sorted( Comparator.comparingLong( PostgreSqlAdvisoryLockManagerImpl::createFingerprint ) )
+            .forEach( this::lock );
+    }
+
+    @Override
+    public void unlockAll()
+    {
+        if ( lockedKeys.isEmpty() )
+        {
+            return;
+        }
+
+        logger.debug( "Unlocking keys {}.", lockedKeys.keySet() );
+        RuntimeException exception = null;
+        for ( final Map.Entry<String, LockedKey> entry : lockedKeys.entrySet() )
+        {
+            final LockedKey lockedKey = entry.getValue();
+            try
+            {
+                if ( lockedKey.connection == null )
+                {
+                    lockManager.unlockShared( lockedKey.fingerprint );
+                }
+                else
+                {
+                    lockManager.unlockDedicated( lockedKey.connection, lockedKey.fingerprint );
+                }
+            }
+            catch ( RuntimeException e )
+            {
+                // remaining keys must be unlocked anyway
+                exception = e;
+            }
+            finally
+            {
+                lockManager.getLocalLockManager().unlock( entry.getKey() );
+            }
+        }
+        lockedKeys.clear();
+
+        if ( exception != null )
+        {
+            throw exception;
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        unlockAll();
+        lockManager.removeFromThread( this );
+    }
+
+    /**
+     * Fingerprint of a locked key and the dedicated connection that holds the lock
+     * (if the lock is not held by a shared connection).
+     */
+    private static class LockedKey
+    {
+        private final long fingerprint;
+
+        private final Connection connection;
+
+        private LockedKey( long fingerprint, @Nullable Connection connection )
+        {
+            this.fingerprint = fingerprint;
+            this.connection = connection;
+        }
+    }
+}
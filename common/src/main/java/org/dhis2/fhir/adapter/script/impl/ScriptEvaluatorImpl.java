@@ -31,28 +31,44 @@ package org.dhis2.fhir.adapter.script.impl;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import jdk.nashorn.api.scripting.NashornScriptEngineFactory;
+import jdk.nashorn.api.scripting.ScriptObjectMirror;
 import org.dhis2.fhir.adapter.script.FatalScriptCompilationException;
 import org.dhis2.fhir.adapter.script.ScriptCompilationException;
 import org.dhis2.fhir.adapter.script.ScriptEvaluator;
 import org.dhis2.fhir.adapter.script.ScriptExecutionException;
+import org.dhis2.fhir.adapter.script.StatelessScriptVariable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.script.Bindings;
 import javax.script.Compilable;
 import javax.script.CompiledScript;
 import javax.script.ScriptEngine;
 import javax.script.ScriptException;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Standard implementation of {@link ScriptEvaluator}. The used script engine itself
  * must be thread safe. The evaluator uses new bindings for each thread when it
  * executes the scripts.<br>
  *
+ * Creating new bindings is expensive since the script engine must initialize a new
+ * global scope. If script contexts should be reused, each thread keeps its own
+ * bindings. {@linkplain StatelessScriptVariable Stateless variables} (e.g. transformer
+ * utilities) remain bound after the execution and are only bound again if another
+ * instance is passed or if the script reassigned the variable. All other arguments
+ * are bound before the script is executed. After the execution all other variables
+ * that have been added to the bindings (arguments and global variables declared by
+ * the script) are removed again. Modifications of the built-in objects of the global
+ * scope remain in the reused script context.<br>
+ *
  * For Nashorn Javascript engine see this article:
  * https://stackoverflow.com/questions/30140103/should-i-use-a-separate-scriptengine-and-compiledscript-instances-per-each-threa
  *
@@ -68,7 +84,14 @@ public class ScriptEvaluatorImpl implements ScriptEvaluator
 
     private final Cache<Object, CompiledScript> compiledScriptCache;
 
+    private final ThreadLocal<ScriptContextBindings> threadBindings;
+
     public ScriptEvaluatorImpl( @Nonnull String scriptEngineName, @Nonnull List<String> scriptEngineArgs, int maxCachedScriptLifetimeSecs, int maxCachedScripts )
+    {
+        this( scriptEngineName, scriptEngineArgs, maxCachedScriptLifetimeSecs, maxCachedScripts, false );
+    }
+
+    public ScriptEvaluatorImpl( @Nonnull String scriptEngineName, @Nonnull List<String> scriptEngineArgs, int maxCachedScriptLifetimeSecs, int maxCachedScripts, boolean reuseScriptContexts )
     {
         if ( !"nashorn".equals( scriptEngineName ) )
         {
@@ -93,14 +116,61 @@ public class ScriptEvaluatorImpl implements ScriptEvaluator
             compilable = null;
             compiledScriptCache = null;
         }
+        if ( reuseScriptContexts )
+        {
+            final Object undefined = getUndefined( scriptEngine );
+            threadBindings = ThreadLocal.withInitial( () -> new ScriptContextBindings( scriptEngine.createBindings(), undefined ) );
+        }
+        else
+        {
+            threadBindings = null;
+        }
+    }
+
+    @Nullable
+    private static Object getUndefined( @Nonnull ScriptEngine scriptEngine )
+    {
+        try
+        {
+            // undefined value of the script engine is converted to null when it is returned directly
+            final Object array = scriptEngine.eval( "[undefined]" );
+            return (array instanceof ScriptObjectMirror) ? ((ScriptObjectMirror) array).getSlot( 0 ) : null;
+        }
+        catch ( ScriptException e )
+        {
+            throw new FatalScriptCompilationException( "Undefined value of script engine could not be determined.", e );
+        }
     }
 
     @Override
     public Object eval( @Nonnull Object key, @Nonnull String script, @Nonnull Map<String, Object> args ) throws ScriptCompilationException
     {
-        final Bindings bindings = scriptEngine.createBindings();
-        bindings.putAll( args );
+        final ScriptContextBindings contextBindings = (threadBindings == null) ? null : threadBindings.get();
+        if ( (contextBindings == null) || contextBindings.isInUse() )
+        {
+            // nested script evaluations must not modify the bindings of the evaluation in progress
+            final Bindings bindings = scriptEngine.createBindings();
+            bindings.putAll( args );
+
+            return eval( key, script, bindings );
+        }
+
+        contextBindings.setInUse( true );
+        try
+        {
+            return eval( key, script, contextBindings.bind( args ) );
+        }
+        finally
+        {
+            // references to the arguments must not be kept by the thread
+            contextBindings.reset();
+            contextBindings.setInUse( false );
+        }
+    }
 
+    @Nullable
+    protected Object eval( @Nonnull Object key, @Nonnull String script, @Nonnull Bindings bindings ) throws ScriptCompilationException
+    {
         final Object result;
         if ( compilable == null )
         {
@@ -147,6 +217,71 @@ public class ScriptEvaluatorImpl implements ScriptEvaluator
         return result;
     }
 
+    /**
+     * Bindings of a script context that is reused by a single thread.
+     */
+    protected static class ScriptContextBindings
+    {
+        private final Bindings bindings;
+
+        private final Object undefined;
+
+        private final Set<String> initialKeys;
+
+        private boolean inUse;
+
+        public ScriptContextBindings( @Nonnull Bindings bindings, @Nullable Object undefined )
+        {
+            this.bindings = bindings;
+            this.undefined = undefined;
+            this.initialKeys = new HashSet<>( bindings.keySet() );
+        }
+
+        public boolean isInUse()
+        {
+            return inUse;
+        }
+
+        public void setInUse( boolean inUse )
+        {
+            this.inUse = inUse;
+        }
+
+        @Nonnull
+        public Bindings bind( @Nonnull Map<String, Object> args )
+        {
+            args.forEach( ( key, value ) -> {
+                // stateless variables are still bound from a previous execution unless they have been reassigned
+                if ( !(value instanceof StatelessScriptVariable) || (bindings.get( key ) != value) )
+                {
+                    bindings.put( key, value );
+                }
+            } );
+            return bindings;
+        }
+
+        /**
+         * Removes all variables that have been added to the bindings since they have been
+         * created, except stateless variables. Variables that have been declared by the
+         * script cannot be removed and are set to undefined.
+         */
+        public void reset()
+        {
+            for ( final Map.Entry<String, Object> entry : new ArrayList<>( bindings.entrySet() ) )
+            {
+                final String key = entry.getKey();
+                if ( !initialKeys.contains( key ) && !(entry.getValue() instanceof StatelessScriptVariable) )
+                {
+                    bindings.remove( key );
+                    if ( bindings.containsKey( key ) )
+                    {
+                        bindings.put( key, undefined );
+                    }
+                }
+            }
+        }
+    }
+
     @Override
     public boolean compile( @Nonnull String script )
     {
@@ -0,0 +1,120 @@
+package org.dhis2.fhir.adapter.util;
+
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import javax.annotation.Nonnull;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Utility class for compressing and decompressing text with deflate.
+ *
+ * @author volsch
+ */
+public abstract class CompressionUtils
+{
+    private static final int BUFFER_SIZE = 4096;
+
+    /**
+     * Compresses the UTF-8 encoded bytes of the specified text.
+     *
+     * @param text the text that should be compressed.
+     * @return the compressed text.
+     */
+    @Nonnull
+    public static byte[] compress( @Nonnull String text )
+    {
+        final byte[] bytes = text.getBytes( StandardCharsets.UTF_8 );
+        final Deflater deflater = new Deflater( Deflater.BEST_SPEED );
+        try
+        {
+            deflater.setInput( bytes );
+            deflater.finish();
+
+            final ByteArrayOutputStream out = new ByteArrayOutputStream( Math.max( 64, bytes.length / 4 ) );
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            while ( !deflater.finished() )
+            {
+                out.write( buffer, 0, deflater.deflate( buffer ) );
+            }
+            return out.toByteArray();
+        }
+        finally
+        {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Decompresses text that has been compressed by {@link #compress(String)}.
+     *
+     * @param bytes the compressed text.
+     * @return the decompressed text.
+     * @throws IllegalArgumentException if the specified bytes do not contain valid compressed data.
+     */
+    @Nonnull
+    public static String decompress( @Nonnull byte[] bytes )
+    {
+        final Inflater inflater = new Inflater();
+        try
+        {
+            inflater.setInput( bytes );
+
+            final ByteArrayOutputStream out = new ByteArrayOutputStream( Math.max( 256, bytes.length * 4 ) );
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            while ( !inflater.finished() )
+            {
+                final int length = inflater.inflate( buffer );
+                if ( (length == 0) && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary()) )
+                {
+                    throw new IllegalArgumentException( "Compressed data is incomplete." );
+                }
+                out.write( buffer, 0, length );
+            }
+            return new String( out.toByteArray(), StandardCharsets.UTF_8 );
+        }
+        catch ( DataFormatException e )
+        {
+            throw new IllegalArgumentException( "Compressed data is invalid: " + e.getMessage(), e );
+        }
+        finally
+        {
+            inflater.end();
+        }
+    }
+
+    private CompressionUtils()
+    {
+        super();
+    }
+}
@@ -42,6 +42,8 @@ public abstract class SqlExceptionUtils
 
     protected static final String FOREIGN_KEY_VIOLATION_ERROR_CODE = "23503";
 
+    protected static final String LOCK_NOT_AVAILABLE_ERROR_CODE = "55P03";
+
     public static boolean isUniqueKeyViolation( @Nullable Throwable exception )
     {
         if ( exception == null )
@@ -68,6 +70,19 @@ public abstract class SqlExceptionUtils
         return FOREIGN_KEY_VIOLATION_ERROR_CODE.equals( ((SQLException) exception).getSQLState() );
     }
 
+    public static boolean isLockNotAvailable( @Nullable Throwable exception )
+    {
+        if ( exception == null )
+        {
+            return false;
+        }
+        if ( !(exception instanceof SQLException) )
+        {
+            return false;
+        }
+        return LOCK_NOT_AVAILABLE_ERROR_CODE.equals( ((SQLException) exception).getSQLState() );
+    }
+
     private SqlExceptionUtils()
     {
         super();
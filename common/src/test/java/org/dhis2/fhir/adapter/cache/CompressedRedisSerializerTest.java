@@ -0,0 +1,106 @@
+package org.dhis2.fhir.adapter.cache;
+
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Unit tests for {@link CompressedRedisSerializer}.
+ *
+ * @author volsch
+ */
+public class CompressedRedisSerializerTest
+{
+    private static final byte[] DICTIONARY = "{\"resourceType\":\"Patient\"".getBytes( StandardCharsets.UTF_8 );
+
+    private static final String VALUE = "{\"resourceType\":\"Patient\",\"name\":[{\"family\":\"Test\"},{\"family\":\"Test\"},{\"family\":\"Test\"}]}";
+
+    @Test
+    public void roundTrip()
+    {
+        final CompressedRedisSerializer<String> serializer = new CompressedRedisSerializer<>( new StringRedisSerializer(), DICTIONARY, true );
+        final byte[] bytes = serializer.serialize( VALUE );
+        Assert.assertEquals( CompressedRedisSerializer.MAGIC, bytes[0] );
+        Assert.assertEquals( CompressedRedisSerializer.VERSION, bytes[1] );
+        Assert.assertTrue( bytes.length < VALUE.length() );
+        Assert.assertEquals( VALUE, serializer.deserialize( bytes ) );
+    }
+
+    @Test
+    public void roundTripWithoutDictionary()
+    {
+        final CompressedRedisSerializer<String> serializer = new CompressedRedisSerializer<>( new StringRedisSerializer(), null, true );
+        Assert.assertEquals( VALUE, serializer.deserialize( serializer.serialize( VALUE ) ) );
+    }
+
+    @Test
+    public void uncompressed()
+    {
+        final CompressedRedisSerializer<String> serializer = new CompressedRedisSerializer<>( new StringRedisSerializer(), DICTIONARY, false );
+        final byte[] bytes = serializer.serialize( VALUE );
+        Assert.assertArrayEquals( VALUE.getBytes( StandardCharsets.UTF_8 ), bytes );
+        Assert.assertEquals( VALUE, serializer.deserialize( bytes ) );
+    }
+
+    @Test
+    public void readCompressedWhenDisabled()
+    {
+        final byte[] bytes = new CompressedRedisSerializer<>( new StringRedisSerializer(), DICTIONARY, true ).serialize( VALUE );
+        Assert.assertEquals( VALUE, new CompressedRedisSerializer<>( new StringRedisSerializer(), DICTIONARY, false ).deserialize( bytes ) );
+    }
+
+    @Test
+    public void empty()
+    {
+        final CompressedRedisSerializer<String> serializer = new CompressedRedisSerializer<>( new StringRedisSerializer(), DICTIONARY, true );
+        Assert.assertEquals( 0, serializer.serialize( "" ).length );
+        Assert.assertEquals( "", serializer.deserialize( new byte[0] ) );
+    }
+
+    @Test( expected = SerializationException.class )
+    public void unsupportedVersion()
+    {
+        final byte[] bytes = new CompressedRedisSerializer<>( new StringRedisSerializer(), DICTIONARY, true ).serialize( VALUE );
+        bytes[1] = (byte) (CompressedRedisSerializer.VERSION + 1);
+        new CompressedRedisSerializer<>( new StringRedisSerializer(), DICTIONARY, true ).deserialize( bytes );
+    }
+
+    @Test( expected = SerializationException.class )
+    public void differentDictionary()
+    {
+        final byte[] bytes = new CompressedRedisSerializer<>( new StringRedisSerializer(), DICTIONARY, true ).serialize( VALUE );
+        new CompressedRedisSerializer<>( new StringRedisSerializer(), "other".getBytes( StandardCharsets.UTF_8 ), true ).deserialize( bytes );
+    }
+}
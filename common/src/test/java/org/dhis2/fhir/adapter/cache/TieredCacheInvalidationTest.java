@@ -0,0 +1,71 @@
+package org.dhis2.fhir.adapter.cache;
+
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Unit tests for {@link TieredCacheInvalidation}.
+ *
+ * @author volsch
+ */
+public class TieredCacheInvalidationTest
+{
+    private final Jackson2JsonRedisSerializer<TieredCacheInvalidation> serializer = new Jackson2JsonRedisSerializer<>( TieredCacheInvalidation.class );
+
+    @Test
+    public void serialize()
+    {
+        final TieredCacheInvalidation invalidation = serializer.deserialize( serializer.serialize( new TieredCacheInvalidation( "i1", "test", "SimpleKey [a,1]" ) ) );
+        Assert.assertNotNull( invalidation );
+        Assert.assertEquals( "i1", invalidation.getInstanceId() );
+        Assert.assertEquals( "test", invalidation.getCacheName() );
+        Assert.assertEquals( "SimpleKey [a,1]", invalidation.getKey() );
+    }
+
+    @Test
+    public void serializeCleared()
+    {
+        final TieredCacheInvalidation invalidation = serializer.deserialize( serializer.serialize( new TieredCacheInvalidation( "i1", "test", null ) ) );
+        Assert.assertNotNull( invalidation );
+        Assert.assertNull( invalidation.getKey() );
+    }
+
+    @Test( expected = SerializationException.class )
+    public void deserializeOtherType()
+    {
+        serializer.deserialize( "{\"instanceId\":\"i1\",\"cacheName\":\"test\",\"key\":{\"@class\":\"java.net.URL\"}}".getBytes( StandardCharsets.UTF_8 ) );
+    }
+}
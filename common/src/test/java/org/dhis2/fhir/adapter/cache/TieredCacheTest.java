@@ -0,0 +1,213 @@
+package org.dhis2.fhir.adapter.cache;
+
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit tests for {@link TieredCache}.
+ *
+ * @author volsch
+ */
+public class TieredCacheTest
+{
+    private ConcurrentMapCache localCache;
+
+    private ConcurrentMapCache remoteCache;
+
+    private List<Object> invalidatedKeys;
+
+    private TieredCache cache;
+
+    @Before
+    public void before()
+    {
+        localCache = new ConcurrentMapCache( "test" );
+        remoteCache = new ConcurrentMapCache( "test" );
+        invalidatedKeys = new ArrayList<>();
+        cache = new TieredCache( localCache, remoteCache, invalidatedKeys::add );
+    }
+
+    @Test
+    public void getLocal()
+    {
+        localCache.put( "a", "value" );
+        Assert.assertEquals( "value", cache.get( "a", String.class ) );
+        Assert.assertEquals( 1, cache.getLocalHitCount() );
+        Assert.assertEquals( 0, cache.getRemoteHitCount() );
+        Assert.assertEquals( 1.0, cache.getLocalHitRatio(), 0.0 );
+    }
+
+    @Test
+    public void getRemote()
+    {
+        remoteCache.put( "a", "value" );
+        Assert.assertEquals( "value", cache.get( "a", String.class ) );
+        Assert.assertEquals( "value", localCache.get( "a", String.class ) );
+        Assert.assertEquals( "value", cache.get( "a", String.class ) );
+        Assert.assertEquals( 1, cache.getLocalHitCount() );
+        Assert.assertEquals( 1, cache.getRemoteHitCount() );
+        Assert.assertEquals( 0, cache.getMissCount() );
+        Assert.assertEquals( 0.5, cache.getLocalHitRatio(), 0.0 );
+        Assert.assertTrue( invalidatedKeys.isEmpty() );
+    }
+
+    @Test
+    public void getMissingWithLoader()
+    {
+        Assert.assertNull( cache.get( "a" ) );
+        Assert.assertEquals( "value", cache.get( "a", () -> "value" ) );
+        Assert.assertEquals( "value", remoteCache.get( "a", String.class ) );
+        Assert.assertEquals( "value", localCache.get( "a", String.class ) );
+        Assert.assertEquals( 2, cache.getMissCount() );
+        Assert.assertEquals( 0.0, cache.getHitRatio(), 0.0 );
+        Assert.assertTrue( invalidatedKeys.isEmpty() );
+    }
+
+    @Test
+    public void putIfAbsentExisting()
+    {
+        remoteCache.put( "a", "value" );
+        Assert.assertEquals( "value", cache.putIfAbsent( "a", "other" ).get() );
+        Assert.assertEquals( "value", localCache.get( "a", String.class ) );
+        Assert.assertTrue( invalidatedKeys.isEmpty() );
+    }
+
+    @Test
+    public void evictAndClear()
+    {
+        remoteCache.put( "a", "value" );
+        remoteCache.put( "b", "value" );
+        localCache.put( "a", "value" );
+        localCache.put( "b", "value" );
+        cache.evict( "a" );
+        Assert.assertNull( localCache.get( "a" ) );
+        Assert.assertNull( remoteCache.get( "a" ) );
+        cache.clear();
+        Assert.assertNull( localCache.get( "b" ) );
+        Assert.assertNull( remoteCache.get( "b" ) );
+        Assert.assertEquals( 2, invalidatedKeys.size() );
+        Assert.assertEquals( "a", invalidatedKeys.get( 0 ) );
+        Assert.assertNull( invalidatedKeys.get( 1 ) );
+    }
+
+    @Test
+    public void putUpdated()
+    {
+        cache.put( "a", "value" );
+        Assert.assertEquals( 1, invalidatedKeys.size() );
+        cache.put( "a", "other" );
+        Assert.assertEquals( "other", remoteCache.get( "a", String.class ) );
+        Assert.assertEquals( "other", localCache.get( "a", String.class ) );
+        Assert.assertEquals( 2, invalidatedKeys.size() );
+        Assert.assertEquals( "a", invalidatedKeys.get( 1 ) );
+    }
+
+    @Test
+    public void putEqualValue()
+    {
+        final EqualById value = new EqualById( "1", "old" );
+        final EqualById updatedValue = new EqualById( "1", "new" );
+        cache.put( "a", value );
+        cache.put( "a", updatedValue );
+        Assert.assertSame( updatedValue, remoteCache.get( "a", EqualById.class ) );
+        Assert.assertSame( updatedValue, localCache.get( "a", EqualById.class ) );
+        Assert.assertEquals( 2, invalidatedKeys.size() );
+    }
+
+    @Test
+    public void getRemoteInvalidatedConcurrently()
+    {
+        final ConcurrentMapCache invalidatingRemoteCache = new ConcurrentMapCache( "test" )
+        {
+            @Override
+            public ValueWrapper get( Object key )
+            {
+                final ValueWrapper valueWrapper = super.get( key );
+                // another adapter instance modifies the value after it has been read
+                cache.invalidateLocal( key.toString() );
+                return valueWrapper;
+            }
+        };
+        invalidatingRemoteCache.put( "a", "value" );
+        cache = new TieredCache( localCache, invalidatingRemoteCache, invalidatedKeys::add );
+
+        Assert.assertEquals( "value", cache.get( "a", String.class ) );
+        Assert.assertNull( localCache.get( "a" ) );
+        Assert.assertEquals( 1, cache.getRemoteHitCount() );
+    }
+
+    @Test
+    public void invalidateLocal()
+    {
+        localCache.put( "a", "value" );
+        localCache.put( "b", "value" );
+        localCache.put( 1, "value" );
+        cache.invalidateLocal( "a" );
+        cache.invalidateLocal( "1" );
+        Assert.assertNull( localCache.get( 1 ) );
+        Assert.assertNull( localCache.get( "a" ) );
+        Assert.assertNotNull( localCache.get( "b" ) );
+        cache.invalidateLocal( null );
+        Assert.assertNull( localCache.get( "b" ) );
+        Assert.assertTrue( invalidatedKeys.isEmpty() );
+    }
+
+    private static class EqualById
+    {
+        private final String id;
+
+        private final String details;
+
+        private EqualById( String id, String details )
+        {
+            this.id = id;
+            this.details = details;
+        }
+
+        @Override
+        public boolean equals( Object o )
+        {
+            return (o instanceof EqualById) && id.equals( ((EqualById) o).id );
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return id.hashCode();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package org.dhis2.fhir.adapter.data.processor;
+
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.dhis2.fhir.adapter.data.model.ProcessedItemInfo;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Unit tests for {@link ChunkedItemConsumer}.
+ *
+ * @author volsch
+ */
+public class ChunkedItemConsumerTest
+{
+    private final List<Collection<ProcessedItemInfo>> chunks = new ArrayList<>();
+
+    @Test( expected = IllegalArgumentException.class )
+    public void invalidConsumedSize()
+    {
+        new ChunkedItemConsumer( chunks::add, 0, 10 );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void invalidWindowSize()
+    {
+        new ChunkedItemConsumer( chunks::add, 10, 0 );
+    }
+
+    @Test
+    public void chunked()
+    {
+        final ChunkedItemConsumer consumer = new ChunkedItemConsumer( chunks::add, 2, 10 );
+        final ProcessedItemInfo item1 = new ProcessedItemInfo( "a", Instant.ofEpochMilli( 1000 ), false );
+        final ProcessedItemInfo item2 = new ProcessedItemInfo( "b", Instant.ofEpochMilli( 3000 ), false );
+        final ProcessedItemInfo item3 = new ProcessedItemInfo( "c", Instant.ofEpochMilli( 2000 ), false );
+
+        Assert.assertTrue( consumer.add( item1 ) );
+        Assert.assertTrue( chunks.isEmpty() );
+        Assert.assertNull( consumer.getMaxLastUpdated() );
+        Assert.assertTrue( consumer.add( item2 ) );
+        Assert.assertEquals( 1, chunks.size() );
+        Assert.assertEquals( Arrays.asList( item1, item2 ), chunks.get( 0 ) );
+        Assert.assertEquals( Instant.ofEpochMilli( 3000 ), consumer.getMaxLastUpdated() );
+
+        Assert.assertTrue( consumer.add( item3 ) );
+        Assert.assertEquals( 1, chunks.size() );
+        consumer.flush();
+        Assert.assertEquals( 2, chunks.size() );
+        Assert.assertEquals( Arrays.asList( item3 ), chunks.get( 1 ) );
+        Assert.assertEquals( Instant.ofEpochMilli( 3000 ), consumer.getMaxLastUpdated() );
+        Assert.assertEquals( 3, consumer.getCount() );
+
+        consumer.flush();
+        Assert.assertEquals( 2, chunks.size() );
+    }
+
+    @Test
+    public void duplicatesWithinWindow()
+    {
+        final ChunkedItemConsumer consumer = new ChunkedItemConsumer( chunks::add, 10, 2 );
+        final ProcessedItemInfo item1 = new ProcessedItemInfo( "a", Instant.ofEpochMilli( 1000 ), false );
+        final ProcessedItemInfo item2 = new ProcessedItemInfo( "b", Instant.ofEpochMilli( 1000 ), false );
+        final ProcessedItemInfo item3 = new ProcessedItemInfo( "c", Instant.ofEpochMilli( 1000 ), false );
+
+        Assert.assertTrue( consumer.add( item1 ) );
+        Assert.assertTrue( consumer.add( item2 ) );
+        Assert.assertFalse( consumer.add( new ProcessedItemInfo( "a", Instant.ofEpochMilli( 1000 ), false ) ) );
+        Assert.assertTrue( consumer.add( item3 ) );
+        // item 1 is no longer part of the window
+        Assert.assertTrue( consumer.add( item1 ) );
+        consumer.flush();
+
+        Assert.assertEquals( 1, chunks.size() );
+        Assert.assertEquals( Arrays.asList( item1, item2, item3, item1 ), chunks.get( 0 ) );
+    }
+}
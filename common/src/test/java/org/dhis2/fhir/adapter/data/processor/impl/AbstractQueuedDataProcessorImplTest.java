@@ -0,0 +1,344 @@
+package org.dhis2.fhir.adapter.data.processor.impl;
+
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.dhis2.fhir.adapter.data.model.DataGroup;
+import org.dhis2.fhir.adapter.data.model.DataGroupId;
+import org.dhis2.fhir.adapter.data.model.ProcessedItem;
+import org.dhis2.fhir.adapter.data.model.ProcessedItemInfo;
+import org.dhis2.fhir.adapter.data.processor.DataItemQueueItem;
+import org.dhis2.fhir.adapter.data.processor.StoredItemService;
+import org.dhis2.fhir.adapter.data.repository.DataGroupUpdateRepository;
+import org.dhis2.fhir.adapter.data.repository.ProcessedItemRepository;
+import org.dhis2.fhir.adapter.security.SystemAuthenticationToken;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jms.JmsException;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.support.converter.MessageConverter;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import javax.jms.Queue;
+import javax.jms.Session;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+/**
+ * Unit tests for {@link AbstractQueuedDataProcessorImpl}.
+ *
+ * @author volsch
+ */
+@SuppressWarnings( { "unchecked", "rawtypes" } )
+public class AbstractQueuedDataProcessorImplTest
+{
+    @Mock
+    private JmsTemplate groupQueueJmsTemplate;
+
+    @Mock
+    private DataGroupUpdateRepository dataGroupUpdateRepository;
+
+    @Mock
+    private StoredItemService storedItemService;
+
+    @Mock
+    private ProcessedItemRepository processedItemRepository;
+
+    @Mock
+    private PlatformTransactionManager platformTransactionManager;
+
+    @Mock
+    private SystemAuthenticationToken systemAuthenticationToken;
+
+    @Mock
+    private ConnectionFactory connectionFactory;
+
+    @Mock
+    private Connection connection;
+
+    @Mock
+    private Session session;
+
+    @Mock
+    private MessageProducer producer;
+
+    @Mock
+    private Queue queue;
+
+    @Mock
+    private MessageConverter messageConverter;
+
+    @Mock
+    private Message message;
+
+    @Mock
+    private DataGroup group;
+
+    @Mock
+    private DataGroupId groupId;
+
+    @Rule
+    public MockitoRule rule = MockitoJUnit.rule();
+
+    private AbstractQueuedDataProcessorImpl processor;
+
+    private final Instant processedAt = Instant.now();
+
+    private final List<ProcessedItemInfo> items = Arrays.asList(
+        new ProcessedItemInfo( "a1", processedAt, false ),
+        new ProcessedItemInfo( "a2", processedAt, false ),
+        new ProcessedItemInfo( "a3", processedAt, false ) );
+
+    @Before
+    public void before() throws JMSException
+    {
+        final JmsTemplate itemQueueJmsTemplate = new JmsTemplate( connectionFactory );
+        itemQueueJmsTemplate.setDefaultDestination( queue );
+        itemQueueJmsTemplate.setMessageConverter( messageConverter );
+
+        processor = Mockito.mock( AbstractQueuedDataProcessorImpl.class, Mockito.withSettings().useConstructor(
+            groupQueueJmsTemplate, dataGroupUpdateRepository, storedItemService, processedItemRepository, itemQueueJmsTemplate,
+            platformTransactionManager, systemAuthenticationToken, ForkJoinPool.commonPool() ).defaultAnswer( Mockito.CALLS_REAL_METHODS ) );
+        Mockito.doAnswer( invocation -> Mockito.mock( ProcessedItem.class ) ).when( processor )
+            .createProcessedItem( ArgumentMatchers.any(), ArgumentMatchers.anyString(), ArgumentMatchers.any() );
+        Mockito.doAnswer( invocation -> new DataItemQueueItem<>( groupId, invocation.getArgument( 1 ) ) ).when( processor )
+            .createDataItemQueueItem( ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.anyBoolean() );
+
+        Mockito.when( connectionFactory.createConnection() ).thenReturn( connection );
+        Mockito.when( connection.createSession( ArgumentMatchers.eq( true ), ArgumentMatchers.anyInt() ) ).thenReturn( session );
+        Mockito.when( session.getTransacted() ).thenReturn( true );
+        Mockito.when( session.createProducer( ArgumentMatchers.same( queue ) ) ).thenReturn( producer );
+        Mockito.when( messageConverter.toMessage( ArgumentMatchers.any(), ArgumentMatchers.same( session ) ) ).thenReturn( message );
+        Mockito.doAnswer( invocation -> {
+            ( (Consumer<Collection<ProcessedItem>>) invocation.getArgument( 1 ) ).accept( invocation.getArgument( 0 ) );
+            return true;
+        } ).when( processedItemRepository ).processAll( ArgumentMatchers.anyCollection(), ArgumentMatchers.any() );
+    }
+
+    @After
+    public void after()
+    {
+        if ( TransactionSynchronizationManager.isSynchronizationActive() )
+        {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void enqueueDataItemsCommit() throws JMSException
+    {
+        Assert.assertTrue( processor.enqueueDataItems( group, items, processedAt ) );
+
+        Mockito.verify( processedItemRepository ).processAll( ArgumentMatchers.argThat( c -> c.size() == 3 ), ArgumentMatchers.any() );
+        Mockito.verify( producer, Mockito.times( 3 ) ).send( ArgumentMatchers.same( message ) );
+        Mockito.verify( session ).commit();
+        Mockito.verify( session, Mockito.never() ).rollback();
+        Mockito.verify( producer ).close();
+        Mockito.verify( session ).close();
+        Mockito.verify( connection ).close();
+    }
+
+    @Test
+    public void enqueueDataItemsCommitSynchronized() throws JMSException
+    {
+        TransactionSynchronizationManager.initSynchronization();
+        Assert.assertTrue( processor.enqueueDataItems( group, items, processedAt ) );
+
+        Mockito.verify( producer, Mockito.times( 3 ) ).send( ArgumentMatchers.same( message ) );
+        Mockito.verify( session, Mockito.never() ).commit();
+
+        // messages must only be made available when the processed items have been committed
+        TransactionSynchronizationUtils.invokeAfterCommit( TransactionSynchronizationManager.getSynchronizations() );
+        Mockito.verify( session ).commit();
+    }
+
+    @Test
+    public void enqueueDataItemsRollback() throws JMSException
+    {
+        Mockito.doNothing().doThrow( new JMSException( "Test" ) ).when( producer ).send( ArgumentMatchers.any() );
+
+        try
+        {
+            processor.enqueueDataItems( group, items, processedAt );
+            Assert.fail( "Exception expected." );
+        }
+        catch ( JmsException e )
+        {
+            // expected
+        }
+
+        Mockito.verify( producer, Mockito.times( 2 ) ).send( ArgumentMatchers.same( message ) );
+        Mockito.verify( session, Mockito.never() ).commit();
+        Mockito.verify( session ).rollback();
+        Mockito.verify( producer ).close();
+        Mockito.verify( session ).close();
+    }
+
+    @Test
+    public void enqueueDataItemsProcessedConcurrently()
+    {
+        Mockito.doThrow( new DataIntegrityViolationException( "Test", new SQLException( "Test", "23505" ) ) )
+            .when( processedItemRepository ).processAll( ArgumentMatchers.anyCollection(), ArgumentMatchers.any() );
+
+        Assert.assertFalse( processor.enqueueDataItems( group, items, processedAt ) );
+        Mockito.verifyZeroInteractions( connectionFactory );
+    }
+
+    @Test
+    public void enqueueDataItemsAlreadyProcessed()
+    {
+        Mockito.doReturn( false ).when( processedItemRepository ).processAll( ArgumentMatchers.anyCollection(), ArgumentMatchers.any() );
+
+        Assert.assertFalse( processor.enqueueDataItems( group, items, processedAt ) );
+        Mockito.verifyZeroInteractions( connectionFactory );
+    }
+
+    @Test( expected = DataIntegrityViolationException.class )
+    public void enqueueDataItemsOtherViolation()
+    {
+        Mockito.doThrow( new DataIntegrityViolationException( "Test", new SQLException( "Test", "23503" ) ) )
+            .when( processedItemRepository ).processAll( ArgumentMatchers.anyCollection(), ArgumentMatchers.any() );
+
+        processor.enqueueDataItems( group, items, processedAt );
+    }
+
+    @Test
+    public void enqueueDataItemsBatchBoundaries() throws JMSException
+    {
+        Assert.assertTrue( processor.enqueueDataItems( group, items.subList( 0, 2 ), processedAt ) );
+        Assert.assertTrue( processor.enqueueDataItems( group, items.subList( 2, 3 ), processedAt ) );
+
+        // each batch is persisted and committed on its own
+        Mockito.verify( processedItemRepository ).processAll( ArgumentMatchers.argThat( c -> c.size() == 2 ), ArgumentMatchers.any() );
+        Mockito.verify( processedItemRepository ).processAll( ArgumentMatchers.argThat( c -> c.size() == 1 ), ArgumentMatchers.any() );
+        Mockito.verify( producer, Mockito.times( 3 ) ).send( ArgumentMatchers.same( message ) );
+        Mockito.verify( session, Mockito.times( 2 ) ).commit();
+        Mockito.verify( session, Mockito.times( 2 ) ).close();
+    }
+
+    @Test
+    public void purgeOldestProcessedThrottled()
+    {
+        Mockito.when( group.getGroupId() ).thenReturn( groupId );
+        Mockito.doReturn( 60 ).when( processor ).getMaxProcessedAgeMinutes();
+        Mockito.doReturn( 30 ).when( processor ).getPurgeIntervalMinutes();
+
+        processor.purgeOldestProcessed( group, group );
+        processor.purgeOldestProcessed( group, group );
+
+        Mockito.verify( processedItemRepository, Mockito.times( 1 ) ).deleteOldest( ArgumentMatchers.same( group ), ArgumentMatchers.any() );
+        Mockito.verify( storedItemService, Mockito.times( 1 ) ).deleteOldest( ArgumentMatchers.same( group ), ArgumentMatchers.any() );
+    }
+
+    @Test
+    public void purgeOldestProcessedWithoutInterval()
+    {
+        Mockito.when( group.getGroupId() ).thenReturn( groupId );
+        Mockito.doReturn( 60 ).when( processor ).getMaxProcessedAgeMinutes();
+        Mockito.doReturn( 0 ).when( processor ).getPurgeIntervalMinutes();
+
+        processor.purgeOldestProcessed( group, group );
+        processor.purgeOldestProcessed( group, group );
+
+        Mockito.verify( processedItemRepository, Mockito.times( 2 ) ).deleteOldest( ArgumentMatchers.same( group ), ArgumentMatchers.any() );
+    }
+
+    @Test
+    public void purgeOldestProcessedFailedRetried()
+    {
+        Mockito.when( group.getGroupId() ).thenReturn( groupId );
+        Mockito.doReturn( 60 ).when( processor ).getMaxProcessedAgeMinutes();
+        Mockito.doReturn( 30 ).when( processor ).getPurgeIntervalMinutes();
+        Mockito.when( processedItemRepository.deleteOldest( ArgumentMatchers.same( group ), ArgumentMatchers.any() ) )
+            .thenThrow( new DataIntegrityViolationException( "Test" ) ).thenReturn( 1 );
+
+        try
+        {
+            processor.purgeOldestProcessed( group, group );
+            Assert.fail( "Exception expected." );
+        }
+        catch ( DataIntegrityViolationException e )
+        {
+            // expected
+        }
+        processor.purgeOldestProcessed( group, group );
+        processor.purgeOldestProcessed( group, group );
+
+        Mockito.verify( processedItemRepository, Mockito.times( 2 ) ).deleteOldest( ArgumentMatchers.same( group ), ArgumentMatchers.any() );
+        Mockito.verify( storedItemService, Mockito.times( 1 ) ).deleteOldest( ArgumentMatchers.same( group ), ArgumentMatchers.any() );
+    }
+
+    @Test
+    public void purgeOldestProcessedPartitioned()
+    {
+        Mockito.when( group.getGroupId() ).thenReturn( groupId );
+        Mockito.doReturn( 60 ).when( processor ).getMaxProcessedAgeMinutes();
+        Mockito.when( processedItemRepository.isPartitioned() ).thenReturn( true );
+        Mockito.when( storedItemService.isPartitioned() ).thenReturn( true );
+
+        processor.purgeOldestProcessed( group, group );
+
+        Mockito.verify( processedItemRepository, Mockito.never() ).deleteOldest( ArgumentMatchers.any(), ArgumentMatchers.any() );
+        Mockito.verify( storedItemService, Mockito.never() ).deleteOldest( ArgumentMatchers.any(), ArgumentMatchers.any() );
+    }
+
+    @Test
+    public void maintainPartitions()
+    {
+        Mockito.doReturn( 60 ).when( processor ).getMaxProcessedAgeMinutes();
+        final Instant from = Instant.now().minus( 60, ChronoUnit.MINUTES );
+
+        processor.maintainPartitions();
+
+        Mockito.verify( processedItemRepository ).maintainPartitions( ArgumentMatchers.argThat( i -> !i.isBefore( from ) ) );
+        Mockito.verify( storedItemService ).maintainPartitions( ArgumentMatchers.argThat( i -> !( (Instant) i ).isBefore( from ) ) );
+    }
+}
@@ -0,0 +1,213 @@
+package org.dhis2.fhir.adapter.data.repository.impl;
+
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.dhis2.fhir.adapter.data.model.DataGroup;
+import org.dhis2.fhir.adapter.data.model.ProcessedItem;
+import org.dhis2.fhir.adapter.data.model.ProcessedItemId;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Answers;
+import org.mockito.ArgumentMatchers;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+import java.sql.Date;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Unit tests for {@link AbstractProcessedItemRepositoryImpl}.
+ *
+ * @author volsch
+ */
+@SuppressWarnings( { "unchecked", "rawtypes" } )
+public class AbstractProcessedItemRepositoryImplTest
+{
+    private static final String INSERT_SQL = "INSERT INTO test_processed (group_id,processed_id,processed_at,processed_day) VALUES (?,?,?,?) ON CONFLICT DO NOTHING";
+
+    @Mock( answer = Answers.RETURNS_DEEP_STUBS )
+    private EntityManager entityManager;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private DayPartitionManager partitionManager;
+
+    @Mock
+    private ProcessedItem processedItem1;
+
+    @Mock
+    private ProcessedItem processedItem2;
+
+    @Mock
+    private Consumer<Collection<ProcessedItem>> consumer;
+
+    @Rule
+    public MockitoRule rule = MockitoJUnit.rule();
+
+    private AbstractProcessedItemRepositoryImpl repository;
+
+    @Before
+    public void before()
+    {
+        Mockito.when( partitionManager.getTableName() ).thenReturn( "test_processed" );
+        repository = Mockito.mock( AbstractProcessedItemRepositoryImpl.class, Mockito.withSettings()
+            .useConstructor( entityManager, jdbcTemplate, partitionManager, "group_id", "processed_id" ).defaultAnswer( Mockito.CALLS_REAL_METHODS ) );
+        Mockito.doNothing().when( repository ).setRollbackOnly();
+    }
+
+    @Test
+    public void processAll()
+    {
+        final List<ProcessedItem> processedItems = Arrays.asList( processedItem1, processedItem2 );
+        Assert.assertTrue( repository.processAll( processedItems, consumer ) );
+
+        final InOrder inOrder = Mockito.inOrder( entityManager, consumer );
+        inOrder.verify( entityManager ).persist( Mockito.same( processedItem1 ) );
+        inOrder.verify( entityManager ).persist( Mockito.same( processedItem2 ) );
+        inOrder.verify( entityManager ).flush();
+        inOrder.verify( consumer ).accept( Mockito.same( processedItems ) );
+        Mockito.verifyZeroInteractions( jdbcTemplate );
+    }
+
+    @Test
+    public void processAllPartitioned()
+    {
+        final UUID groupId = preparePartitioned();
+        final List<ProcessedItem> processedItems = Arrays.asList( processedItem1, processedItem2 );
+        Mockito.when( jdbcTemplate.batchUpdate( Mockito.eq( INSERT_SQL ), ArgumentMatchers.<Object[]>anyList() ) ).thenAnswer( invocation -> {
+            final List<Object[]> args = invocation.getArgument( 1 );
+            Assert.assertEquals( 2, args.size() );
+            Assert.assertEquals( groupId, args.get( 0 )[0] );
+            Assert.assertEquals( "a", args.get( 0 )[1] );
+            Assert.assertEquals( Date.valueOf( LocalDate.of( 2019, 1, 31 ) ), args.get( 0 )[3] );
+            Assert.assertEquals( "b", args.get( 1 )[1] );
+            return new int[]{ 1, 1 };
+        } );
+
+        Assert.assertTrue( repository.processAll( processedItems, consumer ) );
+        Mockito.verify( consumer ).accept( Mockito.same( processedItems ) );
+        Mockito.verify( entityManager, Mockito.never() ).persist( Mockito.any() );
+        Mockito.verify( repository, Mockito.never() ).setRollbackOnly();
+    }
+
+    @Test
+    public void processAllPartitionedAlreadyProcessed()
+    {
+        preparePartitioned();
+        Mockito.when( jdbcTemplate.batchUpdate( Mockito.eq( INSERT_SQL ), ArgumentMatchers.<Object[]>anyList() ) ).thenReturn( new int[]{ 1, 0 } );
+
+        Assert.assertFalse( repository.processAll( Arrays.asList( processedItem1, processedItem2 ), consumer ) );
+        Mockito.verify( repository ).setRollbackOnly();
+        Mockito.verifyZeroInteractions( consumer );
+    }
+
+    @Test
+    public void processPartitionedAlreadyProcessed()
+    {
+        final Consumer<ProcessedItem> itemConsumer = Mockito.mock( Consumer.class );
+        preparePartitioned();
+        Mockito.when( jdbcTemplate.batchUpdate( Mockito.eq( INSERT_SQL ), ArgumentMatchers.<Object[]>anyList() ) ).thenReturn( new int[]{ 0 } );
+
+        Assert.assertFalse( repository.process( processedItem1, itemConsumer ) );
+        Mockito.verify( entityManager, Mockito.never() ).persist( Mockito.any() );
+        Mockito.verifyZeroInteractions( itemConsumer );
+    }
+
+    @Test
+    public void processPartitioned()
+    {
+        final Consumer<ProcessedItem> itemConsumer = Mockito.mock( Consumer.class );
+        preparePartitioned();
+        Mockito.when( jdbcTemplate.batchUpdate( Mockito.eq( INSERT_SQL ), ArgumentMatchers.<Object[]>anyList() ) ).thenReturn( new int[]{ 1 } );
+
+        Assert.assertTrue( repository.process( processedItem1, itemConsumer ) );
+        Mockito.verify( itemConsumer ).accept( Mockito.same( processedItem1 ) );
+    }
+
+    @Test
+    public void maintainPartitions()
+    {
+        final Instant timestamp = Instant.now();
+        Mockito.when( partitionManager.maintain( Mockito.same( timestamp ) ) ).thenReturn( 2 );
+
+        Assert.assertEquals( 2, repository.maintainPartitions( timestamp ) );
+    }
+
+    @Test( expected = PersistenceException.class )
+    public void processAllFailed()
+    {
+        Mockito.doThrow( new PersistenceException( "Test" ) ).when( entityManager ).flush();
+        try
+        {
+            repository.processAll( Arrays.asList( processedItem1, processedItem2 ), consumer );
+        }
+        finally
+        {
+            Mockito.verifyZeroInteractions( consumer );
+        }
+    }
+
+    private UUID preparePartitioned()
+    {
+        final UUID groupId = UUID.randomUUID();
+        final DataGroup group = Mockito.mock( DataGroup.class );
+        Mockito.when( partitionManager.isPartitioned() ).thenReturn( true );
+        Mockito.when( entityManager.getEntityManagerFactory().getPersistenceUnitUtil().getIdentifier( Mockito.same( group ) ) ).thenReturn( groupId );
+        prepareItem( processedItem1, group, "a" );
+        prepareItem( processedItem2, group, "b" );
+        return groupId;
+    }
+
+    private void prepareItem( ProcessedItem processedItem, DataGroup group, String processedId )
+    {
+        final ProcessedItemId id = Mockito.mock( ProcessedItemId.class );
+        Mockito.when( id.getGroup() ).thenReturn( group );
+        Mockito.when( id.getProcessedId() ).thenReturn( processedId );
+        Mockito.when( processedItem.getId() ).thenReturn( id );
+        Mockito.when( processedItem.getProcessedAt() ).thenReturn( Instant.parse( "2019-01-31T23:59:00Z" ) );
+        Mockito.when( processedItem.getProcessedDay() ).thenReturn( LocalDate.of( 2019, 1, 31 ) );
+    }
+}
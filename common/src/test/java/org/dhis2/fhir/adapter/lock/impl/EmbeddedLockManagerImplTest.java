@@ -0,0 +1,194 @@
+package org.dhis2.fhir.adapter.lock.impl;
+
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.dhis2.fhir.adapter.lock.LockContext;
+import org.dhis2.fhir.adapter.lock.LockException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for {@link EmbeddedLockManagerImpl}.
+ *
+ * @author volsch
+ */
+public class EmbeddedLockManagerImplTest
+{
+    @Test( expected = IllegalArgumentException.class )
+    public void negativeTimeout()
+    {
+        new EmbeddedLockManagerImpl( -1 );
+    }
+
+    @Test
+    public void lockUnlock()
+    {
+        final EmbeddedLockManagerImpl lockManager = new EmbeddedLockManagerImpl();
+        try ( final LockContext lockContext = lockManager.begin() )
+        {
+            lockContext.lock( "out-te:1" );
+            lockContext.lock( "out-te:1" );
+            lockContext.lock( "out-te:2" );
+            Assert.assertTrue( lockManager.getCurrentLockContext().isPresent() );
+        }
+        Assert.assertFalse( lockManager.getCurrentLockContext().isPresent() );
+        Assert.assertEquals( 2, lockManager.getStatistics().get( "out-te" ).getAcquiredCount() );
+        Assert.assertEquals( 0, lockManager.getStatistics().get( "out-te" ).getContendedCount() );
+
+        lockManager.lock( "out-te:1" );
+        lockManager.unlock( "out-te:1" );
+    }
+
+    @Test( expected = IllegalStateException.class )
+    public void unlockNotLocked()
+    {
+        new EmbeddedLockManagerImpl().unlock( "out-te:1" );
+    }
+
+    @Test
+    public void waitForRelease() throws Exception
+    {
+        final EmbeddedLockManagerImpl lockManager = new EmbeddedLockManagerImpl();
+        final ExecutorService executorService = Executors.newFixedThreadPool( 2 );
+        try
+        {
+            lockManager.lock( "out-te:1" );
+
+            final CountDownLatch otherKeyLatch = new CountDownLatch( 1 );
+            executorService.submit( () -> {
+                lockManager.lock( "out-te:2" );
+                otherKeyLatch.countDown();
+            } );
+            Assert.assertTrue( otherKeyLatch.await( 10, TimeUnit.SECONDS ) );
+
+            final Future<?> future = executorService.submit( () -> lockManager.lock( "out-te:1" ) );
+            Thread.sleep( 100 );
+            Assert.assertFalse( future.isDone() );
+
+            lockManager.unlock( "out-te:1" );
+            future.get( 10, TimeUnit.SECONDS );
+            Assert.assertEquals( 1, lockManager.getStatistics().get( "out-te" ).getContendedCount() );
+        }
+        finally
+        {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void timeout() throws Exception
+    {
+        final EmbeddedLockManagerImpl lockManager = new EmbeddedLockManagerImpl( 50 );
+        final ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try
+        {
+            lockManager.lock( "out-en:1" );
+            final Future<?> future = executorService.submit( () -> lockManager.lock( "out-en:1" ) );
+            try
+            {
+                future.get( 10, TimeUnit.SECONDS );
+                Assert.fail( "Lock must time out." );
+            }
+            catch ( ExecutionException e )
+            {
+                Assert.assertTrue( e.getCause() instanceof LockException );
+            }
+            Assert.assertEquals( 1, lockManager.getStatistics().get( "out-en" ).getTimedOutCount() );
+            Assert.assertTrue( lockManager.getStatistics().get( "out-en" ).getMaxWaitMillis() >= 40 );
+
+            lockManager.unlock( "out-en:1" );
+            executorService.submit( () -> lockManager.lock( "out-en:1" ) ).get( 10, TimeUnit.SECONDS );
+        }
+        finally
+        {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void metrics() throws Exception
+    {
+        final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        final EmbeddedLockManagerImpl lockManager = new EmbeddedLockManagerImpl( 50 );
+        lockManager.lock( "out-te:1" );
+        lockManager.bindTo( meterRegistry );
+
+        final ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try
+        {
+            lockManager.lock( "out-en:1" );
+            try
+            {
+                executorService.submit( () -> lockManager.lock( "out-en:1" ) ).get( 10, TimeUnit.SECONDS );
+                Assert.fail( "Lock must time out." );
+            }
+            catch ( ExecutionException e )
+            {
+                Assert.assertTrue( e.getCause() instanceof LockException );
+            }
+        }
+        finally
+        {
+            executorService.shutdownNow();
+        }
+
+        Assert.assertEquals( 1.0, meterRegistry.get( "lock.acquired" ).tag( "keyPrefix", "out-te" ).functionCounter().count(), 0 );
+        Assert.assertEquals( 1.0, meterRegistry.get( "lock.acquired" ).tag( "keyPrefix", "out-en" ).functionCounter().count(), 0 );
+        Assert.assertEquals( 1.0, meterRegistry.get( "lock.timed.out" ).tag( "keyPrefix", "out-en" ).functionCounter().count(), 0 );
+        final FunctionTimer waitTimer = meterRegistry.get( "lock.wait" ).tag( "keyPrefix", "out-en" ).functionTimer();
+        Assert.assertEquals( 1.0, waitTimer.count(), 0 );
+        Assert.assertTrue( waitTimer.totalTime( TimeUnit.MILLISECONDS ) >= 40 );
+        Assert.assertTrue( meterRegistry.get( "lock.wait.max" ).tag( "keyPrefix", "out-en" ).timeGauge().value( TimeUnit.MILLISECONDS ) >= 40 );
+    }
+
+    @Test
+    public void statisticsOfUnknownKeyPrefixes()
+    {
+        final EmbeddedLockManagerImpl lockManager = new EmbeddedLockManagerImpl();
+        lockManager.lock( "out-te:1" );
+        lockManager.lock( "abc:1" );
+        lockManager.lock( "4711" );
+        lockManager.lock( "0815" );
+
+        Assert.assertEquals( 2, lockManager.getStatistics().size() );
+        Assert.assertEquals( 1, lockManager.getStatistics().get( "out-te" ).getAcquiredCount() );
+        Assert.assertEquals( 3, lockManager.getStatistics().get( EmbeddedLockManagerImpl.OTHER_KEY_PREFIX ).getAcquiredCount() );
+    }
+}
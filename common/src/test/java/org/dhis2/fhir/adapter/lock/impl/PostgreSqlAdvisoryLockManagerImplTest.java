@@ -0,0 +1,185 @@
+package org.dhis2.fhir.adapter.lock.impl;
+
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.dhis2.fhir.adapter.lock.LockContext;
+import org.dhis2.fhir.adapter.lock.LockTimeoutException;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/**
+ * Unit tests for {@link PostgreSqlAdvisoryLockManagerImpl}.
+ *
+ * @author volsch
+ */
+public class PostgreSqlAdvisoryLockManagerImplTest
+{
+    @Mock
+    private DataSource dataSource;
+
+    @Mock
+    private Connection connection;
+
+    @Mock
+    private PreparedStatement statement;
+
+    @Mock
+    private Statement plainStatement;
+
+    @Mock
+    private ResultSet resultSet;
+
+    @Rule
+    public MockitoRule rule = MockitoJUnit.rule();
+
+    private PostgreSqlAdvisoryLockManagerImpl lockManager;
+
+    @Before
+    public void before() throws Exception
+    {
+        final LockConfig lockConfig = new LockConfig();
+        lockConfig.setMode( LockMode.SHARED_SESSION );
+        lockConfig.setSharedConnectionCount( 1 );
+        lockConfig.setDistributedTimeoutMillis( 2000 );
+        lockManager = new PostgreSqlAdvisoryLockManagerImpl( dataSource, lockConfig );
+
+        Mockito.when( dataSource.getConnection() ).thenReturn( connection );
+        Mockito.when( connection.getAutoCommit() ).thenReturn( true );
+        Mockito.when( connection.prepareStatement( ArgumentMatchers.anyString() ) ).thenReturn( statement );
+        Mockito.when( connection.createStatement() ).thenReturn( plainStatement );
+        Mockito.when( statement.executeQuery() ).thenReturn( resultSet );
+        Mockito.when( resultSet.next() ).thenReturn( true );
+    }
+
+    @Test
+    public void localLockTimeout()
+    {
+        Assert.assertEquals( 0, lockManager.getLocalLockManager().getLockTimeoutMillis() );
+
+        final LockConfig lockConfig = new LockConfig();
+        lockConfig.setTimeoutMillis( 5000 );
+        Assert.assertEquals( 5000, new PostgreSqlAdvisoryLockManagerImpl( dataSource, lockConfig ).getLocalLockManager().getLockTimeoutMillis() );
+    }
+
+    @Test
+    public void createFingerprint()
+    {
+        Assert.assertEquals( 0x2f63dc4c8601ec8cL, PostgreSqlAdvisoryLockManagerImpl.createFingerprint( "a" ) );
+        Assert.assertEquals( PostgreSqlAdvisoryLockManagerImpl.createFingerprint( "out-te:1" ), PostgreSqlAdvisoryLockManagerImpl.createFingerprint( "out-te:1" ) );
+        Assert.assertNotEquals( PostgreSqlAdvisoryLockManagerImpl.createFingerprint( "out-te:1" ), PostgreSqlAdvisoryLockManagerImpl.createFingerprint( "out-te:2" ) );
+    }
+
+    @Test
+    public void sharedLockUnlock() throws Exception
+    {
+        Mockito.when( resultSet.getBoolean( 1 ) ).thenReturn( true );
+
+        try ( final LockContext lockContext = lockManager.begin() )
+        {
+            Assert.assertTrue( lockContext instanceof PostgreSqlSharedAdvisoryLockContextImpl );
+            lockContext.lockAll( Arrays.asList( "out-te:1", "out-te:2", "out-te:1" ) );
+            lockContext.lock( "out-te:2" );
+        }
+
+        Mockito.verify( dataSource, Mockito.times( 1 ) ).getConnection();
+        Mockito.verify( connection, Mockito.times( 2 ) ).prepareStatement( "SELECT pg_try_advisory_lock(?)" );
+        Mockito.verify( connection, Mockito.never() ).prepareStatement( "SELECT pg_advisory_lock(?)" );
+        Mockito.verify( connection, Mockito.times( 2 ) ).prepareStatement( "SELECT pg_advisory_unlock(?)" );
+        Mockito.verify( statement, Mockito.times( 2 ) ).setLong( 1, PostgreSqlAdvisoryLockManagerImpl.createFingerprint( "out-te:1" ) );
+        Mockito.verify( statement, Mockito.times( 2 ) ).setLong( 1, PostgreSqlAdvisoryLockManagerImpl.createFingerprint( "out-te:2" ) );
+        Assert.assertFalse( lockManager.getCurrentLockContext().isPresent() );
+
+        lockManager.close();
+        Mockito.verify( connection ).prepareStatement( "SELECT pg_advisory_unlock_all()" );
+        Mockito.verify( connection ).close();
+    }
+
+    @Test
+    public void sharedLockUnlockContended() throws Exception
+    {
+        // the first key that is locked is held by another session
+        Mockito.when( resultSet.getBoolean( 1 ) ).thenReturn( false, true, true, true );
+
+        try ( final LockContext lockContext = lockManager.begin() )
+        {
+            lockContext.lockAll( Arrays.asList( "out-te:1", "out-te:2" ) );
+        }
+
+        // shared connection and dedicated connection that waits for the contended lock
+        Mockito.verify( dataSource, Mockito.times( 2 ) ).getConnection();
+        Mockito.verify( connection, Mockito.times( 2 ) ).prepareStatement( "SELECT pg_try_advisory_lock(?)" );
+        Mockito.verify( connection, Mockito.times( 1 ) ).prepareStatement( "SELECT pg_advisory_lock(?)" );
+        Mockito.verify( plainStatement ).execute( "SET lock_timeout=2000" );
+        Mockito.verify( plainStatement ).execute( "RESET lock_timeout" );
+        // lock on dedicated connection and release of all locks before returning it to the pool
+        Mockito.verify( statement, Mockito.times( 2 ) ).execute();
+        Mockito.verify( connection, Mockito.times( 2 ) ).prepareStatement( "SELECT pg_advisory_unlock(?)" );
+        Mockito.verify( connection, Mockito.times( 1 ) ).prepareStatement( "SELECT pg_advisory_unlock_all()" );
+        Mockito.verify( connection, Mockito.times( 1 ) ).close();
+        Assert.assertFalse( lockManager.getCurrentLockContext().isPresent() );
+    }
+
+    @Test
+    public void sharedLockContendedTimeout() throws Exception
+    {
+        // the first key that is locked is held by another session that does not release it
+        Mockito.when( resultSet.getBoolean( 1 ) ).thenReturn( false, true );
+        Mockito.when( statement.execute() ).thenThrow( new SQLException( "canceling statement due to lock timeout", "55P03" ) );
+
+        try ( final LockContext lockContext = lockManager.begin() )
+        {
+            lockContext.lock( "out-te:1" );
+            Assert.fail( "Exception expected." );
+        }
+        catch ( LockTimeoutException e )
+        {
+            // expected
+        }
+
+        Mockito.verify( plainStatement ).execute( "SET lock_timeout=2000" );
+        Mockito.verify( plainStatement ).execute( "RESET lock_timeout" );
+        Assert.assertFalse( lockManager.getCurrentLockContext().isPresent() );
+    }
+}
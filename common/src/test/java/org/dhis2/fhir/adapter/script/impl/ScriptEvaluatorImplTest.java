@@ -0,0 +1,224 @@
+package org.dhis2.fhir.adapter.script.impl;
+
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.dhis2.fhir.adapter.script.ScriptExecutionException;
+import org.dhis2.fhir.adapter.script.StatelessScriptVariable;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for {@link ScriptEvaluatorImpl} with and without reused script
+ * contexts. The tests also log the execution times of a typical rule script
+ * with a larger number of bound utilities.
+ *
+ * @author volsch
+ */
+public class ScriptEvaluatorImplTest
+{
+    private static final int ITERATIONS = 2000;
+
+    private static final List<String> SCRIPT_ENGINE_ARGS = Arrays.asList( "-doe", "--no-java", "--no-syntax-extensions" );
+
+    private static final String RULE_SCRIPT = "var code = codeUtils.getCode(input); (code != null) && (code.length > 2) && (args['minLength'] <= code.length)";
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    @Test
+    public void eval()
+    {
+        final ScriptEvaluatorImpl scriptEvaluator = new ScriptEvaluatorImpl( "nashorn", SCRIPT_ENGINE_ARGS, 3600, 100 );
+        Assert.assertEquals( true, scriptEvaluator.eval( "rule", RULE_SCRIPT, createVariables( new CodeUtils(), "abc", 3 ) ) );
+        Assert.assertEquals( false, scriptEvaluator.eval( "rule", RULE_SCRIPT, createVariables( new CodeUtils(), "ab", 3 ) ) );
+    }
+
+    @Test
+    public void evalReused()
+    {
+        final ScriptEvaluatorImpl scriptEvaluator = new ScriptEvaluatorImpl( "nashorn", SCRIPT_ENGINE_ARGS, 3600, 100, true );
+        final CodeUtils codeUtils = new StatelessCodeUtils();
+        Assert.assertEquals( true, scriptEvaluator.eval( "rule", RULE_SCRIPT, createVariables( codeUtils, "abc", 3 ) ) );
+        Assert.assertEquals( false, scriptEvaluator.eval( "rule", RULE_SCRIPT, createVariables( codeUtils, "ab", 3 ) ) );
+        Assert.assertEquals( false, scriptEvaluator.eval( "rule", RULE_SCRIPT, createVariables( codeUtils, "abcd", 5 ) ) );
+        Assert.assertEquals( true, scriptEvaluator.eval( "rule", RULE_SCRIPT, createVariables( new StatelessCodeUtils(), "abcd", 4 ) ) );
+    }
+
+    @Test
+    public void evalReusedKeepsStatelessVariables()
+    {
+        final ScriptEvaluatorImpl scriptEvaluator = new ScriptEvaluatorImpl( "nashorn", SCRIPT_ENGINE_ARGS, 3600, 100, true );
+        final Map<String, Object> variables = new HashMap<>();
+        variables.put( "codeUtils", new StatelessCodeUtils() );
+        variables.put( "input", "abc" );
+        Assert.assertEquals( "abc", scriptEvaluator.eval( "code", "codeUtils.getCode(input)", variables ) );
+        Assert.assertEquals( "object|undefined", scriptEvaluator.eval( "typeof", "(typeof codeUtils) + '|' + (typeof input)", new HashMap<>() ) );
+
+        Assert.assertNull( scriptEvaluator.eval( "reassign", "codeUtils = null", variables ) );
+        Assert.assertEquals( "abc", scriptEvaluator.eval( "code", "codeUtils.getCode(input)", variables ) );
+    }
+
+    @Test
+    public void evalReusedRemovesVariables()
+    {
+        final ScriptEvaluatorImpl scriptEvaluator = new ScriptEvaluatorImpl( "nashorn", SCRIPT_ENGINE_ARGS, 3600, 100, true );
+        final Map<String, Object> variables = new HashMap<>();
+        variables.put( "output", "test" );
+        Assert.assertEquals( "string", scriptEvaluator.eval( "typeof", "typeof output", variables ) );
+        Assert.assertEquals( "undefined", scriptEvaluator.eval( "typeof", "typeof output", new HashMap<>() ) );
+    }
+
+    @Test
+    public void evalReusedReassignedVariable()
+    {
+        final ScriptEvaluatorImpl scriptEvaluator = new ScriptEvaluatorImpl( "nashorn", SCRIPT_ENGINE_ARGS, 3600, 100, true );
+        final Map<String, Object> variables = new HashMap<>();
+        variables.put( "output", "test" );
+        Assert.assertEquals( "other", scriptEvaluator.eval( "reassign", "output = 'other'; output", variables ) );
+        Assert.assertEquals( "test", scriptEvaluator.eval( "output", "output", variables ) );
+    }
+
+    @Test
+    public void evalReusedRemovesScriptVariables()
+    {
+        final ScriptEvaluatorImpl scriptEvaluator = new ScriptEvaluatorImpl( "nashorn", SCRIPT_ENGINE_ARGS, 3600, 100, true );
+        Assert.assertEquals( "test", scriptEvaluator.eval( "declare", "var declared = 'test'; undeclared = 'test'; declared", new HashMap<>() ) );
+        Assert.assertEquals( "undefined|undefined", scriptEvaluator.eval( "typeof", "(typeof declared) + '|' + (typeof undeclared)", new HashMap<>() ) );
+    }
+
+    @Test
+    public void evalReusedReleasesVariables()
+    {
+        final ScriptEvaluatorImpl scriptEvaluator = new ScriptEvaluatorImpl( "nashorn", SCRIPT_ENGINE_ARGS, 3600, 100, true );
+        final Map<String, Object> variables = new HashMap<>();
+        variables.put( "output", new CodeUtils() );
+        scriptEvaluator.eval( "typeof", "typeof output", variables );
+        try
+        {
+            scriptEvaluator.eval( "failure", "output.unknown()", variables );
+            Assert.fail( "Script execution must fail." );
+        }
+        catch ( ScriptExecutionException e )
+        {
+            // expected
+        }
+        Assert.assertEquals( "undefined", scriptEvaluator.eval( "typeof", "typeof output", new HashMap<>() ) );
+    }
+
+    @Test
+    public void evalReusedNested()
+    {
+        final ScriptEvaluatorImpl scriptEvaluator = new ScriptEvaluatorImpl( "nashorn", SCRIPT_ENGINE_ARGS, 3600, 100, true );
+        final Map<String, Object> variables = new HashMap<>();
+        variables.put( "value", "outer" );
+        variables.put( "nested", new NestedEvaluator( scriptEvaluator ) );
+        Assert.assertEquals( "inner|outer", scriptEvaluator.eval( "outer", "nested.eval() + '|' + value", variables ) );
+    }
+
+    @Test
+    public void evalTimes()
+    {
+        final long defaultNanos = evalTimes( new ScriptEvaluatorImpl( "nashorn", SCRIPT_ENGINE_ARGS, 3600, 100 ) );
+        final long reusedNanos = evalTimes( new ScriptEvaluatorImpl( "nashorn", SCRIPT_ENGINE_ARGS, 3600, 100, true ) );
+        logger.info( "Average script execution time {} ns with new script contexts and {} ns with reused script contexts.",
+            defaultNanos / ITERATIONS, reusedNanos / ITERATIONS );
+    }
+
+    private long evalTimes( @Nonnull ScriptEvaluatorImpl scriptEvaluator )
+    {
+        final CodeUtils codeUtils = new StatelessCodeUtils();
+        // warm up compilation and script engine
+        for ( int i = 0; i < ITERATIONS; i++ )
+        {
+            scriptEvaluator.eval( "rule", RULE_SCRIPT, createVariables( codeUtils, "abc" + i, 3 ) );
+        }
+
+        final long start = System.nanoTime();
+        for ( int i = 0; i < ITERATIONS; i++ )
+        {
+            Assert.assertEquals( true, scriptEvaluator.eval( "rule", RULE_SCRIPT, createVariables( codeUtils, "abc" + i, 3 ) ) );
+        }
+        return System.nanoTime() - start;
+    }
+
+    @Nonnull
+    private static Map<String, Object> createVariables( @Nonnull CodeUtils codeUtils, @Nonnull String input, int minLength )
+    {
+        final Map<String, Object> variables = new HashMap<>();
+        // simulates the number of utilities that are bound for transformations
+        for ( int i = 0; i < 20; i++ )
+        {
+            variables.put( "utils" + i, codeUtils );
+        }
+        variables.put( "codeUtils", codeUtils );
+        variables.put( "input", input );
+
+        final Map<String, Object> args = new HashMap<>();
+        args.put( "minLength", minLength );
+        variables.put( "args", args );
+        return variables;
+    }
+
+    public static class CodeUtils
+    {
+        public String getCode( String input )
+        {
+            return input;
+        }
+    }
+
+    public static class StatelessCodeUtils extends CodeUtils implements StatelessScriptVariable
+    {
+    }
+
+    public static class NestedEvaluator
+    {
+        private final ScriptEvaluatorImpl scriptEvaluator;
+
+        public NestedEvaluator( @Nonnull ScriptEvaluatorImpl scriptEvaluator )
+        {
+            this.scriptEvaluator = scriptEvaluator;
+        }
+
+        public Object eval()
+        {
+            final Map<String, Object> variables = new HashMap<>();
+            variables.put( "value", "inner" );
+            return scriptEvaluator.eval( "inner", "value", variables );
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package org.dhis2.fhir.adapter.util;
+
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+/**
+ * Unit tests for {@link CompressionUtils}.
+ *
+ * @author volsch
+ */
+public class CompressionUtilsTest
+{
+    @Test
+    public void compressDecompress()
+    {
+        final StringBuilder sb = new StringBuilder();
+        for ( int i = 0; i < 100; i++ )
+        {
+            sb.append( "{\"resourceType\":\"Patient\",\"id\":\"" ).append( i ).append( "\",\"name\":[{\"family\":\"Müller\"}]}" );
+        }
+        final String text = sb.toString();
+
+        final byte[] compressed = CompressionUtils.compress( text );
+        Assert.assertTrue( compressed.length < text.length() / 4 );
+        Assert.assertEquals( text, CompressionUtils.decompress( compressed ) );
+    }
+
+    @Test
+    public void compressDecompressEmpty()
+    {
+        Assert.assertEquals( "", CompressionUtils.decompress( CompressionUtils.compress( "" ) ) );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void decompressInvalid()
+    {
+        CompressionUtils.decompress( new byte[]{ 1, 2, 3, 4 } );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void decompressIncomplete()
+    {
+        final byte[] compressed = CompressionUtils.compress( "This is a test text that is compressed." );
+        CompressionUtils.decompress( Arrays.copyOf( compressed, compressed.length / 2 ) );
+    }
+}
@@ -32,6 +32,7 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import org.dhis2.fhir.adapter.dhis.model.DataValue;
+import org.dhis2.fhir.adapter.dhis.model.DeepCopyable;
 import org.dhis2.fhir.adapter.dhis.model.DhisResource;
 import org.dhis2.fhir.adapter.dhis.model.DhisResourceId;
 import org.dhis2.fhir.adapter.dhis.model.DhisResourceType;
@@ -47,7 +48,7 @@ import java.util.Objects;
 /**
  * @author David Katuscak
  */
-public class DataValueSet implements DhisResource, Serializable
+public class DataValueSet implements DhisResource, DeepCopyable<DataValueSet>, Serializable
 {
 //    reporter > reference -> Organisation unit
 //    period > start/end -> Period
@@ -110,6 +111,24 @@ public class DataValueSet implements DhisResource, Serializable
         this.dataValues = new ArrayList<>();
     }
 
+    @Nonnull
+    @Override
+    public DataValueSet deepCopy()
+    {
+        final DataValueSet copy = new DataValueSet();
+        copy.deleted = deleted;
+        copy.modified = modified;
+        copy.newResource = newResource;
+        copy.local = local;
+        copy.lastUpdated = lastUpdated;
+        copy.id = id;
+        copy.dataSetId = dataSetId;
+        copy.orgUnitId = orgUnitId;
+        copy.period = period;
+        copy.dataValues = WritableDataValue.deepCopy( dataValues );
+        return copy;
+    }
+
     @Override
     @JsonIgnore
     public String getId()
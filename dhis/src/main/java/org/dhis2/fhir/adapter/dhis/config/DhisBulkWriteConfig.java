@@ -0,0 +1,98 @@
+package org.dhis2.fhir.adapter.dhis.config;
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.Min;
+import java.io.Serializable;
+
+/**
+ * Contains the configuration of the bulk requests that persist tracked entity
+ * instances, enrollments and events on DHIS2. The resources of one type are
+ * split into chunks, which are uploaded with a bounded concurrency.
+ *
+ * @author volsch
+ */
+@Configuration
+@Component
+@ConfigurationProperties( "dhis2.fhir-adapter.bulk-write" )
+@Validated
+public class DhisBulkWriteConfig implements Serializable
+{
+    private static final long serialVersionUID = 3016728391672734981L;
+
+    public static final int DEFAULT_MAX_CHUNK_COUNT = 100;
+
+    public static final long DEFAULT_MAX_CHUNK_BYTES = 1_048_576;
+
+    public static final int DEFAULT_PARALLEL_COUNT = 2;
+
+    @Min( 1 )
+    private int maxChunkCount = DEFAULT_MAX_CHUNK_COUNT;
+
+    @Min( 0 )
+    private long maxChunkBytes = DEFAULT_MAX_CHUNK_BYTES;
+
+    @Min( 1 )
+    private int parallelCount = DEFAULT_PARALLEL_COUNT;
+
+    public int getMaxChunkCount()
+    {
+        return maxChunkCount;
+    }
+
+    public void setMaxChunkCount( int maxChunkCount )
+    {
+        this.maxChunkCount = maxChunkCount;
+    }
+
+    public long getMaxChunkBytes()
+    {
+        return maxChunkBytes;
+    }
+
+    public void setMaxChunkBytes( long maxChunkBytes )
+    {
+        this.maxChunkBytes = maxChunkBytes;
+    }
+
+    public int getParallelCount()
+    {
+        return parallelCount;
+    }
+
+    public void setParallelCount( int parallelCount )
+    {
+        this.parallelCount = parallelCount;
+    }
+}
@@ -44,6 +44,8 @@ import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.dhis2.fhir.adapter.auth.Authorization;
 import org.dhis2.fhir.adapter.auth.AuthorizationContext;
+import org.dhis2.fhir.adapter.auth.UnauthorizedException;
+import org.dhis2.fhir.adapter.dhis.security.DhisAuthenticationCache;
 import org.dhis2.fhir.adapter.jackson.AdapterBeanPropertyFilter;
 import org.dhis2.fhir.adapter.jackson.JsonCachePropertyFilter;
 import org.dhis2.fhir.adapter.jackson.SecuredPropertyFilter;
@@ -58,11 +60,16 @@ import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.client.RestTemplate;
 
 import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.net.URI;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.LocalDate;
@@ -109,6 +116,26 @@ public class DhisConfig
         return new CaffeineRestTemplateCookieStore();
     }
 
+    /**
+     * Creates the executor that is shared by all requests in order to upload chunks of
+     * bulk requests to DHIS2 in parallel. The number of threads is limited by the configured
+     * parallel count. Further chunks wait until a thread becomes available.
+     *
+     * @param bulkWriteConfig the configuration of bulk requests.
+     * @return the executor that uploads chunks of bulk requests.
+     */
+    @Bean
+    @Nonnull
+    public ThreadPoolTaskExecutor dhisBulkWriteTaskExecutor( @Nonnull DhisBulkWriteConfig bulkWriteConfig )
+    {
+        final ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+        taskExecutor.setCorePoolSize( bulkWriteConfig.getParallelCount() );
+        taskExecutor.setMaxPoolSize( bulkWriteConfig.getParallelCount() );
+        taskExecutor.setThreadNamePrefix( "dhis-bulk-write-" );
+
+        return taskExecutor;
+    }
+
     /**
      * Creates a REST template that connects to DHIS2 with the authentication that is provided by {@link AuthorizationContext}
      * in the current execution scope of the request.
@@ -117,17 +144,35 @@ public class DhisConfig
      * @param endpointConfig       the endpoint configuration of the DHIS2 endpoint.
      * @param authorizationContext the authorization context from which the REST template gets its authorization information dynamically.
      * @param cookieStore          the cookie store in which session cookies of DHIS2 are stored.
+     * @param authenticationCache  the cache of authentications that must be revoked when DHIS2 rejects the authorization.
      * @return the generated user rest template that uses the specified authorization context for authorization.
      */
     @Bean
     @Nonnull
     public RestTemplate userDhis2RestTemplate( @Nonnull RestTemplateBuilder builder, @Nonnull DhisEndpointConfig endpointConfig, @Nonnull AuthorizationContext authorizationContext,
-        @Nonnull @Qualifier( "dhisClientHttpRequestFactory" ) ClientHttpRequestFactory clientHttpRequestFactory, @Nonnull @Qualifier( "dhisCookieStore" ) RestTemplateCookieStore cookieStore )
+        @Nonnull @Qualifier( "dhisClientHttpRequestFactory" ) ClientHttpRequestFactory clientHttpRequestFactory, @Nonnull @Qualifier( "dhisCookieStore" ) RestTemplateCookieStore cookieStore,
+        @Nonnull DhisAuthenticationCache authenticationCache )
     {
         return builder.requestFactory( () -> clientHttpRequestFactory )
             .rootUri( getRootUri( endpointConfig, false ) )
             .setConnectTimeout( endpointConfig.getConnectTimeout() ).setReadTimeout( endpointConfig.getReadTimeout() )
-            .configure( new AuthorizedRestTemplate( authorizationContext, endpointConfig.getWwwAuthenticates(), cookieStore ) );
+            .configure( new AuthorizedRestTemplate( authorizationContext, endpointConfig.getWwwAuthenticates(), cookieStore )
+            {
+                @Override
+                protected void handleResponse( @Nonnull URI url, @Nonnull HttpMethod method, @Nonnull ClientHttpResponse response ) throws IOException
+                {
+                    try
+                    {
+                        super.handleResponse( url, method, response );
+                    }
+                    catch ( UnauthorizedException e )
+                    {
+                        // credentials may have been changed on DHIS2 in the meantime
+                        authenticationCache.revokeAuthorization( authorizationContext.getAuthorization().getAuthorization() );
+                        throw e;
+                    }
+                }
+            } );
     }
 
     /**
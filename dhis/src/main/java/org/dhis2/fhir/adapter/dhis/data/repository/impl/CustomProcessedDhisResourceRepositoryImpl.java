@@ -29,10 +29,12 @@ package org.dhis2.fhir.adapter.dhis.data.repository.impl;
  */
 
 import org.dhis2.fhir.adapter.data.repository.impl.AbstractProcessedItemRepositoryImpl;
+import org.dhis2.fhir.adapter.data.repository.impl.DayPartitionManager;
 import org.dhis2.fhir.adapter.dhis.data.model.ProcessedDhisResource;
 import org.dhis2.fhir.adapter.dhis.data.model.ProcessedDhisResourceId;
 import org.dhis2.fhir.adapter.dhis.data.repository.CustomProcessedDhisResourceRepository;
 import org.dhis2.fhir.adapter.dhis.metadata.model.DhisSyncGroup;
+import org.springframework.jdbc.core.JdbcTemplate;
 
 import javax.annotation.Nonnull;
 import javax.persistence.EntityManager;
@@ -44,9 +46,10 @@ import javax.persistence.EntityManager;
  */
 public class CustomProcessedDhisResourceRepositoryImpl extends AbstractProcessedItemRepositoryImpl<ProcessedDhisResource, ProcessedDhisResourceId, DhisSyncGroup> implements CustomProcessedDhisResourceRepository
 {
-    public CustomProcessedDhisResourceRepositoryImpl( @Nonnull EntityManager entityManager )
+    public CustomProcessedDhisResourceRepositoryImpl( @Nonnull EntityManager entityManager, @Nonnull JdbcTemplate jdbcTemplate )
     {
-        super( entityManager );
+        super( entityManager, jdbcTemplate, new DayPartitionManager( jdbcTemplate, "fhir_processed_dhis_resource", "processed_at" ),
+            "dhis_sync_group_id", "processed_id" );
     }
 
     @Nonnull
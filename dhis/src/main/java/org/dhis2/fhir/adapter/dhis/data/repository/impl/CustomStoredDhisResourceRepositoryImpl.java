@@ -29,12 +29,14 @@ package org.dhis2.fhir.adapter.dhis.data.repository.impl;
  */
 
 import org.dhis2.fhir.adapter.data.repository.impl.AbstractStoredItemRepositoryImpl;
+import org.dhis2.fhir.adapter.data.repository.impl.DayPartitionManager;
 import org.dhis2.fhir.adapter.dhis.data.model.StoredDhisResource;
 import org.dhis2.fhir.adapter.dhis.data.model.StoredDhisResourceId;
 import org.dhis2.fhir.adapter.dhis.data.repository.CustomStoredDhisResourceRepository;
 import org.dhis2.fhir.adapter.dhis.metadata.model.DhisSyncGroup;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.dao.support.PersistenceExceptionTranslator;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.transaction.PlatformTransactionManager;
 
 import javax.annotation.Nonnull;
@@ -49,9 +51,9 @@ import java.time.Instant;
 public class CustomStoredDhisResourceRepositoryImpl extends AbstractStoredItemRepositoryImpl<StoredDhisResource, StoredDhisResourceId, DhisSyncGroup> implements CustomStoredDhisResourceRepository
 {
     public CustomStoredDhisResourceRepositoryImpl( @Nonnull EntityManager entityManager, @Nonnull PlatformTransactionManager platformTransactionManager,
-        @Nonnull @Qualifier( "&entityManagerFactory" ) PersistenceExceptionTranslator persistenceExceptionTranslator )
+        @Nonnull @Qualifier( "&entityManagerFactory" ) PersistenceExceptionTranslator persistenceExceptionTranslator, @Nonnull JdbcTemplate jdbcTemplate )
     {
-        super( entityManager, platformTransactionManager, persistenceExceptionTranslator );
+        super( entityManager, platformTransactionManager, persistenceExceptionTranslator, new DayPartitionManager( jdbcTemplate, "fhir_stored_dhis_resource", "stored_at" ) );
     }
 
     @Nonnull
@@ -69,4 +69,26 @@ public interface LocalDhisResourceRepository<T extends DhisResource>
 
     void applyDeletes( @Nonnull LocalDhisRepositoryPersistCallback<T> persistCallback,
         @Nonnull LocalDhisRepositoryResultCallback resultCallback );
+
+    /**
+     * Merges the resources of the specified repository into this repository. The
+     * specified repository must have been filled independently from this repository.
+     * Modifications of a resource that has also been modified in this repository
+     * are not merged.
+     *
+     * @param repository the repository from which the resources should be merged.
+     * @return the resource keys of the modifications that have not been merged.
+     */
+    @Nonnull
+    Collection<Object> merge( @Nonnull LocalDhisResourceRepository<T> repository );
+
+    /**
+     * Checks if the resources of the specified repository can be merged into this
+     * repository without losing any modification. This repository is not modified.
+     *
+     * @param repository the repository from which the resources should be merged.
+     * @return <code>true</code> if no resource has been modified in both repositories,
+     * <code>false</code> otherwise.
+     */
+    boolean isMergeable( @Nonnull LocalDhisResourceRepository<T> repository );
 }
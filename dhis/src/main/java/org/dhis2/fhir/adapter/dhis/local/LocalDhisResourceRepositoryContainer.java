@@ -31,6 +31,7 @@ package org.dhis2.fhir.adapter.dhis.local;
 import org.dhis2.fhir.adapter.dhis.model.DhisResource;
 
 import javax.annotation.Nonnull;
+import java.util.Collection;
 
 /**
  * Container with resource type specific repositories.
@@ -44,4 +45,17 @@ public interface LocalDhisResourceRepositoryContainer
         @Nonnull Class<T> resourceClass, @Nonnull LocalDhisRepositoryPersistCallback<T> persistCallback );
 
     void apply( @Nonnull LocalDhisRepositoryResultCallback resultCallback );
+
+    /**
+     * Merges the repositories of the specified container into the repositories of this
+     * container. Afterwards all collected persistence operations can be applied together.
+     * The repositories are merged only if no resource has been modified in both containers.
+     * Otherwise this container is not modified at all.
+     *
+     * @param container the container from which the repositories should be merged.
+     * @return <code>true</code> if the repositories have been merged, <code>false</code>
+     * if nothing has been merged since at least one resource has also been modified in
+     * this container.
+     */
+    boolean merge( @Nonnull LocalDhisResourceRepositoryContainer container );
 }
@@ -0,0 +1,217 @@
+package org.dhis2.fhir.adapter.dhis.local.impl;
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.dhis2.fhir.adapter.dhis.local.LocalDhisRepositoryPersistCallback;
+import org.dhis2.fhir.adapter.dhis.local.LocalDhisRepositoryPersistResult;
+import org.dhis2.fhir.adapter.dhis.model.DhisResource;
+import org.dhis2.fhir.adapter.dhis.model.DhisResourceComparator;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Persists the resources of one type with one or more bulk requests. The resources
+ * are split into chunks by their count and by their estimated serialized size. If
+ * an executor has been specified, the chunks are uploaded in parallel with the
+ * specified maximum number of concurrent uploads. The results of all chunks are
+ * passed to the result consumer on the calling thread in the order of the chunks.
+ *
+ * @author volsch
+ */
+public class LocalDhisRepositoryChunkedPersister
+{
+    /**
+     * Persists all resources of one type with exactly one bulk request.
+     */
+    public static final LocalDhisRepositoryChunkedPersister UNCHUNKED = new LocalDhisRepositoryChunkedPersister( Integer.MAX_VALUE, 0, null, 1, null );
+
+    private final int maxChunkCount;
+
+    private final long maxChunkBytes;
+
+    private final ToLongFunction<? super DhisResource> sizeFunction;
+
+    private final int parallelCount;
+
+    private final Executor executor;
+
+    /**
+     * @param maxChunkCount the maximum number of resources that are included in one chunk.
+     * @param maxChunkBytes the maximum estimated serialized size of one chunk in bytes (0 if the size is not limited).
+     * @param sizeFunction  the function that estimates the serialized size of a resource in bytes or <code>null</code>
+     *                      if the size is not limited.
+     * @param parallelCount the maximum number of chunks of one resource type that are uploaded concurrently.
+     * @param executor      the executor that uploads the chunks concurrently or <code>null</code> if the chunks
+     *                      are uploaded sequentially by the calling thread.
+     */
+    public LocalDhisRepositoryChunkedPersister( int maxChunkCount, long maxChunkBytes, @Nullable ToLongFunction<? super DhisResource> sizeFunction,
+        int parallelCount, @Nullable Executor executor )
+    {
+        if ( maxChunkCount < 1 )
+        {
+            throw new IllegalArgumentException( "Maximum chunk count must be positive: " + maxChunkCount );
+        }
+
+        if ( parallelCount < 1 )
+        {
+            throw new IllegalArgumentException( "Parallel count must be positive: " + parallelCount );
+        }
+
+        this.maxChunkCount = maxChunkCount;
+        this.maxChunkBytes = ( sizeFunction == null ) ? 0 : maxChunkBytes;
+        this.sizeFunction = sizeFunction;
+        this.parallelCount = parallelCount;
+        this.executor = executor;
+    }
+
+    public <T extends DhisResource> void persistSave( @Nonnull LocalDhisRepositoryPersistCallback<T> persistCallback, @Nonnull Collection<T> resources,
+        boolean create, @Nonnull Consumer<LocalDhisRepositoryPersistResult> resultConsumer )
+    {
+        final List<T> sortedResources = resources.stream().sorted( DhisResourceComparator.INSTANCE ).collect( Collectors.toList() );
+
+        persist( chunk( sortedResources, sizeFunction ), ( chunk, consumer ) -> persistCallback.persistSave( chunk, create, consumer ), resultConsumer );
+    }
+
+    public <T extends DhisResource> void persistDeleteById( @Nonnull LocalDhisRepositoryPersistCallback<T> persistCallback, @Nonnull Collection<String> ids,
+        @Nonnull Consumer<LocalDhisRepositoryPersistResult> resultConsumer )
+    {
+        final List<String> sortedIds = ids.stream().sorted().collect( Collectors.toList() );
+
+        // deletions contain only the IDs of the resources and the size of the chunk is not relevant
+        persist( chunk( sortedIds, null ), persistCallback::persistDeleteById, resultConsumer );
+    }
+
+    @Nonnull
+    protected <E> List<List<E>> chunk( @Nonnull List<E> items, @Nullable ToLongFunction<? super E> itemSizeFunction )
+    {
+        final boolean sizeLimited = ( itemSizeFunction != null && maxChunkBytes > 0 );
+
+        if ( items.size() <= maxChunkCount && !sizeLimited )
+        {
+            return Collections.singletonList( items );
+        }
+
+        final List<List<E>> chunks = new ArrayList<>();
+        List<E> chunk = new ArrayList<>();
+        long chunkBytes = 0;
+
+        for ( final E item : items )
+        {
+            final long itemBytes = sizeLimited ? itemSizeFunction.applyAsLong( item ) : 0;
+
+            // a single item that exceeds the maximum size is uploaded with its own chunk
+            if ( !chunk.isEmpty() && ( chunk.size() >= maxChunkCount || ( sizeLimited && chunkBytes + itemBytes > maxChunkBytes ) ) )
+            {
+                chunks.add( chunk );
+                chunk = new ArrayList<>();
+                chunkBytes = 0;
+            }
+
+            chunk.add( item );
+            chunkBytes += itemBytes;
+        }
+
+        if ( !chunk.isEmpty() )
+        {
+            chunks.add( chunk );
+        }
+
+        return chunks;
+    }
+
+    protected <E> void persist( @Nonnull List<List<E>> chunks, @Nonnull BiConsumer<List<E>, Consumer<LocalDhisRepositoryPersistResult>> chunkPersister,
+        @Nonnull Consumer<LocalDhisRepositoryPersistResult> resultConsumer )
+    {
+        if ( executor == null || parallelCount < 2 || chunks.size() < 2 )
+        {
+            chunks.forEach( chunk -> chunkPersister.accept( chunk, resultConsumer ) );
+            return;
+        }
+
+        final List<List<LocalDhisRepositoryPersistResult>> chunkResults = chunks.stream()
+            .map( chunk -> new ArrayList<LocalDhisRepositoryPersistResult>( chunk.size() ) ).collect( Collectors.toList() );
+        final AtomicInteger nextChunkIndex = new AtomicInteger();
+        final AtomicBoolean failed = new AtomicBoolean();
+        final List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+        // each worker uploads the next pending chunk until all chunks have been uploaded
+        for ( int i = 0; i < Math.min( parallelCount, chunks.size() ); i++ )
+        {
+            futures.add( CompletableFuture.runAsync( () -> {
+                int index;
+
+                while ( !failed.get() && ( index = nextChunkIndex.getAndIncrement() ) < chunks.size() )
+                {
+                    try
+                    {
+                        chunkPersister.accept( chunks.get( index ), chunkResults.get( index )::add );
+                    }
+                    catch ( RuntimeException e )
+                    {
+                        failed.set( true );
+                        throw e;
+                    }
+                }
+            }, executor ) );
+        }
+
+        RuntimeException exception = null;
+
+        try
+        {
+            CompletableFuture.allOf( futures.toArray( new CompletableFuture[0] ) ).join();
+        }
+        catch ( CompletionException e )
+        {
+            exception = ( e.getCause() instanceof RuntimeException ) ? (RuntimeException) e.getCause() : e;
+        }
+
+        // results of successfully uploaded chunks are passed even if another chunk failed
+        chunkResults.forEach( results -> results.forEach( resultConsumer ) );
+
+        if ( exception != null )
+        {
+            throw exception;
+        }
+    }
+}
@@ -37,6 +37,7 @@ import org.dhis2.fhir.adapter.dhis.model.DhisResource;
 
 import javax.annotation.Nonnull;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
@@ -53,11 +54,19 @@ public class LocalDhisResourceRepositoryContainerImpl implements LocalDhisResour
 {
     private final Set<Class<? extends DhisResource>> supportedResourceClasses;
 
+    private final LocalDhisRepositoryChunkedPersister chunkedPersister;
+
     private final Map<Class<? extends DhisResource>, RepositoryItem<? extends DhisResource>> repositoryItems = new HashMap<>();
 
     public LocalDhisResourceRepositoryContainerImpl( @Nonnull Set<Class<? extends DhisResource>> supportedResourceClasses )
+    {
+        this( supportedResourceClasses, LocalDhisRepositoryChunkedPersister.UNCHUNKED );
+    }
+
+    public LocalDhisResourceRepositoryContainerImpl( @Nonnull Set<Class<? extends DhisResource>> supportedResourceClasses, @Nonnull LocalDhisRepositoryChunkedPersister chunkedPersister )
     {
         this.supportedResourceClasses = new LinkedHashSet<>( supportedResourceClasses );
+        this.chunkedPersister = chunkedPersister;
     }
 
     @Nonnull
@@ -72,7 +81,7 @@ public class LocalDhisResourceRepositoryContainerImpl implements LocalDhisResour
         }
 
         final RepositoryItem<? extends DhisResource> repositoryItem = repositoryItems.computeIfAbsent( resourceClass,
-            rc -> new RepositoryItem<>( new LocalDhisResourceRepositoryImpl<>( resourceClass ), persistCallback ) );
+            rc -> new RepositoryItem<>( new LocalDhisResourceRepositoryImpl<>( resourceClass, chunkedPersister ), persistCallback ) );
 
         return (LocalDhisResourceRepository<T>) repositoryItem.getResourceRepository();
     }
@@ -88,6 +97,44 @@ public class LocalDhisResourceRepositoryContainerImpl implements LocalDhisResour
             .forEach( ri -> ri.applyDeletes( resultCallback ) );
     }
 
+    @Override
+    public boolean merge( @Nonnull LocalDhisResourceRepositoryContainer container )
+    {
+        if ( !( container instanceof LocalDhisResourceRepositoryContainerImpl ) )
+        {
+            throw new IllegalArgumentException( "Container cannot be merged: " + container.getClass().getName() );
+        }
+
+        final Collection<RepositoryItem<? extends DhisResource>> mergedRepositoryItems =
+            ( (LocalDhisResourceRepositoryContainerImpl) container ).repositoryItems.values();
+
+        if ( !mergedRepositoryItems.stream().allMatch( this::isMergeable ) )
+        {
+            return false;
+        }
+
+        mergedRepositoryItems.forEach( this::merge );
+
+        return true;
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private <T extends DhisResource> boolean isMergeable( @Nonnull RepositoryItem<T> repositoryItem )
+    {
+        final LocalDhisResourceRepositoryImpl<T> resourceRepository = (LocalDhisResourceRepositoryImpl<T>) repositoryItem.getResourceRepository();
+        final RepositoryItem<? extends DhisResource> localRepositoryItem = repositoryItems.get( resourceRepository.getResourceClass() );
+
+        return localRepositoryItem == null || ( (LocalDhisResourceRepository<T>) localRepositoryItem.getResourceRepository() ).isMergeable( resourceRepository );
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private <T extends DhisResource> void merge( @Nonnull RepositoryItem<T> repositoryItem )
+    {
+        final LocalDhisResourceRepositoryImpl<T> resourceRepository = (LocalDhisResourceRepositoryImpl<T>) repositoryItem.getResourceRepository();
+
+        getRepository( resourceRepository.getResourceClass(), repositoryItem.getPersistCallback() ).merge( resourceRepository );
+    }
+
     protected static class RepositoryItem<T extends DhisResource>
     {
         private final LocalDhisResourceRepository<T> resourceRepository;
@@ -67,9 +67,23 @@ public class LocalDhisResourceRepositoryImpl<T extends DhisResource> implements
 
     private final Class<T> resourceClass;
 
+    private final LocalDhisRepositoryChunkedPersister chunkedPersister;
+
     public LocalDhisResourceRepositoryImpl( @Nonnull Class<T> resourceClass )
+    {
+        this( resourceClass, LocalDhisRepositoryChunkedPersister.UNCHUNKED );
+    }
+
+    public LocalDhisResourceRepositoryImpl( @Nonnull Class<T> resourceClass, @Nonnull LocalDhisRepositoryChunkedPersister chunkedPersister )
     {
         this.resourceClass = resourceClass;
+        this.chunkedPersister = chunkedPersister;
+    }
+
+    @Nonnull
+    public Class<T> getResourceClass()
+    {
+        return resourceClass;
     }
 
     @Override
@@ -179,7 +193,7 @@ public class LocalDhisResourceRepositoryImpl<T extends DhisResource> implements
 
         if ( !localResources.isEmpty() )
         {
-            persistCallback.persistSave( localResources.values().stream().map( LocalDhisResource::getResource ).collect( Collectors.toList() ), create, result -> {
+            chunkedPersister.persistSave( persistCallback, localResources.values().stream().map( LocalDhisResource::getResource ).collect( Collectors.toList() ), create, result -> {
                 final LocalDhisResource<T> localDhisResource = Objects.requireNonNull( localResources.get( result.getResourceId() ),
                     () -> "No request for resource with ID " + result.getResourceId() );
 
@@ -196,7 +210,7 @@ public class LocalDhisResourceRepositoryImpl<T extends DhisResource> implements
 
         if ( !localResources.isEmpty() )
         {
-            persistCallback.persistDeleteById( localResources.values().stream().map( lr -> lr.getResource().getId() ).collect( Collectors.toList() ), result -> {
+            chunkedPersister.persistDeleteById( persistCallback, localResources.values().stream().map( lr -> lr.getResource().getId() ).collect( Collectors.toList() ), result -> {
                 final LocalDhisResource<T> localDhisResource = Objects.requireNonNull( localResources.get( result.getResourceId() ),
                     () -> "No request for resource with ID " + result.getResourceId() );
 
@@ -205,6 +219,76 @@ public class LocalDhisResourceRepositoryImpl<T extends DhisResource> implements
         }
     }
 
+    @Nonnull
+    @Override
+    public Collection<Object> merge( @Nonnull LocalDhisResourceRepository<T> repository )
+    {
+        if ( !( repository instanceof LocalDhisResourceRepositoryImpl ) )
+        {
+            throw new IllegalArgumentException( "Repository cannot be merged: " + repository.getClass().getName() );
+        }
+
+        final List<Object> unmergedResourceKeys = new ArrayList<>();
+        ( (LocalDhisResourceRepositoryImpl<T>) repository ).resourcesById.values().forEach( lr -> {
+            if ( !merge( lr ) && lr.getResourceKey() != null )
+            {
+                unmergedResourceKeys.add( lr.getResourceKey() );
+            }
+        } );
+
+        return unmergedResourceKeys;
+    }
+
+    @Override
+    public boolean isMergeable( @Nonnull LocalDhisResourceRepository<T> repository )
+    {
+        if ( !( repository instanceof LocalDhisResourceRepositoryImpl ) )
+        {
+            throw new IllegalArgumentException( "Repository cannot be merged: " + repository.getClass().getName() );
+        }
+
+        return ( (LocalDhisResourceRepositoryImpl<T>) repository ).resourcesById.values().stream().allMatch( this::isMergeable );
+    }
+
+    protected boolean isMergeable( @Nonnull LocalDhisResource<T> mergedLocal )
+    {
+        final LocalDhisResource<T> local = resourcesById.get( mergedLocal.getResource().getId() );
+
+        return local == null || local.getState() == LocalDhisResourceState.FOUND || mergedLocal.getState() == LocalDhisResourceState.FOUND;
+    }
+
+    protected boolean merge( @Nonnull LocalDhisResource<T> mergedLocal )
+    {
+        final String id = mergedLocal.getResource().getId();
+        final LocalDhisResource<T> local = resourcesById.get( id );
+
+        if ( local != null && local.getState() != LocalDhisResourceState.FOUND )
+        {
+            // the already included modification is kept
+            return mergedLocal.getState() == LocalDhisResourceState.FOUND;
+        }
+
+        if ( local != null && mergedLocal.getState() == LocalDhisResourceState.FOUND )
+        {
+            return true;
+        }
+
+        resourcesById.put( id, mergedLocal );
+
+        if ( mergedLocal.getResource() instanceof TrackedEntityDhisResource )
+        {
+            final TrackedEntityDhisResource trackedEntityDhisResource = (TrackedEntityDhisResource) mergedLocal.getResource();
+
+            if ( trackedEntityDhisResource.getTrackedEntityInstanceId() != null )
+            {
+                resourcesByTeiId.computeIfAbsent( trackedEntityDhisResource.getTrackedEntityInstanceId(), k -> new HashMap<>() )
+                    .put( id, mergedLocal );
+            }
+        }
+
+        return true;
+    }
+
     @Nonnull
     protected T store( @Nonnull T resource, @Nullable Object resourceKey, boolean found )
     {
@@ -31,12 +31,22 @@ package org.dhis2.fhir.adapter.dhis.metadata.model;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import org.dhis2.fhir.adapter.data.model.DataGroupUpdate;
 
+import javax.annotation.Nonnull;
+import javax.persistence.CollectionTable;
+import javax.persistence.Column;
+import javax.persistence.ElementCollection;
 import javax.persistence.Entity;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
+import javax.persistence.MapKeyColumn;
 import javax.persistence.MapsId;
 import javax.persistence.OneToOne;
 import javax.persistence.Table;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -54,6 +64,10 @@ public class DhisSyncGroupUpdate extends DataGroupUpdate<DhisSyncGroup>
 
     private DhisSyncGroup group;
 
+    private Instant resourceBaseLastUpdated;
+
+    private Map<String, Instant> resourceLastUpdated = new HashMap<>();
+
     @Id
     public UUID getId()
     {
@@ -79,4 +93,82 @@ public class DhisSyncGroupUpdate extends DataGroupUpdate<DhisSyncGroup>
         this.group = group;
         setId( (group == null) ? null : group.getId() );
     }
+
+    /**
+     * @return the last updated timestamp of the group on which the last updated
+     * timestamps of the polled resources are based.
+     */
+    @Column( name = "resource_base_last_updated" )
+    @JsonIgnore
+    public Instant getResourceBaseLastUpdated()
+    {
+        return resourceBaseLastUpdated;
+    }
+
+    public void setResourceBaseLastUpdated( Instant resourceBaseLastUpdated )
+    {
+        this.resourceBaseLastUpdated = resourceBaseLastUpdated;
+    }
+
+    /**
+     * @return the last updated timestamps up to which polled resources have been
+     * processed by their resource keys (streaming poll only).
+     */
+    @ElementCollection
+    @CollectionTable( name = "fhir_dhis_sync_group_update_resource", joinColumns = @JoinColumn( name = "dhis_sync_group_update_id" ) )
+    @MapKeyColumn( name = "resource_key" )
+    @Column( name = "last_updated", nullable = false )
+    @JsonIgnore
+    public Map<String, Instant> getResourceLastUpdated()
+    {
+        return resourceLastUpdated;
+    }
+
+    public void setResourceLastUpdated( Map<String, Instant> resourceLastUpdated )
+    {
+        this.resourceLastUpdated = resourceLastUpdated;
+    }
+
+    /**
+     * Returns the last updated timestamps of the polled resources if they are based
+     * on the specified last updated timestamp of the group. If the last updated
+     * timestamp of the group has been changed (e.g. reset by an administrator),
+     * the stored timestamps are no longer valid.
+     *
+     * @param baseLastUpdated the current last updated timestamp of the group.
+     * @return the valid last updated timestamps of the polled resources.
+     */
+    @Nonnull
+    public Map<String, Instant> findResourceLastUpdated( @Nonnull Instant baseLastUpdated )
+    {
+        if ( !isResourceBase( baseLastUpdated ) )
+        {
+            return Collections.emptyMap();
+        }
+        return new HashMap<>( resourceLastUpdated );
+    }
+
+    /**
+     * Updates the last updated timestamp of a polled resource. If the last updated
+     * timestamp of the group has been changed, all stored timestamps of the polled
+     * resources are discarded before.
+     *
+     * @param baseLastUpdated the current last updated timestamp of the group.
+     * @param resourceKey     the key of the polled resource.
+     * @param lastUpdated     the last updated timestamp up to which the resources have been processed.
+     */
+    public void updateResourceLastUpdated( @Nonnull Instant baseLastUpdated, @Nonnull String resourceKey, @Nonnull Instant lastUpdated )
+    {
+        if ( !isResourceBase( baseLastUpdated ) )
+        {
+            resourceLastUpdated.clear();
+            resourceBaseLastUpdated = baseLastUpdated.truncatedTo( ChronoUnit.MILLIS );
+        }
+        resourceLastUpdated.put( resourceKey, lastUpdated );
+    }
+
+    private boolean isResourceBase( @Nonnull Instant baseLastUpdated )
+    {
+        return baseLastUpdated.truncatedTo( ChronoUnit.MILLIS ).equals( resourceBaseLastUpdated );
+    }
 }
@@ -31,6 +31,11 @@ package org.dhis2.fhir.adapter.dhis.metadata.repository;
 import org.dhis2.fhir.adapter.data.model.DataGroupUpdate;
 import org.dhis2.fhir.adapter.data.repository.DataGroupUpdateRepository;
 import org.dhis2.fhir.adapter.dhis.metadata.model.DhisSyncGroup;
+import org.springframework.data.rest.core.annotation.RestResource;
+
+import javax.annotation.Nonnull;
+import java.time.Instant;
+import java.util.Map;
 
 /**
  * Custom repository for {@link org.dhis2.fhir.adapter.dhis.metadata.model.DhisSyncGroupUpdate}.
@@ -39,4 +44,30 @@ import org.dhis2.fhir.adapter.dhis.metadata.model.DhisSyncGroup;
  */
 public interface CustomDhisSyncGroupUpdateRepository extends DataGroupUpdateRepository<DataGroupUpdate<DhisSyncGroup>, DhisSyncGroup>
 {
+    /**
+     * Returns the last updated timestamps of the polled resources of the specified group.
+     * Only timestamps that are based on the specified last updated timestamp of the group
+     * are returned.
+     *
+     * @param group           the group for which the timestamps should be returned.
+     * @param baseLastUpdated the current last updated timestamp of the group.
+     * @return the last updated timestamps by the resource keys.
+     */
+    @RestResource( exported = false )
+    @Nonnull
+    Map<String, Instant> getResourceLastUpdated( @Nonnull DhisSyncGroup group, @Nonnull Instant baseLastUpdated );
+
+    /**
+     * Updates the last updated timestamp of a polled resource of the specified group.
+     * Timestamps that are based on a different last updated timestamp of the group
+     * are discarded.
+     *
+     * @param group           the group for which the timestamp should be updated.
+     * @param baseLastUpdated the current last updated timestamp of the group.
+     * @param resourceKey     the key of the polled resource.
+     * @param lastUpdated     the last updated timestamp up to which the resources have been processed.
+     * @return <code>true</code> if the timestamp has been updated, <code>false</code> otherwise.
+     */
+    @RestResource( exported = false )
+    boolean updateResourceLastUpdated( @Nonnull DhisSyncGroup group, @Nonnull Instant baseLastUpdated, @Nonnull String resourceKey, @Nonnull Instant lastUpdated );
 }
@@ -33,9 +33,14 @@ import org.dhis2.fhir.adapter.data.repository.impl.AbstractDataGroupUpdateReposi
 import org.dhis2.fhir.adapter.dhis.metadata.model.DhisSyncGroup;
 import org.dhis2.fhir.adapter.dhis.metadata.model.DhisSyncGroupUpdate;
 import org.dhis2.fhir.adapter.dhis.metadata.repository.CustomDhisSyncGroupUpdateRepository;
+import org.springframework.data.rest.core.annotation.RestResource;
+import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.Nonnull;
 import javax.persistence.EntityManager;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Map;
 
 /**
  * Implementation of {@link CustomDhisSyncGroupUpdateRepository}.
@@ -50,6 +55,30 @@ public class CustomDhisSyncGroupUpdateRepositoryImpl extends AbstractDataGroupUp
         super( entityManager );
     }
 
+    @RestResource( exported = false )
+    @Transactional( readOnly = true )
+    @Nonnull
+    @Override
+    public Map<String, Instant> getResourceLastUpdated( @Nonnull DhisSyncGroup group, @Nonnull Instant baseLastUpdated )
+    {
+        final DhisSyncGroupUpdate update = (DhisSyncGroupUpdate) find( group, false );
+        return (update == null) ? Collections.emptyMap() : update.findResourceLastUpdated( baseLastUpdated );
+    }
+
+    @RestResource( exported = false )
+    @Transactional
+    @Override
+    public boolean updateResourceLastUpdated( @Nonnull DhisSyncGroup group, @Nonnull Instant baseLastUpdated, @Nonnull String resourceKey, @Nonnull Instant lastUpdated )
+    {
+        final DhisSyncGroupUpdate update = (DhisSyncGroupUpdate) find( group, true );
+        if ( update == null )
+        {
+            return false;
+        }
+        update.updateResourceLastUpdated( baseLastUpdated, resourceKey, lastUpdated );
+        return true;
+    }
+
     @Nonnull
     @Override
     protected Class<DhisSyncGroupUpdate> getUpdateClass()
@@ -0,0 +1,112 @@
+package org.dhis2.fhir.adapter.dhis.model;
+
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.dhis2.fhir.adapter.dhis.tracker.program.Enrollment;
+import org.dhis2.fhir.adapter.dhis.tracker.program.Event;
+import org.dhis2.fhir.adapter.dhis.tracker.trackedentity.TrackedEntityAttributeValue;
+import org.dhis2.fhir.adapter.dhis.tracker.trackedentity.TrackedEntityInstance;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.function.ToLongFunction;
+
+/**
+ * Estimates the serialized size of DHIS resources in bytes without serializing them.
+ * The estimation is based on the number of included values and their lengths. It is
+ * accurate enough to limit the size of bulk requests.
+ *
+ * @author volsch
+ */
+public class DhisResourceSizeEstimator implements ToLongFunction<DhisResource>
+{
+    public static final DhisResourceSizeEstimator INSTANCE = new DhisResourceSizeEstimator();
+
+    /**
+     * Estimated size of the fields of a resource (IDs, dates, status, coordinates).
+     */
+    protected static final long RESOURCE_BYTES = 400;
+
+    /**
+     * Estimated size of an attribute or data value without the value itself.
+     */
+    protected static final long VALUE_BYTES = 80;
+
+    @Override
+    public long applyAsLong( @Nonnull DhisResource resource )
+    {
+        long bytes = RESOURCE_BYTES;
+
+        if ( resource instanceof TrackedEntityInstance )
+        {
+            final Collection<TrackedEntityAttributeValue> attributes = ( (TrackedEntityInstance) resource ).getAttributes();
+
+            if ( attributes != null )
+            {
+                for ( final TrackedEntityAttributeValue attributeValue : attributes )
+                {
+                    bytes += getValueBytes( attributeValue.getValue() );
+                }
+            }
+        }
+        else if ( resource instanceof Enrollment )
+        {
+            final Collection<Event> events = ( (Enrollment) resource ).getEvents();
+
+            if ( events != null )
+            {
+                for ( final Event event : events )
+                {
+                    bytes += applyAsLong( event );
+                }
+            }
+        }
+        else if ( resource instanceof Event )
+        {
+            final Collection<? extends DataValue> dataValues = ( (Event) resource ).getDataValues();
+
+            if ( dataValues != null )
+            {
+                for ( final DataValue dataValue : dataValues )
+                {
+                    bytes += getValueBytes( dataValue.getValue() );
+                }
+            }
+        }
+
+        return bytes;
+    }
+
+    protected long getValueBytes( @Nullable Object value )
+    {
+        return VALUE_BYTES + ( ( value == null ) ? 0 : value.toString().length() );
+    }
+}
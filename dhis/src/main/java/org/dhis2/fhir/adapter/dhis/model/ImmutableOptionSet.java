@@ -89,4 +89,14 @@ public class ImmutableOptionSet implements OptionSet, ImmutableDhisObject, Seria
 
         return option == null ? Optional.empty() : Optional.of( option instanceof WritableOption ? new ImmutableOption( (WritableOption) option ) : option );
     }
+
+    @JsonIgnore
+    @Nonnull
+    @Override
+    public Optional<Option> getOptionalOptionByCodeIgnoreCase( @Nullable String code )
+    {
+        final Option option = delegate.getOptionalOptionByCodeIgnoreCase( code ).orElse( null );
+
+        return option == null ? Optional.empty() : Optional.of( option instanceof WritableOption ? new ImmutableOption( (WritableOption) option ) : option );
+    }
 }
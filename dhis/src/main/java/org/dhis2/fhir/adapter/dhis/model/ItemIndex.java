@@ -0,0 +1,192 @@
+package org.dhis2.fhir.adapter.dhis.model;
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.function.Function;
+
+/**
+ * Index of the items of a collection by their IDs. The index remembers the collection
+ * instance for which it has been created. If the collection has been replaced, a new
+ * index must be created by {@link #of(ItemIndex, Collection, Function)}. If the collection
+ * contains multiple items with the same ID, the first item is indexed.
+ * <p>
+ * The index is rebuilt once when it is used the next time after the size of the collection
+ * has changed or after it has been marked as dirty by {@link #markDirty()}. The owner of the
+ * collection must mark the index as dirty when the collection or the IDs of its items may
+ * have been modified otherwise. Since modifications that do not change the size of the collection
+ * cannot be detected reliably, an indexed item is returned only if it has still the requested
+ * ID and, in case of a random access list, is still at its indexed position. Otherwise the
+ * index is rebuilt once. If no item has been indexed for the requested ID, the items are not
+ * scanned.
+ *
+ * @param <T> the concrete type of the indexed items.
+ * @author volsch
+ */
+public final class ItemIndex<T>
+{
+    private final Collection<? extends T> items;
+
+    private final Function<? super T, String> idFunction;
+
+    private Map<String, IndexedItem<T>> itemsById;
+
+    private int size;
+
+    private boolean dirty;
+
+    private ItemIndex( @Nonnull Collection<? extends T> items, @Nonnull Function<? super T, String> idFunction )
+    {
+        this.items = items;
+        this.idFunction = idFunction;
+
+        rebuild();
+    }
+
+    /**
+     * Returns the specified index if it has been created for the specified items.
+     * Otherwise a new index is created.
+     *
+     * @param index      the current index or <code>null</code> if there is no index yet.
+     * @param items      the items that should be indexed.
+     * @param idFunction the function that returns the ID of an item.
+     * @param <T>        the concrete type of the indexed items.
+     * @return the index for the specified items.
+     */
+    @Nonnull
+    public static <T> ItemIndex<T> of( @Nullable ItemIndex<T> index, @Nonnull Collection<? extends T> items, @Nonnull Function<? super T, String> idFunction )
+    {
+        if ( index != null && index.items == items )
+        {
+            return index;
+        }
+
+        return new ItemIndex<>( items, idFunction );
+    }
+
+    /**
+     * Marks the index as dirty. The index is rebuilt when it is used the next time.
+     */
+    public void markDirty()
+    {
+        dirty = true;
+    }
+
+    /**
+     * Returns the first item with the specified ID. If the indexed item cannot be
+     * verified, the index is rebuilt once.
+     *
+     * @param id the ID of the item that should be returned.
+     * @return the item or <code>null</code> if there is no such item.
+     */
+    @Nullable
+    public T get( @Nullable String id )
+    {
+        if ( dirty || size != items.size() )
+        {
+            rebuild();
+        }
+
+        IndexedItem<T> indexedItem = itemsById.get( id );
+
+        if ( indexedItem == null )
+        {
+            return null;
+        }
+
+        if ( isCurrent( indexedItem ) && Objects.equals( id, idFunction.apply( indexedItem.getItem() ) ) )
+        {
+            return indexedItem.getItem();
+        }
+
+        // collection has been modified without changing its size
+        rebuild();
+        indexedItem = itemsById.get( id );
+
+        return (indexedItem == null) ? null : indexedItem.getItem();
+    }
+
+    private void rebuild()
+    {
+        final int size = items.size();
+        final Map<String, IndexedItem<T>> itemsById = new HashMap<>( Math.max( 16, size * 2 ) );
+
+        int position = 0;
+
+        for ( final T item : items )
+        {
+            itemsById.putIfAbsent( idFunction.apply( item ), new IndexedItem<>( item, position++ ) );
+        }
+
+        this.itemsById = itemsById;
+        this.size = size;
+        this.dirty = false;
+    }
+    private boolean isCurrent( @Nonnull IndexedItem<T> indexedItem )
+    {
+        if ( !( items instanceof List ) || !( items instanceof RandomAccess ) )
+        {
+            return true;
+        }
+
+        final List<? extends T> list = (List<? extends T>) items;
+
+        return indexedItem.getPosition() < list.size() && list.get( indexedItem.getPosition() ) == indexedItem.getItem();
+    }
+
+    private static final class IndexedItem<T>
+    {
+        private final T item;
+
+        private final int position;
+
+        private IndexedItem( T item, int position )
+        {
+            this.item = item;
+            this.position = position;
+        }
+
+        public T getItem()
+        {
+            return item;
+        }
+
+        public int getPosition()
+        {
+            return position;
+        }
+    }
+}
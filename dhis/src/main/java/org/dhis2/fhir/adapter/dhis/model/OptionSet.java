@@ -59,4 +59,15 @@ public interface OptionSet
      */
     @Nonnull
     Optional<Option> getOptionalOptionByCode( @Nullable String code );
+
+    /**
+     * Returns the option for the specified code by ignoring the case of the code
+     * (locale independent). If there are several matching options, an option with
+     * an upper case code is preferred.
+     *
+     * @param code the code for which the option should be returned.
+     * @return the optional option.
+     */
+    @Nonnull
+    Optional<Option> getOptionalOptionByCodeIgnoreCase( @Nullable String code );
 }
@@ -33,8 +33,11 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.io.Serializable;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Writable implementation of {@link DataValue} that can also be used for
@@ -82,6 +85,37 @@ public class WritableDataValue implements DataValue, Serializable
         this.value = value;
     }
 
+    /**
+     * @return a copy of this data value. The value itself is expected to be
+     * immutable and is not copied.
+     */
+    @Nonnull
+    public WritableDataValue deepCopy()
+    {
+        final WritableDataValue copy = new WritableDataValue();
+        copy.dataElementId = dataElementId;
+        copy.value = value;
+        copy.providedElsewhere = providedElsewhere;
+        copy.lastUpdated = lastUpdated;
+        copy.storedBy = storedBy;
+        copy.modified = modified;
+        copy.newResource = newResource;
+        return copy;
+    }
+
+    @Nullable
+    public static List<WritableDataValue> deepCopy( @Nullable List<WritableDataValue> dataValues )
+    {
+        if ( dataValues == null )
+        {
+            return null;
+        }
+
+        final List<WritableDataValue> copy = new ArrayList<>( dataValues.size() );
+        dataValues.forEach( dv -> copy.add( dv.deepCopy() ) );
+        return copy;
+    }
+
     public String getDataElementId()
     {
         return dataElementId;
@@ -33,10 +33,12 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 /**
  * Writable implementation of {@link OptionSet} that can also be used for
@@ -55,7 +57,7 @@ public class WritableOptionSet implements OptionSet, Serializable
     private List<WritableOption> options;
 
     @JsonIgnore
-    private transient volatile Map<String, WritableOption> optionsByCode;
+    private transient volatile OptionIndex optionIndex;
 
     @Override
     public String getId()
@@ -88,6 +90,7 @@ public class WritableOptionSet implements OptionSet, Serializable
     public void setOptions( List<WritableOption> options )
     {
         this.options = options;
+        this.optionIndex = null;
     }
 
     @Nonnull
@@ -99,11 +102,77 @@ public class WritableOptionSet implements OptionSet, Serializable
             return Optional.empty();
         }
 
-        if ( optionsByCode == null )
+        return Optional.ofNullable( getOptionIndex().optionsByCode.get( code ) );
+    }
+
+    @Nonnull
+    @Override
+    public Optional<Option> getOptionalOptionByCodeIgnoreCase( @Nullable String code )
+    {
+        if ( code == null )
+        {
+            return Optional.empty();
+        }
+
+        return Optional.ofNullable( getOptionIndex().optionsByUpperCaseCode.get( code.toUpperCase( Locale.ROOT ) ) );
+    }
+
+    @Nonnull
+    protected OptionIndex getOptionIndex()
+    {
+        OptionIndex index = optionIndex;
+
+        if ( index == null || index.options != options || ( options != null && index.size != options.size() ) )
         {
-            optionsByCode = options.stream().collect( Collectors.toMap( WritableOption::getCode, o -> o ) );
+            index = new OptionIndex( options );
+            optionIndex = index;
         }
 
-        return Optional.ofNullable( optionsByCode.get( code ) );
+        return index;
+    }
+
+    /**
+     * Immutable index of the options by their codes. The first option with a code
+     * is indexed.
+     */
+    protected static final class OptionIndex
+    {
+        private final List<WritableOption> options;
+
+        private final int size;
+
+        private final Map<String, WritableOption> optionsByCode;
+
+        private final Map<String, WritableOption> optionsByUpperCaseCode;
+
+        private OptionIndex( @Nullable List<WritableOption> options )
+        {
+            this.options = options;
+
+            if ( options == null )
+            {
+                this.size = 0;
+                this.optionsByCode = Collections.emptyMap();
+                this.optionsByUpperCaseCode = Collections.emptyMap();
+            }
+            else
+            {
+                this.size = options.size();
+                this.optionsByCode = new HashMap<>( Math.max( 16, size * 2 ) );
+                this.optionsByUpperCaseCode = new HashMap<>( Math.max( 16, size * 2 ) );
+
+                for ( final WritableOption option : options )
+                {
+                    if ( option.getCode() != null )
+                    {
+                        final String upperCaseCode = option.getCode().toUpperCase( Locale.ROOT );
+
+                        optionsByCode.putIfAbsent( option.getCode(), option );
+                        optionsByUpperCaseCode.merge( upperCaseCode, option, ( o1, o2 ) ->
+                            !upperCaseCode.equals( o1.getCode() ) && upperCaseCode.equals( o2.getCode() ) ? o2 : o1 );
+                    }
+                }
+            }
+        }
     }
 }
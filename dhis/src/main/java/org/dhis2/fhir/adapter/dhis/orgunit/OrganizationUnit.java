@@ -30,6 +30,7 @@ package org.dhis2.fhir.adapter.dhis.orgunit;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import org.dhis2.fhir.adapter.dhis.model.AbstractDhisMetadata;
+import org.dhis2.fhir.adapter.dhis.model.DeepCopyable;
 import org.dhis2.fhir.adapter.dhis.model.DhisMetadata;
 import org.dhis2.fhir.adapter.dhis.model.DhisResource;
 import org.dhis2.fhir.adapter.dhis.model.DhisResourceId;
@@ -45,7 +46,7 @@ import java.time.ZonedDateTime;
  *
  * @author volsch
  */
-public class OrganizationUnit extends AbstractDhisMetadata implements DhisResource, DhisMetadata, Serializable
+public class OrganizationUnit extends AbstractDhisMetadata implements DhisResource, DhisMetadata, DeepCopyable<OrganizationUnit>, Serializable
 {
     private static final long serialVersionUID = 3976508569865955265L;
 
@@ -73,6 +74,26 @@ public class OrganizationUnit extends AbstractDhisMetadata implements DhisResour
 
     private String coordinates;
 
+    @Nonnull
+    @Override
+    public OrganizationUnit deepCopy()
+    {
+        final OrganizationUnit copy = new OrganizationUnit();
+        copy.lastUpdated = lastUpdated;
+        copy.id = id;
+        copy.code = code;
+        copy.name = name;
+        copy.shortName = shortName;
+        copy.displayName = displayName;
+        copy.leaf = leaf;
+        copy.level = level;
+        copy.openingDate = openingDate;
+        copy.closedDate = closedDate;
+        copy.parent = (parent == null) ? null : new Id( parent.getId() );
+        copy.coordinates = coordinates;
+        return copy;
+    }
+
     @JsonIgnore
     @Nonnull
     @Override
@@ -30,6 +30,9 @@ package org.dhis2.fhir.adapter.dhis.orgunit;
 
 import org.dhis2.fhir.adapter.dhis.service.DhisMetadataService;
 
+import javax.annotation.Nonnull;
+import java.util.List;
+
 /**
  * Service that provides access to DHIS2 organization unit metadata.
  *
@@ -37,4 +40,13 @@ import org.dhis2.fhir.adapter.dhis.service.DhisMetadataService;
  */
 public interface OrganizationUnitService extends DhisMetadataService<OrganizationUnit>
 {
+    /**
+     * Returns the parents of the organization unit with the specified ID. The direct
+     * parent is the first item and the root organization unit is the last item.
+     *
+     * @param id the ID of the organization unit for which the parents should be returned.
+     * @return the parents of the organization unit (empty if the organization unit does not exist).
+     */
+    @Nonnull
+    List<OrganizationUnit> findMetadataParentsById( @Nonnull String id );
 }
@@ -29,19 +29,39 @@ package org.dhis2.fhir.adapter.dhis.orgunit.impl;
  */
 
 import org.dhis2.fhir.adapter.dhis.model.DhisResourceType;
+import org.dhis2.fhir.adapter.dhis.model.Reference;
+import org.dhis2.fhir.adapter.dhis.model.ReferenceType;
 import org.dhis2.fhir.adapter.dhis.orgunit.OrganizationUnit;
 import org.dhis2.fhir.adapter.dhis.orgunit.OrganizationUnitService;
 import org.dhis2.fhir.adapter.dhis.service.impl.AbstractDhisMetadataServiceImpl;
 import org.dhis2.fhir.adapter.dhis.service.impl.DhisMetadataItems;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
- * Implementation of {@link OrganizationUnitService}.
+ * Implementation of {@link OrganizationUnitService}. If enabled, lookups of organization
+ * unit metadata are answered by an in-memory snapshot of the organization unit hierarchy,
+ * which is refreshed periodically.
  *
  * @author volsch
  */
@@ -50,10 +70,25 @@ public class OrganizationUnitServiceImpl extends AbstractDhisMetadataServiceImpl
 {
     protected static final String FIELDS = "lastUpdated,id,code,name,shortName,displayName,level,openingDate,closedDate,coordinates,leaf,parent[id]";
 
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    private final RestTemplate systemRestTemplate;
+
+    private final OrganizationUnitSnapshotConfig snapshotConfig;
+
+    private final AtomicReference<OrganizationUnitSnapshot> snapshot = new AtomicReference<>();
+
+    private final ZoneId zoneId = ZoneId.systemDefault();
+
+    private volatile Instant lastFullRefresh;
+
     @Autowired
-    public OrganizationUnitServiceImpl( @Nonnull @Qualifier( "systemDhis2RestTemplate" ) RestTemplate systemRestTemplate, @Nonnull @Qualifier( "userDhis2RestTemplate" ) RestTemplate userRestTemplate )
+    public OrganizationUnitServiceImpl( @Nonnull @Qualifier( "systemDhis2RestTemplate" ) RestTemplate systemRestTemplate, @Nonnull @Qualifier( "userDhis2RestTemplate" ) RestTemplate userRestTemplate,
+        @Nonnull OrganizationUnitSnapshotConfig snapshotConfig )
     {
         super( systemRestTemplate, userRestTemplate );
+        this.systemRestTemplate = systemRestTemplate;
+        this.snapshotConfig = snapshotConfig;
     }
 
     @Nonnull
@@ -63,6 +98,131 @@ public class OrganizationUnitServiceImpl extends AbstractDhisMetadataServiceImpl
         return DhisResourceType.ORGANIZATION_UNIT;
     }
 
+    @Nonnull
+    @Override
+    public Optional<OrganizationUnit> findMetadataByReference( @Nonnull Reference reference )
+    {
+        final OrganizationUnitSnapshot currentSnapshot = getSnapshot();
+
+        if ( currentSnapshot != null )
+        {
+            final Optional<OrganizationUnit> organizationUnit = currentSnapshot.findByReference( reference );
+
+            // organization unit may have been created after the last refresh of the snapshot
+            if ( organizationUnit.isPresent() )
+            {
+                return organizationUnit;
+            }
+        }
+
+        return super.findMetadataByReference( reference );
+    }
+
+    @Nonnull
+    @Override
+    public List<OrganizationUnit> findMetadataParentsById( @Nonnull String id )
+    {
+        final OrganizationUnitSnapshot currentSnapshot = getSnapshot();
+
+        if ( currentSnapshot != null && currentSnapshot.findByReference( new Reference( id, ReferenceType.ID ) ).isPresent() )
+        {
+            return currentSnapshot.findParents( id );
+        }
+
+        final List<OrganizationUnit> parents = new ArrayList<>();
+        final Set<String> processedIds = new HashSet<>();
+        processedIds.add( id );
+
+        String parentId = findMetadataByReference( new Reference( id, ReferenceType.ID ) ).map( OrganizationUnit::getParentId ).orElse( null );
+
+        // there may be a dependency loop and search must be interrupted then
+        while ( parentId != null && processedIds.add( parentId ) )
+        {
+            final OrganizationUnit parent = findMetadataByReference( new Reference( parentId, ReferenceType.ID ) ).orElse( null );
+
+            if ( parent == null )
+            {
+                break;
+            }
+
+            parents.add( parent );
+            parentId = parent.getParentId();
+        }
+
+        return parents;
+    }
+
+    /**
+     * Refreshes the snapshot of the organization unit hierarchy. Only organization units
+     * that have been updated since the last refresh are loaded from DHIS2. All organization
+     * units are loaded at the first refresh and whenever the full refresh interval has elapsed,
+     * which also removes deleted organization units from the snapshot.
+     */
+    @Scheduled( fixedDelayString = "#{@organizationUnitSnapshotConfig.refreshMillis}" )
+    public void refreshSnapshot()
+    {
+        if ( !snapshotConfig.isEnabled() )
+        {
+            return;
+        }
+
+        final OrganizationUnitSnapshot currentSnapshot = snapshot.get();
+        final Instant now = Instant.now();
+
+        try
+        {
+            if ( currentSnapshot == null || currentSnapshot.getLastUpdated() == null || lastFullRefresh == null ||
+                lastFullRefresh.plusMillis( snapshotConfig.getFullRefreshMillis() ).isBefore( now ) )
+            {
+                final OrganizationUnitSnapshot newSnapshot = new OrganizationUnitSnapshot( loadOrganizationUnits( null ) );
+
+                snapshot.set( newSnapshot );
+                lastFullRefresh = now;
+                logger.info( "Loaded snapshot of {} organization units.", newSnapshot.size() );
+            }
+            else
+            {
+                // last updated timestamps have been set by DHIS2 and are not affected by a different local clock
+                final List<OrganizationUnit> updatedOrganizationUnits = loadOrganizationUnits(
+                    currentSnapshot.getLastUpdated().minus( snapshotConfig.getToleranceMillis(), ChronoUnit.MILLIS ) );
+
+                snapshot.set( currentSnapshot.update( updatedOrganizationUnits ) );
+                logger.debug( "Updated snapshot with {} organization units.", updatedOrganizationUnits.size() );
+            }
+        }
+        catch ( RuntimeException e )
+        {
+            logger.warn( "Could not refresh snapshot of organization units: {}", e.getMessage(), e );
+        }
+    }
+
+    @Nullable
+    protected OrganizationUnitSnapshot getSnapshot()
+    {
+        return snapshotConfig.isEnabled() ? snapshot.get() : null;
+    }
+
+    @Nonnull
+    protected List<OrganizationUnit> loadOrganizationUnits( @Nullable ZonedDateTime fromLastUpdated )
+    {
+        final String uri = "/" + getDhisResourceType().getTypeName() + ".json?paging=true&page={page}&pageSize={pageSize}&order=id&fields=" + FIELDS +
+            ( ( fromLastUpdated == null ) ? "" : "&filter=lastUpdated:ge:{lastUpdated}" );
+        final String lastUpdated = ( fromLastUpdated == null ) ? null :
+            DateTimeFormatter.ISO_LOCAL_DATE_TIME.format( fromLastUpdated.withZoneSameInstant( zoneId ).toLocalDateTime() );
+        final List<OrganizationUnit> organizationUnits = new ArrayList<>();
+        int page = 1;
+        DhisOrganizationUnits result;
+
+        do
+        {
+            result = Objects.requireNonNull( systemRestTemplate.getForEntity( uri, DhisOrganizationUnits.class, page++, snapshotConfig.getPageSize(), lastUpdated ).getBody() );
+            organizationUnits.addAll( result.getItems() );
+        }
+        while ( result.getPager() != null && result.getPager().getNextPage() != null && !result.getItems().isEmpty() );
+
+        return organizationUnits;
+    }
+
     @Nonnull
     @Override
     protected Class<? extends OrganizationUnit> getItemClass()
@@ -0,0 +1,258 @@
+package org.dhis2.fhir.adapter.dhis.orgunit.impl;
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.dhis2.fhir.adapter.dhis.model.Reference;
+import org.dhis2.fhir.adapter.dhis.orgunit.OrganizationUnit;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Immutable in-memory replica of the DHIS2 organization unit hierarchy. The hierarchy
+ * is stored in arrays that are indexed by the position of the organization unit. The
+ * organization units can be looked up by their ID, code and name without accessing
+ * DHIS2. Returned organization units are copies and may be modified by the caller.
+ *
+ * @author volsch
+ */
+public class OrganizationUnitSnapshot
+{
+    private static final int NO_INDEX = -1;
+
+    private final OrganizationUnit[] organizationUnits;
+
+    private final int[] parentIndexes;
+
+    private final int[] childOffsets;
+
+    private final int[] childIndexes;
+
+    private final Map<String, Integer> indexesById;
+
+    private final Map<String, Integer> indexesByCode;
+
+    private final Map<String, Integer> indexesByName;
+
+    private final ZonedDateTime lastUpdated;
+
+    public OrganizationUnitSnapshot( @Nonnull Collection<OrganizationUnit> organizationUnits )
+    {
+        final int size = organizationUnits.size();
+
+        // sorting by ID makes lookups by non-unique names deterministic
+        this.organizationUnits = organizationUnits.stream().sorted( Comparator.comparing( OrganizationUnit::getId ) ).toArray( OrganizationUnit[]::new );
+        this.parentIndexes = new int[size];
+        this.childOffsets = new int[size + 1];
+        this.childIndexes = new int[size];
+        this.indexesById = new HashMap<>( size * 4 / 3 + 1 );
+        this.indexesByCode = new HashMap<>( size * 4 / 3 + 1 );
+        this.indexesByName = new HashMap<>( size * 4 / 3 + 1 );
+
+        ZonedDateTime maxLastUpdated = null;
+
+        for ( int i = 0; i < size; i++ )
+        {
+            final OrganizationUnit organizationUnit = this.organizationUnits[i];
+
+            indexesById.put( organizationUnit.getId(), i );
+
+            if ( organizationUnit.getCode() != null )
+            {
+                indexesByCode.putIfAbsent( organizationUnit.getCode(), i );
+            }
+
+            if ( organizationUnit.getName() != null )
+            {
+                indexesByName.putIfAbsent( organizationUnit.getName(), i );
+            }
+
+            if ( organizationUnit.getLastUpdated() != null && ( maxLastUpdated == null || organizationUnit.getLastUpdated().isAfter( maxLastUpdated ) ) )
+            {
+                maxLastUpdated = organizationUnit.getLastUpdated();
+            }
+        }
+
+        this.lastUpdated = maxLastUpdated;
+
+        // children are stored consecutively per parent (offsets of parent i are childOffsets[i] to childOffsets[i + 1])
+        for ( int i = 0; i < size; i++ )
+        {
+            final String parentId = this.organizationUnits[i].getParentId();
+            final Integer parentIndex = ( parentId == null ) ? null : indexesById.get( parentId );
+
+            parentIndexes[i] = ( parentIndex == null ) ? NO_INDEX : parentIndex;
+
+            if ( parentIndexes[i] != NO_INDEX )
+            {
+                childOffsets[parentIndexes[i] + 1]++;
+            }
+        }
+
+        for ( int i = 0; i < size; i++ )
+        {
+            childOffsets[i + 1] += childOffsets[i];
+        }
+
+        final int[] childPositions = new int[size];
+
+        for ( int i = 0; i < size; i++ )
+        {
+            final int parentIndex = parentIndexes[i];
+
+            if ( parentIndex != NO_INDEX )
+            {
+                childIndexes[childOffsets[parentIndex] + childPositions[parentIndex]++] = i;
+            }
+        }
+    }
+
+    /**
+     * Creates a new snapshot that contains the organization units of this snapshot and the
+     * specified updated organization units, which replace the existing ones with the same ID.
+     *
+     * @param updatedOrganizationUnits the organization units that have been created or updated.
+     * @return the updated snapshot or this snapshot if no organization units have been specified.
+     */
+    @Nonnull
+    public OrganizationUnitSnapshot update( @Nonnull Collection<OrganizationUnit> updatedOrganizationUnits )
+    {
+        if ( updatedOrganizationUnits.isEmpty() )
+        {
+            return this;
+        }
+
+        final Map<String, OrganizationUnit> organizationUnitsById = new LinkedHashMap<>( ( organizationUnits.length + updatedOrganizationUnits.size() ) * 4 / 3 + 1 );
+
+        for ( final OrganizationUnit organizationUnit : organizationUnits )
+        {
+            organizationUnitsById.put( organizationUnit.getId(), organizationUnit );
+        }
+
+        updatedOrganizationUnits.forEach( ou -> organizationUnitsById.put( ou.getId(), ou ) );
+
+        return new OrganizationUnitSnapshot( organizationUnitsById.values() );
+    }
+
+    public int size()
+    {
+        return organizationUnits.length;
+    }
+
+    /**
+     * @return the most recent last updated timestamp of all contained organization units.
+     */
+    @Nullable
+    public ZonedDateTime getLastUpdated()
+    {
+        return lastUpdated;
+    }
+
+    @Nonnull
+    public Optional<OrganizationUnit> findByReference( @Nonnull Reference reference )
+    {
+        switch ( reference.getType() )
+        {
+            case CODE:
+                return getOrganizationUnit( indexesByCode.get( reference.getValue() ) );
+            case NAME:
+                return getOrganizationUnit( indexesByName.get( reference.getValue() ) );
+            case ID:
+                return getOrganizationUnit( indexesById.get( reference.getValue() ) );
+            default:
+                throw new AssertionError( "Unhandled reference type: " + reference.getType() );
+        }
+    }
+
+    /**
+     * Returns the parents of the organization unit with the specified ID. The direct
+     * parent is the first item and the root organization unit is the last item.
+     *
+     * @param id the ID of the organization unit for which the parents should be returned.
+     * @return the parents of the organization unit (empty if the organization unit is unknown).
+     */
+    @Nonnull
+    public List<OrganizationUnit> findParents( @Nonnull String id )
+    {
+        final Integer index = indexesById.get( id );
+
+        if ( index == null )
+        {
+            return Collections.emptyList();
+        }
+
+        final List<OrganizationUnit> parents = new ArrayList<>();
+        int parentIndex = parentIndexes[index];
+
+        // the number of iterations is limited in case there is a dependency loop
+        while ( parentIndex != NO_INDEX && parentIndex != index && parents.size() < organizationUnits.length )
+        {
+            parents.add( organizationUnits[parentIndex].deepCopy() );
+            parentIndex = parentIndexes[parentIndex];
+        }
+
+        return parents;
+    }
+
+    @Nonnull
+    public List<OrganizationUnit> findChildren( @Nonnull String id )
+    {
+        final Integer index = indexesById.get( id );
+
+        if ( index == null )
+        {
+            return Collections.emptyList();
+        }
+
+        final List<OrganizationUnit> children = new ArrayList<>( childOffsets[index + 1] - childOffsets[index] );
+
+        for ( int i = childOffsets[index]; i < childOffsets[index + 1]; i++ )
+        {
+            children.add( organizationUnits[childIndexes[i]].deepCopy() );
+        }
+
+        return children;
+    }
+
+    @Nonnull
+    private Optional<OrganizationUnit> getOrganizationUnit( @Nullable Integer index )
+    {
+        return ( index == null ) ? Optional.empty() : Optional.of( organizationUnits[index].deepCopy() );
+    }
+}
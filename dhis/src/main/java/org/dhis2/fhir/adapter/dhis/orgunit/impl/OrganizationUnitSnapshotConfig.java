@@ -0,0 +1,115 @@
+package org.dhis2.fhir.adapter.dhis.orgunit.impl;
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.Min;
+import java.io.Serializable;
+
+/**
+ * Configuration of the in-memory snapshot of the DHIS2 organization unit hierarchy.
+ *
+ * @author volsch
+ */
+@Configuration
+@Component
+@ConfigurationProperties( "dhis2.fhir-adapter.organization-unit-snapshot" )
+@Validated
+public class OrganizationUnitSnapshotConfig implements Serializable
+{
+    private static final long serialVersionUID = -2404983367104567208L;
+
+    private boolean enabled;
+
+    @Min( 1_000 )
+    private int refreshMillis = 60_000;
+
+    @Min( 60_000 )
+    private int fullRefreshMillis = 24 * 60 * 60 * 1_000;
+
+    @Min( 0 )
+    private int toleranceMillis = 5_000;
+
+    @Min( 10 )
+    private int pageSize = 5_000;
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    public void setEnabled( boolean enabled )
+    {
+        this.enabled = enabled;
+    }
+
+    public int getRefreshMillis()
+    {
+        return refreshMillis;
+    }
+
+    public void setRefreshMillis( int refreshMillis )
+    {
+        this.refreshMillis = refreshMillis;
+    }
+
+    public int getFullRefreshMillis()
+    {
+        return fullRefreshMillis;
+    }
+
+    public void setFullRefreshMillis( int fullRefreshMillis )
+    {
+        this.fullRefreshMillis = fullRefreshMillis;
+    }
+
+    public int getToleranceMillis()
+    {
+        return toleranceMillis;
+    }
+
+    public void setToleranceMillis( int toleranceMillis )
+    {
+        this.toleranceMillis = toleranceMillis;
+    }
+
+    public int getPageSize()
+    {
+        return pageSize;
+    }
+
+    public void setPageSize( int pageSize )
+    {
+        this.pageSize = pageSize;
+    }
+}
@@ -30,6 +30,7 @@ package org.dhis2.fhir.adapter.dhis.poll;
 
 import com.google.common.collect.Lists;
 import org.dhis2.fhir.adapter.data.model.ProcessedItemInfo;
+import org.dhis2.fhir.adapter.data.processor.ChunkedItemConsumer;
 import org.dhis2.fhir.adapter.dhis.model.DhisResourceId;
 import org.dhis2.fhir.adapter.dhis.model.DhisResourceType;
 import org.slf4j.Logger;
@@ -55,7 +56,11 @@ import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
- * Polled item retriever that polls created or updated data from DHIS2.
+ * Polled item retriever that polls created or updated data from DHIS2. By default
+ * items are polled backwards in time windows of last updated timestamps and are
+ * passed to the consumer after all items have been polled. In streaming mode the
+ * items are polled forward in ascending order of the last updated timestamps and
+ * are passed to the consumer after each polled window.
  *
  * @param <P> the concrete type of the polled items.
  * @param <I> the concrete type of the polled item.
@@ -131,8 +136,7 @@ public abstract class AbstractPolledItemRetriever<P extends PolledItems<I>, I ex
             final P polledItems = getPolledItems( fromLastUpdated, currentToLastUpdated, variables );
             final List<ProcessedItemInfo> resources =
                 polledItems.getItems().stream().filter( pi -> !excludedStoredBy.contains( pi.getStoredBy() ) )
-                    .map( pi -> new ProcessedItemInfo( DhisResourceId.toString( resourceType, pi.getId() ), pi.getLastUpdated().atZone( zoneId ).toInstant(), pi.isDeleted() ) )
-                    .collect( Collectors.toList() );
+                    .map( this::createProcessedItemInfo ).collect( Collectors.toList() );
             resources.forEach( r -> {
                 if ( allResources.add( r ) )
                 {
@@ -168,6 +172,78 @@ public abstract class AbstractPolledItemRetriever<P extends PolledItems<I>, I ex
         return processedLastUpdated;
     }
 
+    /**
+     * Polls the items forward in ascending order of their last updated timestamps.
+     * The polled items are passed to the consumer after each polled window. After
+     * each window the checkpoint consumer receives the last updated timestamp up
+     * to which all items have been passed to the consumer.
+     *
+     * @param lastUpdated        the last updated timestamp from which on items should be polled.
+     * @param excludedStoredBy   the users that stored items that should not be polled.
+     * @param consumer           the consumer of chunks of polled items.
+     * @param checkpointConsumer the consumer of the last updated timestamps up to which
+     *                           all items have been consumed.
+     * @param variables          the variables of the query URI.
+     * @return the last updated timestamp that should be used for the next poll.
+     */
+    @Nonnull
+    public Instant pollStreaming( @Nonnull final Instant lastUpdated, @Nonnull final Set<String> excludedStoredBy, @Nonnull Consumer<Collection<ProcessedItemInfo>> consumer,
+        @Nonnull Consumer<Instant> checkpointConsumer, @Nullable List<Object> variables )
+    {
+        // last updated must be set before the first search invocation
+        final Instant processedLastUpdated = Instant.now();
+        // the window must at least contain the items of the current and the previous page
+        final ChunkedItemConsumer chunkedConsumer = new ChunkedItemConsumer( consumer, maxConsumedSize, Math.max( maxConsumedSize, maxSearchCount ) * 2 );
+
+        Instant fromLastUpdated = lastUpdated.minus( toleranceMillis, ChronoUnit.MILLIS );
+        Instant checkpoint = lastUpdated;
+        int page = 1;
+        boolean moreAvailable;
+        do
+        {
+            logger.debug( "Streaming next from {} with page {} and maximum count {}.", fromLastUpdated, page, maxSearchCount );
+            final P polledItems = getPolledItems( fromLastUpdated, null, page, true, variables );
+            final LocalDateTime localFromLastUpdated = fromLastUpdated.atZone( zoneId ).toLocalDateTime();
+            polledItems.getItems().stream().filter( pi -> !excludedStoredBy.contains( pi.getStoredBy() ) && !localFromLastUpdated.isAfter( pi.getLastUpdated() ) )
+                .map( this::createProcessedItemInfo ).forEach( chunkedConsumer::add );
+            chunkedConsumer.flush();
+
+            moreAvailable = (polledItems.getItems().size() >= maxSearchCount);
+            if ( moreAvailable )
+            {
+                final Instant maxLastUpdated = Objects.requireNonNull( polledItems.getToLastUpdated() ).atZone( zoneId ).toInstant();
+                if ( maxLastUpdated.isAfter( fromLastUpdated ) )
+                {
+                    // all items before the maximum last updated timestamp have been consumed since the result is sorted
+                    fromLastUpdated = maxLastUpdated;
+                    page = 1;
+
+                    final Instant nextCheckpoint = maxLastUpdated.isAfter( processedLastUpdated ) ? processedLastUpdated : maxLastUpdated;
+                    if ( nextCheckpoint.isAfter( checkpoint ) )
+                    {
+                        checkpoint = nextCheckpoint;
+                        checkpointConsumer.accept( checkpoint );
+                    }
+                }
+                else
+                {
+                    // all items of the page have the same last updated timestamp and paging must be used
+                    page++;
+                }
+            }
+        }
+        while ( moreAvailable );
+
+        logger.debug( "Streamed {} items of DHIS2 resource {}.", chunkedConsumer.getCount(), resourceType );
+        return processedLastUpdated;
+    }
+
+    @Nonnull
+    private ProcessedItemInfo createProcessedItemInfo( @Nonnull PolledItem polledItem )
+    {
+        return new ProcessedItemInfo( DhisResourceId.toString( resourceType, polledItem.getId() ), polledItem.getLastUpdated().atZone( zoneId ).toInstant(), polledItem.isDeleted() );
+    }
+
     private boolean hasMorePolledItems( @Nonnull Instant fromLastUpdated, @Nullable Instant currentToLastUpdated, @Nullable List<Object> variables )
     {
         return !getPolledItems( fromLastUpdated, currentToLastUpdated, 2, variables ).getItems().isEmpty();
@@ -181,6 +257,12 @@ public abstract class AbstractPolledItemRetriever<P extends PolledItems<I>, I ex
 
     @Nonnull
     protected P getPolledItems( @Nonnull Instant fromLastUpdated, @Nullable Instant currentToLastUpdated, int page, @Nullable List<Object> variables )
+    {
+        return getPolledItems( fromLastUpdated, currentToLastUpdated, page, false, variables );
+    }
+
+    @Nonnull
+    private P getPolledItems( @Nonnull Instant fromLastUpdated, @Nullable Instant currentToLastUpdated, int page, boolean ascending, @Nullable List<Object> variables )
     {
         final StringBuilder queryParams = new StringBuilder();
         final List<Object> queryVariables = new ArrayList<>();
@@ -207,6 +289,10 @@ public abstract class AbstractPolledItemRetriever<P extends PolledItems<I>, I ex
         queryVariables.add( maxSearchCount );
         queryParams.append( "&page={page}" );
         queryVariables.add( page );
+        if ( ascending )
+        {
+            queryParams.append( "&order=lastUpdated:asc" );
+        }
 
         final ResponseEntity<P> entity = restTemplate.getForEntity( queryUri + queryParams, polledItemsClass, queryVariables.toArray() );
         final P response = Objects.requireNonNull( entity.getBody() );
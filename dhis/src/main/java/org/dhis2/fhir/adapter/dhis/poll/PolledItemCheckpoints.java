@@ -0,0 +1,66 @@
+package org.dhis2.fhir.adapter.dhis.poll;
+
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import javax.annotation.Nonnull;
+import java.time.Instant;
+
+/**
+ * Provides access to the last updated timestamps up to which polled items have
+ * already been processed. This allows to continue polling at this timestamp if
+ * a previous poll has been aborted. The timestamps are stored by a key that
+ * identifies a resource type or a subset of a resource type that is polled
+ * independently.
+ *
+ * @author volsch
+ */
+public interface PolledItemCheckpoints
+{
+    /**
+     * Returns the last updated timestamp from which on items of the specified key
+     * must be polled.
+     *
+     * @param key                the key of the polled items.
+     * @param defaultLastUpdated the last updated timestamp of the complete poll.
+     * @return the last updated timestamp from which on items must be polled, which
+     * is never before the specified default timestamp.
+     */
+    @Nonnull
+    Instant getLastUpdated( @Nonnull String key, @Nonnull Instant defaultLastUpdated );
+
+    /**
+     * Stores the last updated timestamp up to which all items of the specified key
+     * have been processed.
+     *
+     * @param key         the key of the polled items.
+     * @param lastUpdated the last updated timestamp up to which all items have been processed.
+     */
+    void update( @Nonnull String key, @Nonnull Instant lastUpdated );
+}
@@ -0,0 +1,226 @@
+package org.dhis2.fhir.adapter.dhis.security;
+
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches successful authentications on DHIS2 for a short time. The authorization
+ * header values are not kept. The cache is keyed by a salted hash of the authorization
+ * header value (which includes the username and the credentials). The salt is generated
+ * randomly when the cache is created. If the user details of an authentication have
+ * been resolved, they are cached as well. Cached authentications can be revoked
+ * explicitly.
+ *
+ * @author volsch
+ */
+@Component
+public class DhisAuthenticationCache
+{
+    private static final String HASH_ALGORITHM = "SHA-256";
+
+    private static final String BASIC_AUTH_PREFIX = "Basic ";
+
+    private static final int SALT_LENGTH = 16;
+
+    private final byte[] salt = new byte[SALT_LENGTH];
+
+    private final Cache<String, CachedAuthentication> authentications;
+
+    public DhisAuthenticationCache( @Nonnull DhisAuthenticationCacheConfig config )
+    {
+        new SecureRandom().nextBytes( salt );
+        authentications = config.isEnabled() ? Caffeine.newBuilder()
+            .expireAfterWrite( config.getTimeToLive().toMillis(), TimeUnit.MILLISECONDS )
+            .maximumSize( config.getMaxSize() ).build() : null;
+    }
+
+    /**
+     * @param authorization the authorization header value.
+     * @return <code>true</code> if the authorization has been authenticated
+     * successfully on DHIS2 recently, <code>false</code> otherwise.
+     */
+    public boolean isAuthenticated( @Nullable String authorization )
+    {
+        if ( (authentications == null) || (authorization == null) )
+        {
+            return false;
+        }
+        return authentications.getIfPresent( createKey( authorization ) ) != null;
+    }
+
+    /**
+     * @param authorization the authorization header value.
+     * @return the user details of the specified authorization if the authorization
+     * has been authenticated successfully on DHIS2 recently and the user details have
+     * been resolved, <code>null</code> otherwise.
+     */
+    @Nullable
+    public AdapterUser getAuthenticatedUser( @Nullable String authorization )
+    {
+        if ( (authentications == null) || (authorization == null) )
+        {
+            return null;
+        }
+        final CachedAuthentication authentication = authentications.getIfPresent( createKey( authorization ) );
+        return (authentication == null) ? null : authentication.user;
+    }
+
+    /**
+     * Stores that the specified authorization has been authenticated successfully
+     * on DHIS2. Already cached user details of the authorization are kept.
+     *
+     * @param authorization the authorization header value.
+     */
+    public void authenticated( @Nonnull String authorization )
+    {
+        if ( authentications != null )
+        {
+            authentications.asMap().putIfAbsent( createKey( authorization ),
+                new CachedAuthentication( getBasicAuthUsername( authorization ), null ) );
+        }
+    }
+
+    /**
+     * Stores that the specified authorization has been authenticated successfully
+     * on DHIS2 and that it resolves to the specified user details.
+     *
+     * @param authorization the authorization header value.
+     * @param user          the user details that have been resolved for the authorization.
+     */
+    public void authenticated( @Nonnull String authorization, @Nonnull AdapterUser user )
+    {
+        if ( authentications != null )
+        {
+            authentications.put( createKey( authorization ), new CachedAuthentication( user.getUsername(), user ) );
+        }
+    }
+
+    /**
+     * Revokes the cached authentication of the specified authorization. The next
+     * request with this authorization will be authenticated by DHIS2 again.
+     *
+     * @param authorization the authorization header value.
+     */
+    public void revokeAuthorization( @Nullable String authorization )
+    {
+        if ( (authentications != null) && (authorization != null) )
+        {
+            authentications.invalidate( createKey( authorization ) );
+        }
+    }
+
+    /**
+     * Revokes all cached authentications of the specified username (e.g. after the
+     * credentials or authorities of the user have been changed).
+     *
+     * @param username the username of which all authentications should be revoked.
+     */
+    public void revoke( @Nonnull String username )
+    {
+        if ( authentications != null )
+        {
+            authentications.asMap().values().removeIf( a -> username.equals( a.username ) );
+        }
+    }
+
+    /**
+     * Revokes all cached authentications.
+     */
+    public void revokeAll()
+    {
+        if ( authentications != null )
+        {
+            authentications.invalidateAll();
+        }
+    }
+
+    @Nonnull
+    protected String createKey( @Nonnull String authorization )
+    {
+        final MessageDigest messageDigest;
+        try
+        {
+            messageDigest = MessageDigest.getInstance( HASH_ALGORITHM );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IllegalStateException( "Hash algorithm " + HASH_ALGORITHM + " is not supported.", e );
+        }
+        messageDigest.update( salt );
+        return Base64.getEncoder().encodeToString( messageDigest.digest( authorization.getBytes( StandardCharsets.UTF_8 ) ) );
+    }
+
+    @Nullable
+    protected static String getBasicAuthUsername( @Nonnull String authorization )
+    {
+        if ( !authorization.regionMatches( true, 0, BASIC_AUTH_PREFIX, 0, BASIC_AUTH_PREFIX.length() ) )
+        {
+            return null;
+        }
+
+        final String decoded;
+        try
+        {
+            decoded = new String( Base64.getDecoder().decode( authorization.substring( BASIC_AUTH_PREFIX.length() ).trim() ), StandardCharsets.UTF_8 );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            return null;
+        }
+
+        final int index = decoded.indexOf( ':' );
+        return (index < 0) ? null : decoded.substring( 0, index );
+    }
+
+    private static final class CachedAuthentication
+    {
+        private final String username;
+
+        private final AdapterUser user;
+
+        private CachedAuthentication( @Nullable String username, @Nullable AdapterUser user )
+        {
+            this.username = username;
+            this.user = user;
+        }
+    }
+}
@@ -58,7 +58,9 @@ import java.util.Set;
 
 /**
  * Authentication provider that authenticates the user by establishing a connection
- * to DHIS2.
+ * to DHIS2. Successful authentications and the resolved user details are cached for
+ * a short time so that repeated requests with the same credentials do not require
+ * any request to DHIS2.
  *
  * @author volsch
  */
@@ -68,20 +70,32 @@ public class DhisWebApiAuthenticationProvider extends AbstractUserDetailsAuthent
 
     protected static final String AUTHORIZATION_URL = "/me/authorization.json";
 
-    private final RestTemplateBuilder restTemplateBuilder;
+    private final ThreadLocal<String> currentAuthorizationHeaderValue = new ThreadLocal<>();
+
+    private final RestTemplate restTemplate;
 
     private final SecurityConfig securityConfig;
 
-    private final RestTemplateCookieStore cookieStore;
+    private final DhisAuthenticationCache authenticationCache;
 
     public DhisWebApiAuthenticationProvider( @Nonnull RestTemplateBuilder restTemplateBuilder, @Nonnull DhisEndpointConfig endpointConfig, @Nonnull SecurityConfig securityConfig,
-        @Nonnull @Qualifier( "dhisClientHttpRequestFactory" ) ClientHttpRequestFactory clientHttpRequestFactory, @Nonnull @Qualifier( "dhisCookieStore" ) RestTemplateCookieStore cookieStore )
+        @Nonnull @Qualifier( "dhisClientHttpRequestFactory" ) ClientHttpRequestFactory clientHttpRequestFactory, @Nonnull @Qualifier( "dhisCookieStore" ) RestTemplateCookieStore cookieStore,
+        @Nonnull DhisAuthenticationCache authenticationCache )
     {
-        this.restTemplateBuilder = restTemplateBuilder.requestFactory( () -> clientHttpRequestFactory )
+        this.restTemplate = restTemplateBuilder.requestFactory( () -> clientHttpRequestFactory )
             .rootUri( DhisConfig.getRootUri( endpointConfig, true ) )
-            .setConnectTimeout( endpointConfig.getConnectTimeout() ).setReadTimeout( endpointConfig.getReadTimeout() );
+            .setConnectTimeout( endpointConfig.getConnectTimeout() ).setReadTimeout( endpointConfig.getReadTimeout() )
+            .configure( new AbstractSessionCookieRestTemplate( cookieStore )
+            {
+                @Nonnull
+                @Override
+                protected String getAuthorizationHeaderValue()
+                {
+                    return Objects.requireNonNull( currentAuthorizationHeaderValue.get() );
+                }
+            } );
         this.securityConfig = securityConfig;
-        this.cookieStore = cookieStore;
+        this.authenticationCache = authenticationCache;
     }
 
     @Override
@@ -93,17 +107,16 @@ public class DhisWebApiAuthenticationProvider extends AbstractUserDetailsAuthent
     @Override
     protected UserDetails retrieveUser( String username, UsernamePasswordAuthenticationToken authentication ) throws AuthenticationException
     {
-        final RestTemplate restTemplate = restTemplateBuilder.configure( new AbstractSessionCookieRestTemplate( cookieStore )
+        final String authorizationHeaderValue = DhisConfig.createBasicAuthHeaderValue( username, String.valueOf( authentication.getCredentials() ) );
+        final AdapterUser cachedUser = authenticationCache.getAuthenticatedUser( authorizationHeaderValue );
+        if ( cachedUser != null )
         {
-            @Nonnull
-            @Override
-            protected String getAuthorizationHeaderValue()
-            {
-                return DhisConfig.createBasicAuthHeaderValue( username, String.valueOf( authentication.getCredentials() ) );
-            }
-        } );
+            return cachedUser;
+        }
+
         final ResponseEntity<DhisWebApiMe> meResponse;
         ResponseEntity<List<String>> authorizationResponse = null;
+        currentAuthorizationHeaderValue.set( authorizationHeaderValue );
         try
         {
             meResponse = restTemplate.getForEntity( ME_URL, DhisWebApiMe.class );
@@ -126,6 +139,10 @@ public class DhisWebApiAuthenticationProvider extends AbstractUserDetailsAuthent
         {
             throw new AuthenticationServiceException( "An error has occurred when authenticating the user.", e );
         }
+        finally
+        {
+            currentAuthorizationHeaderValue.remove();
+        }
 
         final Set<String> dhisAuthorities;
         if ( authorizationResponse == null )
@@ -137,6 +154,10 @@ public class DhisWebApiAuthenticationProvider extends AbstractUserDetailsAuthent
             dhisAuthorities = new HashSet<>( Objects.requireNonNull( authorizationResponse.getBody() ) );
         }
         final Set<GrantedAuthority> grantedAuthorities = securityConfig.createGrantedAuthorities( dhisAuthorities );
-        return new AdapterUser( Objects.requireNonNull( meResponse.getBody() ).getId(), username, grantedAuthorities );
+        final AdapterUser user = new AdapterUser( Objects.requireNonNull( meResponse.getBody() ).getId(), username, grantedAuthorities );
+        // subsequent requests and other components that authenticate on DHIS2 need not repeat the authentication
+        authenticationCache.authenticated( authorizationHeaderValue, user );
+
+        return user;
     }
 }
@@ -31,6 +31,7 @@ package org.dhis2.fhir.adapter.dhis.service;
 import org.dhis2.fhir.adapter.data.model.ProcessedItemInfo;
 import org.dhis2.fhir.adapter.dhis.metadata.model.DhisSyncGroup;
 import org.dhis2.fhir.adapter.dhis.model.DhisResource;
+import org.dhis2.fhir.adapter.dhis.poll.PolledItemCheckpoints;
 
 import javax.annotation.Nonnull;
 import java.time.Instant;
@@ -49,4 +50,17 @@ public interface DhisPolledService<T extends DhisResource> extends DhisService<T
     @Nonnull
     Instant poll( @Nonnull DhisSyncGroup group, @Nonnull Instant lastUpdated, int toleranceMillis,
         int maxSearchCount, @Nonnull Set<String> excludedStoredBy, @Nonnull Consumer<Collection<ProcessedItemInfo>> consumer );
+
+    /**
+     * Polls the data in streaming mode. Polled items are passed to the consumer while
+     * polling is still in progress and the checkpoints are updated with the last
+     * updated timestamps up to which all items have been passed to the consumer.
+     * A service that does not support streaming polls all items at once.
+     */
+    @Nonnull
+    default Instant pollStreaming( @Nonnull DhisSyncGroup group, @Nonnull Instant lastUpdated, int toleranceMillis,
+        int maxSearchCount, @Nonnull Set<String> excludedStoredBy, @Nonnull Consumer<Collection<ProcessedItemInfo>> consumer, @Nonnull PolledItemCheckpoints checkpoints )
+    {
+        return poll( group, lastUpdated, toleranceMillis, maxSearchCount, excludedStoredBy, consumer );
+    }
 }
@@ -40,6 +40,7 @@ import org.dhis2.fhir.adapter.dhis.model.DhisResourceType;
 import org.dhis2.fhir.adapter.dhis.model.Reference;
 import org.dhis2.fhir.adapter.dhis.model.UriFilterApplier;
 import org.dhis2.fhir.adapter.dhis.orgunit.OrganizationUnitService;
+import org.dhis2.fhir.adapter.dhis.poll.PolledItemCheckpoints;
 import org.dhis2.fhir.adapter.dhis.service.DhisMetadataService;
 import org.dhis2.fhir.adapter.dhis.util.DhisPagingQuery;
 import org.dhis2.fhir.adapter.dhis.util.DhisPagingUtils;
@@ -204,4 +205,19 @@ public abstract class AbstractDhisMetadataServiceImpl<T extends DhisResource & D
 
         return eventPolledItemRetriever.poll( lastUpdated, excludedStoredBy, consumer, null );
     }
+
+    @Nonnull
+    @Override
+    public Instant pollStreaming( @Nonnull DhisSyncGroup group, @Nonnull Instant lastUpdated, int toleranceMillis, int maxSearchCount, @Nonnull Set<String> excludedStoredBy,
+        @Nonnull Consumer<Collection<ProcessedItemInfo>> consumer, @Nonnull PolledItemCheckpoints checkpoints )
+    {
+        final String key = getDhisResourceType().name();
+        final DhisMetadataPolledItemRetriever polledItemRetriever = new DhisMetadataPolledItemRetriever( getDhisResourceType(), systemRestTemplate,
+            toleranceMillis, maxSearchCount, zoneId );
+
+        final Instant result = polledItemRetriever.pollStreaming( checkpoints.getLastUpdated( key, lastUpdated ), excludedStoredBy, consumer,
+            checkpoint -> checkpoints.update( key, checkpoint ), null );
+        checkpoints.update( key, result );
+        return result;
+    }
 }
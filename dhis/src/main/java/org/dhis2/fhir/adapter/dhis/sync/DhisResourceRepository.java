@@ -32,6 +32,7 @@ import org.dhis2.fhir.adapter.dhis.model.DhisResource;
 import org.dhis2.fhir.adapter.dhis.model.DhisResourceId;
 
 import javax.annotation.Nonnull;
+import java.util.Collection;
 import java.util.Optional;
 
 /**
@@ -44,6 +45,16 @@ public interface DhisResourceRepository
     @Nonnull
     Optional<? extends DhisResource> findRefreshed( @Nonnull DhisResourceId dhisResourceId );
 
+    /**
+     * Reads the specified DHIS2 resources with as few requests as possible and
+     * keeps them for a short time. A subsequent call of {@link #findRefreshed(DhisResourceId)}
+     * returns a kept resource once. Resource types that cannot be read in bulk
+     * are ignored.
+     *
+     * @param dhisResourceIds the IDs of the resources that should be prefetched.
+     */
+    void prefetch( @Nonnull Collection<DhisResourceId> dhisResourceIds );
+
     @Nonnull
     Optional<? extends DhisResource> findRefreshedDeleted( @Nonnull DhisResourceId dhisResourceId );
 
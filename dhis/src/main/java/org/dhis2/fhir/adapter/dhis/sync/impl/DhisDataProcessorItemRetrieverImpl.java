@@ -36,8 +36,10 @@ import org.dhis2.fhir.adapter.data.model.ProcessedItemInfo;
 import org.dhis2.fhir.adapter.data.processor.DataProcessorItemRetriever;
 import org.dhis2.fhir.adapter.dhis.config.DhisConfig;
 import org.dhis2.fhir.adapter.dhis.metadata.model.DhisSyncGroup;
+import org.dhis2.fhir.adapter.dhis.metadata.repository.DhisSyncGroupUpdateRepository;
 import org.dhis2.fhir.adapter.dhis.model.DhisResource;
 import org.dhis2.fhir.adapter.dhis.model.DhisResourceType;
+import org.dhis2.fhir.adapter.dhis.poll.PolledItemCheckpoints;
 import org.dhis2.fhir.adapter.dhis.service.DhisPolledService;
 import org.dhis2.fhir.adapter.dhis.service.DhisService;
 import org.dhis2.fhir.adapter.dhis.sync.SyncExcludedDhisUsernameRetriever;
@@ -58,7 +60,12 @@ import java.util.stream.Stream;
 
 /**
  * The item retriever that polls DHIS2 resources. All relevant resources are
- * processed during a poll.
+ * processed during a poll. In streaming mode the last updated timestamps up to
+ * which the resources have been processed are stored per resource type. These
+ * timestamps are based on the last updated timestamp of the group and are
+ * discarded when the latter changes. Since the resource types are polled one
+ * after the other, the checkpoint of the group can only be reached when all
+ * resource types have been polled.
  *
  * @author volsch
  */
@@ -75,19 +82,23 @@ public class DhisDataProcessorItemRetrieverImpl implements DataProcessorItemRetr
 
     private final DhisSyncProcessorConfig processorConfig;
 
+    private final DhisSyncGroupUpdateRepository syncGroupUpdateRepository;
+
     public DhisDataProcessorItemRetrieverImpl(
         @Nonnull AuthorizationContext authorizationContext,
         @Nonnull @Qualifier( "systemDhis2Authorization" ) Authorization systemDhis2Authorization,
         @Nonnull SyncExcludedDhisUsernameRetriever excludedDhisUsernameRetriever,
         @Nonnull List<DhisPolledService<? extends DhisResource>> polledServices,
         @Nonnull DhisSyncProcessorConfig processorConfig,
-        @Nonnull DhisConfig config )
+        @Nonnull DhisConfig config,
+        @Nonnull DhisSyncGroupUpdateRepository syncGroupUpdateRepository )
     {
         this.authorizationContext = authorizationContext;
         this.systemDhis2Authorization = systemDhis2Authorization;
         this.excludedDhisUsernameRetriever = excludedDhisUsernameRetriever;
         this.polledServices = polledServices.stream().collect( Collectors.toMap( DhisService::getDhisResourceType, ps -> ps ) );
         this.processorConfig = processorConfig;
+        this.syncGroupUpdateRepository = syncGroupUpdateRepository;
     }
 
     @Nonnull
@@ -117,4 +128,63 @@ public class DhisDataProcessorItemRetrieverImpl implements DataProcessorItemRetr
             authorizationContext.resetAuthorization();
         }
     }
+
+    @Nonnull
+    @Override
+    public Instant pollStreaming( @Nonnull DhisSyncGroup group, @Nonnull Instant lastUpdated, int maxSearchCount, @Nonnull Consumer<Collection<ProcessedItemInfo>> consumer, @Nonnull Consumer<Instant> checkpointConsumer )
+    {
+        final int toleranceMillis = processorConfig.getToleranceMillis();
+        final Set<DhisResourceType> resourceTypes = processorConfig.getResourceTypes();
+        final PolledItemCheckpoints checkpoints = new SyncGroupPolledItemCheckpoints( group, lastUpdated );
+
+        authorizationContext.setAuthorization( systemDhis2Authorization );
+        try
+        {
+            final Set<String> excludedDhisUsernames = excludedDhisUsernameRetriever.findAllDhisUsernames();
+            final AtomicReference<Instant> result = new AtomicReference<>( Instant.now() );
+
+            Stream.of( DhisResourceType.values() ).filter( resourceTypes::contains ).map( polledServices::get ).filter( Objects::nonNull )
+                .forEach( polledService -> {
+                    final Instant currentResult = polledService.pollStreaming( group, lastUpdated, toleranceMillis, maxSearchCount,
+                        excludedDhisUsernames, consumer, checkpoints );
+                    result.set( ObjectUtils.min( result.get(), currentResult ) );
+                } );
+
+            checkpointConsumer.accept( result.get() );
+            return result.get();
+        }
+        finally
+        {
+            authorizationContext.resetAuthorization();
+        }
+    }
+
+    private class SyncGroupPolledItemCheckpoints implements PolledItemCheckpoints
+    {
+        private final DhisSyncGroup group;
+
+        private final Instant baseLastUpdated;
+
+        private final Map<String, Instant> resourceLastUpdated;
+
+        public SyncGroupPolledItemCheckpoints( @Nonnull DhisSyncGroup group, @Nonnull Instant baseLastUpdated )
+        {
+            this.group = group;
+            this.baseLastUpdated = baseLastUpdated;
+            this.resourceLastUpdated = syncGroupUpdateRepository.getResourceLastUpdated( group, baseLastUpdated );
+        }
+
+        @Nonnull
+        @Override
+        public Instant getLastUpdated( @Nonnull String key, @Nonnull Instant defaultLastUpdated )
+        {
+            return ObjectUtils.max( defaultLastUpdated, resourceLastUpdated.get( key ) );
+        }
+
+        @Override
+        public void update( @Nonnull String key, @Nonnull Instant lastUpdated )
+        {
+            syncGroupUpdateRepository.updateResourceLastUpdated( group, baseLastUpdated, key, lastUpdated );
+        }
+    }
 }
@@ -28,10 +28,14 @@ package org.dhis2.fhir.adapter.dhis.sync.impl;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.collect.Lists;
 import org.dhis2.fhir.adapter.dhis.aggregate.DataValueSet;
 import org.dhis2.fhir.adapter.dhis.aggregate.DataValueSetService;
 import org.dhis2.fhir.adapter.dhis.model.DhisResource;
 import org.dhis2.fhir.adapter.dhis.model.DhisResourceId;
+import org.dhis2.fhir.adapter.dhis.model.DhisResourceType;
 import org.dhis2.fhir.adapter.dhis.model.Reference;
 import org.dhis2.fhir.adapter.dhis.model.ReferenceType;
 import org.dhis2.fhir.adapter.dhis.orgunit.OrganizationUnitService;
@@ -49,9 +53,16 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Implementation of {@link DhisResourceRepository}.
@@ -79,9 +90,14 @@ public class DhisResourceRepositoryImpl implements DhisResourceRepository
 
     private final DataValueSetService dataValueSetService;
 
+    private final int prefetchPageSize;
+
+    private final Cache<DhisResourceId, DhisResource> prefetchedResources;
+
     public DhisResourceRepositoryImpl( @Nonnull OrganizationUnitService organizationUnitService, ProgramMetadataService programMetadataService,
         @Nonnull ProgramStageMetadataService programStageMetadataService, @Nonnull TrackedEntityService trackedEntityService,
-        @Nonnull EnrollmentService enrollmentService, @Nonnull EventService eventService, @Nonnull DataValueSetService dataValueSetService )
+        @Nonnull EnrollmentService enrollmentService, @Nonnull EventService eventService, @Nonnull DataValueSetService dataValueSetService,
+        @Nonnull DhisSyncProcessorConfig processorConfig )
     {
         this.organizationUnitService = organizationUnitService;
         this.programMetadataService = programMetadataService;
@@ -90,12 +106,70 @@ public class DhisResourceRepositoryImpl implements DhisResourceRepository
         this.enrollmentService = enrollmentService;
         this.eventService = eventService;
         this.dataValueSetService = dataValueSetService;
+        this.prefetchPageSize = processorConfig.getPrefetchPageSize();
+        this.prefetchedResources = Caffeine.newBuilder()
+            .expireAfterWrite( processorConfig.getPrefetchTimeToLiveMillis(), TimeUnit.MILLISECONDS )
+            .maximumSize( processorConfig.getPrefetchMaxSize() ).build();
+    }
+
+    @Override
+    public void prefetch( @Nonnull Collection<DhisResourceId> dhisResourceIds )
+    {
+        if ( prefetchPageSize <= 0 )
+        {
+            return;
+        }
+
+        final Map<DhisResourceType, List<String>> ids = dhisResourceIds.stream().distinct().collect( Collectors.groupingBy(
+            DhisResourceId::getType, () -> new EnumMap<>( DhisResourceType.class ), Collectors.mapping( DhisResourceId::getId, Collectors.toList() ) ) );
+        ids.forEach( ( type, typeIds ) -> {
+            final Function<Collection<String>, List<? extends DhisResource>> bulkFinder = getBulkFinder( type );
+
+            if ( bulkFinder != null )
+            {
+                for ( final List<String> pageIds : Lists.partition( typeIds, prefetchPageSize ) )
+                {
+                    bulkFinder.apply( pageIds ).forEach( r -> prefetchedResources.put( r.getResourceId(), r ) );
+                }
+
+                logger.debug( "Prefetched {} DHIS2 resources of type {}.", typeIds.size(), type );
+            }
+        } );
+    }
+
+    @Nullable
+    protected Function<Collection<String>, List<? extends DhisResource>> getBulkFinder( @Nonnull DhisResourceType type )
+    {
+        switch ( type )
+        {
+            case TRACKED_ENTITY:
+                return trackedEntityService::findByIds;
+            case PROGRAM_STAGE_EVENT:
+                return eventService::findByIds;
+            case ENROLLMENT:
+                return enrollmentService::findByIds;
+            default:
+                return null;
+        }
+    }
+
+    @Nullable
+    protected DhisResource removePrefetched( @Nonnull DhisResourceId dhisResourceId )
+    {
+        return prefetchedResources.asMap().remove( dhisResourceId );
     }
 
     @Nonnull
     @Override
     public Optional<? extends DhisResource> findRefreshed( @Nonnull DhisResourceId dhisResourceId )
     {
+        final DhisResource prefetchedResource = removePrefetched( dhisResourceId );
+
+        if ( prefetchedResource != null )
+        {
+            return Optional.of( prefetchedResource );
+        }
+
         switch ( dhisResourceId.getType() )
         {
             case ORGANIZATION_UNIT:
@@ -61,12 +61,28 @@ public class DhisSyncProcessorConfig implements Serializable
     @Min( value = 1 )
     private int maxProcessedAgeMinutes = 2 * 24 * 60;
 
+    @Min( value = 0 )
+    private int purgeIntervalMinutes = 60;
+
     @Min( value = 1 )
     private int parallelCount = 1;
 
     @NotNull
     private Set<DhisResourceType> resourceTypes = new HashSet<>();
 
+    private boolean streamingPoll;
+
+    private boolean batchedEnqueue = true;
+
+    @Min( value = 0 )
+    private int prefetchPageSize = 50;
+
+    @Min( value = 1 )
+    private int prefetchTimeToLiveMillis = 60_000;
+
+    @Min( value = 1 )
+    private int prefetchMaxSize = 10_000;
+
     public int getRequestRateMillis()
     {
         return requestRateMillis;
@@ -107,6 +123,16 @@ public class DhisSyncProcessorConfig implements Serializable
         this.maxProcessedAgeMinutes = maxProcessedAgeMinutes;
     }
 
+    public int getPurgeIntervalMinutes()
+    {
+        return purgeIntervalMinutes;
+    }
+
+    public void setPurgeIntervalMinutes( int purgeIntervalMinutes )
+    {
+        this.purgeIntervalMinutes = purgeIntervalMinutes;
+    }
+
     public int getParallelCount()
     {
         return parallelCount;
@@ -127,4 +153,54 @@ public class DhisSyncProcessorConfig implements Serializable
     {
         this.resourceTypes = resourceTypes;
     }
+
+    public boolean isStreamingPoll()
+    {
+        return streamingPoll;
+    }
+
+    public void setStreamingPoll( boolean streamingPoll )
+    {
+        this.streamingPoll = streamingPoll;
+    }
+
+    public boolean isBatchedEnqueue()
+    {
+        return batchedEnqueue;
+    }
+
+    public void setBatchedEnqueue( boolean batchedEnqueue )
+    {
+        this.batchedEnqueue = batchedEnqueue;
+    }
+
+    public int getPrefetchPageSize()
+    {
+        return prefetchPageSize;
+    }
+
+    public void setPrefetchPageSize( int prefetchPageSize )
+    {
+        this.prefetchPageSize = prefetchPageSize;
+    }
+
+    public int getPrefetchTimeToLiveMillis()
+    {
+        return prefetchTimeToLiveMillis;
+    }
+
+    public void setPrefetchTimeToLiveMillis( int prefetchTimeToLiveMillis )
+    {
+        this.prefetchTimeToLiveMillis = prefetchTimeToLiveMillis;
+    }
+
+    public int getPrefetchMaxSize()
+    {
+        return prefetchMaxSize;
+    }
+
+    public void setPrefetchMaxSize( int prefetchMaxSize )
+    {
+        this.prefetchMaxSize = prefetchMaxSize;
+    }
 }
@@ -44,7 +44,9 @@ import org.dhis2.fhir.adapter.dhis.data.repository.ProcessedDhisResourceReposito
 import org.dhis2.fhir.adapter.dhis.metadata.model.DhisSyncGroup;
 import org.dhis2.fhir.adapter.dhis.metadata.repository.DhisSyncGroupRepository;
 import org.dhis2.fhir.adapter.dhis.metadata.repository.DhisSyncGroupUpdateRepository;
+import org.dhis2.fhir.adapter.dhis.model.DhisResourceId;
 import org.dhis2.fhir.adapter.dhis.sync.DhisResourceQueueItem;
+import org.dhis2.fhir.adapter.dhis.sync.DhisResourceRepository;
 import org.dhis2.fhir.adapter.dhis.sync.DhisSyncProcessor;
 import org.dhis2.fhir.adapter.dhis.sync.DhisSyncProcessorException;
 import org.dhis2.fhir.adapter.dhis.sync.StoredDhisResourceService;
@@ -65,7 +67,11 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.time.Instant;
 import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
 
 /**
  * Implementation of {@link DhisSyncProcessor}.
@@ -86,18 +92,21 @@ public class DhisSyncProcessorImpl extends
 
     private final DataProcessorItemRetriever<DhisSyncGroup> dataProcessorItemRetriever;
 
+    private final DhisResourceRepository dhisResourceRepository;
+
     public DhisSyncProcessorImpl( @Nonnull @Qualifier( "dhisSyncRequestQueueJmsTemplate" ) JmsTemplate groupQueueJmsTemplate,
         @Nonnull DhisSyncGroupUpdateRepository dataGroupUpdateRepository, @Nonnull StoredDhisResourceService storedItemService, @Nonnull ProcessedDhisResourceRepository processedItemRepository,
         @Nonnull @Qualifier( "dhisResourceQueueJmsTemplate" ) JmsTemplate itemQueueJmsTemplate,
         @Nonnull PlatformTransactionManager platformTransactionManager, @Nonnull SystemAuthenticationToken systemAuthenticationToken,
         @Nonnull DhisSyncProcessorConfig processorConfig, @Nonnull DhisSyncGroupRepository dhisSyncGroupRepository,
-        @Nonnull DataProcessorItemRetriever<DhisSyncGroup> dataProcessorItemRetriever )
+        @Nonnull DataProcessorItemRetriever<DhisSyncGroup> dataProcessorItemRetriever, @Nonnull DhisResourceRepository dhisResourceRepository )
     {
         super( groupQueueJmsTemplate, dataGroupUpdateRepository, storedItemService, processedItemRepository, itemQueueJmsTemplate,
             platformTransactionManager, systemAuthenticationToken, new ForkJoinPool( processorConfig.getParallelCount() ) );
         this.processorConfig = processorConfig;
         this.dhisSyncGroupRepository = dhisSyncGroupRepository;
         this.dataProcessorItemRetriever = dataProcessorItemRetriever;
+        this.dhisResourceRepository = dhisResourceRepository;
 
         // no every execution by the scheduler must result in a logging
         setPeriodicInfoLogging( false );
@@ -122,6 +131,14 @@ public class DhisSyncProcessorImpl extends
         super.receive( dhisSyncRequestQueueItem );
     }
 
+    @Scheduled( fixedDelay = PARTITION_MAINTENANCE_DELAY_MILLIS )
+    @Transactional( propagation = Propagation.NOT_SUPPORTED )
+    @Override
+    public void maintainPartitions()
+    {
+        super.maintainPartitions();
+    }
+
     @Override
     protected QueuedDhisSyncRequestId createQueuedGroupId( @Nonnull DhisSyncGroup group )
     {
@@ -148,12 +165,30 @@ public class DhisSyncProcessorImpl extends
         return processorConfig.getMaxProcessedAgeMinutes();
     }
 
+    @Override
+    protected int getPurgeIntervalMinutes()
+    {
+        return processorConfig.getPurgeIntervalMinutes();
+    }
+
     @Override
     protected int getMaxSearchCount()
     {
         return processorConfig.getMaxSearchCount();
     }
 
+    @Override
+    protected boolean isStreamingPoll()
+    {
+        return processorConfig.isStreamingPoll();
+    }
+
+    @Override
+    protected boolean isBatchedEnqueue()
+    {
+        return processorConfig.isBatchedEnqueue();
+    }
+
     @Nonnull
     @Override
     protected DataProcessorItemRetriever<DhisSyncGroup> getDataProcessorItemRetriever( @Nonnull DhisSyncGroup group )
@@ -161,6 +196,24 @@ public class DhisSyncProcessorImpl extends
         return dataProcessorItemRetriever;
     }
 
+    @Override
+    protected void prefetchDataItems( @Nonnull DhisSyncGroup group, @Nonnull Collection<ProcessedItemInfo> items )
+    {
+        final List<DhisResourceId> resourceIds = items.stream().filter( item -> !item.isDeleted() )
+            .map( item -> DhisResourceId.parse( item.getId() ) ).filter( Objects::nonNull ).collect( Collectors.toList() );
+
+        // the items are passed while polling and the authorization of the poll is used
+        try
+        {
+            dhisResourceRepository.prefetch( resourceIds );
+        }
+        catch ( RuntimeException e )
+        {
+            logger.warn( "Prefetching {} DHIS2 resources of group {} failed. Resources will be read separately: {}",
+                resourceIds.size(), group.getGroupId(), e.getMessage() );
+        }
+    }
+
     @Nonnull
     @Override
     protected ProcessedDhisResource createProcessedItem( @Nonnull DhisSyncGroup group, @Nonnull String id, @Nonnull Instant processedAt )
@@ -31,6 +31,7 @@ package org.dhis2.fhir.adapter.dhis.tracker.program;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import org.dhis2.fhir.adapter.dhis.model.DeepCopyable;
 import org.dhis2.fhir.adapter.dhis.model.DhisResourceId;
 import org.dhis2.fhir.adapter.dhis.model.DhisResourceType;
 import org.dhis2.fhir.adapter.dhis.model.TrackedEntityDhisResource;
@@ -48,7 +49,7 @@ import java.util.List;
  *
  * @author volsch
  */
-public class Enrollment implements TrackedEntityDhisResource, Serializable
+public class Enrollment implements TrackedEntityDhisResource, DeepCopyable<Enrollment>, Serializable
 {
     private static final long serialVersionUID = 6528591138270821481L;
 
@@ -112,6 +113,34 @@ public class Enrollment implements TrackedEntityDhisResource, Serializable
         this.events = new ArrayList<>();
     }
 
+    @Nonnull
+    @Override
+    public Enrollment deepCopy()
+    {
+        final Enrollment copy = new Enrollment();
+        copy.newResource = newResource;
+        copy.modified = modified;
+        copy.local = local;
+        copy.id = id;
+        copy.lastUpdated = lastUpdated;
+        copy.orgUnitId = orgUnitId;
+        copy.programId = programId;
+        copy.trackedEntityInstance = (trackedEntityInstance == null) ? null : trackedEntityInstance.deepCopy();
+        copy.trackedEntityInstanceId = trackedEntityInstanceId;
+        copy.status = status;
+        copy.enrollmentDate = enrollmentDate;
+        copy.incidentDate = incidentDate;
+        copy.coordinate = coordinate;
+
+        if ( events != null )
+        {
+            copy.events = new ArrayList<>( events.size() );
+            events.forEach( e -> copy.events.add( e.deepCopy() ) );
+        }
+
+        return copy;
+    }
+
     @JsonIgnore
     @Override
     public DhisResourceId getResourceId()
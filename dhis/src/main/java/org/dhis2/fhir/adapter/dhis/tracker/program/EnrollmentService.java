@@ -33,6 +33,8 @@ import org.dhis2.fhir.adapter.dhis.model.UriFilterApplier;
 import org.dhis2.fhir.adapter.dhis.service.DhisService;
 
 import javax.annotation.Nonnull;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -53,6 +55,9 @@ public interface EnrollmentService extends DhisService<Enrollment>
     @Nonnull
     Optional<Enrollment> findOneById( @Nonnull String id );
 
+    @Nonnull
+    List<Enrollment> findByIds( @Nonnull Collection<String> ids );
+
     @Nonnull
     Enrollment createOrUpdate( @Nonnull Enrollment enrollment );
 
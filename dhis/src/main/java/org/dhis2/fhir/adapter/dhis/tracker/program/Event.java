@@ -32,26 +32,28 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import org.dhis2.fhir.adapter.dhis.model.DataValue;
+import org.dhis2.fhir.adapter.dhis.model.DeepCopyable;
 import org.dhis2.fhir.adapter.dhis.model.DhisResourceId;
 import org.dhis2.fhir.adapter.dhis.model.DhisResourceType;
+import org.dhis2.fhir.adapter.dhis.model.ItemIndex;
 import org.dhis2.fhir.adapter.dhis.model.TrackedEntityDhisResource;
 import org.dhis2.fhir.adapter.dhis.model.WritableDataValue;
 import org.dhis2.fhir.adapter.dhis.tracker.trackedentity.TrackedEntityInstance;
 import org.dhis2.fhir.adapter.geo.Location;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.io.Serializable;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
 
 /**
  * Contains a DHIS2 Program Stage Instance (aka event).
  *
  * @author volsch
  */
-public class Event implements TrackedEntityDhisResource, Serializable, Comparable<Event>
+public class Event implements TrackedEntityDhisResource, DeepCopyable<Event>, Serializable, Comparable<Event>
 {
     private static final long serialVersionUID = 4966183580394235575L;
 
@@ -109,6 +111,9 @@ public class Event implements TrackedEntityDhisResource, Serializable, Comparabl
     @JsonIgnore
     private boolean modified;
 
+    @JsonIgnore
+    private transient volatile ItemIndex<WritableDataValue> dataValueIndex;
+
     public Event()
     {
         super();
@@ -127,6 +132,36 @@ public class Event implements TrackedEntityDhisResource, Serializable, Comparabl
         this.dataValues = new ArrayList<>();
     }
 
+    /**
+     * Creates a deep copy of this event. Like with serialization the transient
+     * references to the enrollment and tracked entity instance are not copied.
+     *
+     * @return the deep copy of this event.
+     */
+    @Nonnull
+    @Override
+    public Event deepCopy()
+    {
+        final Event copy = new Event();
+        copy.newResource = newResource;
+        copy.local = local;
+        copy.deleted = deleted;
+        copy.id = id;
+        copy.lastUpdated = lastUpdated;
+        copy.orgUnitId = orgUnitId;
+        copy.programId = programId;
+        copy.enrollmentId = enrollmentId;
+        copy.trackedEntityInstanceId = trackedEntityInstanceId;
+        copy.programStageId = programStageId;
+        copy.status = status;
+        copy.eventDate = eventDate;
+        copy.dueDate = dueDate;
+        copy.coordinate = coordinate;
+        copy.dataValues = WritableDataValue.deepCopy( dataValues );
+        copy.modified = modified;
+        return copy;
+    }
+
     @JsonIgnore
     @Override
     public DhisResourceId getResourceId()
@@ -322,6 +357,8 @@ public class Event implements TrackedEntityDhisResource, Serializable, Comparabl
 
     public List<? extends DataValue> getDataValues()
     {
+        // the returned data values may be modified by the caller
+        markDataValueIndexDirty();
         return dataValues;
     }
 
@@ -348,8 +385,7 @@ public class Event implements TrackedEntityDhisResource, Serializable, Comparabl
             dataValues = new ArrayList<>();
         }
 
-        WritableDataValue dataValue = dataValues.stream().filter(
-            dv -> Objects.equals( dataElementId, dv.getDataElementId() ) ).findFirst().orElse( null );
+        WritableDataValue dataValue = findDataValue( dataElementId );
 
         if ( dataValue == null )
         {
@@ -360,10 +396,37 @@ public class Event implements TrackedEntityDhisResource, Serializable, Comparabl
         return dataValue;
     }
 
+    @Nullable
+    protected WritableDataValue findDataValue( @Nonnull String dataElementId )
+    {
+        final List<WritableDataValue> dataValues = this.dataValues;
+
+        if ( dataValues == null )
+        {
+            return null;
+        }
+
+        final ItemIndex<WritableDataValue> index = ItemIndex.of( dataValueIndex, dataValues, WritableDataValue::getDataElementId );
+        dataValueIndex = index;
+
+        return index.get( dataElementId );
+    }
+
+    private void markDataValueIndexDirty()
+    {
+        final ItemIndex<WritableDataValue> index = dataValueIndex;
+
+        if ( index != null )
+        {
+            index.markDirty();
+        }
+    }
+
     @JsonIgnore
     public boolean isAnyDataValueModified()
     {
-        return (getDataValues() != null) && getDataValues().stream().anyMatch( DataValue::isModified );
+        final List<WritableDataValue> dataValues = this.dataValues;
+        return (dataValues != null) && dataValues.stream().anyMatch( DataValue::isModified );
     }
 
 
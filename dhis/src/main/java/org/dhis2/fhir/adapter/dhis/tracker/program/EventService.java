@@ -36,6 +36,7 @@ import org.dhis2.fhir.adapter.dhis.service.DhisService;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -60,6 +61,9 @@ public interface EventService extends DhisService<Event>, DhisPolledService<Even
     @Nonnull
     Optional<Event> findOneDeletedById( @Nonnull String eventId );
 
+    @Nonnull
+    List<Event> findByIds( @Nonnull Collection<String> eventIds );
+
     @Nonnull
     Event createOrMinimalUpdate( @Nonnull Event event );
 
@@ -110,6 +110,9 @@ public class EnrollmentServiceImpl implements EnrollmentService, LocalDhisReposi
         "program={programId}&programStatus=ACTIVE&trackedEntityInstance={trackedEntityInstanceId}&" +
         "ouMode=ACCESSIBLE&fields=:all&order=lastUpdated:desc&pageSize=1";
 
+    protected static final String ENROLLMENT_IDS_URI = "/enrollments.json?" +
+        "enrollment={ids}&ouMode=ACCESSIBLE&fields=:all&skipPaging=true";
+
     private final RestTemplate restTemplate;
 
     private final EventService eventService;
@@ -231,6 +234,21 @@ public class EnrollmentServiceImpl implements EnrollmentService, LocalDhisReposi
         return instance;
     }
 
+    @HystrixCommand( ignoreExceptions = UnauthorizedException.class )
+    @Nonnull
+    @Override
+    public List<Enrollment> findByIds( @Nonnull Collection<String> ids )
+    {
+        if ( ids.isEmpty() )
+        {
+            return Collections.emptyList();
+        }
+
+        final ResponseEntity<DhisEnrollments> result = restTemplate.getForEntity( ENROLLMENT_IDS_URI, DhisEnrollments.class, String.join( ";", ids ) );
+
+        return Objects.requireNonNull( result.getBody() ).getEnrollments();
+    }
+
     @HystrixCommand( ignoreExceptions = { DhisConflictException.class, UnauthorizedException.class } )
     @Nonnull
     @Override
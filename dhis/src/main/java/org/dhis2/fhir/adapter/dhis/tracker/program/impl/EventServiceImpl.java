@@ -51,6 +51,7 @@ import org.dhis2.fhir.adapter.dhis.model.ImportSummariesWebMessage;
 import org.dhis2.fhir.adapter.dhis.model.ImportSummary;
 import org.dhis2.fhir.adapter.dhis.model.Status;
 import org.dhis2.fhir.adapter.dhis.model.UriFilterApplier;
+import org.dhis2.fhir.adapter.dhis.poll.PolledItemCheckpoints;
 import org.dhis2.fhir.adapter.dhis.tracker.program.Event;
 import org.dhis2.fhir.adapter.dhis.tracker.program.EventService;
 import org.dhis2.fhir.adapter.dhis.util.CodeGenerator;
@@ -120,6 +121,9 @@ public class EventServiceImpl implements EventService, LocalDhisRepositoryPersis
     protected static final String FIND_DELETED_ID_URI = "/events.json?" +
         "event={eventId}&includeDeleted=true&fields=" + FIELDS + "&skipPaging=true";
 
+    protected static final String FIND_IDS_URI = "/events.json?" +
+        "event={eventIds}&ouMode=ACCESSIBLE&fields=" + FIELDS + "&skipPaging=true";
+
     private final RestTemplate restTemplate;
 
     private final PolledProgramRetriever polledProgramRetriever;
@@ -355,6 +359,21 @@ public class EventServiceImpl implements EventService, LocalDhisRepositoryPersis
         return instance;
     }
 
+    @HystrixCommand( ignoreExceptions = UnauthorizedException.class )
+    @Nonnull
+    @Override
+    public List<Event> findByIds( @Nonnull Collection<String> eventIds )
+    {
+        if ( eventIds.isEmpty() )
+        {
+            return Collections.emptyList();
+        }
+
+        final ResponseEntity<DhisEvents> result = restTemplate.getForEntity( FIND_IDS_URI, DhisEvents.class, String.join( ";", eventIds ) );
+
+        return Objects.requireNonNull( result.getBody() ).getEvents();
+    }
+
     @HystrixCommand( ignoreExceptions = UnauthorizedException.class )
     @Nonnull
     @Override
@@ -378,6 +397,25 @@ public class EventServiceImpl implements EventService, LocalDhisRepositoryPersis
         return result;
     }
 
+    @Nonnull
+    @Override
+    public Instant pollStreaming( @Nonnull DhisSyncGroup group, @Nonnull Instant lastUpdated, int toleranceMillis, int maxSearchCount, @Nonnull Set<String> excludedStoredBy,
+        @Nonnull Consumer<Collection<ProcessedItemInfo>> consumer, @Nonnull PolledItemCheckpoints checkpoints )
+    {
+        final EventPolledItemRetriever eventPolledItemRetriever = new EventPolledItemRetriever( restTemplate, toleranceMillis, maxSearchCount, zoneId );
+        Instant result = Instant.now();
+        for ( final String programId : polledProgramRetriever.findAllPolledProgramIds() )
+        {
+            // events of each program are polled independently
+            final String key = getDhisResourceType().name() + ":" + programId;
+            final Instant currentResult = eventPolledItemRetriever.pollStreaming( checkpoints.getLastUpdated( key, lastUpdated ), excludedStoredBy, consumer,
+                checkpoint -> checkpoints.update( key, checkpoint ), Collections.singletonList( programId ) );
+            checkpoints.update( key, currentResult );
+            result = ObjectUtils.min( result, currentResult );
+        }
+        return result;
+    }
+
     @Nonnull
     protected Event create( @Nonnull Event event )
     {
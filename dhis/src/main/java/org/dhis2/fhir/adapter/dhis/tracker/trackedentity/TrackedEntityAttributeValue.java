@@ -63,6 +63,20 @@ public class TrackedEntityAttributeValue implements Serializable
         this.value = value;
     }
 
+    /**
+     * @return a copy of this attribute value. The value itself is expected to be
+     * immutable and is not copied.
+     */
+    @Nonnull
+    public TrackedEntityAttributeValue deepCopy()
+    {
+        final TrackedEntityAttributeValue copy = new TrackedEntityAttributeValue();
+        copy.attributeId = attributeId;
+        copy.value = value;
+        copy.lastUpdated = lastUpdated;
+        return copy;
+    }
+
     public String getAttributeId()
     {
         return attributeId;
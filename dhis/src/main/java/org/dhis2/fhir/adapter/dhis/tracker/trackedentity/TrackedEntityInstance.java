@@ -31,9 +31,11 @@ package org.dhis2.fhir.adapter.dhis.tracker.trackedentity;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import org.dhis2.fhir.adapter.dhis.model.DeepCopyable;
 import org.dhis2.fhir.adapter.dhis.model.DhisResource;
 import org.dhis2.fhir.adapter.dhis.model.DhisResourceId;
 import org.dhis2.fhir.adapter.dhis.model.DhisResourceType;
+import org.dhis2.fhir.adapter.dhis.model.ItemIndex;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -48,7 +50,7 @@ import java.util.Objects;
  *
  * @author volsch
  */
-public class TrackedEntityInstance implements DhisResource, Serializable
+public class TrackedEntityInstance implements DhisResource, DeepCopyable<TrackedEntityInstance>, Serializable
 {
     private static final long serialVersionUID = -1707916238115298513L;
 
@@ -85,6 +87,9 @@ public class TrackedEntityInstance implements DhisResource, Serializable
     @JsonIgnore
     private boolean modified;
 
+    @JsonIgnore
+    private transient volatile ItemIndex<TrackedEntityAttributeValue> attributeIndex;
+
     public TrackedEntityInstance()
     {
         super();
@@ -114,6 +119,31 @@ public class TrackedEntityInstance implements DhisResource, Serializable
         }
     }
 
+    @Nonnull
+    @Override
+    public TrackedEntityInstance deepCopy()
+    {
+        final TrackedEntityInstance copy = new TrackedEntityInstance();
+        copy.newResource = newResource;
+        copy.local = local;
+        copy.deleted = deleted;
+        copy.id = id;
+        copy.lastUpdated = lastUpdated;
+        copy.identifier = identifier;
+        copy.typeId = typeId;
+        copy.orgUnitId = orgUnitId;
+        copy.coordinates = coordinates;
+        copy.modified = modified;
+
+        if ( attributes != null )
+        {
+            copy.attributes = new ArrayList<>( attributes.size() );
+            attributes.forEach( a -> copy.attributes.add( a.deepCopy() ) );
+        }
+
+        return copy;
+    }
+
     @JsonIgnore
     @Override
     public DhisResourceId getResourceId()
@@ -237,6 +267,8 @@ public class TrackedEntityInstance implements DhisResource, Serializable
 
     public Collection<TrackedEntityAttributeValue> getAttributes()
     {
+        // the returned attributes may be modified by the caller
+        markAttributeIndexDirty();
         return attributes;
     }
 
@@ -247,18 +279,21 @@ public class TrackedEntityInstance implements DhisResource, Serializable
 
     public boolean containsAttribute( @Nonnull String attributeId )
     {
-        return getAttributes().stream().anyMatch( a -> Objects.equals( attributeId, a.getAttributeId() ) );
+        return findAttribute( attributeId ) != null;
     }
 
     public boolean containsAttribute( @Nonnull String attributeId, @Nonnull String value )
     {
-        return getAttributes().stream().anyMatch( a -> Objects.equals( attributeId, a.getAttributeId() ) && a.getValue() != null && Objects.equals( String.valueOf( a.getValue() ), value ) );
+        final TrackedEntityAttributeValue attributeValue = findAttribute( attributeId );
+
+        return attributeValue != null && attributeValue.getValue() != null && Objects.equals( String.valueOf( attributeValue.getValue() ), value );
     }
 
     public boolean containsAttributeWithValue( @Nonnull String attributeId )
     {
-        return getAttributes().stream().filter( a -> (a.getValue() != null) )
-            .anyMatch( a -> Objects.equals( attributeId, a.getAttributeId() ) );
+        final TrackedEntityAttributeValue attributeValue = findAttribute( attributeId );
+
+        return attributeValue != null && attributeValue.getValue() != null;
     }
 
     public boolean isModified()
@@ -274,16 +309,42 @@ public class TrackedEntityInstance implements DhisResource, Serializable
     @Nonnull
     public TrackedEntityAttributeValue getAttribute( @Nonnull String attributeId )
     {
-        if ( getAttributes() == null )
+        if ( attributes == null )
         {
             setAttributes( new ArrayList<>() );
         }
-        TrackedEntityAttributeValue attributeValue = getAttributes().stream().filter( a -> Objects.equals( attributeId, a.getAttributeId() ) ).findFirst().orElse( null );
+        TrackedEntityAttributeValue attributeValue = findAttribute( attributeId );
         if ( attributeValue == null )
         {
             attributeValue = new TrackedEntityAttributeValue( attributeId );
-            getAttributes().add( attributeValue );
+            attributes.add( attributeValue );
         }
         return attributeValue;
     }
+
+    @Nullable
+    protected TrackedEntityAttributeValue findAttribute( @Nonnull String attributeId )
+    {
+        final Collection<TrackedEntityAttributeValue> attributes = this.attributes;
+
+        if ( attributes == null )
+        {
+            return null;
+        }
+
+        final ItemIndex<TrackedEntityAttributeValue> index = ItemIndex.of( attributeIndex, attributes, TrackedEntityAttributeValue::getAttributeId );
+        attributeIndex = index;
+
+        return index.get( attributeId );
+    }
+
+    private void markAttributeIndexDirty()
+    {
+        final ItemIndex<TrackedEntityAttributeValue> index = attributeIndex;
+
+        if ( index != null )
+        {
+            index.markDirty();
+        }
+    }
 }
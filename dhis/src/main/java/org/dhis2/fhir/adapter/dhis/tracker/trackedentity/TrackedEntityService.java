@@ -35,6 +35,7 @@ import org.dhis2.fhir.adapter.dhis.service.DhisService;
 
 import javax.annotation.Nonnull;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -54,6 +55,9 @@ public interface TrackedEntityService extends DhisService<TrackedEntityInstance>
     @Nonnull
     Optional<TrackedEntityInstance> findOneById( @Nonnull String id );
 
+    @Nonnull
+    List<TrackedEntityInstance> findByIds( @Nonnull Collection<String> ids );
+
     boolean isLocal( @Nonnull String id );
 
     @Nonnull
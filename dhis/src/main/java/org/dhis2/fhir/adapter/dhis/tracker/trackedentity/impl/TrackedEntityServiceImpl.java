@@ -51,6 +51,7 @@ import org.dhis2.fhir.adapter.dhis.model.ImportSummariesWebMessage;
 import org.dhis2.fhir.adapter.dhis.model.ImportSummary;
 import org.dhis2.fhir.adapter.dhis.model.Status;
 import org.dhis2.fhir.adapter.dhis.model.UriFilterApplier;
+import org.dhis2.fhir.adapter.dhis.poll.PolledItemCheckpoints;
 import org.dhis2.fhir.adapter.dhis.sync.DhisLastUpdated;
 import org.dhis2.fhir.adapter.dhis.sync.StoredDhisResourceService;
 import org.dhis2.fhir.adapter.dhis.tracker.program.Event;
@@ -121,6 +122,8 @@ public class TrackedEntityServiceImpl implements TrackedEntityService, LocalDhis
 
     protected static final String ID_URI = "/trackedEntityInstances/{id}.json?fields=" + TEI_FIELDS;
 
+    protected static final String IDS_URI = "/trackedEntityInstances.json?trackedEntityInstance={ids}&ouMode=ACCESSIBLE&skipPaging=true&fields=" + TEI_FIELDS;
+
     protected static final String LAST_UPDATED_URI = "/trackedEntityInstances/{id}.json?fields=lastUpdated";
 
     protected static final String UPDATE_URI = "/trackedEntityInstances/{id}.json?mergeMode=MERGE";
@@ -237,6 +240,21 @@ public class TrackedEntityServiceImpl implements TrackedEntityService, LocalDhis
         return findOneByIdRefreshed( id );
     }
 
+    @HystrixCommand( ignoreExceptions = UnauthorizedException.class )
+    @Nonnull
+    @Override
+    public List<TrackedEntityInstance> findByIds( @Nonnull Collection<String> ids )
+    {
+        if ( ids.isEmpty() )
+        {
+            return Collections.emptyList();
+        }
+
+        final ResponseEntity<TrackedEntityInstances> result = restTemplate.getForEntity( IDS_URI, TrackedEntityInstances.class, String.join( ";", ids ) );
+
+        return Objects.requireNonNull( result.getBody() ).getTrackedEntityInstances();
+    }
+
     @Override
     public boolean isLocal( @Nonnull String id )
     {
@@ -296,6 +314,18 @@ public class TrackedEntityServiceImpl implements TrackedEntityService, LocalDhis
         return new TrackedEntityPolledItemRetriever( restTemplate, toleranceMillis, maxSearchCount, zoneId ).poll( lastUpdated, excludedStoredBy, consumer, null );
     }
 
+    @Nonnull
+    @Override
+    public Instant pollStreaming( @Nonnull DhisSyncGroup group, @Nonnull Instant lastUpdated, int toleranceMillis, int maxSearchCount, @Nonnull Set<String> excludedStoredBy,
+        @Nonnull Consumer<Collection<ProcessedItemInfo>> consumer, @Nonnull PolledItemCheckpoints checkpoints )
+    {
+        final String key = getDhisResourceType().name();
+        final Instant result = new TrackedEntityPolledItemRetriever( restTemplate, toleranceMillis, maxSearchCount, zoneId ).pollStreaming(
+            checkpoints.getLastUpdated( key, lastUpdated ), excludedStoredBy, consumer, checkpoint -> checkpoints.update( key, checkpoint ), null );
+        checkpoints.update( key, result );
+        return result;
+    }
+
     @HystrixCommand( ignoreExceptions = { DhisConflictException.class, UnauthorizedException.class } )
     @Nonnull
     @Override
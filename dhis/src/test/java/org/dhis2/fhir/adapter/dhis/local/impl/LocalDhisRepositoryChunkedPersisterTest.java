@@ -0,0 +1,199 @@
+package org.dhis2.fhir.adapter.dhis.local.impl;
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.dhis2.fhir.adapter.dhis.local.LocalDhisRepositoryPersistCallback;
+import org.dhis2.fhir.adapter.dhis.local.LocalDhisRepositoryPersistResult;
+import org.dhis2.fhir.adapter.dhis.local.LocalDhisRepositoryPersistStatus;
+import org.dhis2.fhir.adapter.dhis.tracker.trackedentity.TrackedEntityInstance;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Unit tests for {@link LocalDhisRepositoryChunkedPersister}.
+ *
+ * @author volsch
+ */
+public class LocalDhisRepositoryChunkedPersisterTest
+{
+    @Test
+    public void persistSaveUnchunked()
+    {
+        final TestPersistCallback persistCallback = new TestPersistCallback();
+        final List<LocalDhisRepositoryPersistResult> results = new ArrayList<>();
+
+        LocalDhisRepositoryChunkedPersister.UNCHUNKED.persistSave( persistCallback, createResources( "c", "a", "b" ), true, results::add );
+
+        Assert.assertEquals( Collections.singletonList( Arrays.asList( "a", "b", "c" ) ), persistCallback.chunks );
+        Assert.assertEquals( Arrays.asList( "a", "b", "c" ), results.stream().map( LocalDhisRepositoryPersistResult::getResourceId ).collect( Collectors.toList() ) );
+    }
+
+    @Test
+    public void persistSaveChunkedByCount()
+    {
+        final TestPersistCallback persistCallback = new TestPersistCallback();
+        final List<LocalDhisRepositoryPersistResult> results = new ArrayList<>();
+
+        new LocalDhisRepositoryChunkedPersister( 2, 0, null, 1, null )
+            .persistSave( persistCallback, createResources( "e", "d", "c", "b", "a" ), true, results::add );
+
+        Assert.assertEquals( Arrays.asList( Arrays.asList( "a", "b" ), Arrays.asList( "c", "d" ), Collections.singletonList( "e" ) ), persistCallback.chunks );
+        Assert.assertEquals( 5, results.size() );
+    }
+
+    @Test
+    public void persistSaveChunkedBySize()
+    {
+        final TestPersistCallback persistCallback = new TestPersistCallback();
+        final List<LocalDhisRepositoryPersistResult> results = new ArrayList<>();
+
+        new LocalDhisRepositoryChunkedPersister( 10, 100, r -> "b".equals( r.getId() ) ? 150 : 40, 1, null )
+            .persistSave( persistCallback, createResources( "a", "b", "c", "d", "e" ), true, results::add );
+
+        Assert.assertEquals( Arrays.asList( Collections.singletonList( "a" ), Collections.singletonList( "b" ), Arrays.asList( "c", "d" ), Collections.singletonList( "e" ) ),
+            persistCallback.chunks );
+        Assert.assertEquals( 5, results.size() );
+    }
+
+    @Test
+    public void persistSaveParallel()
+    {
+        final ExecutorService executorService = Executors.newFixedThreadPool( 2 );
+
+        try
+        {
+            final TestPersistCallback persistCallback = new TestPersistCallback();
+            final List<LocalDhisRepositoryPersistResult> results = new ArrayList<>();
+
+            new LocalDhisRepositoryChunkedPersister( 1, 0, null, 2, executorService )
+                .persistSave( persistCallback, createResources( "d", "c", "b", "a" ), false, results::add );
+
+            Assert.assertEquals( 4, persistCallback.chunks.size() );
+            // results are passed in the order of the chunks
+            Assert.assertEquals( Arrays.asList( "a", "b", "c", "d" ), results.stream().map( LocalDhisRepositoryPersistResult::getResourceId ).collect( Collectors.toList() ) );
+        }
+        finally
+        {
+            executorService.shutdown();
+        }
+    }
+
+    @Test( expected = IllegalStateException.class )
+    public void persistSaveParallelFailure()
+    {
+        final ExecutorService executorService = Executors.newFixedThreadPool( 2 );
+
+        try
+        {
+            final TestPersistCallback persistCallback = new TestPersistCallback();
+            persistCallback.failingId = "c";
+
+            new LocalDhisRepositoryChunkedPersister( 1, 0, null, 2, executorService )
+                .persistSave( persistCallback, createResources( "a", "b", "c", "d" ), false, r -> {
+                } );
+        }
+        finally
+        {
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    public void persistDeleteByIdChunked()
+    {
+        final TestPersistCallback persistCallback = new TestPersistCallback();
+        final List<LocalDhisRepositoryPersistResult> results = new ArrayList<>();
+
+        new LocalDhisRepositoryChunkedPersister( 2, 100, r -> 1000, 1, null )
+            .persistDeleteById( persistCallback, Arrays.asList( "c", "b", "a" ), results::add );
+
+        Assert.assertEquals( Arrays.asList( Arrays.asList( "a", "b" ), Collections.singletonList( "c" ) ), persistCallback.chunks );
+        Assert.assertEquals( 3, results.size() );
+    }
+
+    @Nonnull
+    private static List<TrackedEntityInstance> createResources( @Nonnull String... ids )
+    {
+        return Arrays.stream( ids ).map( TrackedEntityInstance::new ).collect( Collectors.toList() );
+    }
+
+    private static class TestPersistCallback implements LocalDhisRepositoryPersistCallback<TrackedEntityInstance>
+    {
+        private final List<List<String>> chunks = Collections.synchronizedList( new ArrayList<>() );
+
+        private String failingId;
+
+        @Override
+        public void persistSave( @Nonnull Collection<TrackedEntityInstance> resources, boolean create, @Nullable Consumer<LocalDhisRepositoryPersistResult> resultConsumer )
+        {
+            persistDeleteById( resources.stream().map( TrackedEntityInstance::getId ).collect( Collectors.toList() ), resultConsumer );
+        }
+
+        @Nonnull
+        @Override
+        public TrackedEntityInstance persistSave( @Nonnull TrackedEntityInstance resource )
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void persistDeleteById( @Nonnull Collection<String> ids, @Nullable Consumer<LocalDhisRepositoryPersistResult> resultConsumer )
+        {
+            if ( ids.contains( failingId ) )
+            {
+                throw new IllegalStateException( "Failed to persist chunk." );
+            }
+
+            chunks.add( new ArrayList<>( ids ) );
+
+            if ( resultConsumer != null )
+            {
+                ids.forEach( id -> resultConsumer.accept( new LocalDhisRepositoryPersistResult( LocalDhisRepositoryPersistStatus.SUCCESS, id ) ) );
+            }
+        }
+
+        @Override
+        public boolean persistDeleteById( @Nonnull String id )
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
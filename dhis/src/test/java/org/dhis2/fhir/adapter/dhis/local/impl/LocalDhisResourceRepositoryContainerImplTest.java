@@ -141,4 +141,51 @@ public class LocalDhisResourceRepositoryContainerImplTest
 
         Assert.assertThat( ids, Matchers.contains( "A1234567890", "B1234567890", "B1234567891", "A1234567891" ) );
     }
-}
\ No newline at end of file
+
+    @Test
+    public void merge()
+    {
+        final LocalDhisResourceRepositoryContainerImpl otherContainer = new LocalDhisResourceRepositoryContainerImpl( new LinkedHashSet<>( Arrays.asList( TrackedEntityInstance.class, Enrollment.class, Event.class ) ) );
+
+        final TrackedEntityInstance trackedEntityInstance1 = new TrackedEntityInstance();
+        trackedEntityInstance1.setId( "A1234567890" );
+        container.getRepository( TrackedEntityInstance.class, teiLocalDhisRepositoryPersistCallback ).save( trackedEntityInstance1, null );
+
+        final TrackedEntityInstance trackedEntityInstance2 = new TrackedEntityInstance();
+        trackedEntityInstance2.setId( "A1234567891" );
+        otherContainer.getRepository( TrackedEntityInstance.class, teiLocalDhisRepositoryPersistCallback ).save( trackedEntityInstance2, "key2" );
+
+        final Enrollment enrollment1 = new Enrollment();
+        enrollment1.setId( "B1234567890" );
+        otherContainer.getRepository( Enrollment.class, enrollmentLocalDhisRepositoryPersistCallback ).save( enrollment1, "key3" );
+
+        Assert.assertTrue( container.merge( otherContainer ) );
+
+        Assert.assertSame( trackedEntityInstance1, container.getRepository( TrackedEntityInstance.class, teiLocalDhisRepositoryPersistCallback ).findOneById( "A1234567890" ).orElse( null ) );
+        Assert.assertSame( trackedEntityInstance2, container.getRepository( TrackedEntityInstance.class, teiLocalDhisRepositoryPersistCallback ).findOneById( "A1234567891" ).orElse( null ) );
+        Assert.assertSame( enrollment1, container.getRepository( Enrollment.class, enrollmentLocalDhisRepositoryPersistCallback ).findOneById( "B1234567890" ).orElse( null ) );
+    }
+
+    @Test
+    public void mergeConflict()
+    {
+        final LocalDhisResourceRepositoryContainerImpl otherContainer = new LocalDhisResourceRepositoryContainerImpl( new LinkedHashSet<>( Arrays.asList( TrackedEntityInstance.class, Enrollment.class, Event.class ) ) );
+
+        final Enrollment enrollment1 = new Enrollment();
+        enrollment1.setId( "B1234567890" );
+        otherContainer.getRepository( Enrollment.class, enrollmentLocalDhisRepositoryPersistCallback ).save( enrollment1, "key1" );
+
+        final TrackedEntityInstance trackedEntityInstance1 = new TrackedEntityInstance();
+        trackedEntityInstance1.setId( "A1234567890" );
+        container.getRepository( TrackedEntityInstance.class, teiLocalDhisRepositoryPersistCallback ).save( trackedEntityInstance1, null );
+
+        final TrackedEntityInstance trackedEntityInstance2 = new TrackedEntityInstance();
+        trackedEntityInstance2.setId( "A1234567890" );
+        otherContainer.getRepository( TrackedEntityInstance.class, teiLocalDhisRepositoryPersistCallback ).save( trackedEntityInstance2, "key2" );
+
+        Assert.assertFalse( container.merge( otherContainer ) );
+
+        Assert.assertSame( trackedEntityInstance1, container.getRepository( TrackedEntityInstance.class, teiLocalDhisRepositoryPersistCallback ).findOneById( "A1234567890" ).orElse( null ) );
+        Assert.assertFalse( container.getRepository( Enrollment.class, enrollmentLocalDhisRepositoryPersistCallback ).findOneById( "B1234567890" ).isPresent() );
+    }
+}
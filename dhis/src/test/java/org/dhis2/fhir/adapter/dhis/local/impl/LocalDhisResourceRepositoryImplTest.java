@@ -417,4 +417,51 @@ public class LocalDhisResourceRepositoryImplTest
         Assert.assertThat( persistedIds, Matchers.containsInAnyOrder( "a1234567894", "a1234567895" ) );
         Assert.assertThat( persistedResourceKeys, Matchers.containsInAnyOrder( resourceKey5, resourceKey6 ) );
     }
+
+    @Test
+    public void merge()
+    {
+        final LocalDhisResourceRepositoryImpl<TrackedEntityInstance> resourceRepository = new LocalDhisResourceRepositoryImpl<>( TrackedEntityInstance.class );
+        final LocalDhisResourceRepositoryImpl<TrackedEntityInstance> otherResourceRepository = new LocalDhisResourceRepositoryImpl<>( TrackedEntityInstance.class );
+        final WritableTrackedEntityType trackedEntityType = new WritableTrackedEntityType();
+
+        trackedEntityType.setAttributes( Collections.emptyList() );
+        final TrackedEntityInstance trackedEntityInstance1 = new TrackedEntityInstance( trackedEntityType, "a1234567891", false );
+        final TrackedEntityInstance trackedEntityInstance2 = new TrackedEntityInstance( trackedEntityType, "a1234567892", false );
+        final TrackedEntityInstance trackedEntityInstance3 = new TrackedEntityInstance( trackedEntityType, "a1234567893", true );
+        final TrackedEntityInstance foundTrackedEntityInstance1 = new TrackedEntityInstance( trackedEntityType, "a1234567891", false );
+
+        resourceRepository.save( trackedEntityInstance1, "key1" );
+        resourceRepository.found( Collections.singletonList( trackedEntityInstance2 ), "xyz" );
+        otherResourceRepository.found( Collections.singletonList( foundTrackedEntityInstance1 ), "xyz" );
+        otherResourceRepository.save( new TrackedEntityInstance( trackedEntityType, "a1234567892", false ), "key2" );
+        otherResourceRepository.save( trackedEntityInstance3, "key3" );
+
+        Assert.assertTrue( resourceRepository.isMergeable( otherResourceRepository ) );
+        Assert.assertTrue( resourceRepository.merge( otherResourceRepository ).isEmpty() );
+
+        Assert.assertSame( trackedEntityInstance1, resourceRepository.findOneById( "a1234567891" ).orElse( null ) );
+        Assert.assertNotSame( trackedEntityInstance2, resourceRepository.findOneById( "a1234567892" ).orElse( null ) );
+        Assert.assertSame( trackedEntityInstance3, resourceRepository.findOneById( "a1234567893" ).orElse( null ) );
+    }
+
+    @Test
+    public void mergeConflict()
+    {
+        final LocalDhisResourceRepositoryImpl<TrackedEntityInstance> resourceRepository = new LocalDhisResourceRepositoryImpl<>( TrackedEntityInstance.class );
+        final LocalDhisResourceRepositoryImpl<TrackedEntityInstance> otherResourceRepository = new LocalDhisResourceRepositoryImpl<>( TrackedEntityInstance.class );
+        final WritableTrackedEntityType trackedEntityType = new WritableTrackedEntityType();
+
+        trackedEntityType.setAttributes( Collections.emptyList() );
+        final TrackedEntityInstance trackedEntityInstance = new TrackedEntityInstance( trackedEntityType, "a1234567891", false );
+
+        resourceRepository.save( trackedEntityInstance, "key1" );
+        otherResourceRepository.save( new TrackedEntityInstance( trackedEntityType, "a1234567891", false ), "key2" );
+
+        Assert.assertFalse( resourceRepository.isMergeable( otherResourceRepository ) );
+        Assert.assertSame( trackedEntityInstance, resourceRepository.findOneById( "a1234567891" ).orElse( null ) );
+
+        Assert.assertThat( resourceRepository.merge( otherResourceRepository ), Matchers.contains( "key2" ) );
+        Assert.assertSame( trackedEntityInstance, resourceRepository.findOneById( "a1234567891" ).orElse( null ) );
+    }
 }
\ No newline at end of file
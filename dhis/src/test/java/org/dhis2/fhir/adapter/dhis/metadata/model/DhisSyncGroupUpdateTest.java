@@ -0,0 +1,97 @@
+package org.dhis2.fhir.adapter.dhis.metadata.model;
+
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Instant;
+
+/**
+ * Unit tests for {@link DhisSyncGroupUpdate}.
+ *
+ * @author volsch
+ */
+public class DhisSyncGroupUpdateTest
+{
+    private final Instant base = Instant.parse( "2019-01-10T10:00:00Z" );
+
+    @Test
+    public void findResourceLastUpdatedEmpty()
+    {
+        Assert.assertTrue( new DhisSyncGroupUpdate().findResourceLastUpdated( base ).isEmpty() );
+    }
+
+    @Test
+    public void updateResourceLastUpdated()
+    {
+        final DhisSyncGroupUpdate update = new DhisSyncGroupUpdate();
+        update.updateResourceLastUpdated( base, "EVENT", Instant.parse( "2019-01-10T11:00:00Z" ) );
+        update.updateResourceLastUpdated( base, "ENROLLMENT", Instant.parse( "2019-01-10T12:00:00Z" ) );
+
+        Assert.assertEquals( base, update.getResourceBaseLastUpdated() );
+        Assert.assertEquals( 2, update.findResourceLastUpdated( base ).size() );
+        Assert.assertEquals( Instant.parse( "2019-01-10T11:00:00Z" ), update.findResourceLastUpdated( base ).get( "EVENT" ) );
+        Assert.assertEquals( Instant.parse( "2019-01-10T12:00:00Z" ), update.findResourceLastUpdated( base ).get( "ENROLLMENT" ) );
+    }
+
+    @Test
+    public void findResourceLastUpdatedReset()
+    {
+        final DhisSyncGroupUpdate update = new DhisSyncGroupUpdate();
+        update.updateResourceLastUpdated( base, "EVENT", Instant.parse( "2019-01-10T11:00:00Z" ) );
+
+        Assert.assertTrue( update.findResourceLastUpdated( Instant.parse( "2019-01-01T00:00:00Z" ) ).isEmpty() );
+    }
+
+    @Test
+    public void updateResourceLastUpdatedReset()
+    {
+        final Instant resetBase = Instant.parse( "2019-01-01T00:00:00Z" );
+        final DhisSyncGroupUpdate update = new DhisSyncGroupUpdate();
+        update.updateResourceLastUpdated( base, "EVENT", Instant.parse( "2019-01-10T11:00:00Z" ) );
+        update.updateResourceLastUpdated( base, "ENROLLMENT", Instant.parse( "2019-01-10T12:00:00Z" ) );
+        update.updateResourceLastUpdated( resetBase, "EVENT", Instant.parse( "2019-01-02T00:00:00Z" ) );
+
+        Assert.assertEquals( resetBase, update.getResourceBaseLastUpdated() );
+        Assert.assertEquals( 1, update.findResourceLastUpdated( resetBase ).size() );
+        Assert.assertEquals( Instant.parse( "2019-01-02T00:00:00Z" ), update.findResourceLastUpdated( resetBase ).get( "EVENT" ) );
+        Assert.assertTrue( update.findResourceLastUpdated( base ).isEmpty() );
+    }
+
+    @Test
+    public void findResourceLastUpdatedTruncated()
+    {
+        final DhisSyncGroupUpdate update = new DhisSyncGroupUpdate();
+        update.updateResourceLastUpdated( base.plusNanos( 10 ), "EVENT", Instant.parse( "2019-01-10T11:00:00Z" ) );
+
+        Assert.assertEquals( 1, update.findResourceLastUpdated( base ).size() );
+    }
+}
@@ -0,0 +1,88 @@
+package org.dhis2.fhir.adapter.dhis.model;
+
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.dhis2.fhir.adapter.dhis.tracker.program.Enrollment;
+import org.dhis2.fhir.adapter.dhis.tracker.program.Event;
+import org.dhis2.fhir.adapter.dhis.tracker.trackedentity.TrackedEntityAttributeValue;
+import org.dhis2.fhir.adapter.dhis.tracker.trackedentity.TrackedEntityInstance;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Unit tests for {@link DhisResourceSizeEstimator}.
+ *
+ * @author volsch
+ */
+public class DhisResourceSizeEstimatorTest
+{
+    @Test
+    public void trackedEntityInstance()
+    {
+        final TrackedEntityInstance tei = new TrackedEntityInstance( "abc" );
+        tei.setAttributes( new ArrayList<>( Arrays.asList( new TrackedEntityAttributeValue( "a1", "Test" ), new TrackedEntityAttributeValue( "a2" ) ) ) );
+
+        Assert.assertEquals( DhisResourceSizeEstimator.RESOURCE_BYTES + 2 * DhisResourceSizeEstimator.VALUE_BYTES + 4,
+            DhisResourceSizeEstimator.INSTANCE.applyAsLong( tei ) );
+    }
+
+    @Test
+    public void event()
+    {
+        final Event event = new Event( "abc" );
+        event.setDataValues( new ArrayList<>( Collections.singletonList( new WritableDataValue( "d1", 4711 ) ) ) );
+
+        Assert.assertEquals( DhisResourceSizeEstimator.RESOURCE_BYTES + DhisResourceSizeEstimator.VALUE_BYTES + 4,
+            DhisResourceSizeEstimator.INSTANCE.applyAsLong( event ) );
+    }
+
+    @Test
+    public void enrollment()
+    {
+        final Event event = new Event( "abc" );
+        event.setDataValues( new ArrayList<>( Collections.singletonList( new WritableDataValue( "d1", "Test" ) ) ) );
+
+        final Enrollment enrollment = new Enrollment( "def" );
+        enrollment.setEvents( new ArrayList<>( Collections.singletonList( event ) ) );
+
+        Assert.assertEquals( 2 * DhisResourceSizeEstimator.RESOURCE_BYTES + DhisResourceSizeEstimator.VALUE_BYTES + 4,
+            DhisResourceSizeEstimator.INSTANCE.applyAsLong( enrollment ) );
+    }
+
+    @Test
+    public void withoutValues()
+    {
+        Assert.assertEquals( DhisResourceSizeEstimator.RESOURCE_BYTES, DhisResourceSizeEstimator.INSTANCE.applyAsLong( new Event( "abc" ) ) );
+    }
+}
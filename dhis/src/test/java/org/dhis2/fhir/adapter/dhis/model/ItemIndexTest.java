@@ -0,0 +1,149 @@
+package org.dhis2.fhir.adapter.dhis.model;
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for {@link ItemIndex}.
+ *
+ * @author volsch
+ */
+public class ItemIndexTest
+{
+    @Test
+    public void get()
+    {
+        final WritableDataValue dv1 = new WritableDataValue( "dataElement1", true );
+        final WritableDataValue dv2 = new WritableDataValue( "dataElement2", true );
+        final WritableDataValue dv3 = new WritableDataValue( "dataElement1", true );
+        final ItemIndex<WritableDataValue> index = ItemIndex.of( null, Arrays.asList( dv1, dv2, dv3 ), WritableDataValue::getDataElementId );
+
+        Assert.assertSame( dv1, index.get( "dataElement1" ) );
+        Assert.assertSame( dv2, index.get( "dataElement2" ) );
+        Assert.assertNull( index.get( "dataElement3" ) );
+        Assert.assertNull( index.get( null ) );
+    }
+
+    @Test
+    public void of()
+    {
+        final List<WritableDataValue> dataValues = new ArrayList<>( Arrays.asList( new WritableDataValue( "dataElement1", true ) ) );
+        final ItemIndex<WritableDataValue> index = ItemIndex.of( null, dataValues, WritableDataValue::getDataElementId );
+
+        Assert.assertSame( index, ItemIndex.of( index, dataValues, WritableDataValue::getDataElementId ) );
+        Assert.assertNotSame( index, ItemIndex.of( index, new ArrayList<>( dataValues ), WritableDataValue::getDataElementId ) );
+
+        final WritableDataValue dv2 = new WritableDataValue( "dataElement2", true );
+        dataValues.add( dv2 );
+        Assert.assertSame( dv2, index.get( "dataElement2" ) );
+        Assert.assertSame( dv2, ItemIndex.of( index, dataValues, WritableDataValue::getDataElementId ).get( "dataElement2" ) );
+    }
+
+    @Test
+    public void getChangedId()
+    {
+        final WritableDataValue dv1 = new WritableDataValue( "dataElement1", true );
+        final WritableDataValue dv2 = new WritableDataValue( "dataElement2", true );
+        final ItemIndex<WritableDataValue> index = ItemIndex.of( null, Arrays.asList( dv1, dv2 ), WritableDataValue::getDataElementId );
+
+        dv1.setDataElementId( "dataElement3" );
+        dv2.setDataElementId( "dataElement1" );
+        Assert.assertSame( dv2, index.get( "dataElement1" ) );
+    }
+
+    @Test
+    public void getReplacedItem()
+    {
+        final WritableDataValue dv1 = new WritableDataValue( "dataElement1", true );
+        final WritableDataValue dv2 = new WritableDataValue( "dataElement2", true );
+        final WritableDataValue dv3 = new WritableDataValue( "dataElement1", true );
+        final List<WritableDataValue> dataValues = new ArrayList<>( Arrays.asList( dv1, dv2 ) );
+        final ItemIndex<WritableDataValue> index = ItemIndex.of( null, dataValues, WritableDataValue::getDataElementId );
+
+        dataValues.set( 0, dv3 );
+        Assert.assertSame( index, ItemIndex.of( index, dataValues, WritableDataValue::getDataElementId ) );
+        Assert.assertSame( dv3, index.get( "dataElement1" ) );
+    }
+
+    @Test
+    public void getRemovedAndAddedItem()
+    {
+        final WritableDataValue dv1 = new WritableDataValue( "dataElement1", true );
+        final WritableDataValue dv2 = new WritableDataValue( "dataElement2", true );
+        final WritableDataValue dv3 = new WritableDataValue( "dataElement3", true );
+        final List<WritableDataValue> dataValues = new ArrayList<>( Arrays.asList( dv1, dv2 ) );
+        final ItemIndex<WritableDataValue> index = ItemIndex.of( null, dataValues, WritableDataValue::getDataElementId );
+
+        dataValues.remove( dv1 );
+        dataValues.add( dv3 );
+        Assert.assertSame( index, ItemIndex.of( index, dataValues, WritableDataValue::getDataElementId ) );
+        Assert.assertNull( index.get( "dataElement1" ) );
+        Assert.assertSame( dv2, index.get( "dataElement2" ) );
+        Assert.assertSame( dv3, index.get( "dataElement3" ) );
+    }
+
+    @Test
+    public void getChangedIdToIndexedMissing()
+    {
+        final WritableDataValue dv1 = new WritableDataValue( "dataElement1", true );
+        final ItemIndex<WritableDataValue> index = ItemIndex.of( null, Arrays.asList( dv1 ), WritableDataValue::getDataElementId );
+
+        dv1.setDataElementId( "dataElement2" );
+        index.markDirty();
+        Assert.assertSame( dv1, index.get( "dataElement2" ) );
+        Assert.assertNull( index.get( "dataElement1" ) );
+    }
+
+    @Test
+    public void getMissingWithoutScan()
+    {
+        final AtomicInteger count = new AtomicInteger();
+        final ItemIndex<WritableDataValue> index = ItemIndex.of( null, Arrays.asList( new WritableDataValue( "dataElement1", true ), new WritableDataValue( "dataElement2", true ) ), dv -> {
+            count.incrementAndGet();
+            return dv.getDataElementId();
+        } );
+
+        Assert.assertEquals( 2, count.get() );
+        Assert.assertNull( index.get( "dataElement3" ) );
+        Assert.assertNull( index.get( "dataElement4" ) );
+        Assert.assertEquals( 2, count.get() );
+
+        index.markDirty();
+        Assert.assertNull( index.get( "dataElement3" ) );
+        Assert.assertNull( index.get( "dataElement4" ) );
+        Assert.assertEquals( 4, count.get() );
+    }
+}
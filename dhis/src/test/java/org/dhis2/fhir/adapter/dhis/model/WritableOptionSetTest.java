@@ -0,0 +1,100 @@
+package org.dhis2.fhir.adapter.dhis.model;
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.apache.commons.lang3.SerializationUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Unit tests for {@link WritableOptionSet}.
+ *
+ * @author volsch
+ */
+public class WritableOptionSetTest
+{
+    private WritableOptionSet optionSet;
+
+    @Before
+    public void setUp()
+    {
+        optionSet = new WritableOptionSet();
+        optionSet.setId( "jhsy7nJs7sK" );
+        optionSet.setName( "Test" );
+        optionSet.setOptions( new ArrayList<>( Arrays.asList( new WritableOption( "first", "First 1" ), new WritableOption( "FIRST", "First 2" ),
+            new WritableOption( "Second", "Second" ), new WritableOption( "Second", "Second Duplicate" ), new WritableOption( null, "No Code" ) ) ) );
+    }
+
+    @Test
+    public void getOptionalOptionByCode()
+    {
+        Assert.assertEquals( "First 1", optionSet.getOptionalOptionByCode( "first" ).map( Option::getName ).orElse( null ) );
+        Assert.assertEquals( "Second", optionSet.getOptionalOptionByCode( "Second" ).map( Option::getName ).orElse( null ) );
+        Assert.assertFalse( optionSet.getOptionalOptionByCode( "second" ).isPresent() );
+        Assert.assertFalse( optionSet.getOptionalOptionByCode( null ).isPresent() );
+    }
+
+    @Test
+    public void getOptionalOptionByCodeIgnoreCase()
+    {
+        Assert.assertEquals( "First 2", optionSet.getOptionalOptionByCodeIgnoreCase( "first" ).map( Option::getName ).orElse( null ) );
+        Assert.assertEquals( "Second", optionSet.getOptionalOptionByCodeIgnoreCase( "SECOND" ).map( Option::getName ).orElse( null ) );
+        Assert.assertFalse( optionSet.getOptionalOptionByCodeIgnoreCase( "third" ).isPresent() );
+        Assert.assertFalse( optionSet.getOptionalOptionByCodeIgnoreCase( null ).isPresent() );
+    }
+
+    @Test
+    public void getOptionalOptionByCodeModified()
+    {
+        Assert.assertFalse( optionSet.getOptionalOptionByCode( "third" ).isPresent() );
+        optionSet.getOptions().add( new WritableOption( "third", "Third" ) );
+        Assert.assertEquals( "Third", optionSet.getOptionalOptionByCode( "third" ).map( Option::getName ).orElse( null ) );
+
+        optionSet.setOptions( new ArrayList<>( Arrays.asList( new WritableOption( "fourth", "Fourth" ) ) ) );
+        Assert.assertFalse( optionSet.getOptionalOptionByCode( "third" ).isPresent() );
+        Assert.assertEquals( "Fourth", optionSet.getOptionalOptionByCodeIgnoreCase( "FOURTH" ).map( Option::getName ).orElse( null ) );
+
+        optionSet.setOptions( null );
+        Assert.assertFalse( optionSet.getOptionalOptionByCode( "fourth" ).isPresent() );
+    }
+
+    @Test
+    public void serialization()
+    {
+        Assert.assertTrue( optionSet.getOptionalOptionByCode( "first" ).isPresent() );
+
+        final WritableOptionSet copy = SerializationUtils.clone( optionSet );
+        Assert.assertEquals( "First 1", copy.getOptionalOptionByCode( "first" ).map( Option::getName ).orElse( null ) );
+        Assert.assertEquals( "First 2", new ImmutableOptionSet( copy ).getOptionalOptionByCodeIgnoreCase( "First" ).map( Option::getName ).orElse( null ) );
+    }
+}
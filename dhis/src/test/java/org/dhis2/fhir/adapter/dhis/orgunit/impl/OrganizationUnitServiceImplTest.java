@@ -46,7 +46,13 @@ import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.client.RestTemplate;
 
 import java.io.IOException;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
 import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
@@ -63,7 +69,9 @@ public class OrganizationUnitServiceImplTest
 
     private MockRestServiceServer mockServer;
 
-    private OrganizationUnitService service;
+    private OrganizationUnitSnapshotConfig snapshotConfig;
+
+    private OrganizationUnitServiceImpl service;
 
     @Before
     public void setUp()
@@ -71,7 +79,8 @@ public class OrganizationUnitServiceImplTest
         systemRestTemplate = new RestTemplateBuilder().rootUri( "http://localhost:8080/api" ).build();
         userRestTemplate = new RestTemplateBuilder().rootUri( "http://localhost:8080/api" ).build();
         mockServer = MockRestServiceServer.createServer( systemRestTemplate );
-        service = new OrganizationUnitServiceImpl( systemRestTemplate, userRestTemplate );
+        snapshotConfig = new OrganizationUnitSnapshotConfig();
+        service = new OrganizationUnitServiceImpl( systemRestTemplate, userRestTemplate, snapshotConfig );
     }
 
     @Test
@@ -147,4 +156,50 @@ public class OrganizationUnitServiceImplTest
         Optional<OrganizationUnit> ou = service.findMetadataByReference( new Reference( "Freetown", ReferenceType.NAME ) );
         Assert.assertFalse( ou.isPresent() );
     }
-}
\ No newline at end of file
+
+    @Test
+    public void snapshot() throws IOException
+    {
+        snapshotConfig.setEnabled( true );
+        snapshotConfig.setPageSize( 2 );
+        mockServer.expect( requestTo( "http://localhost:8080/api/organisationUnits.json?paging=true&page=1&pageSize=2&order=id&fields=lastUpdated,id,code,name,shortName,displayName,level,openingDate,closedDate,coordinates,leaf,parent%5Bid%5D" ) )
+            .andExpect( method( HttpMethod.GET ) )
+            .andRespond( withSuccess( IOUtils.resourceToByteArray( "/org/dhis2/fhir/adapter/dhis/orgunit/impl/organisationUnitsSnapshot1.json" ), MediaType.APPLICATION_JSON ) );
+        mockServer.expect( requestTo( "http://localhost:8080/api/organisationUnits.json?paging=true&page=2&pageSize=2&order=id&fields=lastUpdated,id,code,name,shortName,displayName,level,openingDate,closedDate,coordinates,leaf,parent%5Bid%5D" ) )
+            .andExpect( method( HttpMethod.GET ) )
+            .andRespond( withSuccess( IOUtils.resourceToByteArray( "/org/dhis2/fhir/adapter/dhis/orgunit/impl/organisationUnitsSnapshot2.json" ), MediaType.APPLICATION_JSON ) );
+
+        service.refreshSnapshot();
+        mockServer.verify();
+
+        Assert.assertEquals( "ou2", service.findMetadataByReference( new Reference( "OU_2", ReferenceType.CODE ) ).map( OrganizationUnit::getId ).orElse( null ) );
+        Assert.assertEquals( "ou3", service.findMetadataByReference( new Reference( "Facility", ReferenceType.NAME ) ).map( OrganizationUnit::getId ).orElse( null ) );
+        Assert.assertEquals( "OU_1", service.findMetadataByReference( new Reference( "ou1", ReferenceType.ID ) ).map( OrganizationUnit::getCode ).orElse( null ) );
+
+        final List<OrganizationUnit> parents = service.findMetadataParentsById( "ou3" );
+        Assert.assertEquals( 2, parents.size() );
+        Assert.assertEquals( "ou2", parents.get( 0 ).getId() );
+        Assert.assertEquals( "ou1", parents.get( 1 ).getId() );
+
+        Assert.assertEquals( "ou2", service.getSnapshot().findChildren( "ou1" ).stream().map( OrganizationUnit::getId ).collect( Collectors.joining( "," ) ) );
+    }
+
+    @Test
+    public void snapshotUpdate() throws IOException
+    {
+        snapshot();
+        mockServer.reset();
+
+        final String lastUpdated = DateTimeFormatter.ISO_LOCAL_DATE_TIME.format( ZonedDateTime.of( 2019, 3, 3, 9, 59, 55, 0, ZoneOffset.UTC ).withZoneSameInstant( ZoneId.systemDefault() ).toLocalDateTime() );
+        mockServer.expect( requestTo( "http://localhost:8080/api/organisationUnits.json?paging=true&page=1&pageSize=2&order=id&fields=lastUpdated,id,code,name,shortName,displayName,level,openingDate,closedDate,coordinates,leaf,parent%5Bid%5D&filter=lastUpdated:ge:" + lastUpdated ) )
+            .andExpect( method( HttpMethod.GET ) )
+            .andRespond( withSuccess( IOUtils.resourceToByteArray( "/org/dhis2/fhir/adapter/dhis/orgunit/impl/organisationUnitsSnapshotUpdate.json" ), MediaType.APPLICATION_JSON ) );
+
+        service.refreshSnapshot();
+        mockServer.verify();
+
+        Assert.assertFalse( service.getSnapshot().findByReference( new Reference( "Facility", ReferenceType.NAME ) ).isPresent() );
+        Assert.assertEquals( "ou3", service.findMetadataByReference( new Reference( "Clinic", ReferenceType.NAME ) ).map( OrganizationUnit::getId ).orElse( null ) );
+        Assert.assertEquals( "ou1", service.findMetadataParentsById( "ou3" ).stream().map( OrganizationUnit::getId ).collect( Collectors.joining( "," ) ) );
+    }
+}
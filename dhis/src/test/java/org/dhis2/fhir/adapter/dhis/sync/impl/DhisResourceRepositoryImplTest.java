@@ -0,0 +1,149 @@
+package org.dhis2.fhir.adapter.dhis.sync.impl;
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.dhis2.fhir.adapter.dhis.aggregate.DataValueSetService;
+import org.dhis2.fhir.adapter.dhis.model.DhisResourceId;
+import org.dhis2.fhir.adapter.dhis.model.DhisResourceType;
+import org.dhis2.fhir.adapter.dhis.orgunit.OrganizationUnitService;
+import org.dhis2.fhir.adapter.dhis.tracker.program.EnrollmentService;
+import org.dhis2.fhir.adapter.dhis.tracker.program.Event;
+import org.dhis2.fhir.adapter.dhis.tracker.program.EventService;
+import org.dhis2.fhir.adapter.dhis.tracker.program.ProgramMetadataService;
+import org.dhis2.fhir.adapter.dhis.tracker.program.ProgramStageMetadataService;
+import org.dhis2.fhir.adapter.dhis.tracker.trackedentity.TrackedEntityInstance;
+import org.dhis2.fhir.adapter.dhis.tracker.trackedentity.TrackedEntityService;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+
+/**
+ * Unit tests for {@link DhisResourceRepositoryImpl}.
+ *
+ * @author volsch
+ */
+public class DhisResourceRepositoryImplTest
+{
+    @Mock
+    private OrganizationUnitService organizationUnitService;
+
+    @Mock
+    private ProgramMetadataService programMetadataService;
+
+    @Mock
+    private ProgramStageMetadataService programStageMetadataService;
+
+    @Mock
+    private TrackedEntityService trackedEntityService;
+
+    @Mock
+    private EnrollmentService enrollmentService;
+
+    @Mock
+    private EventService eventService;
+
+    @Mock
+    private DataValueSetService dataValueSetService;
+
+    private DhisSyncProcessorConfig processorConfig;
+
+    private DhisResourceRepositoryImpl repository;
+
+    @Rule
+    public MockitoRule rule = MockitoJUnit.rule();
+
+    @Before
+    public void setUp()
+    {
+        processorConfig = new DhisSyncProcessorConfig();
+        processorConfig.setPrefetchPageSize( 2 );
+        repository = createRepository();
+    }
+
+    @Test
+    public void prefetch()
+    {
+        final Event event1 = new Event( "jShdkweusi1" );
+        final Event event2 = new Event( "jShdkweusi2" );
+        final Event event3 = new Event( "jShdkweusi3" );
+
+        Mockito.doReturn( Arrays.asList( event1, event2 ) ).when( eventService ).findByIds( Mockito.eq( Arrays.asList( "jShdkweusi1", "jShdkweusi2" ) ) );
+        Mockito.doReturn( Collections.singletonList( event3 ) ).when( eventService ).findByIds( Mockito.eq( Collections.singletonList( "jShdkweusi3" ) ) );
+
+        repository.prefetch( Arrays.asList( new DhisResourceId( DhisResourceType.PROGRAM_STAGE_EVENT, "jShdkweusi1" ),
+            new DhisResourceId( DhisResourceType.PROGRAM_STAGE_EVENT, "jShdkweusi2" ), new DhisResourceId( DhisResourceType.PROGRAM_STAGE_EVENT, "jShdkweusi3" ),
+            new DhisResourceId( DhisResourceType.ORGANIZATION_UNIT, "jShdkweusi4" ) ) );
+
+        Assert.assertSame( event2, repository.findRefreshed( new DhisResourceId( DhisResourceType.PROGRAM_STAGE_EVENT, "jShdkweusi2" ) ).orElse( null ) );
+        Assert.assertSame( event3, repository.findRefreshed( new DhisResourceId( DhisResourceType.PROGRAM_STAGE_EVENT, "jShdkweusi3" ) ).orElse( null ) );
+        Mockito.verify( eventService, Mockito.times( 2 ) ).findByIds( Mockito.anyCollection() );
+        Mockito.verify( eventService, Mockito.never() ).findOneById( Mockito.anyString() );
+        Mockito.verifyZeroInteractions( organizationUnitService );
+    }
+
+    @Test
+    public void findRefreshedPrefetchedOnce()
+    {
+        final TrackedEntityInstance tei1 = new TrackedEntityInstance( "Jskdsjeua1s" );
+        final TrackedEntityInstance tei2 = new TrackedEntityInstance( "Jskdsjeua1s" );
+
+        Mockito.doReturn( Collections.singletonList( tei1 ) ).when( trackedEntityService ).findByIds( Mockito.eq( Collections.singletonList( "Jskdsjeua1s" ) ) );
+        Mockito.doReturn( Optional.of( tei2 ) ).when( trackedEntityService ).findOneByIdRefreshed( Mockito.eq( "Jskdsjeua1s" ) );
+
+        repository.prefetch( Collections.singletonList( new DhisResourceId( DhisResourceType.TRACKED_ENTITY, "Jskdsjeua1s" ) ) );
+
+        Assert.assertSame( tei1, repository.findRefreshed( new DhisResourceId( DhisResourceType.TRACKED_ENTITY, "Jskdsjeua1s" ) ).orElse( null ) );
+        Assert.assertSame( tei2, repository.findRefreshed( new DhisResourceId( DhisResourceType.TRACKED_ENTITY, "Jskdsjeua1s" ) ).orElse( null ) );
+    }
+
+    @Test
+    public void prefetchDisabled()
+    {
+        processorConfig.setPrefetchPageSize( 0 );
+        repository = createRepository();
+
+        repository.prefetch( Collections.singletonList( new DhisResourceId( DhisResourceType.TRACKED_ENTITY, "Jskdsjeua1s" ) ) );
+        Mockito.verifyZeroInteractions( trackedEntityService );
+    }
+
+    private DhisResourceRepositoryImpl createRepository()
+    {
+        return new DhisResourceRepositoryImpl( organizationUnitService, programMetadataService, programStageMetadataService,
+            trackedEntityService, enrollmentService, eventService, dataValueSetService, processorConfig );
+    }
+}
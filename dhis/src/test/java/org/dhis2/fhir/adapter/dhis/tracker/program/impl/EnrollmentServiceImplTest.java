@@ -132,6 +132,19 @@ public class EnrollmentServiceImplTest
         Assert.assertEquals( new Location( -70.2433, 30.34323 ), ou.get().getCoordinate() );
     }
 
+    @Test
+    public void findByIds() throws IOException
+    {
+        mockServer.expect( ExpectedCount.once(), requestTo( "http://localhost:8080/api/enrollments.json?enrollment=N4cVHaUjfJO;tPeQKGUIow1&ouMode=ACCESSIBLE&fields=:all&skipPaging=true" ) )
+            .andExpect( method( HttpMethod.GET ) ).andRespond( withSuccess( IOUtils.resourceToByteArray( "/org/dhis2/fhir/adapter/dhis/tracker/program/impl/enrollments.json" ), MediaType.APPLICATION_JSON ) );
+
+        List<Enrollment> enrollments = service.findByIds( Arrays.asList( "N4cVHaUjfJO", "tPeQKGUIow1" ) );
+        Assert.assertEquals( 1, enrollments.size() );
+        Assert.assertEquals( "N4cVHaUjfJO", enrollments.get( 0 ).getId() );
+
+        mockServer.verify();
+    }
+
     @Test
     public void getLatestActiveLocal() throws IOException
     {
@@ -124,6 +124,21 @@ public class EventServiceImplTest
         mockServer.verify();
     }
 
+    @Test
+    public void findByIds() throws IOException
+    {
+        mockServer.expect( ExpectedCount.once(), requestTo( "http://localhost:8080/api/events.json?event=jShdkweusi2;jShdkweusi3&ouMode=ACCESSIBLE&fields=deleted,event,orgUnit,program,enrollment,trackedEntityInstance,programStage,status," +
+            "eventDate,dueDate,coordinate,lastUpdated,dataValues%5BdataElement,value,providedElsewhere,lastUpdated,storedBy%5D&skipPaging=true" ) )
+            .andExpect( method( HttpMethod.GET ) ).andRespond( withSuccess( IOUtils.resourceToByteArray( "/org/dhis2/fhir/adapter/dhis/tracker/program/impl/events.json" ), MediaType.APPLICATION_JSON ) );
+
+        List<Event> events = service.findByIds( Arrays.asList( "jShdkweusi2", "jShdkweusi3" ) );
+        Assert.assertEquals( 2, events.size() );
+        Assert.assertEquals( "jShdkweusi2", events.get( 0 ).getId() );
+        Assert.assertEquals( "jShdkweusi3", events.get( 1 ).getId() );
+
+        mockServer.verify();
+    }
+
     @Test
     public void findLocal() throws IOException
     {
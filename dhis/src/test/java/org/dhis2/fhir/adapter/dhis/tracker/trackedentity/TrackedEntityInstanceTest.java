@@ -0,0 +1,182 @@
+package org.dhis2.fhir.adapter.dhis.tracker.trackedentity;
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.lang3.SerializationUtils;
+import org.dhis2.fhir.adapter.model.ValueType;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Unit tests for {@link TrackedEntityInstance}. The tests also log the lookup
+ * times of attribute values of a tracked entity type with 60 attributes.
+ *
+ * @author volsch
+ */
+public class TrackedEntityInstanceTest
+{
+    private static final int ATTRIBUTE_COUNT = 60;
+
+    private static final int ITERATIONS = 2_000;
+
+    private static final Logger logger = LoggerFactory.getLogger( TrackedEntityInstanceTest.class );
+
+    private TrackedEntityType type;
+
+    @Before
+    public void setUp()
+    {
+        final List<WritableTrackedEntityTypeAttribute> typeAttributes = new ArrayList<>();
+
+        for ( int i = 0; i < ATTRIBUTE_COUNT; i++ )
+        {
+            final WritableTrackedEntityTypeAttribute typeAttribute = new WritableTrackedEntityTypeAttribute();
+            typeAttribute.setId( "typeAttr" + i );
+            typeAttribute.setAttribute( new WritableTrackedEntityAttribute( "attribute" + i, "Attribute " + i, "CODE_" + i, ValueType.TEXT, false, null ) );
+            typeAttributes.add( typeAttribute );
+        }
+
+        type = new WritableTrackedEntityType( "jhsy7nJs7sK", "Person", typeAttributes );
+    }
+
+    @Test
+    public void getAttribute()
+    {
+        final TrackedEntityInstance tei = new TrackedEntityInstance( type, "Jskdsjeua1s", true );
+        tei.getAttribute( "attribute7" ).setValue( "Test 7" );
+
+        Assert.assertEquals( ATTRIBUTE_COUNT, tei.getAttributes().size() );
+        Assert.assertEquals( "Test 7", tei.getAttribute( "attribute7" ).getValue() );
+        Assert.assertTrue( tei.containsAttribute( "attribute7" ) );
+        Assert.assertTrue( tei.containsAttribute( "attribute7", "Test 7" ) );
+        Assert.assertFalse( tei.containsAttribute( "attribute7", "Test 8" ) );
+        Assert.assertTrue( tei.containsAttributeWithValue( "attribute7" ) );
+        Assert.assertTrue( tei.containsAttribute( "attribute8" ) );
+        Assert.assertFalse( tei.containsAttributeWithValue( "attribute8" ) );
+        Assert.assertFalse( tei.containsAttribute( "attributeX" ) );
+    }
+
+    @Test
+    public void getAttributeAdded()
+    {
+        final TrackedEntityInstance tei = new TrackedEntityInstance( type, "Jskdsjeua1s", true );
+        Assert.assertFalse( tei.containsAttribute( "attributeX" ) );
+
+        final TrackedEntityAttributeValue attributeValue = tei.getAttribute( "attributeX" );
+        Assert.assertEquals( ATTRIBUTE_COUNT + 1, tei.getAttributes().size() );
+        Assert.assertSame( attributeValue, tei.getAttribute( "attributeX" ) );
+        Assert.assertEquals( ATTRIBUTE_COUNT + 1, tei.getAttributes().size() );
+
+        tei.getAttributes().add( new TrackedEntityAttributeValue( "attributeY", "Test Y" ) );
+        Assert.assertTrue( tei.containsAttributeWithValue( "attributeY" ) );
+    }
+
+    @Test
+    public void getAttributeRemovedAndReplaced()
+    {
+        final TrackedEntityInstance tei = new TrackedEntityInstance( type, "Jskdsjeua1s", true );
+        Assert.assertTrue( tei.containsAttribute( "attribute3" ) );
+
+        tei.getAttributes().removeIf( a -> "attribute3".equals( a.getAttributeId() ) );
+        Assert.assertFalse( tei.containsAttribute( "attribute3" ) );
+
+        final List<TrackedEntityAttributeValue> attributes = new ArrayList<>();
+        attributes.add( new TrackedEntityAttributeValue( "attribute3", "Test 3" ) );
+        tei.setAttributes( attributes );
+        Assert.assertTrue( tei.containsAttribute( "attribute3", "Test 3" ) );
+        Assert.assertFalse( tei.containsAttribute( "attribute4" ) );
+    }
+
+    @Test
+    public void serialization() throws Exception
+    {
+        final TrackedEntityInstance tei = new TrackedEntityInstance( type, "Jskdsjeua1s", true );
+        tei.getAttribute( "attribute7" ).setValue( "Test 7" );
+
+        final ObjectMapper objectMapper = new ObjectMapper();
+        final String json = objectMapper.writeValueAsString( tei );
+        Assert.assertFalse( json.contains( "attributeIndex" ) );
+        Assert.assertEquals( json, objectMapper.writeValueAsString( objectMapper.readValue( json, TrackedEntityInstance.class ) ) );
+
+        final TrackedEntityInstance copy = SerializationUtils.clone( tei );
+        Assert.assertEquals( "Test 7", copy.getAttribute( "attribute7" ).getValue() );
+        Assert.assertEquals( ATTRIBUTE_COUNT, copy.getAttributes().size() );
+        Assert.assertEquals( "Test 7", tei.deepCopy().getAttribute( "attribute7" ).getValue() );
+    }
+
+    @Test
+    public void lookupTimes()
+    {
+        final TrackedEntityInstance tei = new TrackedEntityInstance( type, "Jskdsjeua1s", true );
+        tei.getAttributes().forEach( a -> a.setValue( "Test " + a.getAttributeId() ) );
+
+        // warm up both variants before measuring
+        measureIndexed( tei );
+        measureScanned( tei );
+
+        logger.info( "Lookup of {} attribute values: {} ns indexed, {} ns scanned", ATTRIBUTE_COUNT, measureIndexed( tei ), measureScanned( tei ) );
+    }
+
+    private long measureIndexed( @Nonnull TrackedEntityInstance tei )
+    {
+        final long begin = System.nanoTime();
+        for ( int i = 0; i < ITERATIONS; i++ )
+        {
+            for ( int j = 0; j < ATTRIBUTE_COUNT; j++ )
+            {
+                Assert.assertTrue( tei.containsAttributeWithValue( "attribute" + j ) );
+            }
+        }
+        return (System.nanoTime() - begin) / ITERATIONS;
+    }
+
+    private long measureScanned( @Nonnull TrackedEntityInstance tei )
+    {
+        final long begin = System.nanoTime();
+        for ( int i = 0; i < ITERATIONS; i++ )
+        {
+            for ( int j = 0; j < ATTRIBUTE_COUNT; j++ )
+            {
+                final String attributeId = "attribute" + j;
+                Assert.assertTrue( tei.getAttributes().stream().filter( a -> (a.getValue() != null) )
+                    .anyMatch( a -> Objects.equals( attributeId, a.getAttributeId() ) ) );
+            }
+        }
+        return (System.nanoTime() - begin) / ITERATIONS;
+    }
+}
@@ -0,0 +1,105 @@
+package org.dhis2.fhir.adapter.dhis.tracker.trackedentity.impl;
+
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.dhis2.fhir.adapter.data.model.ProcessedItemInfo;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+/**
+ * Unit tests for {@link TrackedEntityPolledItemRetriever}.
+ *
+ * @author volsch
+ */
+public class TrackedEntityPolledItemRetrieverTest
+{
+    private static final String BASE_URI = "http://localhost:8080/api/trackedEntityInstances.json?ouMode=ACCESSIBLE&fields=trackedEntityInstance,lastUpdated";
+
+    private RestTemplate restTemplate;
+
+    private MockRestServiceServer mockServer;
+
+    private TrackedEntityPolledItemRetriever retriever;
+
+    @Before
+    public void setUp()
+    {
+        restTemplate = new RestTemplateBuilder().rootUri( "http://localhost:8080/api" ).build();
+        mockServer = MockRestServiceServer.createServer( restTemplate );
+        retriever = new TrackedEntityPolledItemRetriever( restTemplate, 0, 2, ZoneId.of( "UTC" ) );
+        retriever.setMaxConsumedSize( 2 );
+    }
+
+    @Test
+    public void pollStreaming()
+    {
+        mockServer.expect( requestTo( BASE_URI + "&lastUpdatedStartDate=2019-01-01T10:00:00&pageSize=2&page=1&order=lastUpdated:asc" ) )
+            .andExpect( method( HttpMethod.GET ) ).andRespond( withSuccess( "{\"trackedEntityInstances\":[" +
+            "{\"trackedEntityInstance\":\"a\",\"lastUpdated\":\"2019-01-01T10:00:01.000\"}," +
+            "{\"trackedEntityInstance\":\"b\",\"lastUpdated\":\"2019-01-01T10:00:02.000\"}]}", MediaType.APPLICATION_JSON ) );
+        mockServer.expect( requestTo( BASE_URI + "&lastUpdatedStartDate=2019-01-01T10:00:02&pageSize=2&page=1&order=lastUpdated:asc" ) )
+            .andExpect( method( HttpMethod.GET ) ).andRespond( withSuccess( "{\"trackedEntityInstances\":[" +
+            "{\"trackedEntityInstance\":\"b\",\"lastUpdated\":\"2019-01-01T10:00:02.000\"}," +
+            "{\"trackedEntityInstance\":\"c\",\"lastUpdated\":\"2019-01-01T10:00:02.000\"}]}", MediaType.APPLICATION_JSON ) );
+        mockServer.expect( requestTo( BASE_URI + "&lastUpdatedStartDate=2019-01-01T10:00:02&pageSize=2&page=2&order=lastUpdated:asc" ) )
+            .andExpect( method( HttpMethod.GET ) ).andRespond( withSuccess( "{\"trackedEntityInstances\":[" +
+            "{\"trackedEntityInstance\":\"d\",\"lastUpdated\":\"2019-01-01T10:00:03.000\"}]}", MediaType.APPLICATION_JSON ) );
+
+        final List<Collection<ProcessedItemInfo>> chunks = new ArrayList<>();
+        final List<Instant> checkpoints = new ArrayList<>();
+        final Instant lastUpdated = retriever.pollStreaming( Instant.parse( "2019-01-01T10:00:00Z" ), Collections.emptySet(), chunks::add, checkpoints::add, null );
+        mockServer.verify();
+
+        Assert.assertFalse( lastUpdated.isBefore( Instant.parse( "2019-01-01T10:00:03Z" ) ) );
+        Assert.assertEquals( Collections.singletonList( Instant.parse( "2019-01-01T10:00:02Z" ) ), checkpoints );
+        Assert.assertEquals( 3, chunks.size() );
+        Assert.assertEquals( Arrays.asList( "trackedEntityInstances/a", "trackedEntityInstances/b", "trackedEntityInstances/c", "trackedEntityInstances/d" ),
+            chunks.stream().flatMap( Collection::stream ).map( ProcessedItemInfo::getId ).collect( Collectors.toList() ) );
+    }
+}
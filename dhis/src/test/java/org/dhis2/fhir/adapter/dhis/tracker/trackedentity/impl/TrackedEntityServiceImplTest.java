@@ -66,6 +66,7 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -216,6 +217,28 @@ public class TrackedEntityServiceImplTest
         Assert.assertFalse( ou.isPresent() );
     }
 
+    @Test
+    public void findByIds() throws IOException
+    {
+        mockServer.expect( ExpectedCount.once(), requestTo( "http://localhost:8080/api/trackedEntityInstances.json?trackedEntityInstance=Jskdsjeua1s;N4cVHaUjfJO&ouMode=ACCESSIBLE&skipPaging=true&" +
+            "fields=deleted,trackedEntityInstance,trackedEntityType,orgUnit,coordinates,lastUpdated,attributes%5Battribute,value,lastUpdated,storedBy%5D" ) )
+            .andExpect( method( HttpMethod.GET ) ).andRespond( withSuccess( IOUtils.resourceToByteArray( "/org/dhis2/fhir/adapter/dhis/tracker/program/impl/trackedEntityInstances.json" ), MediaType.APPLICATION_JSON ) );
+
+        List<TrackedEntityInstance> trackedEntityInstances = service.findByIds( Arrays.asList( "Jskdsjeua1s", "N4cVHaUjfJO" ) );
+        Assert.assertEquals( 1, trackedEntityInstances.size() );
+        Assert.assertEquals( "Jskdsjeua1s", trackedEntityInstances.get( 0 ).getId() );
+
+        mockServer.verify();
+    }
+
+    @Test
+    public void findByIdsEmpty()
+    {
+        Assert.assertTrue( service.findByIds( Collections.emptyList() ).isEmpty() );
+
+        mockServer.verify();
+    }
+
     @Test
     public void create() throws IOException
     {
@@ -32,6 +32,7 @@ import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.rest.client.api.IGenericClient;
 import org.dhis2.fhir.adapter.fhir.client.impl.AbstractSubscriptionResourceItemRetriever;
 import org.dhis2.fhir.adapter.fhir.model.FhirVersion;
+import org.dhis2.fhir.adapter.fhir.repository.FhirClientRegistry;
 import org.hl7.fhir.dstu3.model.Bundle;
 import org.hl7.fhir.dstu3.model.CapabilityStatement;
 import org.hl7.fhir.instance.model.api.IAnyResource;
@@ -54,9 +55,9 @@ import java.util.stream.Collectors;
 @Component
 public class Dstu3SubscriptionResourceItemRetrieverImpl extends AbstractSubscriptionResourceItemRetriever
 {
-    public Dstu3SubscriptionResourceItemRetrieverImpl( @Nonnull @Qualifier( "fhirContextDstu3" ) FhirContext fhirContext )
+    public Dstu3SubscriptionResourceItemRetrieverImpl( @Nonnull @Qualifier( "fhirContextDstu3" ) FhirContext fhirContext, @Nonnull FhirClientRegistry fhirClientRegistry )
     {
-        super( fhirContext );
+        super( fhirContext, fhirClientRegistry );
     }
 
     @Nonnull
@@ -99,10 +100,16 @@ public class Dstu3SubscriptionResourceItemRetrieverImpl extends AbstractSubscrip
     @Nullable
     @Override
     protected IBaseBundle loadNextPage( @Nonnull IGenericClient client, @Nonnull IBaseBundle bundle )
+    {
+        return hasNextPage( bundle ) ? client.loadPage().next( bundle ).execute() : null;
+    }
+
+    @Override
+    protected boolean hasNextPage( @Nonnull IBaseBundle bundle )
     {
         final Bundle b = (Bundle) bundle;
         final Bundle.BundleLinkComponent link = b.getLink( Bundle.LINK_NEXT );
-        return ((link != null) && !link.isEmpty()) ? client.loadPage().next( bundle ).execute() : null;
+        return (link != null) && !link.isEmpty();
     }
 
     @Nullable
@@ -32,6 +32,7 @@ import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.rest.client.api.IGenericClient;
 import org.dhis2.fhir.adapter.fhir.client.impl.AbstractSubscriptionResourceItemRetriever;
 import org.dhis2.fhir.adapter.fhir.model.FhirVersion;
+import org.dhis2.fhir.adapter.fhir.repository.FhirClientRegistry;
 import org.hl7.fhir.instance.model.api.IAnyResource;
 import org.hl7.fhir.instance.model.api.IBaseBundle;
 import org.hl7.fhir.instance.model.api.IBaseConformance;
@@ -54,9 +55,9 @@ import java.util.stream.Collectors;
 @Component
 public class R4SubscriptionResourceItemRetrieverImpl extends AbstractSubscriptionResourceItemRetriever
 {
-    public R4SubscriptionResourceItemRetrieverImpl( @Nonnull @Qualifier( "fhirContextR4" ) FhirContext fhirContext )
+    public R4SubscriptionResourceItemRetrieverImpl( @Nonnull @Qualifier( "fhirContextR4" ) FhirContext fhirContext, @Nonnull FhirClientRegistry fhirClientRegistry )
     {
-        super( fhirContext );
+        super( fhirContext, fhirClientRegistry );
     }
 
     @Nonnull
@@ -99,10 +100,16 @@ public class R4SubscriptionResourceItemRetrieverImpl extends AbstractSubscriptio
     @Nullable
     @Override
     protected IBaseBundle loadNextPage( @Nonnull IGenericClient client, @Nonnull IBaseBundle bundle )
+    {
+        return hasNextPage( bundle ) ? client.loadPage().next( bundle ).execute() : null;
+    }
+
+    @Override
+    protected boolean hasNextPage( @Nonnull IBaseBundle bundle )
     {
         final Bundle b = (Bundle) bundle;
         final Bundle.BundleLinkComponent link = b.getLink( Bundle.LINK_NEXT );
-        return ((link != null) && !link.isEmpty()) ? client.loadPage().next( bundle ).execute() : null;
+        return (link != null) && !link.isEmpty();
     }
 
     @Nullable
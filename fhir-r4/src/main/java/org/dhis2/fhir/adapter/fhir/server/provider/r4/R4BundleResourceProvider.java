@@ -28,11 +28,14 @@ package org.dhis2.fhir.adapter.fhir.server.provider.r4;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.rest.annotation.Transaction;
 import ca.uhn.fhir.rest.annotation.TransactionParam;
 import ca.uhn.fhir.rest.api.server.RequestDetails;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import org.dhis2.fhir.adapter.auth.AuthorizationContext;
 import org.dhis2.fhir.adapter.cache.RequestCacheService;
+import org.dhis2.fhir.adapter.dhis.config.DhisBulkWriteConfig;
 import org.dhis2.fhir.adapter.fhir.metadata.repository.FhirClientResourceRepository;
 import org.dhis2.fhir.adapter.fhir.metadata.repository.FhirClientSystemRepository;
 import org.dhis2.fhir.adapter.fhir.model.FhirVersion;
@@ -43,8 +46,11 @@ import org.dhis2.fhir.adapter.fhir.repository.FhirOperationIssueSeverity;
 import org.dhis2.fhir.adapter.fhir.repository.FhirOperationIssueType;
 import org.dhis2.fhir.adapter.fhir.repository.FhirRepository;
 import org.dhis2.fhir.adapter.fhir.server.provider.AbstractBundleResourceProvider;
+import org.dhis2.fhir.adapter.fhir.transform.config.FhirRestInterfaceConfig;
 import org.hl7.fhir.r4.model.Bundle;
 import org.hl7.fhir.r4.model.OperationOutcome;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Nonnull;
@@ -60,9 +66,13 @@ import java.util.List;
 public class R4BundleResourceProvider extends AbstractBundleResourceProvider<Bundle>
 {
     public R4BundleResourceProvider( @Nonnull FhirClientResourceRepository fhirClientResourceRepository, @Nonnull FhirClientSystemRepository fhirClientSystemRepository,
-        @Nonnull FhirRepository fhirRepository, @Nonnull DhisRepository dhisRepository, @Nonnull RequestCacheService requestCacheService )
+        @Nonnull FhirRepository fhirRepository, @Nonnull DhisRepository dhisRepository, @Nonnull RequestCacheService requestCacheService,
+        @Nonnull AuthorizationContext authorizationContext, @Nonnull FhirRestInterfaceConfig restInterfaceConfig, @Nonnull @Qualifier( "fhirContextR4" ) FhirContext fhirContext,
+        @Nonnull @Qualifier( "fhirBundleTaskExecutor" ) TaskExecutor bundleTaskExecutor, @Nonnull DhisBulkWriteConfig bulkWriteConfig,
+        @Nonnull @Qualifier( "dhisBulkWriteTaskExecutor" ) TaskExecutor bulkWriteTaskExecutor )
     {
-        super( fhirClientResourceRepository, fhirClientSystemRepository, fhirRepository, dhisRepository, requestCacheService );
+        super( fhirClientResourceRepository, fhirClientSystemRepository, fhirRepository, dhisRepository, requestCacheService,
+            authorizationContext, restInterfaceConfig, fhirContext, bundleTaskExecutor, bulkWriteConfig, bulkWriteTaskExecutor );
     }
 
     @Nonnull
@@ -30,9 +30,7 @@ package org.dhis2.fhir.adapter.fhir.transform.fhir.impl.util.r4;
 
 import com.google.common.collect.Sets;
 import org.dhis2.fhir.adapter.fhir.metadata.model.ScriptArgUtils;
-import org.dhis2.fhir.adapter.fhir.metadata.model.SystemCode;
-import org.dhis2.fhir.adapter.fhir.metadata.repository.CodeRepository;
-import org.dhis2.fhir.adapter.fhir.metadata.repository.SystemCodeRepository;
+import org.dhis2.fhir.adapter.fhir.metadata.service.CodeDictionaryService;
 import org.dhis2.fhir.adapter.fhir.model.FhirVersion;
 import org.dhis2.fhir.adapter.fhir.model.SystemCodeValue;
 import org.dhis2.fhir.adapter.fhir.script.ScriptExecutionContext;
@@ -52,7 +50,6 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
@@ -71,10 +68,9 @@ public class R4CodeFhirToDhisTransformerUtils extends AbstractCodeFhirToDhisTran
     private final Logger logger = LoggerFactory.getLogger( getClass() );
 
     public R4CodeFhirToDhisTransformerUtils( @Nonnull ScriptExecutionContext scriptExecutionContext,
-        @Nonnull CodeRepository codeRepository,
-        @Nonnull SystemCodeRepository systemCodeRepository )
+        @Nonnull CodeDictionaryService codeDictionaryService )
     {
-        super( scriptExecutionContext, codeRepository, systemCodeRepository );
+        super( scriptExecutionContext, codeDictionaryService );
     }
 
     @Nonnull
@@ -142,14 +138,20 @@ public class R4CodeFhirToDhisTransformerUtils extends AbstractCodeFhirToDhisTran
         }
 
         final Set<String> checkedCodes = new HashSet<>();
-        final Collection<SystemCode> systemCodes = getSystemCodeRepository().findAllByCodes( convertedCodes );
-        for ( final SystemCode systemCode : systemCodes )
+        for ( final String code : convertedCodes )
         {
-            if ( containsCode( codeableConcept, systemCode.getSystem().getSystemUri(), systemCode.getSystemCode() ) )
+            final List<SystemCodeValue> systemCodeValues = getCodeDictionaryService().findSystemCodeValuesByCode( code );
+            for ( final SystemCodeValue systemCodeValue : systemCodeValues )
             {
-                return true;
+                if ( containsCode( codeableConcept, systemCodeValue.getSystem(), systemCodeValue.getCode() ) )
+                {
+                    return true;
+                }
+            }
+            if ( !systemCodeValues.isEmpty() )
+            {
+                checkedCodes.add( code );
             }
-            checkedCodes.add( systemCode.getCode().getCode() );
         }
         if ( logger.isDebugEnabled() && (checkedCodes.size() < convertedCodes.size()) )
         {
@@ -32,6 +32,7 @@ import ca.uhn.fhir.context.FhirContext;
 import org.dhis2.fhir.adapter.fhir.metadata.repository.FhirClientResourceRepository;
 import org.dhis2.fhir.adapter.fhir.metadata.repository.SystemCodeRepository;
 import org.dhis2.fhir.adapter.fhir.model.FhirVersion;
+import org.dhis2.fhir.adapter.fhir.repository.FhirClientRegistry;
 import org.dhis2.fhir.adapter.fhir.script.ScriptExecutionContext;
 import org.dhis2.fhir.adapter.fhir.transform.fhir.impl.util.AbstractFhirClientFhirToDhisTransformerUtils;
 import org.dhis2.fhir.adapter.scriptable.Scriptable;
@@ -60,9 +61,9 @@ import java.util.Set;
 public class R4FhirClientFhirToDhisTransformerUtils extends AbstractFhirClientFhirToDhisTransformerUtils
 {
     public R4FhirClientFhirToDhisTransformerUtils( @Nonnull ScriptExecutionContext scriptExecutionContext, @Nonnull @Qualifier( "fhirContextR4" ) FhirContext fhirContext,
-        @Nonnull FhirClientResourceRepository fhirClientResourceRepository, @Nonnull SystemCodeRepository systemCodeRepository )
+        @Nonnull FhirClientResourceRepository fhirClientResourceRepository, @Nonnull FhirClientRegistry fhirClientRegistry, @Nonnull SystemCodeRepository systemCodeRepository )
     {
-        super( scriptExecutionContext, fhirContext, fhirClientResourceRepository, systemCodeRepository );
+        super( scriptExecutionContext, fhirContext, fhirClientResourceRepository, fhirClientRegistry, systemCodeRepository );
     }
 
     @Nonnull
@@ -0,0 +1,189 @@
+package org.dhis2.fhir.adapter.fhir.repository.impl;
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.rest.client.api.IGenericClient;
+import org.dhis2.fhir.adapter.fhir.client.impl.FhirClientConfig;
+import org.dhis2.fhir.adapter.fhir.metadata.model.ClientFhirEndpoint;
+import org.dhis2.fhir.adapter.fhir.metadata.model.RequestHeader;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.annotation.Nonnull;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for {@link FhirClientRegistryImpl}.
+ *
+ * @author volsch
+ */
+public class FhirClientRegistryImplTest
+{
+    private static FhirContext fhirContext;
+
+    private FhirClientConfig fhirClientConfig;
+
+    private List<FhirClientRegistryImpl.RegisteredClient> createdClients;
+
+    private FhirClientRegistryImpl registry;
+
+    @BeforeClass
+    public static void beforeClass()
+    {
+        fhirContext = FhirContext.forR4();
+    }
+
+    @Before
+    public void before()
+    {
+        fhirClientConfig = new FhirClientConfig();
+        createdClients = new ArrayList<>();
+        registry = new FhirClientRegistryImpl( fhirClientConfig )
+        {
+            @Nonnull
+            @Override
+            protected RegisteredClient createClient( @Nonnull ClientKey key, @Nonnull FhirContext fhirContext, @Nonnull ClientFhirEndpoint fhirEndpoint )
+            {
+                final RegisteredClient registeredClient = super.createClient( key, fhirContext, fhirEndpoint );
+                createdClients.add( registeredClient );
+                return registeredClient;
+            }
+        };
+    }
+
+    @After
+    public void after()
+    {
+        registry.destroy();
+    }
+
+    @Test
+    public void getClientReused()
+    {
+        final UUID fhirClientId = UUID.randomUUID();
+        final IGenericClient client = registry.getClient( fhirContext, fhirClientId, createEndpoint( "http://localhost:8082/baseR4" ) );
+        Assert.assertEquals( "http://localhost:8082/baseR4", client.getServerBase() );
+        Assert.assertSame( client, registry.getClient( fhirContext, fhirClientId, createEndpoint( "http://localhost:8082/baseR4" ) ) );
+    }
+
+    @Test
+    public void getClientSeparatePerFhirClient()
+    {
+        final IGenericClient client = registry.getClient( fhirContext, UUID.randomUUID(), createEndpoint( "http://localhost:8082/baseR4" ) );
+        Assert.assertNotSame( client, registry.getClient( fhirContext, UUID.randomUUID(), createEndpoint( "http://localhost:8082/baseR4" ) ) );
+    }
+
+    @Test
+    public void getClientChangedBaseUrl()
+    {
+        final UUID fhirClientId = UUID.randomUUID();
+        final IGenericClient client = registry.getClient( fhirContext, fhirClientId, createEndpoint( "http://localhost:8082/baseR4" ) );
+        final IGenericClient changedClient = registry.getClient( fhirContext, fhirClientId, createEndpoint( "http://localhost:8083/baseR4" ) );
+        Assert.assertNotSame( client, changedClient );
+        Assert.assertEquals( "http://localhost:8083/baseR4", changedClient.getServerBase() );
+    }
+
+    @Test
+    public void getClientChangedHeaders()
+    {
+        final UUID fhirClientId = UUID.randomUUID();
+        final IGenericClient client = registry.getClient( fhirContext, fhirClientId, createEndpoint( "http://localhost:8082/baseR4" ) );
+
+        final ClientFhirEndpoint endpoint = createEndpoint( "http://localhost:8082/baseR4" );
+        endpoint.setHeaders( new ArrayList<>( Collections.singletonList( new RequestHeader( "Authorization", "Bearer 123", true ) ) ) );
+        Assert.assertNotSame( client, registry.getClient( fhirContext, fhirClientId, endpoint ) );
+    }
+
+    @Test
+    public void evict()
+    {
+        final UUID fhirClientId = UUID.randomUUID();
+        final IGenericClient client = registry.getClient( fhirContext, fhirClientId, createEndpoint( "http://localhost:8082/baseR4" ) );
+        registry.evict( fhirClientId );
+        Assert.assertNotSame( client, registry.getClient( fhirContext, fhirClientId, createEndpoint( "http://localhost:8082/baseR4" ) ) );
+    }
+
+    @Test
+    public void evictCloseDelay()
+    {
+        final UUID fhirClientId = UUID.randomUUID();
+        registry.getClient( fhirContext, fhirClientId, createEndpoint( "http://localhost:8082/baseR4" ) );
+        registry.evict( fhirClientId );
+        registry.closeRetiredClients();
+        Assert.assertEquals( 1, createdClients.size() );
+        Assert.assertFalse( createdClients.get( 0 ).isClosed() );
+
+        fhirClientConfig.setRetiredClientCloseDelay( Duration.ZERO );
+        registry.closeRetiredClients();
+        Assert.assertTrue( createdClients.get( 0 ).isClosed() );
+    }
+
+    @Test
+    public void replacedClosedAfterRequests() throws Exception
+    {
+        fhirClientConfig.setRetiredClientCloseDelay( Duration.ZERO );
+        final UUID fhirClientId = UUID.randomUUID();
+        registry.getClient( fhirContext, fhirClientId, createEndpoint( "http://localhost:8082/baseR4" ) );
+
+        // a request that uses the client is currently processed
+        final PoolingHttpClientConnectionManager connectionManager = createdClients.get( 0 ).getConnectionManager();
+        final HttpClientConnection connection = connectionManager.requestConnection( new HttpRoute( new HttpHost( "localhost", 8082 ) ), null ).get( 10, TimeUnit.SECONDS );
+
+        registry.getClient( fhirContext, fhirClientId, createEndpoint( "http://localhost:8083/baseR4" ) );
+        Assert.assertEquals( 2, createdClients.size() );
+        Assert.assertFalse( createdClients.get( 0 ).isClosed() );
+
+        connectionManager.releaseConnection( connection, null, 0, TimeUnit.MILLISECONDS );
+        registry.closeRetiredClients();
+        Assert.assertTrue( createdClients.get( 0 ).isClosed() );
+        Assert.assertFalse( createdClients.get( 1 ).isClosed() );
+    }
+
+    private static ClientFhirEndpoint createEndpoint( String baseUrl )
+    {
+        final ClientFhirEndpoint endpoint = new ClientFhirEndpoint();
+        endpoint.setBaseUrl( baseUrl );
+        endpoint.setUseJsonFormat( true );
+        endpoint.setHeaders( new ArrayList<>() );
+        return endpoint;
+    }
+}
@@ -0,0 +1,150 @@
+package org.dhis2.fhir.adapter.fhir.repository.impl;
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import ca.uhn.fhir.context.FhirContext;
+import org.dhis2.fhir.adapter.cache.CompressedRedisSerializer;
+import org.dhis2.fhir.adapter.spring.StaticObjectProvider;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.CodeableConcept;
+import org.hl7.fhir.r4.model.Coding;
+import org.hl7.fhir.r4.model.DateTimeType;
+import org.hl7.fhir.r4.model.DateType;
+import org.hl7.fhir.r4.model.Enumerations;
+import org.hl7.fhir.r4.model.HumanName;
+import org.hl7.fhir.r4.model.Immunization;
+import org.hl7.fhir.r4.model.InstantType;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Quantity;
+import org.hl7.fhir.r4.model.Reference;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import javax.annotation.Nonnull;
+import java.util.Collections;
+import java.util.Date;
+
+/**
+ * Unit tests for {@link FhirResourceRedisSerializer} with and without compression.
+ * The tests also log encoding and decoding times and the resulting sizes.
+ *
+ * @author volsch
+ */
+public class FhirResourceRedisSerializerTest
+{
+    private static final int ITERATIONS = 500;
+
+    private static final Logger logger = LoggerFactory.getLogger( FhirResourceRedisSerializerTest.class );
+
+    private static FhirResourceRedisSerializer serializer;
+
+    private static RedisSerializer<IBaseResource> compressedSerializer;
+
+    @BeforeClass
+    public static void beforeClass()
+    {
+        serializer = new FhirResourceRedisSerializer( new StaticObjectProvider<>( Collections.singletonList( FhirContext.forR4() ) ) );
+        compressedSerializer = new CompressedRedisSerializer<>( serializer, FhirResourceCacheConfig.REDIS_COMPRESSION_DICTIONARY, true );
+    }
+
+    @Test
+    public void patient()
+    {
+        final Patient patient = new Patient();
+        patient.setId( "Patient/hajdhcjkeu7" );
+        patient.getMeta().setVersionId( "2" ).setLastUpdatedElement( new InstantType( "2019-03-10T12:23:48.000+01:00" ) );
+        patient.addIdentifier().setSystem( "http://example.sl/national-patient-id" ).setValue( "4711-8172-32" );
+        patient.addName( new HumanName().setFamily( "West" ).addGiven( "Joe" ).addGiven( "Alan" ) );
+        patient.setGender( Enumerations.AdministrativeGender.MALE );
+        patient.setBirthDateElement( new DateType( "2018-07-21" ) );
+        patient.addAddress().addLine( "Main Street 1" ).setCity( "Freetown" ).setCountry( "Sierra Leone" );
+        patient.setManagingOrganization( new Reference( "Organization/ldXIdLNUNEn" ) );
+        compare( patient );
+    }
+
+    @Test
+    public void observation()
+    {
+        final Observation observation = new Observation();
+        observation.setId( "Observation/a83kdjs7a11" );
+        observation.getMeta().setVersionId( "1" ).setLastUpdatedElement( new InstantType( "2019-03-10T12:23:48.000+01:00" ) );
+        observation.setStatus( Observation.ObservationStatus.FINAL );
+        observation.addCategory( new CodeableConcept().addCoding(
+            new Coding().setSystem( "http://terminology.hl7.org/CodeSystem/observation-category" ).setCode( "vital-signs" ) ) );
+        observation.setCode( new CodeableConcept().addCoding( new Coding().setSystem( "http://loinc.org" ).setCode( "29463-7" ).setDisplay( "Body weight" ) ) );
+        observation.setSubject( new Reference( "Patient/hajdhcjkeu7" ) );
+        observation.setEffective( new DateTimeType( new Date() ) );
+        observation.setValue( new Quantity().setValue( 7.5 ).setUnit( "kg" ).setSystem( "http://unitsofmeasure.org" ).setCode( "kg" ) );
+        compare( observation );
+    }
+
+    @Test
+    public void immunization()
+    {
+        final Immunization immunization = new Immunization();
+        immunization.setId( "Immunization/ps8dh28sjd2" );
+        immunization.getMeta().setVersionId( "3" ).setLastUpdatedElement( new InstantType( "2019-03-10T12:23:48.000+01:00" ) );
+        immunization.setStatus( Immunization.ImmunizationStatus.COMPLETED );
+        immunization.setVaccineCode( new CodeableConcept().addCoding(
+            new Coding().setSystem( "http://hl7.org/fhir/sid/cvx" ).setCode( "20" ).setDisplay( "DTaP" ) ) );
+        immunization.setPatient( new Reference( "Patient/hajdhcjkeu7" ) );
+        immunization.setOccurrence( new DateTimeType( new Date() ) );
+        immunization.setPrimarySource( true );
+        compare( immunization );
+    }
+
+    private void compare( @Nonnull IBaseResource resource )
+    {
+        final byte[] bytes = serializer.serialize( resource );
+        final byte[] compressedBytes = compressedSerializer.serialize( resource );
+        Assert.assertTrue( compressedBytes.length < bytes.length );
+
+        final String encoded = FhirContext.forR4().newJsonParser().encodeResourceToString( resource );
+        Assert.assertEquals( encoded, FhirContext.forR4().newJsonParser().encodeResourceToString( compressedSerializer.deserialize( compressedBytes ) ) );
+        Assert.assertEquals( encoded, FhirContext.forR4().newJsonParser().encodeResourceToString( compressedSerializer.deserialize( bytes ) ) );
+
+        logger.info( "{}: {} bytes uncompressed ({} ns), {} bytes compressed ({} ns)", resource.getClass().getSimpleName(),
+            bytes.length, measure( serializer, resource ), compressedBytes.length, measure( compressedSerializer, resource ) );
+    }
+
+    private long measure( @Nonnull RedisSerializer<IBaseResource> redisSerializer, @Nonnull IBaseResource resource )
+    {
+        final long begin = System.nanoTime();
+        for ( int i = 0; i < ITERATIONS; i++ )
+        {
+            redisSerializer.deserialize( redisSerializer.serialize( resource ) );
+        }
+        return (System.nanoTime() - begin) / ITERATIONS;
+    }
+}
@@ -0,0 +1,115 @@
+package org.dhis2.fhir.adapter.fhir.server.provider;
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import ca.uhn.fhir.context.FhirContext;
+import org.dhis2.fhir.adapter.fhir.metadata.model.FhirResourceType;
+import org.dhis2.fhir.adapter.fhir.repository.FhirBatchRequest;
+import org.dhis2.fhir.adapter.fhir.repository.FhirOperation;
+import org.dhis2.fhir.adapter.fhir.repository.FhirOperationType;
+import org.hamcrest.Matchers;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Reference;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit tests for {@link FhirBatchRequestUtils}.
+ *
+ * @author volsch
+ */
+public class FhirBatchRequestUtilsTest
+{
+    private final FhirContext fhirContext = FhirContext.forR4();
+
+    @Test
+    public void partition() throws Exception
+    {
+        final Observation observation1 = new Observation();
+        observation1.setSubject( new Reference( "Patient/ldXIdLNUNE1" ) );
+
+        final Observation observation2 = new Observation();
+        observation2.setSubject( new Reference( "Patient?identifier=http://test.com/patient|8972" ) );
+
+        final Observation observation3 = new Observation();
+        observation3.setSubject( new Reference( "http://test.com/fhir/Patient/ldXIdLNUNE3" ) );
+
+        final Observation observation4 = new Observation();
+        observation4.setSubject( new Reference( "Patient/ldXIdLNUNE3" ) );
+
+        final List<FhirOperation> operations = new ArrayList<>();
+        operations.add( new FhirOperation( FhirOperationType.PUT, FhirResourceType.PATIENT, null, "ldXIdLNUNE1", new Patient(), null ) );
+        operations.add( new FhirOperation( FhirOperationType.PUT, FhirResourceType.PATIENT, null, null, new Patient(),
+            new URI( "Patient?identifier=http%3A%2F%2Ftest.com%2Fpatient%7C8972" ) ) );
+        operations.add( new FhirOperation( FhirOperationType.POST, FhirResourceType.OBSERVATION, null, null, observation1, null ) );
+        operations.add( new FhirOperation( FhirOperationType.POST, FhirResourceType.OBSERVATION, null, null, observation2, null ) );
+        operations.add( new FhirOperation( FhirOperationType.POST, FhirResourceType.OBSERVATION, null, null, observation3, null ) );
+        operations.add( new FhirOperation( FhirOperationType.POST, FhirResourceType.OBSERVATION, null, null, observation4, null ) );
+        operations.add( new FhirOperation( FhirOperationType.DELETE, FhirResourceType.PATIENT, null, "ldXIdLNUNE5", null, null ) );
+        operations.add( new FhirOperation( FhirOperationType.POST, FhirResourceType.OBSERVATION, null, null, null, null ) );
+        operations.get( 7 ).getResult().badRequest( "Invalid data included" );
+
+        final List<FhirBatchRequest> partitions = FhirBatchRequestUtils.partition( fhirContext, new FhirBatchRequest( operations, false ) );
+
+        Assert.assertEquals( 4, partitions.size() );
+        Assert.assertThat( partitions.get( 0 ).getOperations(), Matchers.contains( operations.get( 0 ), operations.get( 2 ) ) );
+        Assert.assertThat( partitions.get( 1 ).getOperations(), Matchers.contains( operations.get( 1 ), operations.get( 3 ) ) );
+        Assert.assertThat( partitions.get( 2 ).getOperations(), Matchers.contains( operations.get( 4 ), operations.get( 5 ) ) );
+        Assert.assertThat( partitions.get( 3 ).getOperations(), Matchers.contains( operations.get( 6 ) ) );
+        Assert.assertFalse( partitions.get( 0 ).isTransactional() );
+    }
+
+    @Test
+    public void partitionTransitive()
+    {
+        final Observation observation1 = new Observation();
+        observation1.setSubject( new Reference( "Patient/ldXIdLNUNE1" ) );
+        observation1.addHasMember( new Reference( "Observation/ldXIdLNUNE7" ) );
+
+        final Observation observation2 = new Observation();
+        observation2.setId( "ldXIdLNUNE7" );
+        observation2.setSubject( new Reference( "Patient/ldXIdLNUNE2" ) );
+
+        final List<FhirOperation> operations = new ArrayList<>();
+        operations.add( new FhirOperation( FhirOperationType.PUT, FhirResourceType.PATIENT, null, "ldXIdLNUNE1", new Patient(), null ) );
+        operations.add( new FhirOperation( FhirOperationType.PUT, FhirResourceType.PATIENT, null, "ldXIdLNUNE2", new Patient(), null ) );
+        operations.add( new FhirOperation( FhirOperationType.POST, FhirResourceType.OBSERVATION, null, null, observation1, null ) );
+        operations.add( new FhirOperation( FhirOperationType.PUT, FhirResourceType.OBSERVATION, null, "ldXIdLNUNE7", observation2, null ) );
+
+        final List<FhirBatchRequest> partitions = FhirBatchRequestUtils.partition( fhirContext, new FhirBatchRequest( operations, false ) );
+
+        Assert.assertEquals( 1, partitions.size() );
+        Assert.assertThat( partitions.get( 0 ).getOperations(), Matchers.contains( operations.toArray() ) );
+    }
+}
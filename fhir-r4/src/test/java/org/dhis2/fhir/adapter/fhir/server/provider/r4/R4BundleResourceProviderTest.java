@@ -31,6 +31,7 @@ package org.dhis2.fhir.adapter.fhir.server.provider.r4;
 import ca.uhn.fhir.model.primitive.IdDt;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import org.dhis2.fhir.adapter.cache.RequestCacheService;
+import org.dhis2.fhir.adapter.dhis.config.DhisBulkWriteConfig;
 import org.dhis2.fhir.adapter.fhir.metadata.model.FhirClient;
 import org.dhis2.fhir.adapter.fhir.metadata.model.FhirClientResource;
 import org.dhis2.fhir.adapter.fhir.metadata.model.FhirResourceType;
@@ -54,6 +55,7 @@ import org.junit.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.mockito.Spy;
 import org.mockito.junit.MockitoJUnit;
 import org.mockito.junit.MockitoRule;
 
@@ -84,6 +86,9 @@ public class R4BundleResourceProviderTest
     @Mock
     private RequestCacheService requestCacheService;
 
+    @Spy
+    private DhisBulkWriteConfig bulkWriteConfig = new DhisBulkWriteConfig();
+
     @InjectMocks
     private R4BundleResourceProvider provider;
 
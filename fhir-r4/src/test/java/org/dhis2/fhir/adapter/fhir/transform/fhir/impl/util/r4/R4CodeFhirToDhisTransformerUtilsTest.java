@@ -28,12 +28,8 @@ package org.dhis2.fhir.adapter.fhir.transform.fhir.impl.util.r4;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
-import org.dhis2.fhir.adapter.fhir.metadata.model.Code;
 import org.dhis2.fhir.adapter.fhir.metadata.model.FhirResourceType;
-import org.dhis2.fhir.adapter.fhir.metadata.model.System;
-import org.dhis2.fhir.adapter.fhir.metadata.model.SystemCode;
-import org.dhis2.fhir.adapter.fhir.metadata.repository.CodeRepository;
-import org.dhis2.fhir.adapter.fhir.metadata.repository.SystemCodeRepository;
+import org.dhis2.fhir.adapter.fhir.metadata.service.CodeDictionaryService;
 import org.dhis2.fhir.adapter.fhir.model.SystemCodeValue;
 import org.dhis2.fhir.adapter.fhir.script.ScriptExecution;
 import org.dhis2.fhir.adapter.fhir.script.ScriptExecutionContext;
@@ -69,10 +65,7 @@ public class R4CodeFhirToDhisTransformerUtilsTest
     private ScriptExecutionContext scriptExecutionContext;
 
     @Mock
-    private CodeRepository codeRepository;
-
-    @Mock
-    private SystemCodeRepository systemCodeRepository;
+    private CodeDictionaryService codeDictionaryService;
 
     @Mock
     private FhirToDhisTransformerContext context;
@@ -148,22 +141,10 @@ public class R4CodeFhirToDhisTransformerUtilsTest
     @Test
     public void containsMappingCodeFound()
     {
-        final System system1 = new System();
-        system1.setSystemUri( "http://test.com/3" );
-        final SystemCode systemCode1 = new SystemCode();
-        systemCode1.setSystemCode( "C3" );
-        systemCode1.setSystem( system1 );
-        systemCode1.setCode( new Code() );
-
-        final System system2 = new System();
-        system2.setSystemUri( "http://test.com/2" );
-        final SystemCode systemCode2 = new SystemCode();
-        systemCode2.setSystemCode( "C2" );
-        systemCode2.setSystem( system2 );
-        systemCode2.setCode( new Code() );
-
-        Mockito.doReturn( Arrays.asList( systemCode1, systemCode2 ) ).when( systemCodeRepository )
-            .findAllByCodes( Mockito.eq( Arrays.asList( "X_20", "X_21" ) ) );
+        Mockito.doReturn( Collections.singletonList( new SystemCodeValue( "http://test.com/3", "C3" ) ) )
+            .when( codeDictionaryService ).findSystemCodeValuesByCode( Mockito.eq( "X_20" ) );
+        Mockito.doReturn( Collections.singletonList( new SystemCodeValue( "http://test.com/2", "C2" ) ) )
+            .when( codeDictionaryService ).findSystemCodeValuesByCode( Mockito.eq( "X_21" ) );
         Assert.assertTrue( utils.containsMappingCode( new CodeableConcept().addCoding( new Coding().setSystem( "http://test.com/1" ).setCode( "C1" ) )
             .addCoding( new Coding().setSystem( "http://test.com/2" ).setCode( "C2" ) ), new Object[]{ "X_20", "X_21" } ) );
     }
@@ -171,22 +152,10 @@ public class R4CodeFhirToDhisTransformerUtilsTest
     @Test
     public void containsMappingCodeNotFound()
     {
-        final System system1 = new System();
-        system1.setSystemUri( "http://test.com/3" );
-        final SystemCode systemCode1 = new SystemCode();
-        systemCode1.setSystemCode( "C3" );
-        systemCode1.setSystem( system1 );
-        systemCode1.setCode( new Code() );
-
-        final System system2 = new System();
-        system2.setSystemUri( "http://test.com/4" );
-        final SystemCode systemCode2 = new SystemCode();
-        systemCode2.setSystemCode( "C4" );
-        systemCode2.setSystem( system2 );
-        systemCode2.setCode( new Code() );
-
-        Mockito.doReturn( Arrays.asList( systemCode1, systemCode2 ) ).when( systemCodeRepository )
-            .findAllByCodes( Mockito.eq( Arrays.asList( "X_20", "X_21" ) ) );
+        Mockito.doReturn( Collections.singletonList( new SystemCodeValue( "http://test.com/3", "C3" ) ) )
+            .when( codeDictionaryService ).findSystemCodeValuesByCode( Mockito.eq( "X_20" ) );
+        Mockito.doReturn( Collections.singletonList( new SystemCodeValue( "http://test.com/4", "C4" ) ) )
+            .when( codeDictionaryService ).findSystemCodeValuesByCode( Mockito.eq( "X_21" ) );
         Assert.assertFalse( utils.containsMappingCode( new CodeableConcept().addCoding( new Coding().setSystem( "http://test.com/1" ).setCode( "C1" ) )
             .addCoding( new Coding().setSystem( "http://test.com/2" ).setCode( "C2" ) ), new Object[]{ "X_20", "X_21" } ) );
     }
@@ -275,46 +244,23 @@ public class R4CodeFhirToDhisTransformerUtilsTest
     @Test
     public void getSystemCodeValuesByMappingCodes()
     {
-        final System system1 = new System();
-        system1.setSystemUri( "http://test.com/3" );
-        final Code code1 = new Code();
-        code1.setCode( "X_20" );
-        final SystemCode systemCode1 = new SystemCode();
-        systemCode1.setSystemCode( "C3" );
-        systemCode1.setSystem( system1 );
-        systemCode1.setCode( code1 );
-
-        final System system2 = new System();
-        system2.setSystemUri( "http://test.com/4" );
-        final Code code2 = new Code();
-        code2.setCode( "X_21" );
-        final SystemCode systemCode2 = new SystemCode();
-        systemCode2.setSystemCode( "C4" );
-        systemCode2.setSystem( system2 );
-        systemCode2.setCode( code2 );
-
-        final System system3 = new System();
-        system2.setSystemUri( "http://test.com/5" );
-        final Code code3 = new Code();
-        code3.setCode( "X_21" );
-        final SystemCode systemCode3 = new SystemCode();
-        systemCode3.setSystemCode( "C5" );
-        systemCode3.setSystem( system2 );
-        systemCode3.setCode( code3 );
-
-        Mockito.doReturn( Arrays.asList( systemCode1, systemCode2, systemCode3 ) ).when( systemCodeRepository )
-            .findAllByCodes( Mockito.eq( Arrays.asList( "X_20", "X_21" ) ) );
+        final SystemCodeValue systemCodeValue1 = new SystemCodeValue( "http://test.com/3", "C3" );
+        final SystemCodeValue systemCodeValue2 = new SystemCodeValue( "http://test.com/4", "C4" );
+        final SystemCodeValue systemCodeValue3 = new SystemCodeValue( "http://test.com/5", "C5" );
+
+        Mockito.doReturn( Collections.singletonList( systemCodeValue1 ) ).when( codeDictionaryService ).findSystemCodeValuesByCode( Mockito.eq( "X_20" ) );
+        Mockito.doReturn( Arrays.asList( systemCodeValue2, systemCodeValue3 ) ).when( codeDictionaryService ).findSystemCodeValuesByCode( Mockito.eq( "X_21" ) );
         final Map<String, List<SystemCodeValue>> result =
             utils.getSystemCodeValuesByMappingCodes( new Object[]{ "X_20", "X_21" } );
 
         Assert.assertEquals( 2, result.size() );
         Assert.assertNotNull( result.get( "X_20" ) );
         Assert.assertEquals( 1, result.get( "X_20" ).size() );
-        Assert.assertEquals( systemCode1.getCalculatedSystemCodeValue(), result.get( "X_20" ).get( 0 ) );
+        Assert.assertEquals( systemCodeValue1, result.get( "X_20" ).get( 0 ) );
         Assert.assertNotNull( result.get( "X_21" ) );
         Assert.assertEquals( 2, result.get( "X_21" ).size() );
-        Assert.assertEquals( systemCode2.getCalculatedSystemCodeValue(), result.get( "X_21" ).get( 0 ) );
-        Assert.assertEquals( systemCode3.getCalculatedSystemCodeValue(), result.get( "X_21" ).get( 1 ) );
+        Assert.assertEquals( systemCodeValue2, result.get( "X_21" ).get( 0 ) );
+        Assert.assertEquals( systemCodeValue3, result.get( "X_21" ).get( 1 ) );
     }
 
     @Test
@@ -357,29 +303,8 @@ public class R4CodeFhirToDhisTransformerUtilsTest
         Mockito.doReturn( request ).when( context ).getFhirRequest();
         Mockito.doReturn( Optional.of( resourceSystem ) ).when( request ).getOptionalResourceSystem( FhirResourceType.ORGANIZATION );
 
-        final Code code = new Code();
-        code.setCode( "ABC_1" );
-        Mockito.doReturn( Collections.singletonList( code ) ).when( codeRepository ).findAllBySystemCodes( Mockito.eq( Collections.singleton( "http://test.com/2|TEST_1" ) ) );
+        Mockito.doReturn( "ABC_1" ).when( codeDictionaryService ).findMappedCode( Mockito.eq( new SystemCodeValue( "http://test.com/2", "TEST_1" ) ) );
 
         Assert.assertEquals( "ABC_1", utils.getMappedCode( "TEST_1", "ORGANIZATION" ) );
     }
-
-    @Test
-    public void getMappedCodeFoundMapped()
-    {
-        final ResourceSystem resourceSystem = new ResourceSystem( FhirResourceType.ORGANIZATION, "http://test.com/2", null, null, null, false );
-
-        Mockito.doReturn( scriptExecution ).when( scriptExecutionContext ).getScriptExecution();
-        Mockito.doReturn( variables ).when( scriptExecution ).getVariables();
-        Mockito.doReturn( context ).when( variables ).get( Mockito.eq( "context" ) );
-        Mockito.doReturn( request ).when( context ).getFhirRequest();
-        Mockito.doReturn( Optional.of( resourceSystem ) ).when( request ).getOptionalResourceSystem( FhirResourceType.ORGANIZATION );
-
-        final Code code = new Code();
-        code.setCode( "ABC_1" );
-        code.setMappedCode( "CBA_1" );
-        Mockito.doReturn( Collections.singletonList( code ) ).when( codeRepository ).findAllBySystemCodes( Mockito.eq( Collections.singleton( "http://test.com/2|TEST_1" ) ) );
-
-        Assert.assertEquals( "CBA_1", utils.getMappedCode( "TEST_1", "ORGANIZATION" ) );
-    }
 }
\ No newline at end of file
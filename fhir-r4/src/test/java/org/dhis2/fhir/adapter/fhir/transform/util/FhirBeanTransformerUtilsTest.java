@@ -0,0 +1,193 @@
+package org.dhis2.fhir.adapter.fhir.transform.util;
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.parser.IParser;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.CodeableConcept;
+import org.hl7.fhir.r4.model.Coding;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Quantity;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * Unit tests for {@link FhirBeanTransformerUtils}. The copies of the resources
+ * must be equal to the clones that are created by a JSON round trip. The tests
+ * also log the execution times of both ways to clone a resource.
+ *
+ * @author volsch
+ */
+public class FhirBeanTransformerUtilsTest
+{
+    private static final int ITERATIONS = 2_000;
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    private final FhirContext fhirContext = FhirContext.forR4();
+
+    @Test
+    public void cloneNull()
+    {
+        Assert.assertNull( FhirBeanTransformerUtils.clone( fhirContext, (IBaseResource) null ) );
+        Assert.assertNull( FhirBeanTransformerUtils.clone( fhirContext, (List<IBaseResource>) null ) );
+    }
+
+    @Test
+    public void clonePatient()
+    {
+        final Patient patient = createPatient();
+        final Patient copy = assertClone( patient );
+
+        Assert.assertEquals( "Patient/4711/_history/3", copy.getIdElement().getValue() );
+        Assert.assertEquals( "3", copy.getMeta().getVersionId() );
+        copy.getNameFirstRep().setFamily( "Changed" );
+        Assert.assertEquals( "Smith", patient.getNameFirstRep().getFamily() );
+    }
+
+    @Test
+    public void cloneObservationWithContained()
+    {
+        final Observation observation = createObservation();
+        final Observation copy = assertClone( observation );
+
+        Assert.assertNotNull( copy.getSubject().getResource() );
+        Assert.assertSame( copy.getContained().get( 0 ), copy.getSubject().getResource() );
+        Assert.assertNotSame( observation.getContained().get( 0 ), copy.getContained().get( 0 ) );
+    }
+
+    @Test
+    public void cloneBundle()
+    {
+        final Bundle bundle = createBundle();
+        final Bundle copy = assertClone( bundle );
+
+        final Observation observation = (Observation) copy.getEntry().get( 1 ).getResource();
+        Assert.assertSame( observation.getContained().get( 0 ), observation.getSubject().getResource() );
+    }
+
+    @Test
+    public void cloneList()
+    {
+        final List<Patient> copy = FhirBeanTransformerUtils.clone( fhirContext, Collections.singletonList( createPatient() ) );
+
+        Assert.assertNotNull( copy );
+        Assert.assertEquals( 1, copy.size() );
+        Assert.assertEquals( "Smith", copy.get( 0 ).getNameFirstRep().getFamily() );
+    }
+
+    @Test
+    public void executionTimes()
+    {
+        final Bundle bundle = createBundle();
+        final IParser parser = fhirContext.newJsonParser();
+        final long jsonTime = measure( bundle, b -> parser.parseResource( Bundle.class, parser.encodeResourceToString( b ) ) );
+        final long copyTime = measure( bundle, b -> FhirBeanTransformerUtils.clone( fhirContext, b ) );
+
+        logger.info( "Average clone time of a bundle {} ns by JSON round trip and {} ns by copy.",
+            jsonTime / ITERATIONS, copyTime / ITERATIONS );
+    }
+
+    private long measure( @Nonnull Bundle bundle, @Nonnull UnaryOperator<Bundle> cloner )
+    {
+        for ( int i = 0; i < ITERATIONS; i++ )
+        {
+            cloner.apply( bundle );
+        }
+
+        final long start = System.nanoTime();
+        for ( int i = 0; i < ITERATIONS; i++ )
+        {
+            cloner.apply( bundle );
+        }
+        return System.nanoTime() - start;
+    }
+
+    @Nonnull
+    private <T extends IBaseResource> T assertClone( @Nonnull T resource )
+    {
+        final IParser parser = fhirContext.newJsonParser();
+        final T copy = FhirBeanTransformerUtils.clone( fhirContext, resource );
+
+        Assert.assertNotNull( copy );
+        Assert.assertNotSame( resource, copy );
+        Assert.assertSame( resource.getClass(), copy.getClass() );
+        Assert.assertEquals( parser.encodeResourceToString( parser.parseResource( resource.getClass(), parser.encodeResourceToString( resource ) ) ),
+            parser.encodeResourceToString( copy ) );
+        return copy;
+    }
+
+    @Nonnull
+    private static Patient createPatient()
+    {
+        final Patient patient = new Patient();
+        patient.setId( "http://localhost/fhir/Patient/4711/_history/3" );
+        patient.addIdentifier().setSystem( "http://example.sl/patients" ).setValue( "PT_88589" );
+        patient.addName().setFamily( "Smith" ).addGiven( "John" ).addGiven( "Joe" );
+        patient.getBirthDateElement().setValueAsString( "2011-05-17" );
+        return patient;
+    }
+
+    @Nonnull
+    private static Observation createObservation()
+    {
+        final Patient patient = new Patient();
+        patient.setId( "#p1" );
+        patient.addName().setFamily( "Smith" );
+
+        final Observation observation = new Observation();
+        observation.setId( "Observation/81723" );
+        observation.addContained( patient );
+        observation.getSubject().setReference( "#p1" );
+        observation.setCode( new CodeableConcept().addCoding( new Coding().setSystem( "http://loinc.org" ).setCode( "8302-2" ) ) );
+        observation.addComponent().setValue( new Quantity().setValue( 172.4 ).setUnit( "cm" ) );
+        observation.addComponent().setValue( new Quantity().setValue( 72.1 ).setUnit( "kg" ) );
+        return observation;
+    }
+
+    @Nonnull
+    private static Bundle createBundle()
+    {
+        final Bundle bundle = new Bundle();
+        bundle.setType( Bundle.BundleType.SEARCHSET );
+        bundle.addEntry().setFullUrl( "http://localhost/fhir/Patient/4711" ).setResource( createPatient() );
+        bundle.addEntry().setFullUrl( "http://localhost/fhir/Observation/81723" ).setResource( createObservation() );
+        return bundle;
+    }
+}
@@ -39,12 +39,13 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.http.NameValuePair;
 import org.apache.http.client.utils.URLEncodedUtils;
 import org.dhis2.fhir.adapter.data.model.ProcessedItemInfo;
+import org.dhis2.fhir.adapter.data.processor.ChunkedItemConsumer;
 import org.dhis2.fhir.adapter.data.processor.DataProcessorItemRetriever;
 import org.dhis2.fhir.adapter.data.processor.QueuedDataProcessorException;
 import org.dhis2.fhir.adapter.fhir.client.ProcessedFhirItemInfoUtils;
 import org.dhis2.fhir.adapter.fhir.metadata.model.FhirClientResource;
 import org.dhis2.fhir.adapter.fhir.model.FhirVersionRestricted;
-import org.dhis2.fhir.adapter.fhir.repository.FhirClientUtils;
+import org.dhis2.fhir.adapter.fhir.repository.FhirClientRegistry;
 import org.hl7.fhir.instance.model.api.IAnyResource;
 import org.hl7.fhir.instance.model.api.IBaseBundle;
 import org.hl7.fhir.instance.model.api.IBaseConformance;
@@ -76,7 +77,11 @@ import java.util.stream.Collectors;
  * Retrieves the data for the specified subscription beginning from the last
  * updated timestamp that is associated with the FHIR client resource.
  * The retriever must be able to handle that the FHIR client does not support
- * paging.
+ * paging. In streaming mode the retrieved resources are passed to the consumer
+ * page by page and the search is continued with a new search beginning at the
+ * last updated timestamp of the last page. Since this requires that the FHIR
+ * client sorts by last updated timestamp, streaming is only used if sorting is
+ * supported.
  *
  * @author volsch
  */
@@ -86,11 +91,14 @@ public abstract class AbstractSubscriptionResourceItemRetriever implements DataP
 
     private final FhirContext fhirContext;
 
+    private final FhirClientRegistry fhirClientRegistry;
+
     private int maxConsumedSize = 1000;
 
-    protected AbstractSubscriptionResourceItemRetriever( @Nonnull FhirContext fhirContext )
+    protected AbstractSubscriptionResourceItemRetriever( @Nonnull FhirContext fhirContext, @Nonnull FhirClientRegistry fhirClientRegistry )
     {
         this.fhirContext = fhirContext;
+        this.fhirClientRegistry = fhirClientRegistry;
     }
 
     public int getMaxConsumedSize()
@@ -108,7 +116,7 @@ public abstract class AbstractSubscriptionResourceItemRetriever implements DataP
     public Instant poll( @Nonnull FhirClientResource group, @Nonnull Instant lastUpdated, int maxSearchCount, @Nonnull Consumer<Collection<ProcessedItemInfo>> consumer )
     {
         final String resourceName = group.getFhirResourceType().getResourceTypeName();
-        final IGenericClient client = FhirClientUtils.createClient( fhirContext, group.getFhirClient().getFhirEndpoint() );
+        final IGenericClient client = fhirClientRegistry.getClient( fhirContext, group.getFhirClient().getId(), group.getFhirClient().getFhirEndpoint() );
         final boolean sortSupported = group.getFhirClient().getFhirEndpoint().isSortSupported();
 
         Instant processedLastUpdated = null;
@@ -240,6 +248,74 @@ public abstract class AbstractSubscriptionResourceItemRetriever implements DataP
         return processedLastUpdated;
     }
 
+    @Override
+    @Nonnull
+    public Instant pollStreaming( @Nonnull FhirClientResource group, @Nonnull Instant lastUpdated, int maxSearchCount, @Nonnull Consumer<Collection<ProcessedItemInfo>> consumer, @Nonnull Consumer<Instant> checkpointConsumer )
+    {
+        if ( !group.getFhirClient().getFhirEndpoint().isSortSupported() )
+        {
+            logger.debug( "FHIR client resource {} does not support sorting and cannot be polled in streaming mode.", group.getId() );
+            return poll( group, lastUpdated, maxSearchCount, consumer );
+        }
+
+        final String resourceName = group.getFhirResourceType().getResourceTypeName();
+        final IGenericClient client = fhirClientRegistry.getClient( fhirContext, group.getFhirClient().getId(), group.getFhirClient().getFhirEndpoint() );
+        // last updated must be set before the first search invocation
+        final Instant processedLastUpdated = Instant.now();
+        // the window must at least contain the resources of the current and the previous page
+        final ChunkedItemConsumer chunkedConsumer = new ChunkedItemConsumer( consumer, maxConsumedSize, Math.max( maxConsumedSize, maxSearchCount ) * 2 );
+
+        Instant fromLastUpdated = lastUpdated;
+        Instant checkpoint = lastUpdated;
+        IBaseBundle bundle = null;
+        boolean moreAvailable;
+        do
+        {
+            if ( bundle == null )
+            {
+                logger.debug( "Streaming next since {} for FHIR client resource {} with maximum count {}.", fromLastUpdated, group.getId(), maxSearchCount );
+                bundle = createBaseQuery( client, resourceName, group, fromLastUpdated.minus( group.getFhirClient().getToleranceMillis(), ChronoUnit.MILLIS ) )
+                    .count( maxSearchCount ).returnBundle( getBundleClass() ).elementsSubset( "meta", "id" ).sort().ascending( "_lastUpdated" ).execute();
+            }
+
+            final List<ProcessedItemInfo> resources = getResourceEntries( bundle ).stream()
+                .map( ProcessedFhirItemInfoUtils::create ).collect( Collectors.toList() );
+            chunkedConsumer.addAll( resources );
+            chunkedConsumer.flush();
+
+            moreAvailable = !resources.isEmpty() && hasNextPage( bundle );
+            if ( moreAvailable )
+            {
+                final Instant maxLastUpdated = resources.stream().map( ProcessedItemInfo::getLastUpdated )
+                    .filter( Objects::nonNull ).max( Comparator.naturalOrder() ).orElse( null );
+                if ( (maxLastUpdated != null) && maxLastUpdated.isAfter( fromLastUpdated ) )
+                {
+                    // all resources before the maximum last updated timestamp have been consumed since the result is sorted,
+                    // a new search is used instead of paging since paging need not to be stable while resources are updated
+                    fromLastUpdated = maxLastUpdated;
+                    bundle = null;
+
+                    final Instant nextCheckpoint = maxLastUpdated.isAfter( processedLastUpdated ) ? processedLastUpdated : maxLastUpdated;
+                    if ( nextCheckpoint.isAfter( checkpoint ) )
+                    {
+                        checkpoint = nextCheckpoint;
+                        checkpointConsumer.accept( checkpoint );
+                    }
+                }
+                else
+                {
+                    // all resources of the page have the same last updated timestamp and paging must be used
+                    bundle = loadNextPage( client, bundle );
+                    moreAvailable = !isEmpty( bundle );
+                }
+            }
+        }
+        while ( moreAvailable );
+
+        logger.debug( "Streamed {} resources for FHIR client resource {}.", chunkedConsumer.getCount(), group.getId() );
+        return processedLastUpdated;
+    }
+
     protected long getTotalCount( @Nonnull IGenericClient client, @Nonnull String resourceName, @Nonnull FhirClientResource fhirClientResource, @Nonnull Instant fromLastUpdated, @Nonnull IBaseBundle bundle )
     {
         Long totalCount = getBundleTotalCount( bundle );
@@ -284,6 +360,8 @@ public abstract class AbstractSubscriptionResourceItemRetriever implements DataP
     @Nullable
     protected abstract IBaseBundle loadNextPage( @Nonnull IGenericClient client, @Nonnull IBaseBundle bundle );
 
+    protected abstract boolean hasNextPage( @Nonnull IBaseBundle bundle );
+
     protected abstract boolean isEmpty( @Nullable IBaseBundle bundle );
 
     @Nonnull
@@ -37,8 +37,10 @@ import org.springframework.validation.annotation.Validated;
 
 import javax.annotation.Nonnull;
 import javax.validation.Valid;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 import java.io.Serializable;
+import java.time.Duration;
 
 /**
  * Configuration for accepting and processing client web hook requests.
@@ -58,6 +60,17 @@ public class FhirClientConfig implements Serializable
     @Valid
     private QueueConfig restHookRequestQueue = new QueueConfig();
 
+    @Min( 1 )
+    private int maxConnections = 20;
+
+    @NotNull
+    private Duration connectionIdleTimeout = Duration.ofSeconds( 60 );
+
+    @NotNull
+    private Duration retiredClientCloseDelay = Duration.ofSeconds( 60 );
+
+    private boolean expressPayloadHandoff = true;
+
     public QueueConfig getRestHookRequestQueue()
     {
         return restHookRequestQueue;
@@ -67,4 +80,46 @@ public class FhirClientConfig implements Serializable
     {
         this.restHookRequestQueue = restHookRequestQueue;
     }
+
+    public int getMaxConnections()
+    {
+        return maxConnections;
+    }
+
+    public void setMaxConnections( int maxConnections )
+    {
+        this.maxConnections = maxConnections;
+    }
+
+    @Nonnull
+    public Duration getConnectionIdleTimeout()
+    {
+        return connectionIdleTimeout;
+    }
+
+    public void setConnectionIdleTimeout( @Nonnull Duration connectionIdleTimeout )
+    {
+        this.connectionIdleTimeout = connectionIdleTimeout;
+    }
+
+    @Nonnull
+    public Duration getRetiredClientCloseDelay()
+    {
+        return retiredClientCloseDelay;
+    }
+
+    public void setRetiredClientCloseDelay( @Nonnull Duration retiredClientCloseDelay )
+    {
+        this.retiredClientCloseDelay = retiredClientCloseDelay;
+    }
+
+    public boolean isExpressPayloadHandoff()
+    {
+        return expressPayloadHandoff;
+    }
+
+    public void setExpressPayloadHandoff( boolean expressPayloadHandoff )
+    {
+        this.expressPayloadHandoff = expressPayloadHandoff;
+    }
 }
@@ -50,11 +50,20 @@ public class FhirClientProcessorConfig implements Serializable
     @Min( value = 1 )
     private int maxProcessedAgeMinutes = 2 * 24 * 60;
 
+    @Min( value = 0 )
+    private int purgeIntervalMinutes = 60;
+
     @Min( value = 1 )
     private int parallelCount = 1;
 
     private boolean storeFhirResource;
 
+    private boolean compressFhirResource;
+
+    private boolean streamingPoll;
+
+    private boolean batchedEnqueue = true;
+
     public int getMaxSearchCount()
     {
         return maxSearchCount;
@@ -75,6 +84,16 @@ public class FhirClientProcessorConfig implements Serializable
         this.maxProcessedAgeMinutes = maxProcessedAgeMinutes;
     }
 
+    public int getPurgeIntervalMinutes()
+    {
+        return purgeIntervalMinutes;
+    }
+
+    public void setPurgeIntervalMinutes( int purgeIntervalMinutes )
+    {
+        this.purgeIntervalMinutes = purgeIntervalMinutes;
+    }
+
     public int getParallelCount()
     {
         return parallelCount;
@@ -94,4 +113,34 @@ public class FhirClientProcessorConfig implements Serializable
     {
         this.storeFhirResource = storeFhirResource;
     }
+
+    public boolean isCompressFhirResource()
+    {
+        return compressFhirResource;
+    }
+
+    public void setCompressFhirResource( boolean compressFhirResource )
+    {
+        this.compressFhirResource = compressFhirResource;
+    }
+
+    public boolean isStreamingPoll()
+    {
+        return streamingPoll;
+    }
+
+    public void setStreamingPoll( boolean streamingPoll )
+    {
+        this.streamingPoll = streamingPoll;
+    }
+
+    public boolean isBatchedEnqueue()
+    {
+        return batchedEnqueue;
+    }
+
+    public void setBatchedEnqueue( boolean batchedEnqueue )
+    {
+        this.batchedEnqueue = batchedEnqueue;
+    }
 }
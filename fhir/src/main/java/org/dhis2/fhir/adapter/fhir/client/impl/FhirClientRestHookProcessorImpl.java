@@ -66,6 +66,7 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.jms.annotation.JmsListener;
 import org.springframework.jms.core.JmsTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Propagation;
@@ -167,7 +168,7 @@ public class FhirClientRestHookProcessorImpl extends
         final boolean storeFhirResource = processorConfig.isStoreFhirResource();
         if ( storeFhirResource )
         {
-            subscriptionFhirResourceRepository.enqueue( fhirClientResource, contentType, fhirVersion, fhirResourceId, fhirResource );
+            subscriptionFhirResourceRepository.enqueue( fhirClientResource, contentType, fhirVersion, fhirResourceId, fhirResource, processorConfig.isCompressFhirResource() );
         }
         super.enqueueDataItem( fhirClientResource, processedItemInfo, storeFhirResource );
     }
@@ -181,6 +182,14 @@ public class FhirClientRestHookProcessorImpl extends
         super.receive( fhirClientRestHookRequest );
     }
 
+    @Scheduled( fixedDelay = PARTITION_MAINTENANCE_DELAY_MILLIS )
+    @Transactional( propagation = Propagation.NOT_SUPPORTED )
+    @Override
+    public void maintainPartitions()
+    {
+        super.maintainPartitions();
+    }
+
     @Override
     protected QueuedFhirClientRequestId createQueuedGroupId( @Nonnull FhirClientResource group )
     {
@@ -214,12 +223,30 @@ public class FhirClientRestHookProcessorImpl extends
         return processorConfig.getMaxProcessedAgeMinutes();
     }
 
+    @Override
+    protected int getPurgeIntervalMinutes()
+    {
+        return processorConfig.getPurgeIntervalMinutes();
+    }
+
     @Override
     protected int getMaxSearchCount()
     {
         return processorConfig.getMaxSearchCount();
     }
 
+    @Override
+    protected boolean isStreamingPoll()
+    {
+        return processorConfig.isStreamingPoll();
+    }
+
+    @Override
+    protected boolean isBatchedEnqueue()
+    {
+        return processorConfig.isBatchedEnqueue();
+    }
+
     @Nonnull
     @Override
     protected DataProcessorItemRetriever<FhirClientResource> getDataProcessorItemRetriever( @Nonnull FhirClientResource group )
@@ -30,6 +30,7 @@ package org.dhis2.fhir.adapter.fhir.data.model;
 
 import org.dhis2.fhir.adapter.fhir.metadata.model.FhirClientResource;
 import org.dhis2.fhir.adapter.fhir.model.FhirVersion;
+import org.dhis2.fhir.adapter.util.CompressionUtils;
 import org.hibernate.annotations.GenericGenerator;
 
 import javax.persistence.Basic;
@@ -43,6 +44,7 @@ import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.NamedQuery;
 import javax.persistence.Table;
+import javax.persistence.Transient;
 import java.io.Serializable;
 import java.time.Instant;
 import java.util.UUID;
@@ -75,6 +77,8 @@ public class SubscriptionFhirResource implements Serializable
 
     private String fhirResource;
 
+    private byte[] compressedFhirResource;
+
     @GeneratedValue( generator = "custom-uuid2" )
     @GenericGenerator( name = "custom-uuid2", strategy = "org.dhis2.fhir.adapter.hibernate.CustomUuidGenerator" )
     @Id
@@ -161,4 +165,38 @@ public class SubscriptionFhirResource implements Serializable
     {
         this.fhirResource = fhirResource;
     }
+
+    @Basic
+    @Column( name = "compressed_fhir_resource", columnDefinition = "BYTEA" )
+    public byte[] getCompressedFhirResource()
+    {
+        return compressedFhirResource;
+    }
+
+    public void setCompressedFhirResource( byte[] compressedFhirResource )
+    {
+        this.compressedFhirResource = compressedFhirResource;
+    }
+
+    /**
+     * @return the resource as a string (either JSON or XML), regardless if it
+     * has been stored compressed or uncompressed.
+     */
+    @Transient
+    public String getFhirResourceContent()
+    {
+        return (compressedFhirResource == null) ? fhirResource : CompressionUtils.decompress( compressedFhirResource );
+    }
+
+    /**
+     * Sets the resource either compressed or uncompressed.
+     *
+     * @param fhirResource the resource as a string (either JSON or XML).
+     * @param compressed   <code>true</code> if the resource should be stored compressed.
+     */
+    public void setFhirResourceContent( String fhirResource, boolean compressed )
+    {
+        this.fhirResource = compressed ? null : fhirResource;
+        this.compressedFhirResource = compressed ? CompressionUtils.compress( fhirResource ) : null;
+    }
 }
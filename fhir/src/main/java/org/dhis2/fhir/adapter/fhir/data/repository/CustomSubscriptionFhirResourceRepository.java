@@ -43,7 +43,7 @@ import java.util.Optional;
  */
 public interface CustomSubscriptionFhirResourceRepository
 {
-    void enqueue( @Nonnull FhirClientResource fhirClientResource, @Nullable String contentType, @Nonnull FhirVersion fhirVersion, @Nonnull String fhirResourceId, @Nonnull String fhirResource );
+    void enqueue( @Nonnull FhirClientResource fhirClientResource, @Nullable String contentType, @Nonnull FhirVersion fhirVersion, @Nonnull String fhirResourceId, @Nonnull String fhirResource, boolean compressed );
 
     boolean deleteEnqueued( @Nonnull SubscriptionFhirResource subscriptionFhirResource );
 
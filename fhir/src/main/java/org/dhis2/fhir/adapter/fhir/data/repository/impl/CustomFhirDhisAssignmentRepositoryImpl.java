@@ -33,67 +33,66 @@ import org.dhis2.fhir.adapter.fhir.data.model.FhirDhisAssignment;
 import org.dhis2.fhir.adapter.fhir.data.repository.CustomFhirDhisAssignmentRepository;
 import org.dhis2.fhir.adapter.fhir.metadata.model.AbstractRule;
 import org.dhis2.fhir.adapter.fhir.metadata.model.FhirClient;
-import org.dhis2.fhir.adapter.util.SqlExceptionUtils;
 import org.hl7.fhir.instance.model.api.IIdType;
-import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.dao.DataIntegrityViolationException;
-import org.springframework.dao.support.DataAccessUtils;
-import org.springframework.dao.support.PersistenceExceptionTranslator;
-import org.springframework.transaction.PlatformTransactionManager;
-import org.springframework.transaction.TransactionStatus;
-import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.transaction.support.DefaultTransactionDefinition;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.persistence.EntityManager;
 import javax.persistence.LockModeType;
-import javax.persistence.PersistenceContext;
-import javax.persistence.PersistenceException;
-import java.time.Instant;
 
 /**
- * Implementation of {@link CustomFhirDhisAssignmentRepository}.
+ * Implementation of {@link CustomFhirDhisAssignmentRepository}. Assignments are
+ * stored by the {@link FhirDhisAssignmentWriter} and are written through to the
+ * {@link FhirDhisAssignmentIndex}. Lookups of a rule are served from the index.
+ * Other lookups and lookups that are not contained in the index store the buffered
+ * assignments of the looked up resource ID only and read the database. Saves are
+ * never skipped, since the index may not contain the changes of other adapter
+ * instances.
  *
  * @author volsch
  */
 public class CustomFhirDhisAssignmentRepositoryImpl implements CustomFhirDhisAssignmentRepository
 {
-    private final PlatformTransactionManager platformTransactionManager;
-
-    @PersistenceContext
     private final EntityManager entityManager;
 
-    private final PersistenceExceptionTranslator persistenceExceptionTranslator;
+    private final FhirDhisAssignmentIndex index;
+
+    private final FhirDhisAssignmentWriter writer;
 
-    public CustomFhirDhisAssignmentRepositoryImpl( @Nonnull PlatformTransactionManager platformTransactionManager,
-        @Nonnull EntityManager entityManager, @Nonnull @Qualifier( "&entityManagerFactory" ) PersistenceExceptionTranslator persistenceExceptionTranslator )
+    public CustomFhirDhisAssignmentRepositoryImpl( @Nonnull EntityManager entityManager, @Nonnull FhirDhisAssignmentIndex index, @Nonnull FhirDhisAssignmentWriter writer )
     {
-        this.platformTransactionManager = platformTransactionManager;
         this.entityManager = entityManager;
-        this.persistenceExceptionTranslator = persistenceExceptionTranslator;
+        this.index = index;
+        this.writer = writer;
     }
 
     @Nullable
     @Override
     public String findFirstDhisResourceId( @Nonnull AbstractRule rule, @Nonnull FhirClient subscription, @Nonnull IIdType fhirResourceId )
     {
-        return findFirstDhisResourceId( rule, subscription, fhirResourceId, false );
-    }
+        String dhisResourceId = index.getDhisResourceId( rule.getId(), subscription.getId(), fhirResourceId.getIdPart() );
+        if ( dhisResourceId != null )
+        {
+            return dhisResourceId;
+        }
 
-    protected String findFirstDhisResourceId( @Nonnull AbstractRule rule, @Nonnull FhirClient subscription, @Nonnull IIdType fhirResourceId, boolean locked )
-    {
-        return entityManager.createNamedQuery( FhirDhisAssignment.FIND_FIRST_RULED_ID_BY_FHIR_NAMED_QUERY, String.class )
-            .setLockMode( locked ? LockModeType.PESSIMISTIC_WRITE : LockModeType.NONE )
+        writer.flush( a -> a.getFhirClientId().equals( subscription.getId() ) && a.getFhirResourceId().equals( fhirResourceId.getIdPart() ) );
+        dhisResourceId = entityManager.createNamedQuery( FhirDhisAssignment.FIND_FIRST_RULED_ID_BY_FHIR_NAMED_QUERY, String.class )
             .setParameter( "ruleId", rule.getId() ).setParameter( "subscriptionId", subscription.getId() )
             .setParameter( "fhirResourceId", fhirResourceId.getIdPart() ).getResultList().stream().findFirst().orElse( null );
+        if ( dhisResourceId != null )
+        {
+            index.assigned( rule.getId(), subscription.getId(), fhirResourceId.getIdPart(), dhisResourceId );
+        }
+        return dhisResourceId;
     }
 
     @Nullable
     @Override
     public String findFirstDhisResourceId( @Nonnull FhirClient fhirClient, @Nonnull IIdType fhirResourceId )
     {
+        writer.flush( a -> a.getFhirClientId().equals( fhirClient.getId() ) && a.getFhirResourceId().equals( fhirResourceId.getIdPart() ) );
         return entityManager.createNamedQuery( FhirDhisAssignment.FIND_FIRST_ID_BY_FHIR_NAMED_QUERY, String.class )
             .setParameter( "fhirClientId", fhirClient.getId() ).setParameter( "fhirResourceId", fhirResourceId.getIdPart() ).getResultList().stream().findFirst().orElse( null );
     }
@@ -102,81 +101,69 @@ public class CustomFhirDhisAssignmentRepositoryImpl implements CustomFhirDhisAss
     @Override
     public String findFirstFhirResourceId( @Nonnull AbstractRule rule, @Nonnull FhirClient subscription, @Nonnull DhisResourceId dhisResourceId )
     {
-        return entityManager.createNamedQuery( FhirDhisAssignment.FIND_FIRST_RULED_ID_BY_DHIS_NAMED_QUERY, String.class )
+        String fhirResourceId = index.getFhirResourceId( rule.getId(), subscription.getId(), dhisResourceId.getId() );
+        if ( fhirResourceId != null )
+        {
+            return fhirResourceId;
+        }
+
+        writer.flush( a -> a.getFhirClientId().equals( subscription.getId() ) && a.getDhisResourceId().equals( dhisResourceId.getId() ) );
+        fhirResourceId = entityManager.createNamedQuery( FhirDhisAssignment.FIND_FIRST_RULED_ID_BY_DHIS_NAMED_QUERY, String.class )
             .setParameter( "ruleId", rule.getId() ).setParameter( "subscriptionId", subscription.getId() )
             .setParameter( "dhisResourceId", dhisResourceId.getId() ).getResultList().stream().findFirst().orElse( null );
+        if ( fhirResourceId != null )
+        {
+            index.assigned( rule.getId(), subscription.getId(), fhirResourceId, dhisResourceId.getId() );
+        }
+        return fhirResourceId;
     }
 
     @Nullable
     @Override
     public String findFirstFhirResourceId( @Nonnull FhirClient fhirClient, @Nonnull DhisResourceId dhisResourceId )
     {
+        writer.flush( a -> a.getFhirClientId().equals( fhirClient.getId() ) && a.getDhisResourceId().equals( dhisResourceId.getId() ) );
         return entityManager.createNamedQuery( FhirDhisAssignment.FIND_FIRST_ID_BY_DHIS_NAMED_QUERY, String.class )
             .setParameter( "fhirClientId", fhirClient.getId() ).setParameter( "dhisResourceId", dhisResourceId.getId() ).getResultList().stream().findFirst().orElse( null );
     }
 
     @Override
-    @Transactional( propagation = Propagation.NOT_SUPPORTED )
     public boolean saveDhisResourceId( @Nonnull AbstractRule rule, @Nonnull FhirClient fhirClient, @Nonnull IIdType fhirResourceId, @Nonnull DhisResourceId dhisResourceId )
     {
-        boolean updated = false;
-        final TransactionStatus transactionStatus = platformTransactionManager.getTransaction( new DefaultTransactionDefinition() );
+        index.assigned( rule.getId(), fhirClient.getId(), fhirResourceId.getIdPart(), dhisResourceId.getId() );
         try
         {
-            final String existingId = findFirstDhisResourceId( rule, fhirClient, fhirResourceId, true );
-            if ( existingId == null )
-            {
-                updated = persist( rule, fhirClient, fhirResourceId, dhisResourceId );
-            }
-            else if ( !existingId.equals( dhisResourceId.getId() ) )
-            {
-                final FhirDhisAssignment assignment = entityManager.createNamedQuery( FhirDhisAssignment.FIND_FIRST_BY_FHIR_NAMED_QUERY, FhirDhisAssignment.class )
-                    .setParameter( "ruleId", rule.getId() ).setParameter( "subscriptionId", fhirClient.getId() )
-                    .setParameter( "fhirResourceId", fhirResourceId.getIdPart() ).setLockMode( LockModeType.PESSIMISTIC_WRITE ).getSingleResult();
-                assignment.setDhisResourceId( dhisResourceId.getId() );
-                updated = true;
-            }
+            return writer.write( new FhirDhisAssignmentWriter.PendingAssignment( rule.getId(), fhirClient.getId(), fhirResourceId.getIdPart(), dhisResourceId.getId(), false ) );
         }
-        finally
+        catch ( RuntimeException e )
         {
-            finalizeTransaction( transactionStatus );
+            index.invalidate( rule.getId(), fhirClient.getId(), fhirResourceId.getIdPart(), dhisResourceId.getId() );
+            throw e;
         }
-        return updated;
     }
 
     @Override
-    @Transactional( propagation = Propagation.NOT_SUPPORTED )
     public boolean saveFhirResourceId( @Nonnull AbstractRule rule, @Nonnull FhirClient subscription, @Nonnull DhisResourceId dhisResourceId, @Nonnull IIdType fhirResourceId )
     {
-        boolean updated = false;
-        final TransactionStatus transactionStatus = platformTransactionManager.getTransaction( new DefaultTransactionDefinition() );
+        index.assigned( rule.getId(), subscription.getId(), fhirResourceId.getIdPart(), dhisResourceId.getId() );
         try
         {
-            final String existingId = findFirstFhirResourceId( rule, subscription, dhisResourceId );
-            if ( existingId == null )
-            {
-                updated = persist( rule, subscription, fhirResourceId, dhisResourceId );
-            }
-            else if ( !existingId.equals( fhirResourceId.getIdPart() ) )
-            {
-                final FhirDhisAssignment assignment = entityManager.createNamedQuery( FhirDhisAssignment.FIND_FIRST_BY_DHIS_NAMED_QUERY, FhirDhisAssignment.class )
-                    .setParameter( "ruleId", rule.getId() ).setParameter( "subscriptionId", subscription.getId() )
-                    .setParameter( "dhisResourceId", dhisResourceId.getId() ).setLockMode( LockModeType.PESSIMISTIC_WRITE ).getSingleResult();
-                assignment.setFhirResourceId( fhirResourceId.getIdPart() );
-                updated = true;
-            }
+            return writer.write( new FhirDhisAssignmentWriter.PendingAssignment( rule.getId(), subscription.getId(), fhirResourceId.getIdPart(), dhisResourceId.getId(), true ) );
         }
-        finally
+        catch ( RuntimeException e )
         {
-            finalizeTransaction( transactionStatus );
+            index.invalidate( rule.getId(), subscription.getId(), fhirResourceId.getIdPart(), dhisResourceId.getId() );
+            throw e;
         }
-        return updated;
     }
 
     @Override
     @Transactional
     public boolean deleteFhirResourceId( @Nonnull AbstractRule rule, @Nonnull FhirClient subscription, @Nonnull IIdType fhirResourceId )
     {
+        writer.flush( a -> a.getFhirClientId().equals( subscription.getId() ) && a.getFhirResourceId().equals( fhirResourceId.getIdPart() ) );
+        index.unassignedFhirResourceId( rule.getId(), subscription.getId(), fhirResourceId.getIdPart() );
+
         final FhirDhisAssignment assignment = entityManager.createNamedQuery( FhirDhisAssignment.FIND_FIRST_BY_FHIR_NAMED_QUERY, FhirDhisAssignment.class )
             .setParameter( "ruleId", rule.getId() ).setParameter( "subscriptionId", subscription.getId() )
             .setParameter( "fhirResourceId", fhirResourceId.getIdPart() ).setLockMode( LockModeType.PESSIMISTIC_WRITE ).getResultList().stream().findFirst().orElse( null );
@@ -187,52 +174,4 @@ public class CustomFhirDhisAssignmentRepositoryImpl implements CustomFhirDhisAss
         }
         return false;
     }
-
-    private boolean persist( @Nonnull AbstractRule rule, @Nonnull FhirClient subscription, @Nonnull IIdType fhirResourceId, @Nonnull DhisResourceId dhisResourceId )
-    {
-        final FhirDhisAssignment assignment = new FhirDhisAssignment();
-        assignment.setCreatedAt( Instant.now() );
-        assignment.setRule( entityManager.getReference( AbstractRule.class, rule.getId() ) );
-        assignment.setFhirClient( entityManager.getReference( FhirClient.class, subscription.getId() ) );
-        assignment.setFhirResourceId( fhirResourceId.getIdPart() );
-        assignment.setDhisResourceId( dhisResourceId.getId() );
-
-        try
-        {
-            entityManager.persist( assignment );
-            entityManager.flush();
-            return true;
-        }
-        catch ( PersistenceException e )
-        {
-            final RuntimeException runtimeException = DataAccessUtils.translateIfNecessary(
-                e, persistenceExceptionTranslator );
-            if ( runtimeException instanceof DataIntegrityViolationException )
-            {
-                final DataIntegrityViolationException dataIntegrityViolationException =
-                    (DataIntegrityViolationException) runtimeException;
-                if ( !SqlExceptionUtils.isUniqueKeyViolation( dataIntegrityViolationException.getMostSpecificCause() ) )
-                {
-                    throw runtimeException;
-                }
-            }
-            else
-            {
-                throw runtimeException;
-            }
-        }
-        return false;
-    }
-
-    private void finalizeTransaction( @Nonnull TransactionStatus transactionStatus )
-    {
-        if ( transactionStatus.isRollbackOnly() )
-        {
-            platformTransactionManager.rollback( transactionStatus );
-        }
-        else
-        {
-            platformTransactionManager.commit( transactionStatus );
-        }
-    }
 }
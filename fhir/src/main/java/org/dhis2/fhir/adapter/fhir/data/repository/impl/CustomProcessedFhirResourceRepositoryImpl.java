@@ -29,10 +29,12 @@ package org.dhis2.fhir.adapter.fhir.data.repository.impl;
  */
 
 import org.dhis2.fhir.adapter.data.repository.impl.AbstractProcessedItemRepositoryImpl;
+import org.dhis2.fhir.adapter.data.repository.impl.DayPartitionManager;
 import org.dhis2.fhir.adapter.fhir.data.model.ProcessedFhirResource;
 import org.dhis2.fhir.adapter.fhir.data.model.ProcessedFhirResourceId;
 import org.dhis2.fhir.adapter.fhir.data.repository.CustomProcessedFhirResourceRepository;
 import org.dhis2.fhir.adapter.fhir.metadata.model.FhirClientResource;
+import org.springframework.jdbc.core.JdbcTemplate;
 
 import javax.annotation.Nonnull;
 import javax.persistence.EntityManager;
@@ -44,9 +46,10 @@ import javax.persistence.EntityManager;
  */
 public class CustomProcessedFhirResourceRepositoryImpl extends AbstractProcessedItemRepositoryImpl<ProcessedFhirResource, ProcessedFhirResourceId, FhirClientResource> implements CustomProcessedFhirResourceRepository
 {
-    public CustomProcessedFhirResourceRepositoryImpl( @Nonnull EntityManager entityManager )
+    public CustomProcessedFhirResourceRepositoryImpl( @Nonnull EntityManager entityManager, @Nonnull JdbcTemplate jdbcTemplate )
     {
-        super( entityManager );
+        super( entityManager, jdbcTemplate, new DayPartitionManager( jdbcTemplate, "fhir_processed_resource", "processed_at" ),
+            "fhir_client_resource_id", "versioned_fhir_resource_id" );
     }
 
     @Nonnull
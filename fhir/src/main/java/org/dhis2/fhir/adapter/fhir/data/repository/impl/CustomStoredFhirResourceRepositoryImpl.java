@@ -29,12 +29,14 @@ package org.dhis2.fhir.adapter.fhir.data.repository.impl;
  */
 
 import org.dhis2.fhir.adapter.data.repository.impl.AbstractStoredItemRepositoryImpl;
+import org.dhis2.fhir.adapter.data.repository.impl.DayPartitionManager;
 import org.dhis2.fhir.adapter.fhir.data.model.StoredFhirResource;
 import org.dhis2.fhir.adapter.fhir.data.model.StoredFhirResourceId;
 import org.dhis2.fhir.adapter.fhir.data.repository.CustomStoredFhirResourceRepository;
 import org.dhis2.fhir.adapter.fhir.metadata.model.FhirClient;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.dao.support.PersistenceExceptionTranslator;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.transaction.PlatformTransactionManager;
 
 import javax.annotation.Nonnull;
@@ -49,9 +51,9 @@ import java.time.Instant;
 public class CustomStoredFhirResourceRepositoryImpl extends AbstractStoredItemRepositoryImpl<StoredFhirResource, StoredFhirResourceId, FhirClient> implements CustomStoredFhirResourceRepository
 {
     public CustomStoredFhirResourceRepositoryImpl( @Nonnull EntityManager entityManager, @Nonnull PlatformTransactionManager platformTransactionManager,
-        @Nonnull @Qualifier( "&entityManagerFactory" ) PersistenceExceptionTranslator persistenceExceptionTranslator )
+        @Nonnull @Qualifier( "&entityManagerFactory" ) PersistenceExceptionTranslator persistenceExceptionTranslator, @Nonnull JdbcTemplate jdbcTemplate )
     {
-        super( entityManager, platformTransactionManager, persistenceExceptionTranslator );
+        super( entityManager, platformTransactionManager, persistenceExceptionTranslator, new DayPartitionManager( jdbcTemplate, "fhir_stored_resource", "stored_at" ) );
     }
 
     @Nonnull
@@ -85,12 +85,12 @@ public class CustomSubscriptionFhirResourceRepositoryImpl implements CustomSubsc
 
     @Override
     @Transactional( propagation = Propagation.NOT_SUPPORTED )
-    public void enqueue( @Nonnull FhirClientResource fhirClientResource, @Nullable String contentType, @Nonnull FhirVersion fhirVersion, @Nonnull String fhirResourceId, @Nonnull String fhirResource )
+    public void enqueue( @Nonnull FhirClientResource fhirClientResource, @Nullable String contentType, @Nonnull FhirVersion fhirVersion, @Nonnull String fhirResourceId, @Nonnull String fhirResource, boolean compressed )
     {
-        enqueue( fhirClientResource, contentType, fhirVersion, fhirResourceId, fhirResource, 1 );
+        enqueue( fhirClientResource, contentType, fhirVersion, fhirResourceId, fhirResource, compressed, 1 );
     }
 
-    protected void enqueue( @Nonnull FhirClientResource fhirClientResource, @Nullable String contentType, @Nonnull FhirVersion fhirVersion, @Nonnull String fhirResourceId, @Nonnull String fhirResource, int tryCount )
+    protected void enqueue( @Nonnull FhirClientResource fhirClientResource, @Nullable String contentType, @Nonnull FhirVersion fhirVersion, @Nonnull String fhirResourceId, @Nonnull String fhirResource, boolean compressed, int tryCount )
     {
         SubscriptionFhirResource subscriptionFhirResource = new SubscriptionFhirResource();
         subscriptionFhirResource.setCreatedAt( Instant.now() );
@@ -98,7 +98,7 @@ public class CustomSubscriptionFhirResourceRepositoryImpl implements CustomSubsc
         subscriptionFhirResource.setContentType( contentType );
         subscriptionFhirResource.setFhirVersion( fhirVersion );
         subscriptionFhirResource.setFhirResourceId( fhirResourceId );
-        subscriptionFhirResource.setFhirResource( fhirResource );
+        subscriptionFhirResource.setFhirResourceContent( fhirResource, compressed );
 
         TransactionStatus transactionStatus = platformTransactionManager.getTransaction( new DefaultTransactionDefinition() );
         try
@@ -137,7 +137,7 @@ public class CustomSubscriptionFhirResourceRepositoryImpl implements CustomSubsc
             subscriptionFhirResource.setCreatedAt( Instant.now() );
             subscriptionFhirResource.setContentType( contentType );
             subscriptionFhirResource.setFhirVersion( fhirVersion );
-            subscriptionFhirResource.setFhirResource( fhirResource );
+            subscriptionFhirResource.setFhirResourceContent( fhirResource, compressed );
         }
         catch ( NoResultException e )
         {
@@ -156,7 +156,7 @@ public class CustomSubscriptionFhirResourceRepositoryImpl implements CustomSubsc
                 throw new TooManyPersistRetriesException( "Storing subscription FHIR resource has been retried too many times." );
             }
             logger.debug( "FHIR client Resource " + fhirClientResource.getId() + " does no longer contain FHIR Resource " + fhirResourceId );
-            enqueue( fhirClientResource, contentType, fhirVersion, fhirResourceId, fhirResource, tryCount + 1 );
+            enqueue( fhirClientResource, contentType, fhirVersion, fhirResourceId, fhirResource, compressed, tryCount + 1 );
         }
     }
 
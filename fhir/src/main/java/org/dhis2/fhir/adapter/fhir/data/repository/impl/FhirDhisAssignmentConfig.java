@@ -0,0 +1,116 @@
+package org.dhis2.fhir.adapter.fhir.data.repository.impl;
+
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.Min;
+import java.io.Serializable;
+
+/**
+ * Configuration of the persistence of assignments between FHIR and DHIS2 resource IDs.
+ *
+ * @author volsch
+ */
+@Configuration
+@Component
+@ConfigurationProperties( "dhis2.fhir-adapter.assignment" )
+@Validated
+public class FhirDhisAssignmentConfig implements Serializable
+{
+    private static final long serialVersionUID = 6107410986297432764L;
+
+    @Min( 0 )
+    private int indexMaxSize = 20_000;
+
+    @Min( 1_000 )
+    private int indexTimeToLiveMillis = 600_000;
+
+    private boolean writeBehindEnabled;
+
+    @Min( 10 )
+    private int writeBehindFlushMillis = 500;
+
+    @Min( 1 )
+    private int batchSize = 100;
+
+    public int getIndexMaxSize()
+    {
+        return indexMaxSize;
+    }
+
+    public void setIndexMaxSize( int indexMaxSize )
+    {
+        this.indexMaxSize = indexMaxSize;
+    }
+
+    public int getIndexTimeToLiveMillis()
+    {
+        return indexTimeToLiveMillis;
+    }
+
+    public void setIndexTimeToLiveMillis( int indexTimeToLiveMillis )
+    {
+        this.indexTimeToLiveMillis = indexTimeToLiveMillis;
+    }
+
+    public boolean isWriteBehindEnabled()
+    {
+        return writeBehindEnabled;
+    }
+
+    public void setWriteBehindEnabled( boolean writeBehindEnabled )
+    {
+        this.writeBehindEnabled = writeBehindEnabled;
+    }
+
+    public int getWriteBehindFlushMillis()
+    {
+        return writeBehindFlushMillis;
+    }
+
+    public void setWriteBehindFlushMillis( int writeBehindFlushMillis )
+    {
+        this.writeBehindFlushMillis = writeBehindFlushMillis;
+    }
+
+    public int getBatchSize()
+    {
+        return batchSize;
+    }
+
+    public void setBatchSize( int batchSize )
+    {
+        this.batchSize = batchSize;
+    }
+}
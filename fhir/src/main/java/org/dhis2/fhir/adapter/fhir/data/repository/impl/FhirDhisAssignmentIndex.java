@@ -0,0 +1,221 @@
+package org.dhis2.fhir.adapter.fhir.data.repository.impl;
+
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory index of the assignments between FHIR and DHIS2 resource IDs that have
+ * recently been read or stored by this adapter instance. Lookups of a rule are served from
+ * the index. Stored assignments are written through to the index and lookups that read the
+ * database refresh the index with the result. Changes of assignments by other adapter instances
+ * are seen after the time to live of the entries at the latest.
+ * <p>
+ * Each assignment of a rule is stored in both directions. The entry of one direction is used
+ * to find the entry of the other direction when an assignment is removed from the index.
+ *
+ * @author volsch
+ */
+@Component
+public class FhirDhisAssignmentIndex
+{
+    private final Cache<Key, String> assignments;
+
+    public FhirDhisAssignmentIndex( @Nonnull FhirDhisAssignmentConfig config )
+    {
+        assignments = (config.getIndexMaxSize() == 0) ? null : Caffeine.newBuilder()
+            .expireAfterWrite( config.getIndexTimeToLiveMillis(), TimeUnit.MILLISECONDS )
+            .maximumSize( config.getIndexMaxSize() ).build();
+    }
+
+    @Nullable
+    public String getDhisResourceId( @Nonnull UUID ruleId, @Nonnull UUID fhirClientId, @Nonnull String fhirResourceId )
+    {
+        return (assignments == null) ? null : assignments.getIfPresent( new Key( ruleId, fhirClientId, false, fhirResourceId ) );
+    }
+
+    @Nullable
+    public String getFhirResourceId( @Nonnull UUID ruleId, @Nonnull UUID fhirClientId, @Nonnull String dhisResourceId )
+    {
+        return (assignments == null) ? null : assignments.getIfPresent( new Key( ruleId, fhirClientId, true, dhisResourceId ) );
+    }
+
+    /**
+     * Stores that the specified FHIR and DHIS2 resource IDs have been assigned to
+     * each other by the specified rule. Previous assignments of both IDs for the rule
+     * are replaced.
+     *
+     * @param ruleId         the ID of the rule that assigned the resource IDs.
+     * @param fhirClientId   the ID of the FHIR client to which the FHIR resource belongs to.
+     * @param fhirResourceId the ID of the FHIR resource.
+     * @param dhisResourceId the ID of the DHIS2 resource.
+     */
+    public void assigned( @Nonnull UUID ruleId, @Nonnull UUID fhirClientId, @Nonnull String fhirResourceId, @Nonnull String dhisResourceId )
+    {
+        if ( assignments == null )
+        {
+            return;
+        }
+
+        final String previousDhisResourceId = assignments.asMap().put( new Key( ruleId, fhirClientId, false, fhirResourceId ), dhisResourceId );
+        if ( (previousDhisResourceId != null) && !previousDhisResourceId.equals( dhisResourceId ) )
+        {
+            assignments.asMap().remove( new Key( ruleId, fhirClientId, true, previousDhisResourceId ), fhirResourceId );
+        }
+        final String previousFhirResourceId = assignments.asMap().put( new Key( ruleId, fhirClientId, true, dhisResourceId ), fhirResourceId );
+        if ( (previousFhirResourceId != null) && !previousFhirResourceId.equals( fhirResourceId ) )
+        {
+            assignments.asMap().remove( new Key( ruleId, fhirClientId, false, previousFhirResourceId ), dhisResourceId );
+        }
+    }
+
+    /**
+     * Removes the assignment of the specified FHIR resource ID by the specified rule
+     * from the index.
+     *
+     * @param ruleId         the ID of the rule that assigned the resource IDs.
+     * @param fhirClientId   the ID of the FHIR client to which the FHIR resource belongs to.
+     * @param fhirResourceId the ID of the FHIR resource.
+     */
+    public void unassignedFhirResourceId( @Nonnull UUID ruleId, @Nonnull UUID fhirClientId, @Nonnull String fhirResourceId )
+    {
+        if ( assignments != null )
+        {
+            final String dhisResourceId = assignments.asMap().remove( new Key( ruleId, fhirClientId, false, fhirResourceId ) );
+            if ( dhisResourceId != null )
+            {
+                assignments.asMap().remove( new Key( ruleId, fhirClientId, true, dhisResourceId ), fhirResourceId );
+            }
+        }
+    }
+
+    /**
+     * Removes the assignment of the specified DHIS2 resource ID by the specified rule
+     * from the index.
+     *
+     * @param ruleId         the ID of the rule that assigned the resource IDs.
+     * @param fhirClientId   the ID of the FHIR client to which the FHIR resource belongs to.
+     * @param dhisResourceId the ID of the DHIS2 resource.
+     */
+    public void unassignedDhisResourceId( @Nonnull UUID ruleId, @Nonnull UUID fhirClientId, @Nonnull String dhisResourceId )
+    {
+        if ( assignments != null )
+        {
+            final String fhirResourceId = assignments.asMap().remove( new Key( ruleId, fhirClientId, true, dhisResourceId ) );
+            if ( fhirResourceId != null )
+            {
+                assignments.asMap().remove( new Key( ruleId, fhirClientId, false, fhirResourceId ), dhisResourceId );
+            }
+        }
+    }
+
+    /**
+     * Removes all assignments of the specified FHIR and DHIS2 resource IDs by the
+     * specified rule from the index (e.g. when the assignment could not be stored).
+     *
+     * @param ruleId         the ID of the rule that assigned the resource IDs.
+     * @param fhirClientId   the ID of the FHIR client to which the FHIR resource belongs to.
+     * @param fhirResourceId the ID of the FHIR resource.
+     * @param dhisResourceId the ID of the DHIS2 resource.
+     */
+    public void invalidate( @Nonnull UUID ruleId, @Nonnull UUID fhirClientId, @Nonnull String fhirResourceId, @Nonnull String dhisResourceId )
+    {
+        unassignedFhirResourceId( ruleId, fhirClientId, fhirResourceId );
+        unassignedDhisResourceId( ruleId, fhirClientId, dhisResourceId );
+    }
+
+    public void invalidateAll()
+    {
+        if ( assignments != null )
+        {
+            assignments.invalidateAll();
+        }
+    }
+
+    /**
+     * Key of an assignment of one direction. The key contains the FHIR resource ID
+     * if the DHIS2 resource ID is the value and vice versa.
+     *
+     * @author volsch
+     */
+    private static final class Key
+    {
+        private final UUID ruleId;
+
+        private final UUID fhirClientId;
+
+        private final boolean dhisResource;
+
+        private final String resourceId;
+
+        private Key( @Nonnull UUID ruleId, @Nonnull UUID fhirClientId, boolean dhisResource, @Nonnull String resourceId )
+        {
+            this.ruleId = ruleId;
+            this.fhirClientId = fhirClientId;
+            this.dhisResource = dhisResource;
+            this.resourceId = resourceId;
+        }
+
+        @Override
+        public boolean equals( Object o )
+        {
+            if ( this == o )
+            {
+                return true;
+            }
+
+            if ( o == null || getClass() != o.getClass() )
+            {
+                return false;
+            }
+
+            final Key key = (Key) o;
+
+            return dhisResource == key.dhisResource &&
+                ruleId.equals( key.ruleId ) &&
+                fhirClientId.equals( key.fhirClientId ) &&
+                resourceId.equals( key.resourceId );
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash( ruleId, fhirClientId, dhisResource, resourceId );
+        }
+    }
+}
@@ -0,0 +1,442 @@
+package org.dhis2.fhir.adapter.fhir.data.repository.impl;
+
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.dhis2.fhir.adapter.fhir.data.model.FhirDhisAssignment;
+import org.dhis2.fhir.adapter.fhir.metadata.model.AbstractRule;
+import org.dhis2.fhir.adapter.fhir.metadata.model.FhirClient;
+import org.dhis2.fhir.adapter.util.SqlExceptionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.support.DataAccessUtils;
+import org.springframework.dao.support.PersistenceExceptionTranslator;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.Nonnull;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.PersistenceException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Stores assignments between FHIR and DHIS2 resource IDs. On PostgreSQL an assignment
+ * is stored with a single upsert statement. Otherwise the assignment is locked, read
+ * and then inserted or updated. If write-behind is enabled, assignments are buffered
+ * and stored with JDBC batches by a background task. Before an assignment is read from
+ * the database, only the buffered assignments of the read resource IDs are stored. Assignments that cannot be stored
+ * because of a conflicting assignment are removed from the {@link FhirDhisAssignmentIndex}.
+ *
+ * @author volsch
+ */
+@Component
+public class FhirDhisAssignmentWriter
+{
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    protected static final String POSTGRESQL_PRODUCT_NAME = "PostgreSQL";
+
+    protected static final String UPSERT_BY_FHIR_RESOURCE_ID_SQL = "INSERT INTO fhir_dhis_assignment(id,created_at,rule_id,fhir_client_id,fhir_resource_id,dhis_resource_id) " +
+        "VALUES (?,?,?,?,?,?) ON CONFLICT (rule_id,fhir_client_id,fhir_resource_id) DO UPDATE SET dhis_resource_id=EXCLUDED.dhis_resource_id " +
+        "WHERE fhir_dhis_assignment.dhis_resource_id<>EXCLUDED.dhis_resource_id";
+
+    protected static final String UPSERT_BY_DHIS_RESOURCE_ID_SQL = "INSERT INTO fhir_dhis_assignment(id,created_at,rule_id,fhir_client_id,fhir_resource_id,dhis_resource_id) " +
+        "VALUES (?,?,?,?,?,?) ON CONFLICT (rule_id,fhir_client_id,dhis_resource_id) DO UPDATE SET fhir_resource_id=EXCLUDED.fhir_resource_id " +
+        "WHERE fhir_dhis_assignment.fhir_resource_id<>EXCLUDED.fhir_resource_id";
+
+    private final FhirDhisAssignmentConfig config;
+
+    private final FhirDhisAssignmentIndex index;
+
+    private final EntityManager entityManager;
+
+    private final PersistenceExceptionTranslator persistenceExceptionTranslator;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final Queue<PendingAssignment> pendingAssignments = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    private final Object flushLock = new Object();
+
+    private volatile Boolean upsertSupported;
+
+    public FhirDhisAssignmentWriter( @Nonnull FhirDhisAssignmentConfig config, @Nonnull FhirDhisAssignmentIndex index, @Nonnull PlatformTransactionManager platformTransactionManager,
+        @Nonnull EntityManager entityManager, @Nonnull @Qualifier( "&entityManagerFactory" ) PersistenceExceptionTranslator persistenceExceptionTranslator, @Nonnull JdbcTemplate jdbcTemplate )
+    {
+        this.config = config;
+        this.index = index;
+        this.entityManager = entityManager;
+        this.persistenceExceptionTranslator = persistenceExceptionTranslator;
+        this.jdbcTemplate = jdbcTemplate;
+
+        this.transactionTemplate = new TransactionTemplate( platformTransactionManager );
+        this.transactionTemplate.setPropagationBehavior( TransactionDefinition.PROPAGATION_REQUIRES_NEW );
+    }
+
+    /**
+     * Stores the specified assignment. If write-behind is enabled, the assignment
+     * is stored asynchronously.
+     *
+     * @param assignment the assignment that should be stored.
+     * @return <code>true</code> if the assignment has been created or updated (or
+     * has been buffered), <code>false</code> if it was already stored or if it could
+     * not be stored because of a conflicting assignment.
+     */
+    public boolean write( @Nonnull PendingAssignment assignment )
+    {
+        if ( !config.isWriteBehindEnabled() )
+        {
+            return writeSingle( assignment );
+        }
+
+        pendingAssignments.add( assignment );
+        if ( pendingCount.incrementAndGet() >= config.getBatchSize() )
+        {
+            flush();
+        }
+        return true;
+    }
+
+    /**
+     * Stores all buffered assignments.
+     */
+    @Scheduled( fixedDelayString = "#{@fhirDhisAssignmentConfig.writeBehindFlushMillis}" )
+    @PreDestroy
+    public void flush()
+    {
+        if ( pendingCount.get() == 0 )
+        {
+            return;
+        }
+
+        synchronized ( flushLock )
+        {
+            List<PendingAssignment> batch;
+            while ( !(batch = pollBatch()).isEmpty() )
+            {
+                writeBatch( batch );
+            }
+        }
+    }
+
+    /**
+     * Stores the buffered assignments that match the specified predicate (e.g. the
+     * assignments of a resource ID that is read from the database). Other buffered
+     * assignments are left to the background task.
+     *
+     * @param predicate the predicate that selects the assignments that should be stored.
+     */
+    public void flush( @Nonnull Predicate<PendingAssignment> predicate )
+    {
+        if ( (pendingCount.get() == 0) || pendingAssignments.stream().noneMatch( predicate ) )
+        {
+            return;
+        }
+
+        synchronized ( flushLock )
+        {
+            final List<PendingAssignment> batch = new ArrayList<>();
+            for ( final Iterator<PendingAssignment> iterator = pendingAssignments.iterator(); iterator.hasNext(); )
+            {
+                final PendingAssignment assignment = iterator.next();
+                if ( predicate.test( assignment ) )
+                {
+                    iterator.remove();
+                    pendingCount.decrementAndGet();
+                    batch.add( assignment );
+                }
+            }
+            if ( !batch.isEmpty() )
+            {
+                writeBatch( batch );
+            }
+        }
+    }
+
+    @Nonnull
+    protected List<PendingAssignment> pollBatch()
+    {
+        final List<PendingAssignment> batch = new ArrayList<>();
+        PendingAssignment assignment;
+        while ( (batch.size() < config.getBatchSize()) && ((assignment = pendingAssignments.poll()) != null) )
+        {
+            pendingCount.decrementAndGet();
+            batch.add( assignment );
+        }
+        return batch;
+    }
+
+    protected void writeBatch( @Nonnull List<PendingAssignment> batch )
+    {
+        if ( isUpsertSupported() )
+        {
+            try
+            {
+                transactionTemplate.execute( status -> {
+                    // upserts must be executed in the order in which they have been requested
+                    int start = 0;
+                    for ( int i = 1; i <= batch.size(); i++ )
+                    {
+                        if ( (i == batch.size()) || (batch.get( i ).isByDhisResourceId() != batch.get( start ).isByDhisResourceId()) )
+                        {
+                            final List<PendingAssignment> group = batch.subList( start, i );
+                            jdbcTemplate.batchUpdate( group.get( 0 ).isByDhisResourceId() ? UPSERT_BY_DHIS_RESOURCE_ID_SQL : UPSERT_BY_FHIR_RESOURCE_ID_SQL,
+                                group.stream().map( this::createUpsertArgs ).collect( Collectors.toList() ) );
+                            start = i;
+                        }
+                    }
+                    return null;
+                } );
+                return;
+            }
+            catch ( DataAccessException e )
+            {
+                logger.info( "Batch of {} assignments could not be stored. Storing assignments individually: {}", batch.size(), e.getMessage() );
+            }
+        }
+
+        for ( final PendingAssignment assignment : batch )
+        {
+            try
+            {
+                writeSingle( assignment );
+            }
+            catch ( RuntimeException e )
+            {
+                logger.error( "Could not store assignment of FHIR resource " + assignment.getFhirResourceId() + " and DHIS2 resource " + assignment.getDhisResourceId() +
+                    " of FHIR client " + assignment.getFhirClientId() + ".", e );
+                index.invalidate( assignment.getRuleId(), assignment.getFhirClientId(), assignment.getFhirResourceId(), assignment.getDhisResourceId() );
+            }
+        }
+    }
+
+    protected boolean writeSingle( @Nonnull PendingAssignment assignment )
+    {
+        if ( isUpsertSupported() )
+        {
+            try
+            {
+                return Objects.requireNonNull( transactionTemplate.execute( status -> jdbcTemplate.update(
+                    assignment.isByDhisResourceId() ? UPSERT_BY_DHIS_RESOURCE_ID_SQL : UPSERT_BY_FHIR_RESOURCE_ID_SQL, createUpsertArgs( assignment ) ) > 0 ) );
+            }
+            catch ( DataIntegrityViolationException e )
+            {
+                if ( !SqlExceptionUtils.isUniqueKeyViolation( e.getMostSpecificCause() ) )
+                {
+                    throw e;
+                }
+                index.invalidate( assignment.getRuleId(), assignment.getFhirClientId(), assignment.getFhirResourceId(), assignment.getDhisResourceId() );
+                return false;
+            }
+        }
+
+        return Objects.requireNonNull( transactionTemplate.execute( status -> assignment.isByDhisResourceId() ?
+            saveFhirResourceId( assignment ) : saveDhisResourceId( assignment ) ) );
+    }
+
+    protected boolean saveDhisResourceId( @Nonnull PendingAssignment pendingAssignment )
+    {
+        final FhirDhisAssignment assignment = entityManager.createNamedQuery( FhirDhisAssignment.FIND_FIRST_BY_FHIR_NAMED_QUERY, FhirDhisAssignment.class )
+            .setParameter( "ruleId", pendingAssignment.getRuleId() ).setParameter( "subscriptionId", pendingAssignment.getFhirClientId() )
+            .setParameter( "fhirResourceId", pendingAssignment.getFhirResourceId() ).setLockMode( LockModeType.PESSIMISTIC_WRITE )
+            .getResultList().stream().findFirst().orElse( null );
+        if ( assignment == null )
+        {
+            return persist( pendingAssignment );
+        }
+        if ( !assignment.getDhisResourceId().equals( pendingAssignment.getDhisResourceId() ) )
+        {
+            assignment.setDhisResourceId( pendingAssignment.getDhisResourceId() );
+            return true;
+        }
+        return false;
+    }
+
+    protected boolean saveFhirResourceId( @Nonnull PendingAssignment pendingAssignment )
+    {
+        final FhirDhisAssignment assignment = entityManager.createNamedQuery( FhirDhisAssignment.FIND_FIRST_BY_DHIS_NAMED_QUERY, FhirDhisAssignment.class )
+            .setParameter( "ruleId", pendingAssignment.getRuleId() ).setParameter( "subscriptionId", pendingAssignment.getFhirClientId() )
+            .setParameter( "dhisResourceId", pendingAssignment.getDhisResourceId() ).setLockMode( LockModeType.PESSIMISTIC_WRITE )
+            .getResultList().stream().findFirst().orElse( null );
+        if ( assignment == null )
+        {
+            return persist( pendingAssignment );
+        }
+        if ( !assignment.getFhirResourceId().equals( pendingAssignment.getFhirResourceId() ) )
+        {
+            assignment.setFhirResourceId( pendingAssignment.getFhirResourceId() );
+            return true;
+        }
+        return false;
+    }
+
+    protected boolean isUpsertSupported()
+    {
+        Boolean supported = upsertSupported;
+        if ( supported == null )
+        {
+            supported = POSTGRESQL_PRODUCT_NAME.equals( jdbcTemplate.execute( (ConnectionCallback<String>) c -> c.getMetaData().getDatabaseProductName() ) );
+            upsertSupported = supported;
+        }
+        return supported;
+    }
+
+    @Nonnull
+    private Object[] createUpsertArgs( @Nonnull PendingAssignment assignment )
+    {
+        return new Object[]{ UUID.randomUUID(), Timestamp.from( Instant.now() ), assignment.getRuleId(), assignment.getFhirClientId(),
+            assignment.getFhirResourceId(), assignment.getDhisResourceId() };
+    }
+
+    private boolean persist( @Nonnull PendingAssignment pendingAssignment )
+    {
+        final FhirDhisAssignment assignment = new FhirDhisAssignment();
+        assignment.setCreatedAt( Instant.now() );
+        assignment.setRule( entityManager.getReference( AbstractRule.class, pendingAssignment.getRuleId() ) );
+        assignment.setFhirClient( entityManager.getReference( FhirClient.class, pendingAssignment.getFhirClientId() ) );
+        assignment.setFhirResourceId( pendingAssignment.getFhirResourceId() );
+        assignment.setDhisResourceId( pendingAssignment.getDhisResourceId() );
+
+        try
+        {
+            entityManager.persist( assignment );
+            entityManager.flush();
+            return true;
+        }
+        catch ( PersistenceException e )
+        {
+            final RuntimeException runtimeException = DataAccessUtils.translateIfNecessary(
+                e, persistenceExceptionTranslator );
+            if ( runtimeException instanceof DataIntegrityViolationException )
+            {
+                final DataIntegrityViolationException dataIntegrityViolationException =
+                    (DataIntegrityViolationException) runtimeException;
+                if ( !SqlExceptionUtils.isUniqueKeyViolation( dataIntegrityViolationException.getMostSpecificCause() ) )
+                {
+                    throw runtimeException;
+                }
+            }
+            else
+            {
+                throw runtimeException;
+            }
+        }
+        index.invalidate( pendingAssignment.getRuleId(), pendingAssignment.getFhirClientId(), pendingAssignment.getFhirResourceId(), pendingAssignment.getDhisResourceId() );
+        return false;
+    }
+
+    /**
+     * An assignment between a FHIR and a DHIS2 resource ID that should be stored.
+     */
+    public static class PendingAssignment
+    {
+        private final UUID ruleId;
+
+        private final UUID fhirClientId;
+
+        private final String fhirResourceId;
+
+        private final String dhisResourceId;
+
+        private final boolean byDhisResourceId;
+
+        /**
+         * @param ruleId           the ID of the rule that assigned the resource IDs.
+         * @param fhirClientId     the ID of the FHIR client to which the FHIR resource belongs to.
+         * @param fhirResourceId   the ID of the FHIR resource.
+         * @param dhisResourceId   the ID of the DHIS2 resource.
+         * @param byDhisResourceId <code>true</code> if the FHIR resource ID of the existing assignment
+         *                         of the DHIS2 resource ID should be replaced, <code>false</code> if the
+         *                         DHIS2 resource ID of the existing assignment of the FHIR resource ID
+         *                         should be replaced.
+         */
+        public PendingAssignment( @Nonnull UUID ruleId, @Nonnull UUID fhirClientId, @Nonnull String fhirResourceId, @Nonnull String dhisResourceId, boolean byDhisResourceId )
+        {
+            this.ruleId = ruleId;
+            this.fhirClientId = fhirClientId;
+            this.fhirResourceId = fhirResourceId;
+            this.dhisResourceId = dhisResourceId;
+            this.byDhisResourceId = byDhisResourceId;
+        }
+
+        @Nonnull
+        public UUID getRuleId()
+        {
+            return ruleId;
+        }
+
+        @Nonnull
+        public UUID getFhirClientId()
+        {
+            return fhirClientId;
+        }
+
+        @Nonnull
+        public String getFhirResourceId()
+        {
+            return fhirResourceId;
+        }
+
+        @Nonnull
+        public String getDhisResourceId()
+        {
+            return dhisResourceId;
+        }
+
+        public boolean isByDhisResourceId()
+        {
+            return byDhisResourceId;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package org.dhis2.fhir.adapter.fhir.express;
+
+import java.io.Serializable;
+import java.time.Duration;
+import javax.annotation.Nonnull;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+/**
+ * Configuration of the admission control and of the asynchronous processing of
+ * express requests.
+ *
+ * @author volsch
+ */
+@Configuration
+@Component
+@ConfigurationProperties("dhis2.fhir-adapter.express")
+@Validated
+public class ExpressConfig implements Serializable {
+
+    private static final long serialVersionUID = 4236690567911297263L;
+
+    @Min(0)
+    private int maxConcurrentRequests = 10;
+
+    @Min(1)
+    private int maxQueuedOperations = 1_000;
+
+    @Min(1)
+    private int maxQueuedOperationsPerClient = 200;
+
+    @NotNull
+    private Duration operationTimeToLive = Duration.ofHours(1);
+
+    public int getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+        this.maxConcurrentRequests = maxConcurrentRequests;
+    }
+
+    public int getMaxQueuedOperations() {
+        return maxQueuedOperations;
+    }
+
+    public void setMaxQueuedOperations(int maxQueuedOperations) {
+        this.maxQueuedOperations = maxQueuedOperations;
+    }
+
+    public int getMaxQueuedOperationsPerClient() {
+        return maxQueuedOperationsPerClient;
+    }
+
+    public void setMaxQueuedOperationsPerClient(int maxQueuedOperationsPerClient) {
+        this.maxQueuedOperationsPerClient = maxQueuedOperationsPerClient;
+    }
+
+    @Nonnull
+    public Duration getOperationTimeToLive() {
+        return operationTimeToLive;
+    }
+
+    public void setOperationTimeToLive(@Nonnull Duration operationTimeToLive) {
+        this.operationTimeToLive = operationTimeToLive;
+    }
+
+}
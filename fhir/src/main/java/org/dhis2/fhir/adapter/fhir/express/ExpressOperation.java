@@ -0,0 +1,185 @@
+package org.dhis2.fhir.adapter.fhir.express;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.UUID;
+import javax.persistence.Basic;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Id;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Table;
+import javax.persistence.Transient;
+import org.dhis2.fhir.adapter.fhir.repository.FhirRepositoryOperationOutcome;
+
+/**
+ * An express operation that has been accepted for asynchronous processing. The
+ * operations are stored in the database, since the request may be accepted and
+ * polled on a different adapter instance than the one that processes the FHIR
+ * resource.
+ *
+ * @author volsch
+ */
+@Entity
+@Table(name = "fhir_express_operation")
+@NamedQueries({
+    @NamedQuery(name = ExpressOperation.COUNT_QUEUED_NAMED_QUERY,
+            query = "SELECT COUNT(o) FROM ExpressOperation o WHERE o.status=:status AND o.createdAt>=:createdAfter"),
+    @NamedQuery(name = ExpressOperation.COUNT_CLIENT_QUEUED_NAMED_QUERY,
+            query = "SELECT COUNT(o) FROM ExpressOperation o WHERE o.fhirClientId=:fhirClientId AND o.status=:status AND o.createdAt>=:createdAfter"),
+    @NamedQuery(name = ExpressOperation.FINISH_NAMED_QUERY,
+            query = "UPDATE ExpressOperation o SET o.status=:status, o.outcomeResourceId=:outcomeResourceId, o.outcomeCreated=:outcomeCreated, "
+            + "o.message=:message, o.finishedAt=:finishedAt WHERE o.id=:id AND o.status=:queuedStatus"),
+    @NamedQuery(name = ExpressOperation.EXPIRE_NAMED_QUERY,
+            query = "UPDATE ExpressOperation o SET o.status=:status, o.message=:message, o.finishedAt=:finishedAt "
+            + "WHERE o.status=:queuedStatus AND o.createdAt<:createdBefore"),
+    @NamedQuery(name = ExpressOperation.DELETE_FINISHED_NAMED_QUERY,
+            query = "DELETE FROM ExpressOperation o WHERE o.status<>:queuedStatus AND o.finishedAt<:finishedBefore")
+})
+public class ExpressOperation implements Serializable {
+
+    private static final long serialVersionUID = -3016356187934618726L;
+
+    public static final String COUNT_QUEUED_NAMED_QUERY = "ExpressOperation.countQueued";
+
+    public static final String COUNT_CLIENT_QUEUED_NAMED_QUERY = "ExpressOperation.countClientQueued";
+
+    public static final String FINISH_NAMED_QUERY = "ExpressOperation.finish";
+
+    public static final String EXPIRE_NAMED_QUERY = "ExpressOperation.expire";
+
+    public static final String DELETE_FINISHED_NAMED_QUERY = "ExpressOperation.deleteFinished";
+
+    private UUID id;
+
+    private UUID fhirClientId;
+
+    private String fhirResourceType;
+
+    private String fhirResourceId;
+
+    private ExpressOperationStatus status;
+
+    private String outcomeResourceId;
+
+    private Boolean outcomeCreated;
+
+    private String message;
+
+    private Instant createdAt;
+
+    private Instant finishedAt;
+
+    @Id
+    @Column(name = "id", nullable = false)
+    public UUID getId() {
+        return id;
+    }
+
+    public void setId(UUID id) {
+        this.id = id;
+    }
+
+    @Basic
+    @Column(name = "fhir_client_id", nullable = false)
+    public UUID getFhirClientId() {
+        return fhirClientId;
+    }
+
+    public void setFhirClientId(UUID fhirClientId) {
+        this.fhirClientId = fhirClientId;
+    }
+
+    @Basic
+    @Column(name = "fhir_resource_type", nullable = false, length = 30)
+    public String getFhirResourceType() {
+        return fhirResourceType;
+    }
+
+    public void setFhirResourceType(String fhirResourceType) {
+        this.fhirResourceType = fhirResourceType;
+    }
+
+    @Basic
+    @Column(name = "fhir_resource_id", nullable = false, length = 200)
+    public String getFhirResourceId() {
+        return fhirResourceId;
+    }
+
+    public void setFhirResourceId(String fhirResourceId) {
+        this.fhirResourceId = fhirResourceId;
+    }
+
+    @Basic
+    @Column(name = "status", nullable = false, length = 20)
+    @Enumerated(EnumType.STRING)
+    public ExpressOperationStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(ExpressOperationStatus status) {
+        this.status = status;
+    }
+
+    @Basic
+    @Column(name = "outcome_resource_id", length = 200)
+    @JsonIgnore
+    public String getOutcomeResourceId() {
+        return outcomeResourceId;
+    }
+
+    public void setOutcomeResourceId(String outcomeResourceId) {
+        this.outcomeResourceId = outcomeResourceId;
+    }
+
+    @Basic
+    @Column(name = "outcome_created")
+    @JsonIgnore
+    public Boolean getOutcomeCreated() {
+        return outcomeCreated;
+    }
+
+    public void setOutcomeCreated(Boolean outcomeCreated) {
+        this.outcomeCreated = outcomeCreated;
+    }
+
+    @Basic
+    @Column(name = "message", length = 1000)
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    @Basic
+    @Column(name = "created_at", nullable = false)
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    @Basic
+    @Column(name = "finished_at")
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(Instant finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+
+    @Transient
+    public FhirRepositoryOperationOutcome getOutcome() {
+        return (outcomeResourceId == null) ? null : new FhirRepositoryOperationOutcome(outcomeResourceId, Boolean.TRUE.equals(outcomeCreated));
+    }
+
+}
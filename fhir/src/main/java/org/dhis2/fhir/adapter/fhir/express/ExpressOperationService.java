@@ -0,0 +1,53 @@
+package org.dhis2.fhir.adapter.fhir.express;
+
+import java.util.Optional;
+import java.util.UUID;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.dhis2.fhir.adapter.fhir.repository.FhirRepositoryOperationOutcome;
+
+/**
+ * Keeps track of asynchronously processed express operations and performs the
+ * admission control of express requests. Operations are shared by all adapter
+ * instances, since the FHIR resource may be processed by a different instance
+ * than the one that accepted the request.
+ *
+ * @author volsch
+ */
+public interface ExpressOperationService {
+
+    /**
+     * Creates a new queued operation if the limits of queued operations have not been
+     * reached.
+     *
+     * @return the created operation or <code>null</code> if too many operations have
+     * been queued.
+     */
+    @Nullable
+    public ExpressOperation createQueued(@Nonnull UUID fhirClientId, @Nonnull String fhirResourceType, @Nonnull String fhirResourceId);
+
+    /**
+     * Completes the operation if it is still queued.
+     */
+    public void completed(@Nonnull UUID operationId, @Nullable FhirRepositoryOperationOutcome outcome);
+
+    /**
+     * Marks the operation as failed if it is still queued.
+     */
+    public void failed(@Nonnull UUID operationId, @Nullable String message);
+
+    @Nonnull
+    public Optional<ExpressOperation> findById(@Nonnull UUID operationId);
+
+    /**
+     * Acquires one of the permits for concurrent synchronous requests of the FHIR
+     * client on this adapter instance. An acquired permit must be released with {@link #releaseRequest(UUID)}.
+     *
+     * @return <code>true</code> if the permit has been acquired, <code>false</code> if
+     * too many requests of the FHIR client are processed concurrently.
+     */
+    public boolean tryAcquireRequest(@Nonnull UUID fhirClientId);
+
+    public void releaseRequest(@Nonnull UUID fhirClientId);
+
+}
@@ -0,0 +1,177 @@
+package org.dhis2.fhir.adapter.fhir.express;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.persistence.EntityManager;
+import org.apache.commons.lang3.StringUtils;
+import org.dhis2.fhir.adapter.fhir.repository.FhirRepositoryOperationOutcome;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Implementation of {@link ExpressOperationService} that stores the operations in
+ * the database. All adapter instances share the operations and the limits of queued
+ * operations. Operations that have not been finished within the configured time to
+ * live are regarded as failed. The permits for concurrent synchronous requests are
+ * kept by each adapter instance.
+ *
+ * @author volsch
+ */
+@Component
+@ConditionalOnProperty(name = "dhis2.fhir-adapter.import-enabled")
+public class ExpressOperationServiceImpl implements ExpressOperationService {
+
+    protected static final int MAX_MESSAGE_LENGTH = 1000;
+
+    protected static final String POSTGRESQL_PRODUCT_NAME = "PostgreSQL";
+
+    protected static final String QUEUE_LOCK_SQL = "SELECT COUNT(*) FROM (SELECT pg_advisory_xact_lock(hashtext('fhir_express_operation'))) l";
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final ExpressConfig expressConfig;
+
+    private final EntityManager entityManager;
+
+    private final ConcurrentMap<UUID, Semaphore> clientRequestPermits = new ConcurrentHashMap<>();
+
+    private volatile Boolean postgreSql;
+
+    public ExpressOperationServiceImpl(@Nonnull ExpressConfig expressConfig, @Nonnull EntityManager entityManager) {
+        this.expressConfig = expressConfig;
+        this.entityManager = entityManager;
+    }
+
+    @Nullable
+    @Override
+    @Transactional
+    public ExpressOperation createQueued(@Nonnull UUID fhirClientId, @Nonnull String fhirResourceType, @Nonnull String fhirResourceId) {
+        lockQueue();
+
+        final Instant now = Instant.now();
+        final Instant createdAfter = now.minus(expressConfig.getOperationTimeToLive());
+        final long queuedCount = entityManager.createNamedQuery(ExpressOperation.COUNT_QUEUED_NAMED_QUERY, Long.class)
+                .setParameter("status", ExpressOperationStatus.QUEUED).setParameter("createdAfter", createdAfter).getSingleResult();
+        if (queuedCount >= expressConfig.getMaxQueuedOperations()) {
+            return null;
+        }
+        final long clientQueuedCount = entityManager.createNamedQuery(ExpressOperation.COUNT_CLIENT_QUEUED_NAMED_QUERY, Long.class)
+                .setParameter("fhirClientId", fhirClientId).setParameter("status", ExpressOperationStatus.QUEUED)
+                .setParameter("createdAfter", createdAfter).getSingleResult();
+        if (clientQueuedCount >= expressConfig.getMaxQueuedOperationsPerClient()) {
+            return null;
+        }
+
+        final ExpressOperation operation = new ExpressOperation();
+        operation.setId(UUID.randomUUID());
+        operation.setFhirClientId(fhirClientId);
+        operation.setFhirResourceType(fhirResourceType);
+        operation.setFhirResourceId(fhirResourceId);
+        operation.setStatus(ExpressOperationStatus.QUEUED);
+        operation.setCreatedAt(now);
+        entityManager.persist(operation);
+        return operation;
+    }
+
+    @Override
+    @Transactional
+    public void completed(@Nonnull UUID operationId, @Nullable FhirRepositoryOperationOutcome outcome) {
+        finish(operationId, ExpressOperationStatus.COMPLETED, outcome, null);
+    }
+
+    @Override
+    @Transactional
+    public void failed(@Nonnull UUID operationId, @Nullable String message) {
+        finish(operationId, ExpressOperationStatus.FAILED, null, message);
+    }
+
+    @Nonnull
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<ExpressOperation> findById(@Nonnull UUID operationId) {
+        return Optional.ofNullable(entityManager.find(ExpressOperation.class, operationId));
+    }
+
+    @Override
+    public boolean tryAcquireRequest(@Nonnull UUID fhirClientId) {
+        if (expressConfig.getMaxConcurrentRequests() == 0) {
+            return true;
+        }
+        return clientRequestPermits.computeIfAbsent(fhirClientId, id -> new Semaphore(expressConfig.getMaxConcurrentRequests())).tryAcquire();
+    }
+
+    @Override
+    public void releaseRequest(@Nonnull UUID fhirClientId) {
+        final Semaphore permits = clientRequestPermits.get(fhirClientId);
+        if (permits != null) {
+            permits.release();
+        }
+    }
+
+    /**
+     * Marks operations that have not been finished within the time to live as failed
+     * (e.g. the processing message has expired) and removes finished operations after
+     * the time to live.
+     */
+    @Scheduled(fixedDelay = 60_000L)
+    @Transactional
+    public void purge() {
+        final Instant now = Instant.now();
+        final Instant before = now.minus(expressConfig.getOperationTimeToLive());
+        final int expiredCount = entityManager.createNamedQuery(ExpressOperation.EXPIRE_NAMED_QUERY)
+                .setParameter("status", ExpressOperationStatus.FAILED).setParameter("message", "Operation has not been processed in time.")
+                .setParameter("finishedAt", now).setParameter("queuedStatus", ExpressOperationStatus.QUEUED)
+                .setParameter("createdBefore", before).executeUpdate();
+        final int deletedCount = entityManager.createNamedQuery(ExpressOperation.DELETE_FINISHED_NAMED_QUERY)
+                .setParameter("queuedStatus", ExpressOperationStatus.QUEUED).setParameter("finishedBefore", before).executeUpdate();
+        logger.debug("Marked {} express operations as expired and removed {} finished express operations.", expiredCount, deletedCount);
+    }
+
+    /**
+     * Serializes the admission of queued operations of all adapter instances. Since the
+     * lock is held until the transaction that creates the operation has been committed,
+     * concurrent requests cannot exceed the limits. The lock is only available on PostgreSQL,
+     * which is required when several adapter instances are used.
+     */
+    private void lockQueue() {
+        Boolean result = postgreSql;
+        if (result == null) {
+            result = POSTGRESQL_PRODUCT_NAME.equals(entityManager.unwrap(Session.class).doReturningWork(c -> c.getMetaData().getDatabaseProductName()));
+            postgreSql = result;
+        }
+        if (result) {
+            entityManager.createNativeQuery(QUEUE_LOCK_SQL).getSingleResult();
+        }
+    }
+
+    /**
+     * Finishes the operation only if it is still queued. Since the update is performed
+     * by the database, the operation is finished only once even if the processing of
+     * the FHIR resource has been performed by several adapter instances.
+     */
+    private void finish(@Nonnull UUID operationId, @Nonnull ExpressOperationStatus status, @Nullable FhirRepositoryOperationOutcome outcome, @Nullable String message) {
+        final int count = entityManager.createNamedQuery(ExpressOperation.FINISH_NAMED_QUERY)
+                .setParameter("status", status)
+                .setParameter("outcomeResourceId", (outcome == null) ? null : outcome.getId())
+                .setParameter("outcomeCreated", (outcome == null) ? null : outcome.isCreated())
+                .setParameter("message", StringUtils.abbreviate(message, MAX_MESSAGE_LENGTH))
+                .setParameter("finishedAt", Instant.now())
+                .setParameter("id", operationId)
+                .setParameter("queuedStatus", ExpressOperationStatus.QUEUED).executeUpdate();
+        if (count == 0) {
+            logger.debug("Express operation {} has already been finished or is no longer available.", operationId);
+        }
+    }
+
+}
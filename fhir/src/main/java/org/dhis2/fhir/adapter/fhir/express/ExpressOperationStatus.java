@@ -0,0 +1,14 @@
+package org.dhis2.fhir.adapter.fhir.express;
+
+/**
+ * The status of an asynchronously processed express operation.
+ *
+ * @author volsch
+ */
+public enum ExpressOperationStatus {
+
+    QUEUED,
+    COMPLETED,
+    FAILED
+
+}
@@ -2,9 +2,11 @@ package org.dhis2.fhir.adapter.fhir.express;
 
 import ca.uhn.fhir.context.FhirContext;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.Set;
 import org.dhis2.fhir.adapter.fhir.client.*;
+import org.dhis2.fhir.adapter.fhir.client.impl.FhirClientConfig;
 import org.dhis2.fhir.adapter.fhir.metadata.model.FhirClientResource;
 import org.dhis2.fhir.adapter.fhir.metadata.model.FhirResourceType;
 import org.dhis2.fhir.adapter.fhir.metadata.repository.FhirClientResourceRepository;
@@ -14,6 +16,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -30,6 +33,7 @@ import java.util.stream.Collectors;
 import org.dhis2.fhir.adapter.auth.AuthorizationContext;
 import org.dhis2.fhir.adapter.data.model.ProcessedItemInfo;
 import org.dhis2.fhir.adapter.dhis.config.DhisEndpointConfig;
+import org.dhis2.fhir.adapter.dhis.security.DhisAuthenticationCache;
 import org.dhis2.fhir.adapter.fhir.model.FhirVersion;
 import org.dhis2.fhir.adapter.fhir.repository.FhirRepositoryOperationOutcome;
 import org.dhis2.fhir.adapter.fhir.repository.FhirResource;
@@ -51,6 +55,8 @@ public class FhirClientExpressController extends AbstractFhirClientController {
 
     public static final MediaType FHIR_JSON_MEDIA_TYPE = MediaType.parseMediaType("application/fhir+json;charset=UTF-8");
 
+    public static final String RESPOND_ASYNC_PREFERENCE = "respond-async";
+
     private final FhirResourceRepository fhirResourceRepository;
 
     private final Map<FhirVersion, FhirContext> fhirContexts;
@@ -59,14 +65,24 @@ public class FhirClientExpressController extends AbstractFhirClientController {
 
     private final DhisEndpointConfig endpointConfig;
 
+    private final FhirClientConfig fhirClientConfig;
+
+    private final DhisAuthenticationCache authenticationCache;
+
+    private final ExpressOperationService expressOperationService;
+
     public FhirClientExpressController(@Nonnull FhirClientResourceRepository resourceRepository, @Nonnull FhirClientRestHookProcessor processor,
-            @Nonnull FhirResourceRepository fhirResourceRepository, @Nonnull Set<FhirContext> fhirContexts, FhirResourceExpressService fhirResourceExpressService, @Nonnull AuthorizationContext authorizationContext, @Nonnull DhisEndpointConfig endpointConfig) {
+            @Nonnull FhirResourceRepository fhirResourceRepository, @Nonnull Set<FhirContext> fhirContexts, FhirResourceExpressService fhirResourceExpressService, @Nonnull AuthorizationContext authorizationContext, @Nonnull DhisEndpointConfig endpointConfig,
+            @Nonnull FhirClientConfig fhirClientConfig, @Nonnull DhisAuthenticationCache authenticationCache, @Nonnull ExpressOperationService expressOperationService) {
         super(resourceRepository, processor);
         this.fhirResourceRepository = fhirResourceRepository;
         this.fhirContexts = fhirContexts.stream().filter(fc -> (FhirVersion.get(fc.getVersion().getVersion()) != null))
                 .collect(Collectors.toMap(fc -> FhirVersion.get(fc.getVersion().getVersion()), fc -> fc));
         this.fhirResourceExpressService = fhirResourceExpressService;
         this.endpointConfig = endpointConfig;
+        this.fhirClientConfig = fhirClientConfig;
+        this.authenticationCache = authenticationCache;
+        this.expressOperationService = expressOperationService;
     }
 
     @RequestMapping(path = "/{fhirClientId}/**/{resourceType}/{resourceId}", method = RequestMethod.DELETE)
@@ -86,14 +102,41 @@ public class FhirClientExpressController extends AbstractFhirClientController {
     @RequestMapping(path = "/{fhirClientId}/**/{resourceType}/{resourceId}", method = {RequestMethod.POST, RequestMethod.PUT})
     public ResponseEntity<byte[]> receiveWithPayload(
             @PathVariable("fhirClientId") UUID fhirClientId, @PathVariable("resourceType") String resourceType, @PathVariable("resourceId") String resourceId,
-            @RequestHeader(value = "Authorization", required = false) String authorization, @Nonnull HttpEntity<byte[]> requestEntity) {
+            @RequestHeader(value = "Authorization", required = false) String authorization, @RequestHeader(value = "Prefer", required = false) String prefer,
+            @Nonnull HttpEntity<byte[]> requestEntity) {
         final FhirResourceType fhirResourceType = FhirResourceType.getByResourceTypeName(resourceType);
         if (fhirResourceType == null) {
             return createBadRequestResponse("Unknown resource type: " + resourceType);
         }
 
         final FhirClientResource fhirClientResource = lookupFhirClientResource(fhirClientId, fhirResourceType, authorization);
-        return processPayload(fhirClientResource, resourceType, resourceId, requestEntity, authorization);
+        if (isRespondAsync(prefer)) {
+            return enqueuePayload(fhirClientResource, resourceType, resourceId, requestEntity, authorization);
+        }
+
+        if (!expressOperationService.tryAcquireRequest(fhirClientId)) {
+            return createTooManyRequestsResponse("Too many concurrent requests of FHIR client.");
+        }
+        try {
+            return processPayload(fhirClientResource, resourceType, resourceId, requestEntity, authorization);
+        } finally {
+            expressOperationService.releaseRequest(fhirClientId);
+        }
+    }
+
+    @RequestMapping(path = "/{fhirClientId}/operations/{operationId}", method = RequestMethod.GET)
+    public ResponseEntity<ExpressOperation> getOperation(
+            @PathVariable("fhirClientId") UUID fhirClientId, @PathVariable("operationId") UUID operationId,
+            @RequestHeader(value = "Authorization", required = false) String authorization) {
+        if (!checkAuthorization(authorization)) {
+            throw new RestUnauthorizedException("Authentication has failed.");
+        }
+
+        // operations of other FHIR clients are not disclosed
+        final ExpressOperation operation = expressOperationService.findById(operationId)
+                .filter(o -> o.getFhirClientId().equals(fhirClientId))
+                .orElseThrow(() -> new RestResourceNotFoundException("Express operation " + operationId + " of FHIR client " + fhirClientId + " cannot be found."));
+        return new ResponseEntity<>(operation, HttpStatus.OK);
     }
 
     //This method can be invoked to check whether both the adapter and dhis are running
@@ -143,6 +186,55 @@ public class FhirClientExpressController extends AbstractFhirClientController {
     }
 
     public FhirRepositoryOperationOutcome processPayload(@Nonnull FhirClientResource fhirClientResource, @Nullable String contentType, @Nonnull String fhirResourceType, @Nonnull String fhirResourceId, @Nonnull String fhirResource, @Nonnull String authorization) {
+        final IBaseResource parsedFhirResource = parsePayload(fhirClientResource, contentType, fhirResourceType, fhirResourceId, fhirResource);
+        final ProcessedItemInfo processedItemInfo = ProcessedFhirItemInfoUtils.create(parsedFhirResource);
+        FhirResource _fhirResource = new FhirResource(fhirClientResource.getGroupId(), processedItemInfo, false);
+        if (fhirClientConfig.isExpressPayloadHandoff()) {
+            return fhirResourceExpressService.receive(_fhirResource, parsedFhirResource, authorization);
+        }
+        return fhirResourceExpressService.receive(_fhirResource, authorization);
+    }
+
+    /**
+     * Validates and enqueues the payload for asynchronous processing. The response
+     * refers to the operation that reports the outcome of the processing. The payload
+     * is processed with the authorization of the request.
+     */
+    @Nonnull
+    protected ResponseEntity<byte[]> enqueuePayload(@Nonnull FhirClientResource fhirClientResource,
+            @Nonnull String resourceType, @Nonnull String resourceId, HttpEntity<byte[]> requestEntity, @Nullable String authorization) {
+        if (authorization == null) {
+            throw new RestUnauthorizedException("Authentication has failed.");
+        }
+        if ((requestEntity.getBody() == null) || (requestEntity.getBody().length == 0)) {
+            return createBadRequestResponse("Payload expected.");
+        }
+
+        final MediaType mediaType = requestEntity.getHeaders().getContentType();
+        final String contentType = (mediaType == null) ? null : mediaType.toString();
+        final String fhirResource = new String(requestEntity.getBody(), getCharset(mediaType));
+        final IBaseResource parsedFhirResource = parsePayload(fhirClientResource, contentType, resourceType, resourceId, fhirResource);
+
+        final UUID fhirClientId = fhirClientResource.getFhirClient().getId();
+        final ExpressOperation operation = expressOperationService.createQueued(fhirClientId, resourceType, resourceId);
+        if (operation == null) {
+            return createTooManyRequestsResponse("Too many queued operations.");
+        }
+        try {
+            fhirResourceExpressService.enqueue(fhirClientResource, contentType, fhirResource, parsedFhirResource, operation.getId(), authorization);
+        } catch (RuntimeException e) {
+            expressOperationService.failed(operation.getId(), "FHIR resource could not be enqueued.");
+            throw e;
+        }
+
+        final HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.TEXT_PLAIN);
+        headers.set(HttpHeaders.CONTENT_LOCATION, "/remote-fhir-express/" + fhirClientId + "/operations/" + operation.getId());
+        return new ResponseEntity<>(operation.getId().toString().getBytes(StandardCharsets.UTF_8), headers, HttpStatus.ACCEPTED);
+    }
+
+    @Nonnull
+    protected IBaseResource parsePayload(@Nonnull FhirClientResource fhirClientResource, @Nullable String contentType, @Nonnull String fhirResourceType, @Nonnull String fhirResourceId, @Nonnull String fhirResource) {
         final FhirVersion fhirVersion = fhirClientResource.getFhirClient().getFhirVersion();
         final FhirContext fhirContext = fhirContexts.get(fhirVersion);
         if (fhirContext == null) {
@@ -160,10 +252,26 @@ public class FhirClientExpressController extends AbstractFhirClientController {
         if (!fhirResourceId.equals(parsedFhirResource.getIdElement().getIdPart())) {
             throw new FhirParserException("Received FHIR resource type " + parsedFhirResource.getIdElement().getIdPart() + " does not match FHIR resource ID " + fhirResourceId + " of FHIR subscription notification.");
         }
+        return parsedFhirResource;
+    }
 
-        final ProcessedItemInfo processedItemInfo = ProcessedFhirItemInfoUtils.create(parsedFhirResource);
-        FhirResource _fhirResource = new FhirResource(fhirClientResource.getGroupId(), processedItemInfo, false);
-        return fhirResourceExpressService.receive(_fhirResource, authorization);
+    protected static boolean isRespondAsync(@Nullable String prefer) {
+        if (prefer == null) {
+            return false;
+        }
+        for (final String preference : prefer.split(",")) {
+            if (RESPOND_ASYNC_PREFERENCE.equalsIgnoreCase(preference.trim())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Nonnull
+    protected ResponseEntity<byte[]> createTooManyRequestsResponse(@Nonnull String message) {
+        final HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.TEXT_PLAIN);
+        return new ResponseEntity<>(message.getBytes(StandardCharsets.UTF_8), headers, HttpStatus.TOO_MANY_REQUESTS);
     }
 
     @Override
@@ -186,9 +294,16 @@ public class FhirClientExpressController extends AbstractFhirClientController {
 
     //TODO: Use template and put this code in dhis2-fhir-adapter-dhis module
     private boolean checkAuthorization(String authorization) {
+        if (authenticationCache.isAuthenticated(authorization)) {
+            return true;
+        }
+
         String url = getRootUri(endpointConfig, false) + "/me";
         try {
             ExpressHttpUtility.httpGet(url, authorization);
+            if (authorization != null) {
+                authenticationCache.authenticated(authorization);
+            }
             return true;
         } catch (UnauthorizedApiException ex) {
             return false;
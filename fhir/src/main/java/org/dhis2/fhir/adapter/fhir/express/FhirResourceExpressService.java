@@ -1,7 +1,10 @@
 package org.dhis2.fhir.adapter.fhir.express;
 
+import java.util.UUID;
+import org.dhis2.fhir.adapter.fhir.metadata.model.FhirClientResource;
 import org.dhis2.fhir.adapter.fhir.repository.FhirRepositoryOperationOutcome;
 import org.dhis2.fhir.adapter.fhir.repository.FhirResource;
+import org.hl7.fhir.instance.model.api.IBaseResource;
 
 /**
  *
@@ -11,4 +14,17 @@ public interface FhirResourceExpressService {
 
     public  FhirRepositoryOperationOutcome receive(FhirResource fhirResource, String authorization);
 
+    /**
+     * Processes the FHIR resource that has already been received and parsed. The FHIR
+     * resource is not read again from the FHIR client.
+     */
+    public  FhirRepositoryOperationOutcome receive(FhirResource fhirResource, IBaseResource resource, String authorization);
+
+    /**
+     * Stores the received payload and enqueues the FHIR resource onto the FHIR resource
+     * queue. The outcome of the processing is recorded for the specified operation.
+     * The FHIR resource is processed with the specified DHIS2 authorization of the client.
+     */
+    public void enqueue(FhirClientResource fhirClientResource, String contentType, String fhirResource, IBaseResource resource, UUID operationId, String authorization);
+
 }
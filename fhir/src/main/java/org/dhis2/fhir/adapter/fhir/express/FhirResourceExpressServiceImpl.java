@@ -8,6 +8,7 @@ import org.dhis2.fhir.adapter.dhis.DhisConflictException;
 import org.dhis2.fhir.adapter.dhis.sync.DhisResourceRepository;
 import org.dhis2.fhir.adapter.fhir.client.ProcessedFhirItemInfoUtils;
 import org.dhis2.fhir.adapter.fhir.client.StoredFhirResourceService;
+import org.dhis2.fhir.adapter.fhir.client.impl.FhirClientProcessorConfig;
 import org.dhis2.fhir.adapter.fhir.data.model.SubscriptionFhirResource;
 import org.dhis2.fhir.adapter.fhir.data.repository.FhirDhisAssignmentRepository;
 import org.dhis2.fhir.adapter.fhir.data.repository.SubscriptionFhirResourceRepository;
@@ -29,7 +30,9 @@ import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jms.core.JmsTemplate;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Propagation;
@@ -41,8 +44,10 @@ import java.time.Instant;
 import java.time.ZoneId;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.UUID;
 import java.util.concurrent.atomic.AtomicLong;
 import org.dhis2.fhir.adapter.auth.Authorization;
+import org.dhis2.fhir.adapter.fhir.model.FhirVersion;
 import org.dhis2.fhir.adapter.fhir.repository.FhirRepositoryOperationOutcome;
 
 /**
@@ -72,6 +77,10 @@ public class FhirResourceExpressServiceImpl implements FhirResourceExpressServic
     
     private final AuthorizationContext authorizationContext;
 
+    private final JmsTemplate fhirResourceQueueJmsTemplate;
+
+    private final FhirClientProcessorConfig processorConfig;
+
     public FhirResourceExpressServiceImpl(@Nonnull AuthorizationContext authorizationContext,
             @Nonnull LockManager lockManager, @Nonnull RequestCacheService requestCacheService,
             @Nonnull FhirClientSystemRepository fhirClientSystemRepository,
@@ -82,27 +91,54 @@ public class FhirResourceExpressServiceImpl implements FhirResourceExpressServic
             @Nonnull FhirRepository fhirRepository,
             @Nonnull FhirToDhisTransformerService fhirToDhisTransformerService,
             @Nonnull DhisResourceRepository dhisResourceRepository,
-            @Nonnull FhirDhisAssignmentRepository fhirDhisAssignmentRepository) {
+            @Nonnull FhirDhisAssignmentRepository fhirDhisAssignmentRepository,
+            @Nonnull @Qualifier("fhirResourceQueueJmsTemplate") JmsTemplate fhirResourceQueueJmsTemplate,
+            @Nonnull FhirClientProcessorConfig processorConfig) {
         this.fhirClientResourceRepository = fhirClientResourceRepository;
         this.subscriptionFhirResourceRepository = subscriptionFhirResourceRepository;
         this.storedItemService = storedItemService;
         this.fhirResourceRepository = fhirResourceRepository;
         this.fhirRepository = fhirRepository;        
         this.authorizationContext = authorizationContext;        
+        this.fhirResourceQueueJmsTemplate = fhirResourceQueueJmsTemplate;
+        this.processorConfig = processorConfig;
+    }
+
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @Override
+    public void enqueue(@Nonnull FhirClientResource fhirClientResource, @Nullable String contentType, @Nonnull String fhirResource, @Nonnull IBaseResource resource, @Nonnull UUID operationId, @Nonnull String authorization) {
+        final FhirVersion fhirVersion = fhirClientResource.getFhirClient().getFhirVersion();
+        //The payload is stored like a subscription notification and processed later from the stored payload
+        subscriptionFhirResourceRepository.enqueue(fhirClientResource, contentType, fhirVersion, resource.getIdElement().getIdPart(), fhirResource,
+                processorConfig.isCompressFhirResource());
+
+        final FhirResource queuedFhirResource = new FhirResource(fhirClientResource.getGroupId(), ProcessedFhirItemInfoUtils.create(resource), true);
+        queuedFhirResource.setOperationId(operationId);
+        //DHIS2 must be written with the authorization of the client as for synchronous requests
+        queuedFhirResource.setAuthorization(authorization);
+        fhirResourceQueueJmsTemplate.convertAndSend(queuedFhirResource);
+        logger.debug("FHIR resource {} of FHIR client resource {} has been enqueued for operation {}.",
+                resource.getIdElement().toUnqualifiedVersionless(), fhirClientResource.getId(), operationId);
     }
 
     @Transactional(propagation = Propagation.NOT_SUPPORTED)
     @Override
     public  FhirRepositoryOperationOutcome receive(@Nonnull FhirResource fhirResource, @Nonnull String authorization) {
+        return receive(fhirResource, null, authorization);
+    }
+
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @Override
+    public  FhirRepositoryOperationOutcome receive(@Nonnull FhirResource fhirResource, @Nullable IBaseResource receivedResource, @Nonnull String authorization) {
         SecurityContextHolder.getContext().setAuthentication(new AdapterSystemAuthenticationToken());
         try {
-            return receiveAuthenticated(fhirResource, authorization);
+            return receiveAuthenticated(fhirResource, receivedResource, authorization);
         } finally {
             SecurityContextHolder.clearContext();
         }
     }
 
-    protected  FhirRepositoryOperationOutcome receiveAuthenticated(@Nonnull FhirResource fhirResource, @Nonnull String authorization) {
+    protected  FhirRepositoryOperationOutcome receiveAuthenticated(@Nonnull FhirResource fhirResource, @Nullable IBaseResource receivedResource, @Nonnull String authorization) {
         final long currentProcessedCount = processedCount.incrementAndGet();
 
         final FhirClientResource fhirClientResource
@@ -119,7 +155,10 @@ public class FhirResourceExpressServiceImpl implements FhirResourceExpressServic
         FhirRepositoryOperationOutcome fhirRepositoryOperationOutcome=null;
         
         
-        if (fhirResource.isPersistedDataItem()) {
+        if (receivedResource != null) {
+            //The received resource is the current version and must not be read again from the FHIR client
+            resource = Optional.ofNullable(fhirResourceRepository.transform(fhirClient.getId(), fhirClient.getFhirVersion(), receivedResource));
+        } else if (fhirResource.isPersistedDataItem()) {
             resource = getParsedFhirResource(fhirResource, fhirClientResource, subscriptionFhirResource);
         } else {
             resource = fhirResourceRepository.findRefreshed(
@@ -177,7 +216,7 @@ public class FhirResourceExpressServiceImpl implements FhirResourceExpressServic
             final FhirContext fhirContext = fhirResourceRepository.findFhirContext(subscriptionFhirResource.getFhirVersion())
                     .orElseThrow(() -> new FatalTransformerException("FHIR context for FHIR version " + subscriptionFhirResource.getFhirVersion() + " has not been configured."));
             resource = Optional.of(Objects.requireNonNull(fhirResourceRepository.transform(fhirClientResource.getFhirClient().getId(), subscriptionFhirResource.getFhirVersion(),
-                    FhirParserUtils.parse(fhirContext, subscriptionFhirResource.getFhirResource(), subscriptionFhirResource.getContentType()))));
+                    FhirParserUtils.parse(fhirContext, subscriptionFhirResource.getFhirResourceContent(), subscriptionFhirResource.getContentType()))));
         }
         return resource;
     }
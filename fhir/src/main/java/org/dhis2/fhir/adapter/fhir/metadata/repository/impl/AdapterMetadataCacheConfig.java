@@ -41,6 +41,8 @@ import org.springframework.stereotype.Component;
 import org.springframework.validation.annotation.Validated;
 
 import javax.annotation.Nonnull;
+import javax.validation.constraints.NotNull;
+import java.time.Duration;
 
 /**
  * Cache configuration for adapter metadata.
@@ -55,6 +57,34 @@ public class AdapterMetadataCacheConfig extends AbstractSimpleCacheConfig
 {
     private static final long serialVersionUID = 3060542002074294407L;
 
+    @NotNull
+    private Duration ruleIndexMaxLifetime = Duration.ofSeconds( 300 );
+
+    @NotNull
+    private Duration codeDictionaryMaxLifetime = Duration.ofSeconds( 300 );
+
+    @Nonnull
+    public Duration getRuleIndexMaxLifetime()
+    {
+        return ruleIndexMaxLifetime;
+    }
+
+    public void setRuleIndexMaxLifetime( @Nonnull Duration ruleIndexMaxLifetime )
+    {
+        this.ruleIndexMaxLifetime = ruleIndexMaxLifetime;
+    }
+
+    @Nonnull
+    public Duration getCodeDictionaryMaxLifetime()
+    {
+        return codeDictionaryMaxLifetime;
+    }
+
+    public void setCodeDictionaryMaxLifetime( @Nonnull Duration codeDictionaryMaxLifetime )
+    {
+        this.codeDictionaryMaxLifetime = codeDictionaryMaxLifetime;
+    }
+
     @Nonnull
     @Override
     protected String getCacheManagerName()
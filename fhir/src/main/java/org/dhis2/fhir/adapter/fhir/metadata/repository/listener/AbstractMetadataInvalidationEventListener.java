@@ -0,0 +1,94 @@
+package org.dhis2.fhir.adapter.fhir.metadata.repository.listener;
+
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.dhis2.fhir.adapter.model.Metadata;
+import org.springframework.data.rest.core.event.AbstractRepositoryEventListener;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Event listener that invalidates data that has been derived from metadata after
+ * relevant metadata has been created, updated or deleted.
+ *
+ * @author volsch
+ */
+public abstract class AbstractMetadataInvalidationEventListener extends AbstractRepositoryEventListener<Metadata>
+{
+    @Override
+    protected void onAfterCreate( Metadata entity )
+    {
+        invalidate( entity );
+    }
+
+    @Override
+    protected void onAfterSave( Metadata entity )
+    {
+        invalidate( entity );
+    }
+
+    @Override
+    protected void onAfterLinkSave( Metadata parent, Object linked )
+    {
+        invalidate( parent );
+    }
+
+    @Override
+    protected void onAfterLinkDelete( Metadata parent, Object linked )
+    {
+        invalidate( parent );
+    }
+
+    @Override
+    protected void onAfterDelete( Metadata entity )
+    {
+        invalidate( entity );
+    }
+
+    protected void invalidate( @Nonnull Metadata entity )
+    {
+        if ( isRelevant( entity ) )
+        {
+            invalidate();
+        }
+    }
+
+    /**
+     * @param entity the metadata that has been changed.
+     * @return <code>true</code> if the derived data depends on the specified metadata,
+     * <code>false</code> otherwise.
+     */
+    protected abstract boolean isRelevant( @Nonnull Metadata entity );
+
+    /**
+     * Invalidates the data that has been derived from metadata.
+     */
+    protected abstract void invalidate();
+}
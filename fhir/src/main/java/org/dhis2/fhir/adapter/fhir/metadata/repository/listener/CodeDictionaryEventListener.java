@@ -0,0 +1,71 @@
+package org.dhis2.fhir.adapter.fhir.metadata.repository.listener;
+
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.dhis2.fhir.adapter.fhir.metadata.model.Code;
+import org.dhis2.fhir.adapter.fhir.metadata.model.CodeSet;
+import org.dhis2.fhir.adapter.fhir.metadata.model.System;
+import org.dhis2.fhir.adapter.fhir.metadata.model.SystemCode;
+import org.dhis2.fhir.adapter.fhir.metadata.service.CodeDictionaryService;
+import org.dhis2.fhir.adapter.model.Metadata;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Event listener that invalidates the dictionary of code mappings after codes,
+ * system codes, systems or code sets have been changed.
+ *
+ * @author volsch
+ */
+@Component
+@Order( value = 20 )
+public class CodeDictionaryEventListener extends AbstractMetadataInvalidationEventListener
+{
+    private final CodeDictionaryService codeDictionaryService;
+
+    public CodeDictionaryEventListener( @Nonnull CodeDictionaryService codeDictionaryService )
+    {
+        this.codeDictionaryService = codeDictionaryService;
+    }
+
+    @Override
+    protected boolean isRelevant( @Nonnull Metadata entity )
+    {
+        return (entity instanceof CodeSet) || (entity instanceof Code) || (entity instanceof SystemCode) || (entity instanceof System);
+    }
+
+    @Override
+    protected void invalidate()
+    {
+        codeDictionaryService.invalidate();
+    }
+}
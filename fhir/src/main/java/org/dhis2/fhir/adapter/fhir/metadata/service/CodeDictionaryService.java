@@ -0,0 +1,88 @@
+package org.dhis2.fhir.adapter.fhir.metadata.service;
+
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.dhis2.fhir.adapter.fhir.model.SystemCodeValue;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Service that provides an in-memory dictionary of all enabled code mappings. The
+ * dictionary maps system code values to the codes (and their mapped codes) that
+ * have been defined for the adapter and contains the membership of codes in code
+ * sets. It is loaded when the application has been started and is reloaded as soon
+ * as codes, system codes, systems or code sets have been changed.
+ *
+ * @author volsch
+ */
+public interface CodeDictionaryService
+{
+    /**
+     * Returns the mapped code of the code that is assigned to the specified system
+     * code value. If the code has no mapped code, the code itself is returned.
+     *
+     * @param systemCodeValue the system code value for which the mapped code should be returned.
+     * @return the mapped code or <code>null</code> if no enabled code has been assigned to the system code value.
+     */
+    @Nullable
+    String findMappedCode( @Nonnull SystemCodeValue systemCodeValue );
+
+    /**
+     * Returns the mapped code of the first code that is assigned to one of the
+     * specified system code values, that has a mapped code and that is included
+     * in the code set with the specified code. The system code values are checked
+     * in the specified order.
+     *
+     * @param codeSetCode      the code of the code set that must include the code.
+     * @param systemCodeValues the system code values that should be checked.
+     * @return the mapped code or <code>null</code> if no such code exists.
+     */
+    @Nullable
+    String findFirstMappedCodeByCodeSet( @Nonnull String codeSetCode, @Nonnull Collection<SystemCodeValue> systemCodeValues );
+
+    /**
+     * Returns the system code values (including their display names) that are
+     * assigned to the code with the specified code.
+     *
+     * @param code the code for which the system code values should be returned.
+     * @return the system code values of the code (empty if no enabled code exists).
+     */
+    @Nonnull
+    List<SystemCodeValue> findSystemCodeValuesByCode( @Nonnull String code );
+
+    /**
+     * Invalidates the current dictionary. The dictionary will be reloaded when it
+     * is used the next time.
+     */
+    void invalidate();
+}
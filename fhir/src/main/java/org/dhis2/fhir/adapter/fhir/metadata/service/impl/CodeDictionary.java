@@ -0,0 +1,185 @@
+package org.dhis2.fhir.adapter.fhir.metadata.service.impl;
+
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.dhis2.fhir.adapter.fhir.metadata.model.Code;
+import org.dhis2.fhir.adapter.fhir.metadata.model.SystemCode;
+import org.dhis2.fhir.adapter.fhir.model.SystemCodeValue;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Immutable dictionary of code mappings. Codes are indexed by the system code
+ * values that have been assigned to them and system code values are indexed by
+ * their code. Equal strings (e.g. system URIs and code set codes) are shared by
+ * all entries of the dictionary.
+ *
+ * @author volsch
+ */
+public class CodeDictionary
+{
+    private final Map<String, MappedCode> bySystemCodeValue = new HashMap<>();
+
+    private final Map<String, List<SystemCodeValue>> systemCodeValuesByCode = new HashMap<>();
+
+    private final long generation;
+
+    private final long createdMillis;
+
+    /**
+     * @param systemCodes  the enabled system codes with their enabled codes and systems.
+     * @param codeSetCodes the codes of the code sets that include a code by the ID of the code.
+     * @param generation   the generation of the dictionary.
+     */
+    public CodeDictionary( @Nonnull Collection<SystemCode> systemCodes, @Nonnull Map<UUID, ? extends Collection<String>> codeSetCodes, long generation )
+    {
+        this.generation = generation;
+        this.createdMillis = System.currentTimeMillis();
+
+        final Map<String, String> strings = new HashMap<>();
+        final Map<Code, MappedCode> mappedCodes = new IdentityHashMap<>();
+        for ( final SystemCode systemCode : systemCodes )
+        {
+            final Code code = systemCode.getCode();
+            final MappedCode mappedCode = mappedCodes.computeIfAbsent( code, c -> new MappedCode( intern( strings, c.getCode() ),
+                intern( strings, c.getMappedCode() ), intern( strings, codeSetCodes.get( c.getId() ) ) ) );
+            final SystemCodeValue systemCodeValue = new SystemCodeValue( intern( strings, systemCode.getSystem().getSystemUri() ),
+                systemCode.getSystemCode(), systemCode.getDisplayName() );
+
+            bySystemCodeValue.putIfAbsent( systemCodeValue.toString(), mappedCode );
+            systemCodeValuesByCode.computeIfAbsent( mappedCode.getCode(), k -> new ArrayList<>() ).add( systemCodeValue );
+        }
+        systemCodeValuesByCode.replaceAll( ( k, v ) -> Collections.unmodifiableList( v ) );
+    }
+
+    public long getGeneration()
+    {
+        return generation;
+    }
+
+    public long getCreatedMillis()
+    {
+        return createdMillis;
+    }
+
+    @Nullable
+    public String findMappedCode( @Nonnull SystemCodeValue systemCodeValue )
+    {
+        final MappedCode mappedCode = bySystemCodeValue.get( systemCodeValue.toString() );
+        if ( mappedCode == null )
+        {
+            return null;
+        }
+        return (mappedCode.getMappedCode() == null) ? mappedCode.getCode() : mappedCode.getMappedCode();
+    }
+
+    @Nullable
+    public String findFirstMappedCodeByCodeSet( @Nonnull String codeSetCode, @Nonnull Collection<SystemCodeValue> systemCodeValues )
+    {
+        for ( final SystemCodeValue systemCodeValue : systemCodeValues )
+        {
+            final MappedCode mappedCode = bySystemCodeValue.get( systemCodeValue.toString() );
+            if ( (mappedCode != null) && (mappedCode.getMappedCode() != null) && mappedCode.getCodeSetCodes().contains( codeSetCode ) )
+            {
+                return mappedCode.getMappedCode();
+            }
+        }
+        return null;
+    }
+
+    @Nonnull
+    public List<SystemCodeValue> findSystemCodeValuesByCode( @Nonnull String code )
+    {
+        return systemCodeValuesByCode.getOrDefault( code, Collections.emptyList() );
+    }
+
+    @Nullable
+    private static String intern( @Nonnull Map<String, String> strings, @Nullable String value )
+    {
+        return (value == null) ? null : strings.computeIfAbsent( value, v -> v );
+    }
+
+    @Nonnull
+    private static Set<String> intern( @Nonnull Map<String, String> strings, @Nullable Collection<String> values )
+    {
+        if ( (values == null) || values.isEmpty() )
+        {
+            return Collections.emptySet();
+        }
+        final Set<String> result = new HashSet<>();
+        values.forEach( v -> result.add( intern( strings, v ) ) );
+        return Collections.unmodifiableSet( result );
+    }
+
+    protected static class MappedCode
+    {
+        private final String code;
+
+        private final String mappedCode;
+
+        private final Set<String> codeSetCodes;
+
+        public MappedCode( @Nonnull String code, @Nullable String mappedCode, @Nonnull Set<String> codeSetCodes )
+        {
+            this.code = code;
+            this.mappedCode = mappedCode;
+            this.codeSetCodes = codeSetCodes;
+        }
+
+        @Nonnull
+        public String getCode()
+        {
+            return code;
+        }
+
+        @Nullable
+        public String getMappedCode()
+        {
+            return mappedCode;
+        }
+
+        @Nonnull
+        public Set<String> getCodeSetCodes()
+        {
+            return codeSetCodes;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package org.dhis2.fhir.adapter.fhir.metadata.service.impl;
+
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.dhis2.fhir.adapter.fhir.metadata.model.SystemCode;
+import org.dhis2.fhir.adapter.fhir.metadata.repository.impl.AdapterMetadataCacheConfig;
+import org.dhis2.fhir.adapter.fhir.metadata.service.CodeDictionaryService;
+import org.dhis2.fhir.adapter.fhir.model.SystemCodeValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Default implementation of {@link CodeDictionaryService}. The dictionary is loaded
+ * in a separate read-only transaction and replaced atomically. A dictionary is
+ * discarded when it has been invalidated or when it exceeds its maximum lifetime
+ * (changes that have been made by other adapter instances).
+ *
+ * @author volsch
+ */
+@Service
+public class CodeDictionaryServiceImpl implements CodeDictionaryService
+{
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final long maxLifetimeMillis;
+
+    private final AtomicLong generation = new AtomicLong();
+
+    private final Object loadLock = new Object();
+
+    private volatile CodeDictionary codeDictionary;
+
+    public CodeDictionaryServiceImpl( @Nonnull EntityManager entityManager, @Nonnull PlatformTransactionManager platformTransactionManager, @Nonnull AdapterMetadataCacheConfig metadataCacheConfig )
+    {
+        this.entityManager = entityManager;
+        this.maxLifetimeMillis = metadataCacheConfig.getCodeDictionaryMaxLifetime().toMillis();
+
+        this.transactionTemplate = new TransactionTemplate( platformTransactionManager );
+        this.transactionTemplate.setPropagationBehavior( TransactionDefinition.PROPAGATION_REQUIRES_NEW );
+        this.transactionTemplate.setReadOnly( true );
+    }
+
+    @EventListener( ApplicationReadyEvent.class )
+    public void load()
+    {
+        try
+        {
+            getCodeDictionary();
+        }
+        catch ( RuntimeException e )
+        {
+            logger.warn( "Could not load code dictionary on startup. It will be loaded when it is used the next time.", e );
+        }
+    }
+
+    @Nullable
+    @Override
+    public String findMappedCode( @Nonnull SystemCodeValue systemCodeValue )
+    {
+        return getCodeDictionary().findMappedCode( systemCodeValue );
+    }
+
+    @Nullable
+    @Override
+    public String findFirstMappedCodeByCodeSet( @Nonnull String codeSetCode, @Nonnull Collection<SystemCodeValue> systemCodeValues )
+    {
+        return getCodeDictionary().findFirstMappedCodeByCodeSet( codeSetCode, systemCodeValues );
+    }
+
+    @Nonnull
+    @Override
+    public List<SystemCodeValue> findSystemCodeValuesByCode( @Nonnull String code )
+    {
+        return getCodeDictionary().findSystemCodeValuesByCode( code );
+    }
+
+    @Override
+    public void invalidate()
+    {
+        generation.incrementAndGet();
+        codeDictionary = null;
+    }
+
+    @Nonnull
+    protected CodeDictionary getCodeDictionary()
+    {
+        CodeDictionary dictionary = codeDictionary;
+        if ( isValid( dictionary ) )
+        {
+            return dictionary;
+        }
+
+        synchronized ( loadLock )
+        {
+            dictionary = codeDictionary;
+            if ( isValid( dictionary ) )
+            {
+                return dictionary;
+            }
+
+            final long currentGeneration = generation.get();
+            dictionary = Objects.requireNonNull( transactionTemplate.execute( status -> loadCodeDictionary( currentGeneration ) ) );
+            codeDictionary = dictionary;
+            return dictionary;
+        }
+    }
+
+    protected boolean isValid( @Nullable CodeDictionary dictionary )
+    {
+        return (dictionary != null) && (dictionary.getGeneration() == generation.get()) &&
+            ((System.currentTimeMillis() - dictionary.getCreatedMillis()) < maxLifetimeMillis);
+    }
+
+    @Nonnull
+    protected CodeDictionary loadCodeDictionary( long currentGeneration )
+    {
+        final List<SystemCode> systemCodes = entityManager.createQuery( "SELECT sc FROM SystemCode sc JOIN FETCH sc.code c JOIN FETCH sc.system s " +
+            "WHERE sc.enabled=true AND c.enabled=true AND s.enabled=true ORDER BY sc.systemCodeValue", SystemCode.class ).getResultList();
+
+        final Map<UUID, List<String>> codeSetCodes = new HashMap<>();
+        entityManager.createQuery( "SELECT csv.code.id, cs.code FROM CodeSetValue csv JOIN csv.codeSet cs WHERE csv.enabled=true", Object[].class ).getResultList()
+            .forEach( row -> codeSetCodes.computeIfAbsent( (UUID) row[0], k -> new ArrayList<>() ).add( (String) row[1] ) );
+
+        logger.debug( "Loaded code dictionary with {} system codes and {} code set assignments.", systemCodes.size(), codeSetCodes.size() );
+        return new CodeDictionary( systemCodes, codeSetCodes, currentGeneration );
+    }
+}
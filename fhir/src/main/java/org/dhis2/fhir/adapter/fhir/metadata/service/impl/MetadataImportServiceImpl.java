@@ -49,11 +49,13 @@ import org.dhis2.fhir.adapter.fhir.metadata.repository.MappedTrackerProgramRepos
 import org.dhis2.fhir.adapter.fhir.metadata.repository.MetadataRepository;
 import org.dhis2.fhir.adapter.fhir.metadata.repository.ProgramStageRuleRepository;
 import org.dhis2.fhir.adapter.fhir.metadata.repository.validator.MetadataValidator;
+import org.dhis2.fhir.adapter.fhir.metadata.service.CodeDictionaryService;
 import org.dhis2.fhir.adapter.fhir.metadata.service.MetadataImportMessage;
 import org.dhis2.fhir.adapter.fhir.metadata.service.MetadataImportParams;
 import org.dhis2.fhir.adapter.fhir.metadata.service.MetadataImportResult;
 import org.dhis2.fhir.adapter.fhir.metadata.service.MetadataImportService;
 import org.dhis2.fhir.adapter.fhir.metadata.service.MetadataImportSeverity;
+import org.dhis2.fhir.adapter.fhir.metadata.service.RuleIndexService;
 import org.dhis2.fhir.adapter.model.Metadata;
 import org.dhis2.fhir.adapter.model.VersionedBaseMetadata;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -100,6 +102,10 @@ public class MetadataImportServiceImpl extends AbstractMetadataService implement
 
     private final CacheManager cacheManager;
 
+    private final RuleIndexService ruleIndexService;
+
+    private final CodeDictionaryService codeDictionaryService;
+
     private final ObjectMapper mapper;
 
     public MetadataImportServiceImpl( @Nonnull MessageSource messageSource, @Nonnull MappedTrackerProgramRepository trackerProgramRepository,
@@ -107,7 +113,8 @@ public class MetadataImportServiceImpl extends AbstractMetadataService implement
         @Nonnull FhirResourceMappingRepository fhirResourceMappingRepository,
         @Nonnull List<? extends MetadataValidator<? extends Metadata>> validators,
         @Nonnull List<? extends MetadataRepository<? extends Metadata>> repositories,
-        @Nonnull EntityManager entityManager, @Nonnull @Qualifier( "metadataCacheManager" ) CacheManager cacheManager )
+        @Nonnull EntityManager entityManager, @Nonnull @Qualifier( "metadataCacheManager" ) CacheManager cacheManager, @Nonnull RuleIndexService ruleIndexService,
+        @Nonnull CodeDictionaryService codeDictionaryService )
     {
         super( trackerProgramRepository, programStageRuleRepository, fhirResourceMappingRepository, repositories );
 
@@ -115,6 +122,8 @@ public class MetadataImportServiceImpl extends AbstractMetadataService implement
         this.validators = validators.stream().collect( Collectors.toMap( MetadataValidator::getMetadataClass, v -> v ) );
         this.entityManager = entityManager;
         this.cacheManager = cacheManager;
+        this.ruleIndexService = ruleIndexService;
+        this.codeDictionaryService = codeDictionaryService;
 
         mapper = new ObjectMapper();
         mapper.disable( FAIL_ON_UNWRAPPED_TYPE_IDENTIFIERS );
@@ -209,6 +218,8 @@ public class MetadataImportServiceImpl extends AbstractMetadataService implement
                 public void afterCommit()
                 {
                     cacheManager.getCacheNames().forEach( cacheName -> Objects.requireNonNull( cacheManager.getCache( cacheName ) ).clear() );
+                    ruleIndexService.invalidate();
+                    codeDictionaryService.invalidate();
                 }
             } );
 
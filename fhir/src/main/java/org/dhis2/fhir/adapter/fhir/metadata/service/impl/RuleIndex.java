@@ -0,0 +1,189 @@
+package org.dhis2.fhir.adapter.fhir.metadata.service.impl;
+
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.dhis2.fhir.adapter.fhir.metadata.model.AbstractRule;
+import org.dhis2.fhir.adapter.fhir.metadata.model.FhirResourceType;
+import org.dhis2.fhir.adapter.fhir.metadata.model.RuleInfo;
+import org.dhis2.fhir.adapter.fhir.metadata.model.System;
+import org.dhis2.fhir.adapter.fhir.model.SystemCodeValue;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Immutable index of import rules by FHIR resource type, system code values and
+ * code set codes. The rules of each FHIR resource type are sorted by their
+ * evaluation order and are referenced by their position in that order. Lookups
+ * are performed as union of the positions of all matching rules.
+ *
+ * @author volsch
+ */
+public class RuleIndex
+{
+    private final Map<FhirResourceType, ResourceTypeIndex> resourceTypeIndexes = new EnumMap<>( FhirResourceType.class );
+
+    private final long generation;
+
+    private final long createdMillis;
+
+    /**
+     * @param rules                   the enabled import rules.
+     * @param codeSetSystemCodeValues the enabled system code values (system and code
+     *                                separated by the system code value separator) by
+     *                                the ID of the code set that includes them.
+     * @param generation              the generation of the index.
+     */
+    public RuleIndex( @Nonnull Collection<RuleInfo<? extends AbstractRule>> rules, @Nonnull Map<UUID, ? extends Collection<String>> codeSetSystemCodeValues, long generation )
+    {
+        this.generation = generation;
+        this.createdMillis = java.lang.System.currentTimeMillis();
+
+        final Map<FhirResourceType, List<RuleInfo<? extends AbstractRule>>> rulesByType = new EnumMap<>( FhirResourceType.class );
+        rules.forEach( r -> rulesByType.computeIfAbsent( r.getRule().getFhirResourceType(), k -> new ArrayList<>() ).add( r ) );
+        rulesByType.forEach( ( fhirResourceType, typeRules ) -> resourceTypeIndexes.put( fhirResourceType, new ResourceTypeIndex( typeRules, codeSetSystemCodeValues ) ) );
+    }
+
+    public long getGeneration()
+    {
+        return generation;
+    }
+
+    public long getCreatedMillis()
+    {
+        return createdMillis;
+    }
+
+    @Nonnull
+    public List<RuleInfo<? extends AbstractRule>> findAll( @Nonnull FhirResourceType fhirResourceType, @Nullable Collection<SystemCodeValue> systemCodeValues )
+    {
+        final ResourceTypeIndex resourceTypeIndex = resourceTypeIndexes.get( fhirResourceType );
+        if ( resourceTypeIndex == null )
+        {
+            return Collections.emptyList();
+        }
+        return resourceTypeIndex.findAll( systemCodeValues );
+    }
+
+    protected static class ResourceTypeIndex
+    {
+        private final RuleInfo<? extends AbstractRule>[] rules;
+
+        private final BitSet withoutCodeSet;
+
+        private final List<RuleInfo<? extends AbstractRule>> withoutCodeSetRules;
+
+        private final Map<String, BitSet> bySystemCodeValue = new HashMap<>();
+
+        private final Map<String, BitSet> byCodeSetCode = new HashMap<>();
+
+        @SuppressWarnings( "unchecked" )
+        public ResourceTypeIndex( @Nonnull List<RuleInfo<? extends AbstractRule>> typeRules, @Nonnull Map<UUID, ? extends Collection<String>> codeSetSystemCodeValues )
+        {
+            rules = typeRules.toArray( new RuleInfo[0] );
+            Arrays.sort( rules );
+            withoutCodeSet = new BitSet( rules.length );
+
+            for ( int i = 0; i < rules.length; i++ )
+            {
+                final AbstractRule rule = rules[i].getRule();
+                if ( rule.getApplicableCodeSet() == null )
+                {
+                    withoutCodeSet.set( i );
+                }
+                else
+                {
+                    final int index = i;
+                    byCodeSetCode.computeIfAbsent( rule.getApplicableCodeSet().getCode(), k -> new BitSet( rules.length ) ).set( index );
+                    final Collection<String> systemCodeValues = codeSetSystemCodeValues.get( rule.getApplicableCodeSet().getId() );
+                    if ( systemCodeValues != null )
+                    {
+                        systemCodeValues.forEach( scv -> bySystemCodeValue.computeIfAbsent( scv, k -> new BitSet( rules.length ) ).set( index ) );
+                    }
+                }
+            }
+
+            withoutCodeSetRules = Collections.unmodifiableList( toList( withoutCodeSet ) );
+        }
+
+        @Nonnull
+        public List<RuleInfo<? extends AbstractRule>> findAll( @Nullable Collection<SystemCodeValue> systemCodeValues )
+        {
+            if ( (systemCodeValues == null) || systemCodeValues.isEmpty() )
+            {
+                return withoutCodeSetRules;
+            }
+
+            final BitSet result = new BitSet( rules.length );
+            for ( final SystemCodeValue systemCodeValue : systemCodeValues )
+            {
+                final BitSet postings;
+                if ( System.DHIS2_FHIR_CODE_SET_URI.equals( systemCodeValue.getSystem() ) )
+                {
+                    postings = byCodeSetCode.get( systemCodeValue.getCode() );
+                }
+                else
+                {
+                    // rules without applicable code set match any resource with codes
+                    result.or( withoutCodeSet );
+                    postings = bySystemCodeValue.get( systemCodeValue.toString() );
+                }
+
+                if ( postings != null )
+                {
+                    result.or( postings );
+                }
+            }
+
+            return toList( result );
+        }
+
+        @Nonnull
+        protected List<RuleInfo<? extends AbstractRule>> toList( @Nonnull BitSet bitSet )
+        {
+            final List<RuleInfo<? extends AbstractRule>> result = new ArrayList<>( bitSet.cardinality() );
+            for ( int i = bitSet.nextSetBit( 0 ); i >= 0; i = bitSet.nextSetBit( i + 1 ) )
+            {
+                result.add( rules[i] );
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package org.dhis2.fhir.adapter.fhir.metadata.service.impl;
+
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.dhis2.fhir.adapter.fhir.metadata.model.AbstractRule;
+import org.dhis2.fhir.adapter.fhir.metadata.model.FhirResourceType;
+import org.dhis2.fhir.adapter.fhir.metadata.model.RuleInfo;
+import org.dhis2.fhir.adapter.fhir.metadata.repository.impl.AdapterMetadataCacheConfig;
+import org.dhis2.fhir.adapter.fhir.metadata.service.RuleIndexService;
+import org.dhis2.fhir.adapter.fhir.model.SystemCodeValue;
+import org.hibernate.Hibernate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Default implementation of {@link RuleIndexService}. The index is built in a
+ * separate read-only transaction and replaced atomically. An index is discarded
+ * when it has been invalidated or when it exceeds its maximum lifetime (changes
+ * that have been made by other adapter instances).
+ *
+ * @author volsch
+ */
+@Service
+public class RuleIndexServiceImpl implements RuleIndexService
+{
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    private final EntityManager entityManager;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final long maxLifetimeMillis;
+
+    private final AtomicLong generation = new AtomicLong();
+
+    private final Object buildLock = new Object();
+
+    private volatile RuleIndex ruleIndex;
+
+    public RuleIndexServiceImpl( @Nonnull EntityManager entityManager, @Nonnull PlatformTransactionManager platformTransactionManager, @Nonnull AdapterMetadataCacheConfig metadataCacheConfig )
+    {
+        this.entityManager = entityManager;
+        this.maxLifetimeMillis = metadataCacheConfig.getRuleIndexMaxLifetime().toMillis();
+
+        this.transactionTemplate = new TransactionTemplate( platformTransactionManager );
+        this.transactionTemplate.setPropagationBehavior( TransactionDefinition.PROPAGATION_REQUIRES_NEW );
+        this.transactionTemplate.setReadOnly( true );
+    }
+
+    @Nonnull
+    @Override
+    public List<RuleInfo<? extends AbstractRule>> findAllImpByInputData( @Nonnull FhirResourceType fhirResourceType, @Nullable Collection<SystemCodeValue> systemCodeValues )
+    {
+        return getRuleIndex().findAll( fhirResourceType, systemCodeValues );
+    }
+
+    @Override
+    public void invalidate()
+    {
+        generation.incrementAndGet();
+        ruleIndex = null;
+    }
+
+    @Nonnull
+    protected RuleIndex getRuleIndex()
+    {
+        RuleIndex index = ruleIndex;
+        if ( isValid( index ) )
+        {
+            return index;
+        }
+
+        synchronized ( buildLock )
+        {
+            index = ruleIndex;
+            if ( isValid( index ) )
+            {
+                return index;
+            }
+
+            final long currentGeneration = generation.get();
+            index = Objects.requireNonNull( transactionTemplate.execute( status -> buildRuleIndex( currentGeneration ) ) );
+            ruleIndex = index;
+            return index;
+        }
+    }
+
+    protected boolean isValid( @Nullable RuleIndex index )
+    {
+        return (index != null) && (index.getGeneration() == generation.get()) &&
+            ((System.currentTimeMillis() - index.getCreatedMillis()) < maxLifetimeMillis);
+    }
+
+    @Nonnull
+    protected RuleIndex buildRuleIndex( long currentGeneration )
+    {
+        final List<AbstractRule> rules = entityManager.createQuery(
+            "SELECT r FROM AbstractRule r LEFT JOIN FETCH r.applicableCodeSet WHERE r.enabled=true AND r.impEnabled=true", AbstractRule.class ).getResultList();
+        final List<RuleInfo<? extends AbstractRule>> ruleInfos = rules.stream().map( r -> {
+            Hibernate.initialize( r.getDhisDataReferences() );
+
+            return new RuleInfo<>( r, r.getDhisDataReferences() );
+        } ).collect( Collectors.toList() );
+
+        final Map<UUID, List<String>> codeSetSystemCodeValues = new HashMap<>();
+        entityManager.createQuery( "SELECT csv.codeSet.id, sc.systemCodeValue FROM CodeSetValue csv JOIN csv.code c JOIN c.systemCodes sc JOIN sc.system s " +
+            "WHERE csv.enabled=true AND c.enabled=true AND sc.enabled=true AND s.enabled=true", Object[].class ).getResultList()
+            .forEach( row -> codeSetSystemCodeValues.computeIfAbsent( (UUID) row[0], k -> new ArrayList<>() ).add( (String) row[1] ) );
+
+        logger.debug( "Built import rule index with {} rules and {} code sets.", ruleInfos.size(), codeSetSystemCodeValues.size() );
+        return new RuleIndex( ruleInfos, codeSetSystemCodeValues, currentGeneration );
+    }
+}
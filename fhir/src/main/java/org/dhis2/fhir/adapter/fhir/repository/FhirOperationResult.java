@@ -109,6 +109,17 @@ public class FhirOperationResult implements Serializable
         this.issue = issue;
     }
 
+    /**
+     * Resets the result so that the corresponding operation is regarded as not
+     * being processed.
+     */
+    public void reset()
+    {
+        setStatusCode( UNDEFINED_STATUS_CODE );
+        setId( null );
+        setIssue( null );
+    }
+
     public void ok()
     {
         setStatusCode( OK_STATUS_CODE );
@@ -52,6 +52,10 @@ public class FhirResource extends DataItemQueueItem<UuidDataGroupId> implements
 
     private boolean persistedDataItem;
 
+    private UUID operationId;
+
+    private String authorization;
+
     public FhirResource()
     {
         super();
@@ -124,6 +128,37 @@ public class FhirResource extends DataItemQueueItem<UuidDataGroupId> implements
         this.persistedDataItem = persistedDataItem;
     }
 
+    /**
+     * @return the ID of the express operation that tracks the processing of this
+     * FHIR resource or <code>null</code> if the processing is not tracked.
+     */
+    @JsonInclude( JsonInclude.Include.NON_NULL )
+    public UUID getOperationId()
+    {
+        return operationId;
+    }
+
+    public void setOperationId( UUID operationId )
+    {
+        this.operationId = operationId;
+    }
+
+    /**
+     * @return the DHIS2 authorization of the client that requested the express operation
+     * or <code>null</code> if the FHIR resource is processed with the authorization of
+     * the FHIR client.
+     */
+    @JsonInclude( JsonInclude.Include.NON_NULL )
+    public String getAuthorization()
+    {
+        return authorization;
+    }
+
+    public void setAuthorization( String authorization )
+    {
+        this.authorization = authorization;
+    }
+
     @JsonIgnore
     public String getIdPart()
     {
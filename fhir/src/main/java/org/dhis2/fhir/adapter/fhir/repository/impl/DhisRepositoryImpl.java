@@ -60,8 +60,6 @@ import org.dhis2.fhir.adapter.fhir.transform.TransformerMappingException;
 import org.dhis2.fhir.adapter.fhir.transform.config.FhirRestInterfaceConfig;
 import org.dhis2.fhir.adapter.fhir.transform.dhis.DhisToFhirDataProvider;
 import org.dhis2.fhir.adapter.fhir.transform.dhis.DhisToFhirDataProviderException;
-import org.dhis2.fhir.adapter.fhir.transform.dhis.DhisToFhirSearchResult;
-import org.dhis2.fhir.adapter.fhir.transform.dhis.DhisToFhirSearchState;
 import org.dhis2.fhir.adapter.fhir.transform.dhis.DhisToFhirTransformOutcome;
 import org.dhis2.fhir.adapter.fhir.transform.dhis.DhisToFhirTransformerRequest;
 import org.dhis2.fhir.adapter.fhir.transform.dhis.DhisToFhirTransformerService;
@@ -81,10 +79,8 @@ import org.springframework.transaction.annotation.Transactional;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.time.Instant;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -259,22 +255,25 @@ public class DhisRepositoryImpl implements DhisRepository
     public IBundleProvider search( @Nonnull FhirClient fhirClient, @Nonnull FhirResourceType fhirResourceType, @Nullable Integer count, boolean unlimitedCount,
         @Nullable Set<SystemCodeValue> filteredCodes, @Nullable Map<String, List<String>> filter, @Nullable DateRangeParam lastUpdatedDateRange ) throws DhisToFhirDataProviderException
     {
-        final int resultingCount;
+        final int pageSize;
+        final int maxCount;
 
         if ( unlimitedCount )
         {
-            resultingCount = Integer.MAX_VALUE;
+            pageSize = Integer.MAX_VALUE;
+            maxCount = Integer.MAX_VALUE;
         }
-        else if ( count == null )
+        else
         {
-            resultingCount = fhirRestInterfaceConfig.getDefaultSearchCount();
+            pageSize = (count == null) ? fhirRestInterfaceConfig.getDefaultSearchCount() : Math.min( count, fhirRestInterfaceConfig.getMaxSearchCount() );
+            maxCount = fhirRestInterfaceConfig.getMaxSearchCount();
         }
-        else
+
+        if ( pageSize == 0 )
         {
-            resultingCount = Math.min( count, fhirRestInterfaceConfig.getMaxSearchCount() );
+            return new SimpleBundleProvider( Collections.emptyList() ).setSize( 0 );
         }
 
-        List<IBaseResource> result = Collections.emptyList();
         try ( final RequestCacheContext requestCacheContext = requestCacheService.createRequestCacheContext( true ) )
         {
             final List<RuleInfo<? extends AbstractRule>> rules = dhisToFhirTransformerService.findAllRules( fhirClient, fhirResourceType, filteredCodes );
@@ -290,72 +289,25 @@ public class DhisRepositoryImpl implements DhisRepository
             }
             else
             {
-                result = search( fhirClient, fhirResourceType, filteredCodes, filter, lastUpdatedDateRange, dhisResourceTypes.stream().findFirst().get(), rules, resultingCount );
+                final DhisToFhirSearchBundleProvider bundleProvider = createSearchBundleProvider(
+                    fhirClient, filter, lastUpdatedDateRange, dhisResourceTypes.stream().findFirst().get(), rules, pageSize, maxCount );
+                // first page is returned anyway and can be fetched in the context of the current request
+                bundleProvider.fetch( pageSize );
+                return bundleProvider;
             }
         }
-        return new SimpleBundleProvider( result ).setSize( (result.size() < resultingCount) ? result.size() : null );
+        return new SimpleBundleProvider( Collections.emptyList() ).setSize( 0 );
     }
 
     @Nonnull
-    protected List<IBaseResource> search( @Nonnull FhirClient fhirClient, @Nonnull FhirResourceType fhirResourceType, @Nullable Set<SystemCodeValue> filteredCodes, @Nullable Map<String, List<String>> filter, @Nullable DateRangeParam lastUpdatedDateRange,
-        @Nonnull DhisResourceType dhisResourceType, @Nonnull List<RuleInfo<? extends AbstractRule>> rules, int count )
+    protected DhisToFhirSearchBundleProvider createSearchBundleProvider( @Nonnull FhirClient fhirClient, @Nullable Map<String, List<String>> filter, @Nullable DateRangeParam lastUpdatedDateRange,
+        @Nonnull DhisResourceType dhisResourceType, @Nonnull List<RuleInfo<? extends AbstractRule>> rules, int pageSize, int maxCount )
     {
-        if ( count == 0 )
-        {
-            return Collections.emptyList();
-        }
-
         final DhisToFhirDataProvider<? extends AbstractRule> dataProvider = dhisToFhirTransformerService.getDataProvider( fhirClient.getFhirVersion(), dhisResourceType );
-        final PreparedDhisToFhirSearch preparedSearch = dataProvider.prepareSearchCasted( fhirClient.getFhirVersion(), rules, filter, lastUpdatedDateRange, count );
-
-        final LinkedList<DhisResource> dhisResources = new LinkedList<>();
-        final List<IBaseResource> result = new ArrayList<>();
-        DhisToFhirSearchState searchState = null;
-        do
-        {
-            if ( dhisResources.isEmpty() )
-            {
-                final DhisToFhirSearchResult<? extends DhisResource> searchResult = dataProvider.search( preparedSearch, searchState, count - result.size() );
-                if ( searchResult == null )
-                {
-                    return result;
-                }
-                searchState = searchResult.getState();
-
-                if ( searchResult.getResult().isEmpty() )
-                {
-                    continue;
-                }
-
-                dhisResources.addAll( searchResult.getResult() );
-            }
+        final PreparedDhisToFhirSearch preparedSearch = dataProvider.prepareSearchCasted( fhirClient.getFhirVersion(), rules, filter, lastUpdatedDateRange, maxCount );
 
-            final DhisResource dhisResource = Objects.requireNonNull( dhisResources.poll() );
-            final WritableDhisRequest dhisRequest = new WritableDhisRequest( true, true, true );
-            dhisRequest.setResourceType( dhisResource.getResourceType() );
-            dhisRequest.setLastUpdated( dhisResource.getLastUpdated() );
-
-            DhisToFhirTransformerRequest transformerRequest =
-                dhisToFhirTransformerService.createTransformerRequest( fhirClient, new ImmutableDhisRequest( dhisRequest ), dhisResource, rules );
-            while ( (transformerRequest != null) && (result.size() < count) )
-            {
-                final DhisToFhirTransformOutcome<? extends IBaseResource> outcome = dhisToFhirTransformerService.transform( transformerRequest );
-                if ( outcome == null )
-                {
-                    transformerRequest = null;
-                }
-                else
-                {
-                    if ( outcome.getResource() != null )
-                    {
-                        result.add( outcome.getResource() );
-                    }
-                    transformerRequest = outcome.getNextTransformerRequest();
-                }
-            }
-        }
-        while ( result.size() < count );
-        return result;
+        return new DhisToFhirSearchBundleProvider( requestCacheService, dhisToFhirTransformerService, fhirClient, rules, dataProvider, preparedSearch,
+            pageSize, maxCount, authorizationContext.getAuthorization().getAuthorization() );
     }
 
     protected boolean saveInternallyWithMissingDhisResources( @Nonnull DhisSyncGroup syncGroup, @Nonnull DhisResource resource, @Nonnull Set<DhisResourceId> missingDhisResourceIds, boolean initial )
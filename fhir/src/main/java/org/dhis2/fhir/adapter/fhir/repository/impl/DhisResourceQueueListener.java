@@ -45,6 +45,7 @@ import org.dhis2.fhir.adapter.fhir.repository.OptimisticFhirResourceLockExceptio
 import org.dhis2.fhir.adapter.fhir.security.AdapterSystemAuthenticationToken;
 import org.dhis2.fhir.adapter.fhir.transform.TransformerDataException;
 import org.dhis2.fhir.adapter.fhir.transform.TransformerMappingException;
+import org.dhis2.fhir.adapter.lock.LockTimeoutException;
 import org.dhis2.fhir.adapter.queue.RetryQueueDeliveryException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -176,6 +177,11 @@ public class DhisResourceQueueListener
                         logger.warn( "Processing of data of DHIS resource caused a transformation error. Retrying processing later because of resolvable issue: {}", e.getMessage() );
                         throw new RetryQueueDeliveryException( e );
                     }
+                    catch ( LockTimeoutException e )
+                    {
+                        logger.info( "Processing of data of DHIS resource could not obtain a lock. Retrying processing later because of resolvable issue: {}", e.getMessage() );
+                        throw new RetryQueueDeliveryException( e );
+                    }
                     catch ( OptimisticFhirResourceLockException e )
                     {
                         logger.debug( e.getMessage(), e );
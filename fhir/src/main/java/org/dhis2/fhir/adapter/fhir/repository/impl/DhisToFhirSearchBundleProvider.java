@@ -0,0 +1,297 @@
+package org.dhis2.fhir.adapter.fhir.repository.impl;
+
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import ca.uhn.fhir.model.primitive.InstantDt;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import org.dhis2.fhir.adapter.auth.UnauthorizedException;
+import org.dhis2.fhir.adapter.cache.RequestCacheContext;
+import org.dhis2.fhir.adapter.cache.RequestCacheService;
+import org.dhis2.fhir.adapter.dhis.model.DhisResource;
+import org.dhis2.fhir.adapter.fhir.metadata.model.AbstractRule;
+import org.dhis2.fhir.adapter.fhir.metadata.model.FhirClient;
+import org.dhis2.fhir.adapter.fhir.metadata.model.RuleInfo;
+import org.dhis2.fhir.adapter.fhir.transform.dhis.DhisToFhirDataProvider;
+import org.dhis2.fhir.adapter.fhir.transform.dhis.DhisToFhirSearchResult;
+import org.dhis2.fhir.adapter.fhir.transform.dhis.DhisToFhirSearchState;
+import org.dhis2.fhir.adapter.fhir.transform.dhis.DhisToFhirTransformOutcome;
+import org.dhis2.fhir.adapter.fhir.transform.dhis.DhisToFhirTransformerRequest;
+import org.dhis2.fhir.adapter.fhir.transform.dhis.DhisToFhirTransformerService;
+import org.dhis2.fhir.adapter.fhir.transform.dhis.PreparedDhisToFhirSearch;
+import org.dhis2.fhir.adapter.fhir.transform.dhis.model.ImmutableDhisRequest;
+import org.dhis2.fhir.adapter.fhir.transform.dhis.model.WritableDhisRequest;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IPrimitiveType;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Bundle provider that transforms the DHIS resources of a search lazily. Only the
+ * DHIS resources that are required for the requested page are retrieved and
+ * transformed. The state of the search (cursor of the data provider, pending DHIS
+ * resources and pending transformer request) is kept in order to continue the
+ * search when the next page is requested. Further pages are only transformed for
+ * an authenticated request.
+ *
+ * @author volsch
+ */
+public class DhisToFhirSearchBundleProvider implements IBundleProvider
+{
+    private final String uuid = UUID.randomUUID().toString();
+
+    private final InstantDt published = InstantDt.withCurrentTime();
+
+    private final RequestCacheService requestCacheService;
+
+    private final DhisToFhirTransformerService dhisToFhirTransformerService;
+
+    private final FhirClient fhirClient;
+
+    private final List<RuleInfo<? extends AbstractRule>> rules;
+
+    private final DhisToFhirDataProvider<? extends AbstractRule> dataProvider;
+
+    private final PreparedDhisToFhirSearch preparedSearch;
+
+    private final int pageSize;
+
+    private final int maxCount;
+
+    private final String authorization;
+
+    private final List<IBaseResource> resources = new ArrayList<>();
+
+    private final LinkedList<DhisResource> dhisResources = new LinkedList<>();
+
+    private volatile int resourceCount;
+
+    private volatile Runnable fetchListener;
+
+    private DhisToFhirSearchState searchState;
+
+    private DhisToFhirTransformerRequest transformerRequest;
+
+    private boolean completed;
+
+    public DhisToFhirSearchBundleProvider( @Nonnull RequestCacheService requestCacheService, @Nonnull DhisToFhirTransformerService dhisToFhirTransformerService,
+        @Nonnull FhirClient fhirClient, @Nonnull List<RuleInfo<? extends AbstractRule>> rules, @Nonnull DhisToFhirDataProvider<? extends AbstractRule> dataProvider,
+        @Nonnull PreparedDhisToFhirSearch preparedSearch, int pageSize, int maxCount, @Nullable String authorization )
+    {
+        this.requestCacheService = requestCacheService;
+        this.dhisToFhirTransformerService = dhisToFhirTransformerService;
+        this.fhirClient = fhirClient;
+        this.rules = rules;
+        this.dataProvider = dataProvider;
+        this.preparedSearch = preparedSearch;
+        this.pageSize = pageSize;
+        this.maxCount = maxCount;
+        this.authorization = authorization;
+    }
+
+    /**
+     * @return the authorization header that has been used when the search has been
+     * performed or <code>null</code> if no authorization header has been used.
+     */
+    @Nullable
+    public String getAuthorization()
+    {
+        return authorization;
+    }
+
+    /**
+     * @return <code>true</code> if all resources of the search have been transformed,
+     * <code>false</code> otherwise.
+     */
+    public synchronized boolean isCompleted()
+    {
+        return completed;
+    }
+
+    /**
+     * @return the number of resources that have been transformed and are kept
+     * by this bundle provider.
+     */
+    public int getResourceCount()
+    {
+        return resourceCount;
+    }
+
+    /**
+     * Sets the listener that is invoked after further resources have been
+     * transformed when requesting resources.
+     *
+     * @param fetchListener the listener or <code>null</code> if there is no listener.
+     */
+    public void setFetchListener( @Nullable Runnable fetchListener )
+    {
+        this.fetchListener = fetchListener;
+    }
+
+    @Override
+    public IPrimitiveType<Date> getPublished()
+    {
+        return published;
+    }
+
+    @Override
+    public String getUuid()
+    {
+        return uuid;
+    }
+
+    @Override
+    public Integer preferredPageSize()
+    {
+        return pageSize;
+    }
+
+    @Override
+    public synchronized Integer size()
+    {
+        return completed ? resources.size() : null;
+    }
+
+    @Nonnull
+    @Override
+    public List<IBaseResource> getResources( int fromIndex, int toIndex )
+    {
+        final List<IBaseResource> result;
+        final boolean fetched;
+        synchronized ( this )
+        {
+            fetched = !completed && (resources.size() < toIndex);
+            if ( fetched )
+            {
+                fetchAuthenticated( toIndex );
+            }
+
+            final int size = resources.size();
+            result = (fromIndex >= size) ? Collections.emptyList() : new ArrayList<>( resources.subList( fromIndex, Math.min( toIndex, size ) ) );
+        }
+
+        final Runnable fetchListener = this.fetchListener;
+        if ( fetched && (fetchListener != null) )
+        {
+            fetchListener.run();
+        }
+        return result;
+    }
+
+    /**
+     * Retrieves and transforms the DHIS resources until the specified number of
+     * resources are available. This must be invoked in the request cache context of
+     * the current request.
+     *
+     * @param count the number of transformed resources that should be available
+     *              (including the already transformed resources).
+     */
+    protected synchronized void fetch( int count )
+    {
+        final int resultingCount = Math.min( count, maxCount );
+        while ( !completed && (resources.size() < resultingCount) )
+        {
+            if ( transformerRequest == null )
+            {
+                if ( dhisResources.isEmpty() )
+                {
+                    final DhisToFhirSearchResult<? extends DhisResource> searchResult = dataProvider.search( preparedSearch, searchState, resultingCount - resources.size() );
+                    if ( searchResult == null )
+                    {
+                        completed = true;
+                    }
+                    else
+                    {
+                        searchState = searchResult.getState();
+                        dhisResources.addAll( searchResult.getResult() );
+                    }
+                    continue;
+                }
+
+                final DhisResource dhisResource = Objects.requireNonNull( dhisResources.poll() );
+                final WritableDhisRequest dhisRequest = new WritableDhisRequest( true, true, true );
+                dhisRequest.setResourceType( dhisResource.getResourceType() );
+                dhisRequest.setLastUpdated( dhisResource.getLastUpdated() );
+
+                transformerRequest = dhisToFhirTransformerService.createTransformerRequest( fhirClient, new ImmutableDhisRequest( dhisRequest ), dhisResource, rules );
+            }
+            else
+            {
+                final DhisToFhirTransformOutcome<? extends IBaseResource> outcome = dhisToFhirTransformerService.transform( transformerRequest );
+                if ( outcome == null )
+                {
+                    transformerRequest = null;
+                }
+                else
+                {
+                    if ( outcome.getResource() != null )
+                    {
+                        resources.add( outcome.getResource() );
+                    }
+                    transformerRequest = outcome.getNextTransformerRequest();
+                }
+            }
+        }
+
+        resourceCount = resources.size();
+        if ( resources.size() >= maxCount )
+        {
+            completed = true;
+        }
+        if ( completed )
+        {
+            // state of the search is no longer required
+            dhisResources.clear();
+            searchState = null;
+            transformerRequest = null;
+        }
+    }
+
+    private void fetchAuthenticated( int count )
+    {
+        // further pages are requested outside of the resource provider and must not be transformed with elevated privileges
+        if ( SecurityContextHolder.getContext().getAuthentication() == null )
+        {
+            throw new UnauthorizedException( "Further pages of a search result can only be retrieved by an authenticated request.", Collections.emptyList() );
+        }
+        try ( final RequestCacheContext requestCacheContext = requestCacheService.createRequestCacheContext( true ) )
+        {
+            fetch( count );
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package org.dhis2.fhir.adapter.fhir.repository.impl;
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.rest.client.api.IGenericClient;
+import ca.uhn.fhir.rest.client.api.IRestfulClientFactory;
+import ca.uhn.fhir.rest.client.apache.ApacheRestfulClientFactory;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.dhis2.fhir.adapter.fhir.client.impl.FhirClientConfig;
+import org.dhis2.fhir.adapter.fhir.metadata.model.ClientFhirEndpoint;
+import org.dhis2.fhir.adapter.fhir.metadata.model.RequestHeader;
+import org.dhis2.fhir.adapter.fhir.repository.FhirClientRegistry;
+import org.dhis2.fhir.adapter.fhir.repository.FhirClientUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Implementation of {@link FhirClientRegistry}. Replaced and evicted HAPI FHIR
+ * clients may still be used by requests that are currently processed. Their
+ * HTTP clients are closed as soon as the configured close delay has elapsed
+ * and none of their HTTP connections is leased anymore.
+ *
+ * @author volsch
+ */
+@Component
+public class FhirClientRegistryImpl implements FhirClientRegistry, DisposableBean
+{
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    private final FhirClientConfig fhirClientConfig;
+
+    private final ConcurrentMap<UUID, RegisteredClient> clients = new ConcurrentHashMap<>();
+
+    private final ConcurrentLinkedQueue<RegisteredClient> retiredClients = new ConcurrentLinkedQueue<>();
+
+    public FhirClientRegistryImpl( @Nonnull FhirClientConfig fhirClientConfig )
+    {
+        this.fhirClientConfig = fhirClientConfig;
+    }
+
+    @Nonnull
+    @Override
+    public IGenericClient getClient( @Nonnull FhirContext fhirContext, @Nonnull UUID fhirClientId, @Nonnull ClientFhirEndpoint fhirEndpoint )
+    {
+        final ClientKey key = new ClientKey( fhirContext, fhirEndpoint );
+        final RegisteredClient registeredClient = clients.get( fhirClientId );
+        if ( (registeredClient != null) && registeredClient.getKey().equals( key ) )
+        {
+            return registeredClient.getClient();
+        }
+
+        final List<RegisteredClient> replacedClients = new ArrayList<>( 1 );
+        final RegisteredClient result = clients.compute( fhirClientId, ( id, existing ) -> {
+            if ( (existing != null) && existing.getKey().equals( key ) )
+            {
+                return existing;
+            }
+            if ( existing != null )
+            {
+                replacedClients.add( existing );
+            }
+            return createClient( key, fhirContext, fhirEndpoint );
+        } );
+
+        if ( !replacedClients.isEmpty() )
+        {
+            logger.info( "Endpoint configuration of FHIR client {} has been changed. Replaced HAPI FHIR client.", fhirClientId );
+            replacedClients.forEach( this::retire );
+        }
+        return result.getClient();
+    }
+
+    @Override
+    public void evict( @Nonnull UUID fhirClientId )
+    {
+        final RegisteredClient registeredClient = clients.remove( fhirClientId );
+        if ( registeredClient != null )
+        {
+            logger.debug( "Evicted HAPI FHIR client of FHIR client {}.", fhirClientId );
+            retire( registeredClient );
+        }
+    }
+
+    /**
+     * Closes the HTTP clients of all retired HAPI FHIR clients for which the close
+     * delay has elapsed and that are no longer used by any request.
+     */
+    @Scheduled( fixedDelay = 10_000L )
+    public void closeRetiredClients()
+    {
+        final long closeDelayNanos = fhirClientConfig.getRetiredClientCloseDelay().toNanos();
+        final long now = System.nanoTime();
+        final Iterator<RegisteredClient> iterator = retiredClients.iterator();
+        while ( iterator.hasNext() )
+        {
+            final RegisteredClient registeredClient = iterator.next();
+            if ( (now - registeredClient.getRetiredNanos() >= closeDelayNanos) && !registeredClient.isInUse() )
+            {
+                iterator.remove();
+                registeredClient.close();
+            }
+        }
+    }
+
+    @Override
+    public void destroy()
+    {
+        clients.values().forEach( RegisteredClient::close );
+        clients.clear();
+        retiredClients.forEach( RegisteredClient::close );
+        retiredClients.clear();
+    }
+
+    protected void retire( @Nonnull RegisteredClient registeredClient )
+    {
+        registeredClient.release();
+        retiredClients.add( registeredClient );
+        closeRetiredClients();
+    }
+
+    @Nonnull
+    protected RegisteredClient createClient( @Nonnull ClientKey key, @Nonnull FhirContext fhirContext, @Nonnull ClientFhirEndpoint fhirEndpoint )
+    {
+        final IRestfulClientFactory defaultClientFactory = fhirContext.getRestfulClientFactory();
+
+        final PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal( fhirClientConfig.getMaxConnections() );
+        connectionManager.setDefaultMaxPerRoute( fhirClientConfig.getMaxConnections() );
+
+        final RequestConfig requestConfig = RequestConfig.custom()
+            .setSocketTimeout( defaultClientFactory.getSocketTimeout() )
+            .setConnectTimeout( defaultClientFactory.getConnectTimeout() )
+            .setConnectionRequestTimeout( defaultClientFactory.getConnectionRequestTimeout() ).build();
+        final CloseableHttpClient httpClient = HttpClients.custom()
+            .setConnectionManager( connectionManager )
+            .setDefaultRequestConfig( requestConfig )
+            .setKeepAliveStrategy( DefaultConnectionKeepAliveStrategy.INSTANCE )
+            .evictIdleConnections( fhirClientConfig.getConnectionIdleTimeout().toMillis(), TimeUnit.MILLISECONDS )
+            .evictExpiredConnections()
+            .disableCookieManagement().build();
+
+        final ApacheRestfulClientFactory clientFactory = new ApacheRestfulClientFactory( fhirContext );
+        clientFactory.setServerValidationMode( defaultClientFactory.getServerValidationMode() );
+        clientFactory.setHttpClient( httpClient );
+        return new RegisteredClient( key, FhirClientUtils.createClient( clientFactory, fhirEndpoint ), httpClient, connectionManager );
+    }
+
+    /**
+     * All configuration values of a FHIR endpoint that are used when creating a
+     * HAPI FHIR client.
+     */
+    protected static class ClientKey
+    {
+        private final FhirContext fhirContext;
+
+        private final String baseUrl;
+
+        private final boolean logging;
+
+        private final boolean verboseLogging;
+
+        private final boolean useJsonFormat;
+
+        private final List<RequestHeader> headers;
+
+        public ClientKey( @Nonnull FhirContext fhirContext, @Nonnull ClientFhirEndpoint fhirEndpoint )
+        {
+            this.fhirContext = fhirContext;
+            this.baseUrl = fhirEndpoint.getBaseUrl();
+            this.logging = fhirEndpoint.isLogging();
+            this.verboseLogging = fhirEndpoint.isVerboseLogging();
+            this.useJsonFormat = fhirEndpoint.isUseJsonFormat();
+            this.headers = (fhirEndpoint.getHeaders() == null) ? new ArrayList<>() : new ArrayList<>( fhirEndpoint.getHeaders() );
+        }
+
+        @Override
+        public boolean equals( Object o )
+        {
+            if ( this == o ) return true;
+            if ( o == null || getClass() != o.getClass() ) return false;
+            final ClientKey that = (ClientKey) o;
+            return fhirContext == that.fhirContext &&
+                logging == that.logging &&
+                verboseLogging == that.verboseLogging &&
+                useJsonFormat == that.useJsonFormat &&
+                Objects.equals( baseUrl, that.baseUrl ) &&
+                Objects.equals( headers, that.headers );
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash( baseUrl, logging, verboseLogging, useJsonFormat, headers );
+        }
+    }
+
+    protected class RegisteredClient
+    {
+        private final ClientKey key;
+
+        private final IGenericClient client;
+
+        private final CloseableHttpClient httpClient;
+
+        private final PoolingHttpClientConnectionManager connectionManager;
+
+        private volatile long retiredNanos;
+
+        private volatile boolean closed;
+
+        public RegisteredClient( @Nonnull ClientKey key, @Nonnull IGenericClient client, @Nonnull CloseableHttpClient httpClient, @Nonnull PoolingHttpClientConnectionManager connectionManager )
+        {
+            this.key = key;
+            this.client = client;
+            this.httpClient = httpClient;
+            this.connectionManager = connectionManager;
+        }
+
+        @Nonnull
+        public ClientKey getKey()
+        {
+            return key;
+        }
+
+        @Nonnull
+        public IGenericClient getClient()
+        {
+            return client;
+        }
+
+        @Nonnull
+        public PoolingHttpClientConnectionManager getConnectionManager()
+        {
+            return connectionManager;
+        }
+
+        public long getRetiredNanos()
+        {
+            return retiredNanos;
+        }
+
+        public boolean isClosed()
+        {
+            return closed;
+        }
+
+        /**
+         * @return <code>true</code> if a request that uses the client is currently processed.
+         */
+        public boolean isInUse()
+        {
+            final PoolStats poolStats = connectionManager.getTotalStats();
+            return (poolStats.getLeased() > 0) || (poolStats.getPending() > 0);
+        }
+
+        /**
+         * Marks the client as retired and closes its idle connections. Connections
+         * that are currently leased by requests that use the client are kept open
+         * until the client is closed.
+         */
+        public void release()
+        {
+            retiredNanos = System.nanoTime();
+            connectionManager.closeIdleConnections( 0, TimeUnit.MILLISECONDS );
+        }
+
+        /**
+         * Closes the HTTP client and all its connections.
+         */
+        public void close()
+        {
+            closed = true;
+            try
+            {
+                httpClient.close();
+            }
+            catch ( IOException e )
+            {
+                logger.warn( "Could not close HTTP client.", e );
+            }
+        }
+    }
+}
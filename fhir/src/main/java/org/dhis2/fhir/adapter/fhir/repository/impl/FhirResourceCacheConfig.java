@@ -40,6 +40,8 @@ import org.springframework.stereotype.Component;
 import org.springframework.validation.annotation.Validated;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Cache configuration for FHIR Resources.
@@ -54,6 +56,19 @@ public class FhirResourceCacheConfig extends AbstractSimpleCacheConfig
 {
     private static final long serialVersionUID = 3060542002074294407L;
 
+    /**
+     * Preset dictionary for compressing JSON encoded FHIR resources. More frequent
+     * sequences are placed at the end. The dictionary must not be changed without
+     * changing the key prefix of the Redis cache.
+     */
+    static final byte[] REDIS_COMPRESSION_DICTIONARY = ("\"Immunization\"\"Observation\"\"Encounter\"\"Location\"\"Organization\"" +
+        "\"Practitioner\"\"RelatedPerson\"\"Condition\"\"MedicationRequest\"\"Questionnaire\"\"QuestionnaireResponse\"\"CarePlan\"" +
+        "\"vaccineCode\":{\"occurrenceDateTime\":\"\"effectiveDateTime\":\"\"valueQuantity\":{\"unit\":\"\"valueCodeableConcept\":{" +
+        "\"birthDate\":\"\"gender\":\"\"family\":\"\"given\":[\"\"name\":[{\"address\":[{\"telecom\":[{\"managingOrganization\":{" +
+        "\"status\":\"\"category\":[{\"subject\":{\"reference\":\"Patient/\"encounter\":{\"reference\":\"\"performer\":[{" +
+        "\"identifier\":[{\"type\":{\"coding\":[{\"system\":\"http://\"value\":\"\"code\":\"\"display\":\"\"text\":\"" +
+        "\"extension\":[{\"url\":\"http://\"id\":\"\"meta\":{\"versionId\":\"\"lastUpdated\":\"\"resourceType\":\"Patient\"").getBytes( StandardCharsets.UTF_8 );
+
     @Nonnull
     @Override
     protected String getCacheManagerName()
@@ -61,6 +76,13 @@ public class FhirResourceCacheConfig extends AbstractSimpleCacheConfig
         return "fhirCacheManager";
     }
 
+    @Nullable
+    @Override
+    protected byte[] getRedisCompressionDictionary()
+    {
+        return REDIS_COMPRESSION_DICTIONARY;
+    }
+
     @Bean
     @Nonnull
     protected CacheManager fhirCacheManager( @Nonnull RequestCacheService requestCacheService, @Nonnull ObjectProvider<RedisConnectionFactory> redisConnectionFactoryProvider, @Nonnull FhirResourceRedisSerializer redisSerializer )
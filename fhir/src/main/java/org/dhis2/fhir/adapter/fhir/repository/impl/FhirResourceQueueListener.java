@@ -30,6 +30,7 @@ package org.dhis2.fhir.adapter.fhir.repository.impl;
 
 import ca.uhn.fhir.context.FhirContext;
 import com.netflix.hystrix.contrib.javanica.annotation.HystrixCommand;
+import org.dhis2.fhir.adapter.auth.Authorization;
 import org.dhis2.fhir.adapter.auth.AuthorizationContext;
 import org.dhis2.fhir.adapter.cache.RequestCacheService;
 import org.dhis2.fhir.adapter.data.model.ProcessedItemInfo;
@@ -40,11 +41,13 @@ import org.dhis2.fhir.adapter.fhir.client.StoredFhirResourceService;
 import org.dhis2.fhir.adapter.fhir.data.model.SubscriptionFhirResource;
 import org.dhis2.fhir.adapter.fhir.data.repository.FhirDhisAssignmentRepository;
 import org.dhis2.fhir.adapter.fhir.data.repository.SubscriptionFhirResourceRepository;
+import org.dhis2.fhir.adapter.fhir.express.ExpressOperationService;
 import org.dhis2.fhir.adapter.fhir.metadata.model.FhirClient;
 import org.dhis2.fhir.adapter.fhir.metadata.model.FhirClientResource;
 import org.dhis2.fhir.adapter.fhir.metadata.repository.FhirClientResourceRepository;
 import org.dhis2.fhir.adapter.fhir.metadata.repository.FhirClientSystemRepository;
 import org.dhis2.fhir.adapter.fhir.repository.FhirRepository;
+import org.dhis2.fhir.adapter.fhir.repository.FhirRepositoryOperationOutcome;
 import org.dhis2.fhir.adapter.fhir.repository.FhirResource;
 import org.dhis2.fhir.adapter.fhir.repository.FhirResourceRepository;
 import org.dhis2.fhir.adapter.fhir.security.AdapterSystemAuthenticationToken;
@@ -54,6 +57,7 @@ import org.dhis2.fhir.adapter.fhir.transform.TransformerMappingException;
 import org.dhis2.fhir.adapter.fhir.transform.fhir.FhirToDhisTransformerService;
 import org.dhis2.fhir.adapter.fhir.util.FhirParserUtils;
 import org.dhis2.fhir.adapter.lock.LockManager;
+import org.dhis2.fhir.adapter.lock.LockTimeoutException;
 import org.dhis2.fhir.adapter.queue.RetryQueueDeliveryException;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.slf4j.Logger;
@@ -61,6 +65,7 @@ import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.jms.annotation.JmsListener;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Propagation;
@@ -86,6 +91,8 @@ public class FhirResourceQueueListener
 {
     private final Logger logger = LoggerFactory.getLogger( getClass() );
 
+    private final AuthorizationContext authorizationContext;
+
     private final FhirClientResourceRepository fhirClientResourceRepository;
 
     private final SubscriptionFhirResourceRepository subscriptionFhirResourceRepository;
@@ -96,6 +103,10 @@ public class FhirResourceQueueListener
 
     private final FhirRepository fhirRepository;
 
+    private final ExpressOperationService expressOperationService;
+
+    private final RepositoryConfig repositoryConfig;
+
     private final ZoneId zoneId = ZoneId.systemDefault();
 
     private final AtomicLong processedCount = new AtomicLong();
@@ -110,26 +121,47 @@ public class FhirResourceQueueListener
         @Nonnull FhirRepository fhirRepository,
         @Nonnull FhirToDhisTransformerService fhirToDhisTransformerService,
         @Nonnull DhisResourceRepository dhisResourceRepository,
-        @Nonnull FhirDhisAssignmentRepository fhirDhisAssignmentRepository )
+        @Nonnull FhirDhisAssignmentRepository fhirDhisAssignmentRepository,
+        @Nonnull ExpressOperationService expressOperationService,
+        @Nonnull RepositoryConfig repositoryConfig )
     {
+        this.authorizationContext = authorizationContext;
         this.fhirClientResourceRepository = fhirClientResourceRepository;
         this.subscriptionFhirResourceRepository = subscriptionFhirResourceRepository;
         this.storedItemService = storedItemService;
         this.fhirResourceRepository = fhirResourceRepository;
         this.fhirRepository = fhirRepository;
+        this.expressOperationService = expressOperationService;
+        this.repositoryConfig = repositoryConfig;
     }
 
     @HystrixCommand( ignoreExceptions = RetryQueueDeliveryException.class )
     @Transactional( propagation = Propagation.NOT_SUPPORTED )
     @JmsListener( destination = "#{@fhirRepositoryConfig.fhirResourceQueue.queueName}",
         concurrency = "#{@fhirRepositoryConfig.fhirResourceQueue.listener.concurrency}" )
-    public void receive( @Nonnull FhirResource fhirResource )
+    public void receive( @Nonnull FhirResource fhirResource, @Nullable @Header( name = "JMSXDeliveryCount", required = false ) Integer deliveryCount )
     {
         SecurityContextHolder.getContext().setAuthentication( new AdapterSystemAuthenticationToken() );
         try
         {
             receiveAuthenticated( fhirResource );
         }
+        catch ( RuntimeException e )
+        {
+            // message is moved to the dead letter queue and will not be processed again
+            if ( isLastDeliveryAttempt( deliveryCount ) )
+            {
+                try
+                {
+                    operationFailed( fhirResource, "Processing of FHIR resource has failed: " + e.getMessage() );
+                }
+                catch ( RuntimeException oe )
+                {
+                    logger.error( "Could not record failure of express operation " + fhirResource.getOperationId() + ".", oe );
+                }
+            }
+            throw e;
+        }
         finally
         {
             SecurityContextHolder.clearContext();
@@ -140,12 +172,22 @@ public class FhirResourceQueueListener
     {
         final long currentProcessedCount = processedCount.incrementAndGet();
 
+        if ( (fhirResource.getOperationId() != null) && (fhirResource.getAuthorization() == null) )
+        {
+            // the authorization of the FHIR client must not be used for the request of a client
+            logger.warn( "Express operation {} does not include the authorization of the client. Skipping processing of FHIR resource {}.",
+                fhirResource.getOperationId(), fhirResource.getId() );
+            operationFailed( fhirResource, "Operation does not include the authorization of the client." );
+            return;
+        }
+
         final FhirClientResource fhirClientResource =
             fhirClientResourceRepository.findOneByIdCached( fhirResource.getFhirClientResourceId() ).orElse( null );
         if ( fhirClientResource == null )
         {
             logger.warn( "FHIR client resource {} is no longer available. Skipping processing of updated FHIR resource {}.",
                 fhirResource.getFhirClientResourceId(), fhirResource.getId() );
+            operationFailed( fhirResource, "FHIR client resource is no longer available." );
             return;
         }
 
@@ -170,6 +212,7 @@ public class FhirResourceQueueListener
             {
                 logger.info( "FHIR resource {} of FHIR client resource {} has already been stored.",
                     resource.get().getIdElement().toUnqualified(), fhirClientResource.getId() );
+                operationCompleted( fhirResource, new FhirRepositoryOperationOutcome( resource.get().getIdElement().getIdPart(), false ) );
             }
             else
             {
@@ -179,17 +222,23 @@ public class FhirResourceQueueListener
                         resource.get().getIdElement().toUnqualified(), fhirClientResource.getId(), fhirResource.isPersistedDataItem(), currentProcessedCount );
                     try
                     {
-                        fhirRepository.save( fhirClientResource, resource.get(), null );
+                        operationCompleted( fhirResource, save( fhirResource, fhirClientResource, resource.get() ) );
                     }
                     catch ( DhisConflictException e )
                     {
                         logger.warn( "Processing of data of FHIR resource caused a conflict on DHIS2. Skipping FHIR resource because of the occurred conflict: {}", e.getMessage() );
+                        operationFailed( fhirResource, e.getMessage() );
                     }
                     catch ( TransformerDataException | TransformerMappingException e )
                     {
                         logger.warn( "Processing of data of FHIR resource caused a transformation error. Retrying processing later because of resolvable issue: {}", e.getMessage() );
                         throw new RetryQueueDeliveryException( e );
                     }
+                    catch ( LockTimeoutException e )
+                    {
+                        logger.info( "Processing of data of FHIR resource could not obtain a lock. Retrying processing later because of resolvable issue: {}", e.getMessage() );
+                        throw new RetryQueueDeliveryException( e );
+                    }
                     logger.info( "Processed FHIR resource {} for FHIR client resource {}.",
                         resource.get().getIdElement().toUnqualifiedVersionless(), fhirClientResource.getId() );
                 }
@@ -200,11 +249,13 @@ public class FhirResourceQueueListener
         {
             logger.debug( "Persisted FHIR resource {}/{} for FHIR client resource {} is no longer available. Skipping processing of updated FHIR resource.",
                 fhirClientResource.getFhirResourceType().getResourceTypeName(), fhirResource.getIdPart(), fhirClientResource.getId() );
+            operationFailed( fhirResource, "Persisted FHIR resource is no longer available." );
         }
         else
         {
             logger.info( "FHIR resource {}/{} for FHIR client resource {} is no longer available. Skipping processing of updated FHIR resource.",
                 fhirClientResource.getFhirResourceType().getResourceTypeName(), fhirResource.getId(), fhirClientResource.getId() );
+            operationFailed( fhirResource, "FHIR resource is no longer available." );
         }
 
         // must not be deleted before since it is still required when a retry must be performed
@@ -214,6 +265,65 @@ public class FhirResourceQueueListener
         }
     }
 
+    /**
+     * Saves the FHIR resource with the authorization of the client that requested the
+     * express operation. Other FHIR resources are saved with the authorization of the
+     * FHIR client.
+     */
+    @Nullable
+    protected FhirRepositoryOperationOutcome save( @Nonnull FhirResource fhirResource, @Nonnull FhirClientResource fhirClientResource, @Nonnull IBaseResource resource )
+    {
+        if ( fhirResource.getOperationId() == null )
+        {
+            return fhirRepository.save( fhirClientResource, resource, null );
+        }
+
+        authorizationContext.setAuthorization( new Authorization( fhirResource.getAuthorization() ) );
+        try
+        {
+            return fhirRepository.save( fhirClientResource, resource, null );
+        }
+        finally
+        {
+            authorizationContext.resetAuthorization();
+        }
+    }
+
+    /**
+     * Checks if the message will not be delivered again when its processing fails. The
+     * maximum delivery attempts are taken from the settings of the embedded queue, which
+     * must match the settings of an external queue.
+     *
+     * @param deliveryCount the number of times the message has been delivered (including
+     *                      the current delivery) or <code>null</code> if unknown.
+     * @return <code>true</code> if this is the last delivery attempt of the message.
+     */
+    protected boolean isLastDeliveryAttempt( @Nullable Integer deliveryCount )
+    {
+        final int maxDeliveryAttempts = repositoryConfig.getFhirResourceQueue().getEmbeddedAddressSettings().getMaxDeliveryAttempts();
+        return (deliveryCount != null) && (maxDeliveryAttempts > 0) && (deliveryCount >= maxDeliveryAttempts);
+    }
+
+    /**
+     * Records the outcome of the express operation that tracks the processing of the
+     * FHIR resource. Operations stay queued when the processing will be retried.
+     */
+    private void operationCompleted( @Nonnull FhirResource fhirResource, @Nullable FhirRepositoryOperationOutcome outcome )
+    {
+        if ( fhirResource.getOperationId() != null )
+        {
+            expressOperationService.completed( fhirResource.getOperationId(), outcome );
+        }
+    }
+
+    private void operationFailed( @Nonnull FhirResource fhirResource, @Nullable String message )
+    {
+        if ( fhirResource.getOperationId() != null )
+        {
+            expressOperationService.failed( fhirResource.getOperationId(), message );
+        }
+    }
+
     @Nonnull
     private Optional<IBaseResource> getParsedFhirResource( @Nonnull FhirResource fhirResource, @Nonnull FhirClientResource fhirClientResource, @Nullable SubscriptionFhirResource subscriptionFhirResource )
     {
@@ -227,7 +337,7 @@ public class FhirResourceQueueListener
             final FhirContext fhirContext = fhirResourceRepository.findFhirContext( subscriptionFhirResource.getFhirVersion() )
                 .orElseThrow( () -> new FatalTransformerException( "FHIR context for FHIR version " + subscriptionFhirResource.getFhirVersion() + " has not been configured." ) );
             resource = Optional.of( Objects.requireNonNull( fhirResourceRepository.transform( fhirClientResource.getFhirClient().getId(), subscriptionFhirResource.getFhirVersion(),
-                FhirParserUtils.parse( fhirContext, subscriptionFhirResource.getFhirResource(), subscriptionFhirResource.getContentType() ) ) ) );
+                FhirParserUtils.parse( fhirContext, subscriptionFhirResource.getFhirResourceContent(), subscriptionFhirResource.getContentType() ) ) ) );
         }
         return resource;
     }
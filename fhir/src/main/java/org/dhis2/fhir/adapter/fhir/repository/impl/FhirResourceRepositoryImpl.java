@@ -51,7 +51,7 @@ import org.dhis2.fhir.adapter.fhir.metadata.repository.FhirClientResourceReposit
 import org.dhis2.fhir.adapter.fhir.metadata.repository.event.AutoCreatedFhirClientResourceEvent;
 import org.dhis2.fhir.adapter.fhir.model.FhirVersion;
 import org.dhis2.fhir.adapter.fhir.model.SystemCodeValue;
-import org.dhis2.fhir.adapter.fhir.repository.FhirClientUtils;
+import org.dhis2.fhir.adapter.fhir.repository.FhirClientRegistry;
 import org.dhis2.fhir.adapter.fhir.repository.FhirResourceRepository;
 import org.dhis2.fhir.adapter.fhir.repository.FhirResourceTransformationException;
 import org.dhis2.fhir.adapter.fhir.repository.OptimisticFhirResourceLockException;
@@ -100,16 +100,19 @@ public class FhirResourceRepositoryImpl implements FhirResourceRepository
 
     private final FhirClientResourceRepository fhirClientResourceRepository;
 
+    private final FhirClientRegistry fhirClientRegistry;
+
     private final Map<FhirVersion, FhirContext> fhirContexts;
 
     private final Map<FhirVersion, AbstractFhirResourceRepositorySupport> supports = new HashMap<>();
 
     public FhirResourceRepositoryImpl( @Nonnull ScriptExecutor scriptExecutor, @Nonnull StoredFhirResourceService storedItemService, @Nonnull FhirClientResourceRepository fhirClientResourceRepository,
-        @Nonnull ObjectProvider<List<FhirContext>> fhirContexts, @Nonnull ObjectProvider<List<AbstractFhirResourceRepositorySupport>> supports )
+        @Nonnull FhirClientRegistry fhirClientRegistry, @Nonnull ObjectProvider<List<FhirContext>> fhirContexts, @Nonnull ObjectProvider<List<AbstractFhirResourceRepositorySupport>> supports )
     {
         this.scriptExecutor = scriptExecutor;
         this.storedItemService = storedItemService;
         this.fhirClientResourceRepository = fhirClientResourceRepository;
+        this.fhirClientRegistry = fhirClientRegistry;
         this.fhirContexts = fhirContexts.getIfAvailable( Collections::emptyList ).stream().filter( fc -> (FhirVersion.get( fc.getVersion().getVersion() ) != null) )
             .collect( Collectors.toMap( fc -> FhirVersion.get( fc.getVersion().getVersion() ), fc -> fc ) );
         supports.getIfAvailable( Collections::emptyList ).forEach( s -> s.getFhirVersions().forEach( v -> FhirResourceRepositoryImpl.this.supports.put( v, s ) ) );
@@ -135,7 +138,7 @@ public class FhirResourceRepositoryImpl implements FhirResourceRepository
         }
 
         final FhirContext fhirContext = fhirContexts.get( fhirVersion );
-        final IGenericClient client = FhirClientUtils.createClient( fhirContext, fhirEndpoint );
+        final IGenericClient client = fhirClientRegistry.getClient( fhirContext, fhirClientId, fhirEndpoint );
 
         logger.debug( "Reading {}/{} from FHIR endpoints {}.", resourceType, resourceId, fhirEndpoint.getBaseUrl() );
         IBaseResource resource;
@@ -252,7 +255,7 @@ public class FhirResourceRepositoryImpl implements FhirResourceRepository
         }
 
         final FhirContext fhirContext = fhirContexts.get( fhirClient.getFhirVersion() );
-        final IGenericClient client = FhirClientUtils.createClient( fhirContext, fhirClient.getFhirEndpoint() );
+        final IGenericClient client = fhirClientRegistry.getClient( fhirContext, fhirClient.getId(), fhirClient.getFhirEndpoint() );
 
         try
         {
@@ -285,7 +288,7 @@ public class FhirResourceRepositoryImpl implements FhirResourceRepository
         }
 
         final FhirContext fhirContext = fhirContexts.get( fhirClient.getFhirVersion() );
-        final IGenericClient client = FhirClientUtils.createClient( fhirContext, fhirClient.getFhirEndpoint() );
+        final IGenericClient client = fhirClientRegistry.getClient( fhirContext, fhirClient.getId(), fhirClient.getFhirEndpoint() );
 
         final IBaseResource preparedResource = prepareResource( resource, dhisResourceId );
         final MethodOutcome methodOutcome;
@@ -371,7 +374,8 @@ public class FhirResourceRepositoryImpl implements FhirResourceRepository
     {
         final FhirVersion fhirVersion = event.getFhirClientResource().getFhirClient().getFhirVersion();
         final FhirContext fhirContext = fhirContexts.get( fhirVersion );
-        final IGenericClient client = FhirClientUtils.createClient( fhirContext, event.getFhirClientResource().getFhirClient().getFhirEndpoint() );
+        final IGenericClient client = fhirClientRegistry.getClient( fhirContext,
+            event.getFhirClientResource().getFhirClient().getId(), event.getFhirClientResource().getFhirClient().getFhirEndpoint() );
 
         final AbstractFhirResourceRepositorySupport support = supports.get( fhirVersion );
         final MethodOutcome methodOutcome;
@@ -399,7 +403,7 @@ public class FhirResourceRepositoryImpl implements FhirResourceRepository
         }
 
         final FhirContext fhirContext = fhirContexts.get( fhirVersion );
-        final IGenericClient client = FhirClientUtils.createClient( fhirContext, fhirEndpoint );
+        final IGenericClient client = fhirClientRegistry.getClient( fhirContext, fhirClientId, fhirEndpoint );
         final AbstractFhirResourceRepositorySupport support = supports.get( fhirVersion );
 
         logger.debug( "Reading {}?{}={} from FHIR endpoints {}.", resourceType, identifier, field, fhirEndpoint.getBaseUrl() );
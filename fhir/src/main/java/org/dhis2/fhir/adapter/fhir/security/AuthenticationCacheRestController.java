@@ -0,0 +1,78 @@
+package org.dhis2.fhir.adapter.fhir.security;
+
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.dhis2.fhir.adapter.dhis.security.DhisAuthenticationCache;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Controller that allows administrators to revoke cached authentications (e.g. after
+ * the credentials or authorities of a user have been changed on DHIS2). Only the
+ * cached authentications of the adapter instance that processes the request are revoked.
+ *
+ * @author volsch
+ */
+@RestController
+@RequestMapping( "/api/authentications" )
+@PreAuthorize( "hasRole('ADMINISTRATION')" )
+public class AuthenticationCacheRestController
+{
+    private final DhisAuthenticationCache authenticationCache;
+
+    public AuthenticationCacheRestController( @Nonnull DhisAuthenticationCache authenticationCache )
+    {
+        this.authenticationCache = authenticationCache;
+    }
+
+    @Nonnull
+    @RequestMapping( method = RequestMethod.DELETE )
+    public ResponseEntity<Void> revokeAll()
+    {
+        authenticationCache.revokeAll();
+
+        return ResponseEntity.noContent().build();
+    }
+
+    @Nonnull
+    @RequestMapping( path = "/{username}", method = RequestMethod.DELETE )
+    public ResponseEntity<Void> revoke( @PathVariable( "username" ) @Nonnull String username )
+    {
+        authenticationCache.revoke( username );
+
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -31,8 +31,10 @@ package org.dhis2.fhir.adapter.fhir.server;
 import org.dhis2.fhir.adapter.auth.AuthorizationContext;
 import org.dhis2.fhir.adapter.auth.AuthorizationResetFilter;
 import org.dhis2.fhir.adapter.auth.ThreadLocalAuthorizationContext;
+import org.dhis2.fhir.adapter.fhir.transform.config.FhirRestInterfaceConfig;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import javax.annotation.Nonnull;
 
@@ -57,4 +59,21 @@ public class BaseFhirServerConfig
     {
         return new AuthorizationResetFilter( authorizationContext );
     }
+
+    /**
+     * Executor that is shared by all requests in order to process independent parts
+     * of batch bundles in parallel. The number of threads is limited by the configured
+     * bundle parallel count. Further parts wait until a thread becomes available.
+     */
+    @Bean
+    @Nonnull
+    protected ThreadPoolTaskExecutor fhirBundleTaskExecutor( @Nonnull FhirRestInterfaceConfig restInterfaceConfig )
+    {
+        final ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+        taskExecutor.setCorePoolSize( restInterfaceConfig.getBundleParallelCount() );
+        taskExecutor.setMaxPoolSize( restInterfaceConfig.getBundleParallelCount() );
+        taskExecutor.setThreadNamePrefix( "fhir-bundle-" );
+
+        return taskExecutor;
+    }
 }
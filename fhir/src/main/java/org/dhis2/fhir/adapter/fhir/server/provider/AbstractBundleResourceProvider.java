@@ -28,18 +28,24 @@ package org.dhis2.fhir.adapter.fhir.server.provider;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.model.primitive.IdDt;
 import ca.uhn.fhir.rest.api.server.RequestDetails;
 import ca.uhn.fhir.rest.param.TokenParam;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import org.apache.commons.lang3.StringUtils;
+import org.dhis2.fhir.adapter.auth.Authorization;
+import org.dhis2.fhir.adapter.auth.AuthorizationContext;
 import org.dhis2.fhir.adapter.cache.RequestCacheContext;
 import org.dhis2.fhir.adapter.cache.RequestCacheService;
+import org.dhis2.fhir.adapter.dhis.config.DhisBulkWriteConfig;
 import org.dhis2.fhir.adapter.dhis.local.LocalDhisRepositoryPersistStatus;
 import org.dhis2.fhir.adapter.dhis.local.LocalDhisResourceRepositoryContainer;
 import org.dhis2.fhir.adapter.dhis.local.LocalDhisResourceRepositoryTemplate;
+import org.dhis2.fhir.adapter.dhis.local.impl.LocalDhisRepositoryChunkedPersister;
 import org.dhis2.fhir.adapter.dhis.local.impl.LocalDhisResourceRepositoryContainerImpl;
 import org.dhis2.fhir.adapter.dhis.model.DhisResource;
+import org.dhis2.fhir.adapter.dhis.model.DhisResourceSizeEstimator;
 import org.dhis2.fhir.adapter.dhis.tracker.program.Enrollment;
 import org.dhis2.fhir.adapter.dhis.tracker.program.Event;
 import org.dhis2.fhir.adapter.dhis.tracker.trackedentity.TrackedEntityInstance;
@@ -58,6 +64,7 @@ import org.dhis2.fhir.adapter.fhir.repository.FhirRepository;
 import org.dhis2.fhir.adapter.fhir.repository.FhirRepositoryOperation;
 import org.dhis2.fhir.adapter.fhir.repository.FhirRepositoryOperationOutcome;
 import org.dhis2.fhir.adapter.fhir.repository.FhirRepositoryOperationType;
+import org.dhis2.fhir.adapter.fhir.transform.config.FhirRestInterfaceConfig;
 import org.dhis2.fhir.adapter.util.ExceptionUtils;
 import org.hl7.fhir.instance.model.api.IBaseBundle;
 import org.hl7.fhir.instance.model.api.IBaseResource;
@@ -73,11 +80,18 @@ import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URLDecoder;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
 
 import static org.dhis2.fhir.adapter.fhir.server.RepositoryExceptionInterceptor.UNPROCESSABLE_ENTITY_EXCEPTIONS;
 
@@ -93,6 +107,16 @@ public abstract class AbstractBundleResourceProvider<T extends IBaseBundle> exte
 
     private final RequestCacheService requestCacheService;
 
+    private final AuthorizationContext authorizationContext;
+
+    private final FhirContext fhirContext;
+
+    private final Executor bundleExecutor;
+
+    private final DhisBulkWriteConfig bulkWriteConfig;
+
+    private final Executor bulkWriteExecutor;
+
     private static final Set<Class<? extends DhisResource>> SUPPORTED_REPOSITORY_CLASSES = Collections.unmodifiableSet(
         new LinkedHashSet<>( Arrays.asList( TrackedEntityInstance.class, Enrollment.class, Event.class ) ) );
 
@@ -100,11 +124,18 @@ public abstract class AbstractBundleResourceProvider<T extends IBaseBundle> exte
         @Nonnull FhirClientResourceRepository fhirClientResourceRepository,
         @Nonnull FhirClientSystemRepository fhirClientSystemRepository,
         @Nonnull FhirRepository fhirRepository, @Nonnull DhisRepository dhisRepository,
-        @Nonnull RequestCacheService requestCacheService )
+        @Nonnull RequestCacheService requestCacheService, @Nonnull AuthorizationContext authorizationContext,
+        @Nonnull FhirRestInterfaceConfig restInterfaceConfig, @Nullable FhirContext fhirContext, @Nullable Executor bundleExecutor,
+        @Nonnull DhisBulkWriteConfig bulkWriteConfig, @Nullable Executor bulkWriteExecutor )
     {
         super( fhirClientResourceRepository, fhirClientSystemRepository, fhirRepository, dhisRepository );
 
         this.requestCacheService = requestCacheService;
+        this.authorizationContext = authorizationContext;
+        this.fhirContext = fhirContext;
+        this.bundleExecutor = ( fhirContext == null || restInterfaceConfig.getBundleParallelCount() < 2 ) ? null : bundleExecutor;
+        this.bulkWriteConfig = bulkWriteConfig;
+        this.bulkWriteExecutor = ( bulkWriteConfig.getParallelCount() < 2 ) ? null : bulkWriteExecutor;
     }
 
     @Nonnull
@@ -134,17 +165,27 @@ public abstract class AbstractBundleResourceProvider<T extends IBaseBundle> exte
         // according to FHIR specification the operations must be processed in order: DELETE, POST, PUT
 
         log.info( "Processing batch bundle with {} items.", batchRequest.getOperations().size() );
+        final List<FhirBatchRequest> partitions = ( bundleExecutor == null ) ?
+            Collections.singletonList( batchRequest ) : FhirBatchRequestUtils.partition( fhirContext, batchRequest );
+        final Authorization authorization = authorizationContext.getAuthorization();
+
         executeInSecurityContext( () -> {
             try ( final RequestCacheContext requestCacheContext = requestCacheService.createRequestCacheContext() )
             {
                 // collects persistence operations in order to apply them at the end in an optimized way
-                final LocalDhisResourceRepositoryContainer repositoryContainer = new LocalDhisResourceRepositoryContainerImpl( SUPPORTED_REPOSITORY_CLASSES );
+                final LocalDhisResourceRepositoryContainer repositoryContainer = new LocalDhisResourceRepositoryContainerImpl(
+                    SUPPORTED_REPOSITORY_CLASSES, createChunkedPersister( authorization ) );
                 requestCacheContext.setAttribute( LocalDhisResourceRepositoryTemplate.CONTAINER_REQUEST_CACHE_ATTRIBUTE_NAME, repositoryContainer );
 
-                processDeletes( requestCacheContext, batchRequest );
-                processPuts( requestCacheContext, batchRequest, true );
-                processPosts( requestCacheContext, batchRequest );
-                processPuts( requestCacheContext, batchRequest, false );
+                if ( partitions.size() > 1 )
+                {
+                    log.info( "Processing {} independent parts of batch bundle in parallel.", partitions.size() );
+                    processPartitions( requestCacheContext, repositoryContainer, partitions, authorization );
+                }
+                else
+                {
+                    processOperations( requestCacheContext, batchRequest );
+                }
 
                 repositoryContainer.apply( ( resource, resourceKey, result ) -> {
                     if ( result.getStatus() != LocalDhisRepositoryPersistStatus.SUCCESS && resourceKey instanceof FhirOperation )
@@ -168,6 +209,132 @@ public abstract class AbstractBundleResourceProvider<T extends IBaseBundle> exte
         log.info( "Processed batch bundle with {} items.", batchRequest.getOperations().size() );
     }
 
+    protected void processOperations( @Nonnull RequestCacheContext requestCacheContext, @Nonnull FhirBatchRequest batchRequest )
+    {
+        processDeletes( requestCacheContext, batchRequest );
+        processPuts( requestCacheContext, batchRequest, true );
+        processPosts( requestCacheContext, batchRequest );
+        processPuts( requestCacheContext, batchRequest, false );
+    }
+
+    /**
+     * Creates the persister that splits the bulk requests to DHIS2 into chunks. Chunks
+     * are uploaded by other threads with the authorization of the current request.
+     */
+    @Nonnull
+    protected LocalDhisRepositoryChunkedPersister createChunkedPersister( @Nullable Authorization authorization )
+    {
+        final Executor executor = ( bulkWriteExecutor == null || authorization == null ) ? null : command -> bulkWriteExecutor.execute( () -> {
+            authorizationContext.setAuthorization( authorization );
+
+            try
+            {
+                executeInSecurityContext( () -> {
+                    command.run();
+                    return null;
+                } );
+            }
+            finally
+            {
+                authorizationContext.resetAuthorization();
+            }
+        } );
+
+        return new LocalDhisRepositoryChunkedPersister( bulkWriteConfig.getMaxChunkCount(), bulkWriteConfig.getMaxChunkBytes(),
+            DhisResourceSizeEstimator.INSTANCE, bulkWriteConfig.getParallelCount(), executor );
+    }
+
+    /**
+     * Processes the independent partitions of a batch request in parallel. Each partition
+     * collects its persistence operations in its own container, which is merged into the
+     * specified container afterwards. Partitions that modified a resource that has also been
+     * modified by another partition are processed again sequentially with the specified
+     * container, which includes the modifications of all other partitions then. Since the
+     * processing of a partition assigns the IDs of the created DHIS2 resources to the FHIR
+     * resources, the original IDs of the FHIR resources are restored before.
+     */
+    protected void processPartitions( @Nonnull RequestCacheContext requestCacheContext, @Nonnull LocalDhisResourceRepositoryContainer repositoryContainer,
+        @Nonnull List<FhirBatchRequest> partitions, @Nonnull Authorization authorization )
+    {
+        final Map<FhirOperation, String> resourceIds = new IdentityHashMap<>();
+        partitions.forEach( p -> p.getOperations().stream().filter( o -> o.getResource() != null ).forEach( o -> {
+            final IIdType id = o.getResource().getIdElement();
+            resourceIds.put( o, ( id == null ) ? null : id.getValue() );
+        } ) );
+
+        final List<CompletableFuture<LocalDhisResourceRepositoryContainer>> futures = partitions.stream()
+            .map( p -> CompletableFuture.supplyAsync( () -> processPartition( p, authorization ), bundleExecutor ) )
+            .collect( Collectors.toList() );
+        final List<FhirBatchRequest> conflictingPartitions = new ArrayList<>();
+
+        for ( int i = 0; i < futures.size(); i++ )
+        {
+            final LocalDhisResourceRepositoryContainer partitionRepositoryContainer;
+
+            try
+            {
+                partitionRepositoryContainer = futures.get( i ).join();
+            }
+            catch ( CompletionException e )
+            {
+                if ( e.getCause() instanceof RuntimeException )
+                {
+                    throw (RuntimeException) e.getCause();
+                }
+
+                throw e;
+            }
+
+            if ( !repositoryContainer.merge( partitionRepositoryContainer ) )
+            {
+                conflictingPartitions.add( partitions.get( i ) );
+            }
+        }
+
+        if ( !conflictingPartitions.isEmpty() )
+        {
+            log.info( "Processing {} parts of batch bundle sequentially since they modified the same resources as other parts.", conflictingPartitions.size() );
+        }
+
+        for ( final FhirBatchRequest partition : conflictingPartitions )
+        {
+            partition.getOperations().forEach( o -> {
+                o.getResult().reset();
+
+                if ( o.getResource() != null )
+                {
+                    o.getResource().setId( resourceIds.get( o ) );
+                }
+            } );
+            processOperations( requestCacheContext, partition );
+        }
+    }
+
+    @Nonnull
+    protected LocalDhisResourceRepositoryContainer processPartition( @Nonnull FhirBatchRequest partition, @Nonnull Authorization authorization )
+    {
+        authorizationContext.setAuthorization( authorization );
+
+        try
+        {
+            return executeInSecurityContext( () -> {
+                try ( final RequestCacheContext requestCacheContext = requestCacheService.createRequestCacheContext() )
+                {
+                    final LocalDhisResourceRepositoryContainer repositoryContainer = new LocalDhisResourceRepositoryContainerImpl( SUPPORTED_REPOSITORY_CLASSES );
+                    requestCacheContext.setAttribute( LocalDhisResourceRepositoryTemplate.CONTAINER_REQUEST_CACHE_ATTRIBUTE_NAME, repositoryContainer );
+
+                    processOperations( requestCacheContext, partition );
+
+                    return repositoryContainer;
+                }
+            } );
+        }
+        finally
+        {
+            authorizationContext.resetAuthorization();
+        }
+    }
+
     protected void processDeletes( @Nonnull RequestCacheContext requestCacheContext, @Nonnull FhirBatchRequest batchRequest )
     {
         batchRequest.getOperations().stream().filter( o -> o.getOperationType() == FhirOperationType.DELETE && !o.isProcessed() ).forEach( o -> {
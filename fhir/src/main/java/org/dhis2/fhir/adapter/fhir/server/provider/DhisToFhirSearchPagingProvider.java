@@ -0,0 +1,122 @@
+package org.dhis2.fhir.adapter.fhir.server.provider;
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.server.IPagingProvider;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.dhis2.fhir.adapter.auth.AuthorizationContext;
+import org.dhis2.fhir.adapter.fhir.repository.impl.DhisToFhirSearchBundleProvider;
+import org.dhis2.fhir.adapter.fhir.transform.config.FhirRestInterfaceConfig;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nonnull;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A paging provider that keeps the state of DHIS to FHIR searches in memory in order
+ * to return further pages of search results. The search states are weighed by the
+ * number of transformed resources they keep. The total number of kept resources
+ * is limited and search states are removed when they have not been accessed for the
+ * configured timeout. Further pages of a search can only be retrieved with the same
+ * authorization with which the search has been performed.
+ *
+ * @author volsch
+ */
+@Component
+public class DhisToFhirSearchPagingProvider implements IPagingProvider
+{
+    private final FhirRestInterfaceConfig restInterfaceConfig;
+
+    private final AuthorizationContext authorizationContext;
+
+    private final Cache<String, DhisToFhirSearchBundleProvider> searchStates;
+
+    @Autowired
+    public DhisToFhirSearchPagingProvider( @Nonnull FhirRestInterfaceConfig restInterfaceConfig, @Nonnull AuthorizationContext authorizationContext )
+    {
+        this( restInterfaceConfig, authorizationContext, ForkJoinPool.commonPool() );
+    }
+
+    DhisToFhirSearchPagingProvider( @Nonnull FhirRestInterfaceConfig restInterfaceConfig, @Nonnull AuthorizationContext authorizationContext, @Nonnull Executor executor )
+    {
+        this.restInterfaceConfig = restInterfaceConfig;
+        this.authorizationContext = authorizationContext;
+        this.searchStates = Caffeine.newBuilder()
+            .expireAfterAccess( restInterfaceConfig.getSearchStateTimeout().toMillis(), TimeUnit.MILLISECONDS )
+            // the search state itself is weighed as one resource
+            .<String, DhisToFhirSearchBundleProvider>weigher( ( uuid, bundleProvider ) -> 1 + bundleProvider.getResourceCount() )
+            .maximumWeight( restInterfaceConfig.getMaxSearchStateResources() )
+            .executor( executor ).build();
+    }
+
+    @Override
+    public int getDefaultPageSize()
+    {
+        return restInterfaceConfig.getDefaultSearchCount();
+    }
+
+    @Override
+    public int getMaximumPageSize()
+    {
+        return restInterfaceConfig.getMaxSearchCount();
+    }
+
+    @Override
+    public IBundleProvider retrieveResultList( String theSearchId )
+    {
+        final DhisToFhirSearchBundleProvider bundleProvider = searchStates.getIfPresent( theSearchId );
+        if ( (bundleProvider == null) || !Objects.equals( bundleProvider.getAuthorization(), authorizationContext.getAuthorization().getAuthorization() ) )
+        {
+            return null;
+        }
+        return bundleProvider;
+    }
+
+    @Override
+    public String storeResultList( IBundleProvider theList )
+    {
+        if ( (restInterfaceConfig.getMaxSearchStateResources() == 0) || !(theList instanceof DhisToFhirSearchBundleProvider) )
+        {
+            // other result lists contain all resources already and are not paged
+            return null;
+        }
+        final DhisToFhirSearchBundleProvider bundleProvider = (DhisToFhirSearchBundleProvider) theList;
+        final String uuid = bundleProvider.getUuid();
+        // the weight of the search state must be updated when further resources have been transformed
+        bundleProvider.setFetchListener( () -> searchStates.asMap().replace( uuid, bundleProvider, bundleProvider ) );
+        searchStates.put( uuid, bundleProvider );
+        return uuid;
+    }
+}
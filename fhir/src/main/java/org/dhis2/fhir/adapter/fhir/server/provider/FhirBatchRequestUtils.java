@@ -0,0 +1,207 @@
+package org.dhis2.fhir.adapter.fhir.server.provider;
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import ca.uhn.fhir.context.FhirContext;
+import org.apache.commons.lang3.StringUtils;
+import org.dhis2.fhir.adapter.fhir.repository.FhirBatchRequest;
+import org.dhis2.fhir.adapter.fhir.repository.FhirOperation;
+import org.hl7.fhir.instance.model.api.IBaseReference;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IIdType;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Utilities for analyzing the dependencies between the operations of a FHIR batch
+ * request.
+ *
+ * @author volsch
+ */
+public abstract class FhirBatchRequestUtils
+{
+    /**
+     * Partitions the operations of the batch request that have not yet been processed
+     * into independent batch requests. Operations that refer to the same resource (by
+     * their own ID, their conditional URL or by a reference that is included in their
+     * resource) are included in the same batch request. The order of the operations
+     * is kept inside each batch request.
+     *
+     * @param fhirContext  the FHIR context that is used to find the references of the resources.
+     * @param batchRequest the batch request that should be partitioned.
+     * @return the independent batch requests.
+     */
+    @Nonnull
+    public static List<FhirBatchRequest> partition( @Nonnull FhirContext fhirContext, @Nonnull FhirBatchRequest batchRequest )
+    {
+        final List<FhirOperation> operations = batchRequest.getOperations().stream()
+            .filter( o -> !o.isProcessed() ).collect( Collectors.toList() );
+        final int[] parents = new int[operations.size()];
+        final Map<String, Integer> operationIndexes = new HashMap<>();
+
+        for ( int i = 0; i < operations.size(); i++ )
+        {
+            parents[i] = i;
+
+            for ( final String key : getDependencyKeys( fhirContext, operations.get( i ) ) )
+            {
+                final Integer otherIndex = operationIndexes.putIfAbsent( key, i );
+
+                if ( otherIndex != null )
+                {
+                    parents[findRoot( parents, i )] = findRoot( parents, otherIndex );
+                }
+            }
+        }
+
+        final Map<Integer, List<FhirOperation>> partitions = new LinkedHashMap<>();
+
+        for ( int i = 0; i < operations.size(); i++ )
+        {
+            partitions.computeIfAbsent( findRoot( parents, i ), k -> new ArrayList<>() ).add( operations.get( i ) );
+        }
+
+        return partitions.values().stream().map( o -> new FhirBatchRequest( o, batchRequest.isTransactional() ) )
+            .collect( Collectors.toList() );
+    }
+
+    @Nonnull
+    protected static Set<String> getDependencyKeys( @Nonnull FhirContext fhirContext, @Nonnull FhirOperation operation )
+    {
+        final Set<String> keys = new LinkedHashSet<>();
+        final String resourceTypeName = operation.getFhirResourceType().getResourceTypeName();
+
+        if ( StringUtils.isNotBlank( operation.getResourceId() ) )
+        {
+            keys.add( resourceTypeName + "/" + operation.getResourceId() );
+        }
+
+        if ( operation.getUri() != null && StringUtils.isNotBlank( operation.getUri().getRawQuery() ) )
+        {
+            keys.add( createConditionalKey( resourceTypeName, operation.getUri().getRawQuery() ) );
+        }
+
+        final IBaseResource resource = operation.getResource();
+
+        if ( resource != null )
+        {
+            final IIdType id = resource.getIdElement();
+
+            if ( id != null && id.hasIdPart() )
+            {
+                keys.add( resourceTypeName + "/" + id.getIdPart() );
+            }
+
+            fhirContext.newTerser().getAllPopulatedChildElementsOfType( resource, IBaseReference.class )
+                .forEach( r -> {
+                    final String key = getReferenceKey( r.getReferenceElement() );
+
+                    if ( key != null )
+                    {
+                        keys.add( key );
+                    }
+                } );
+        }
+
+        return keys;
+    }
+
+    @Nullable
+    private static String getReferenceKey( @Nullable IIdType reference )
+    {
+        if ( reference == null || reference.isEmpty() || reference.isLocal() )
+        {
+            return null;
+        }
+
+        final String value = reference.getValue();
+        final int queryIndex = value.indexOf( '?' );
+
+        if ( queryIndex > 0 )
+        {
+            return createConditionalKey( value.substring( 0, queryIndex ), value.substring( queryIndex + 1 ) );
+        }
+
+        if ( reference.hasResourceType() && reference.hasIdPart() )
+        {
+            return reference.getResourceType() + "/" + reference.getIdPart();
+        }
+
+        return value;
+    }
+
+    @Nonnull
+    private static String createConditionalKey( @Nonnull String resourceTypeName, @Nonnull String query )
+    {
+        try
+        {
+            return resourceTypeName + "?" + URLDecoder.decode( query, "UTF-8" );
+        }
+        catch ( UnsupportedEncodingException e )
+        {
+            throw new IllegalStateException( e );
+        }
+    }
+
+    private static int findRoot( @Nonnull int[] parents, int index )
+    {
+        int root = index;
+
+        while ( parents[root] != root )
+        {
+            root = parents[root];
+        }
+
+        // path compression
+        while ( parents[index] != root )
+        {
+            final int next = parents[index];
+            parents[index] = root;
+            index = next;
+        }
+
+        return root;
+    }
+
+    private FhirBatchRequestUtils()
+    {
+        super();
+    }
+}
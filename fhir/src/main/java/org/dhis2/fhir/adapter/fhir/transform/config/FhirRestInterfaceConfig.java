@@ -33,8 +33,11 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.stereotype.Component;
 import org.springframework.validation.annotation.Validated;
 
+import javax.annotation.Nonnull;
 import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
 import java.io.Serializable;
+import java.time.Duration;
 
 /**
  * Configuration of FHIR REST interfaces.
@@ -59,6 +62,15 @@ public class FhirRestInterfaceConfig implements Serializable
     @Min( 1 )
     private int maxSearchCount = 10_000;
 
+    @Min( 0 )
+    private int maxSearchStateResources = 100_000;
+
+    @NotNull
+    private Duration searchStateTimeout = Duration.ofMinutes( 10 );
+
+    @Min( 1 )
+    private int bundleParallelCount = 4;
+
     public boolean isDstu3Enabled()
     {
         return dstu3Enabled;
@@ -98,4 +110,34 @@ public class FhirRestInterfaceConfig implements Serializable
     {
         this.maxSearchCount = maxSearchCount;
     }
+
+    public int getMaxSearchStateResources()
+    {
+        return maxSearchStateResources;
+    }
+
+    public void setMaxSearchStateResources( int maxSearchStateResources )
+    {
+        this.maxSearchStateResources = maxSearchStateResources;
+    }
+
+    public Duration getSearchStateTimeout()
+    {
+        return searchStateTimeout;
+    }
+
+    public void setSearchStateTimeout( @Nonnull Duration searchStateTimeout )
+    {
+        this.searchStateTimeout = searchStateTimeout;
+    }
+
+    public int getBundleParallelCount()
+    {
+        return bundleParallelCount;
+    }
+
+    public void setBundleParallelCount( int bundleParallelCount )
+    {
+        this.bundleParallelCount = bundleParallelCount;
+    }
 }
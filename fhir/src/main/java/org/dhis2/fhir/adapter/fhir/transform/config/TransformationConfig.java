@@ -69,6 +69,8 @@ public class TransformationConfig implements Serializable
     @Min( 1 )
     private int maxCachedScripts = 10000;
 
+    private boolean reuseScriptContexts;
+
     public String getScriptEngineName()
     {
         return scriptEngineName;
@@ -109,6 +111,16 @@ public class TransformationConfig implements Serializable
         this.maxCachedScripts = maxCachedScripts;
     }
 
+    public boolean isReuseScriptContexts()
+    {
+        return reuseScriptContexts;
+    }
+
+    public void setReuseScriptContexts( boolean reuseScriptContexts )
+    {
+        this.reuseScriptContexts = reuseScriptContexts;
+    }
+
     @Bean
     @Nonnull
     protected ScriptExecutionContext scriptExecutionContext()
@@ -120,7 +132,7 @@ public class TransformationConfig implements Serializable
     @Nonnull
     protected ScriptEvaluator scriptEvaluator()
     {
-        return new ScriptEvaluatorImpl( getScriptEngineName(), scriptEngineArgs, maxCachedScriptLifetimeSecs, maxCachedScripts );
+        return new ScriptEvaluatorImpl( getScriptEngineName(), scriptEngineArgs, maxCachedScriptLifetimeSecs, maxCachedScripts, reuseScriptContexts );
     }
 
     @Bean
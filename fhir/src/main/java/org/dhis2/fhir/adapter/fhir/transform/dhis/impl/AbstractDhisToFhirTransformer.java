@@ -71,12 +71,15 @@ import org.slf4j.LoggerFactory;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * Transforms a DHIS2 resource to a FHIR resource. The default priority of the transformer is <code>0</code>.
@@ -266,7 +269,14 @@ public abstract class AbstractDhisToFhirTransformer<R extends ScriptedDhisResour
 
             if ( (resource != null) && !sync )
             {
-                lockResource( fhirClient, context, ruleInfo, scriptVariables );
+                // the resource and the identifiers of the resource that will be created are locked at once
+                final Set<String> lockKeys = new LinkedHashSet<>( getResourceLockKeys( fhirClient, context, ruleInfo, scriptVariables ) );
+                final ResourceIdentifiers resourceIdentifiers = getResourceIdentifiers( context, ruleInfo, scriptVariables );
+                if ( resourceIdentifiers != null )
+                {
+                    lockKeys.addAll( getFhirIdentifierLockKeys( context, resourceIdentifiers ) );
+                }
+                lockAll( lockKeys );
                 resource = getResource( fhirClient, context, ruleInfo, scriptVariables, true ).orElse( null );
             }
         }
@@ -310,8 +320,7 @@ public abstract class AbstractDhisToFhirTransformer<R extends ScriptedDhisResour
 
         final SystemCodeValue identifier = new SystemCodeValue( getAdapterIdentifierSystem().getSystemUri(), createAdapterIdentifierValue( ruleInfo, scriptedDhisResource ) );
 
-        return getFhirResourceRepository().findRefreshedByIdentifier( fhirClient.getId(), fhirClient.getFhirVersion(), fhirClient.getFhirEndpoint(), ruleInfo.getRule().getFhirResourceType().getResourceTypeName(), identifier )
-            .map( r -> clone( context, r ) );
+        return getFhirResourceRepository().findRefreshedByIdentifier( fhirClient.getId(), fhirClient.getFhirVersion(), fhirClient.getFhirEndpoint(), ruleInfo.getRule().getFhirResourceType().getResourceTypeName(), identifier );
     }
 
     @Nonnull
@@ -339,8 +348,7 @@ public abstract class AbstractDhisToFhirTransformer<R extends ScriptedDhisResour
             return Optional.empty();
         }
 
-        return getFhirResourceRepository().findRefreshed( fhirClient.getId(), fhirClient.getFhirVersion(), fhirClient.getFhirEndpoint(), ruleInfo.getRule().getFhirResourceType().getResourceTypeName(), fhirResourceId )
-            .map( r -> clone( context, r ) );
+        return getFhirResourceRepository().findRefreshed( fhirClient.getId(), fhirClient.getFhirVersion(), fhirClient.getFhirEndpoint(), ruleInfo.getRule().getFhirResourceType().getResourceTypeName(), fhirResourceId );
     }
 
     @Nonnull
@@ -372,8 +380,7 @@ public abstract class AbstractDhisToFhirTransformer<R extends ScriptedDhisResour
 
         final SystemCodeValue identifier = new SystemCodeValue( resourceSystem.getSystem(), identifierValue.substring( StringUtils.length( resourceSystem.getCodePrefix() ) ) );
 
-        return getFhirResourceRepository().findRefreshedByIdentifier( fhirClient.getId(), fhirClient.getFhirVersion(), fhirClient.getFhirEndpoint(), ruleInfo.getRule().getFhirResourceType().getResourceTypeName(), identifier )
-            .map( r -> clone( context, r ) );
+        return getFhirResourceRepository().findRefreshedByIdentifier( fhirClient.getId(), fhirClient.getFhirVersion(), fhirClient.getFhirEndpoint(), ruleInfo.getRule().getFhirResourceType().getResourceTypeName(), identifier );
     }
 
     @Nonnull
@@ -398,11 +405,49 @@ public abstract class AbstractDhisToFhirTransformer<R extends ScriptedDhisResour
 
     protected boolean updateIdentifiers( @Nonnull DhisToFhirTransformerContext context, @Nonnull RuleInfo<U> ruleInfo, IBaseResource resource, @Nonnull Map<String, Object> scriptVariables, boolean sync )
     {
-        final R scriptedDhisResource =
-            getDhisResourceClass().cast( TransformerUtils.getScriptVariable( scriptVariables, ScriptVariable.INPUT, ScriptedDhisResource.class ) );
         final AbstractIdentifierDhisToFhirTransformerUtils identifierUtils =
             TransformerUtils.getScriptVariable( scriptVariables, ScriptVariable.IDENTIFIER_UTILS, AbstractIdentifierDhisToFhirTransformerUtils.class );
+        final ResourceIdentifiers resourceIdentifiers = getResourceIdentifiers( context, ruleInfo, scriptVariables );
+
+        if ( resourceIdentifiers == null )
+        {
+            return false;
+        }
+
+        if ( sync )
+        {
+            lockAll( getFhirIdentifierLockKeys( context, resourceIdentifiers ) );
+        }
+
+        if ( resourceIdentifiers.identifier != null )
+        {
+            identifierUtils.addOrUpdateIdentifier( resource, resourceIdentifiers.identifier, resourceIdentifiers.identifierDisplayName );
+        }
+
+        if ( resourceIdentifiers.adapterIdentifier != null )
+        {
+            identifierUtils.addOrUpdateIdentifier( resource, resourceIdentifiers.adapterIdentifier, resourceIdentifiers.adapterIdentifierDisplayName, true );
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the identifiers that are set on the FHIR resource that is created for the
+     * DHIS2 resource.
+     *
+     * @param context         the current transformer context.
+     * @param ruleInfo        the rule that is used for the transformation.
+     * @param scriptVariables the script variables of the transformation.
+     * @return the identifiers or <code>null</code> if the DHIS2 resource must not be transformed.
+     */
+    @Nullable
+    private ResourceIdentifiers getResourceIdentifiers( @Nonnull DhisToFhirTransformerContext context, @Nonnull RuleInfo<U> ruleInfo, @Nonnull Map<String, Object> scriptVariables )
+    {
+        final R scriptedDhisResource =
+            getDhisResourceClass().cast( TransformerUtils.getScriptVariable( scriptVariables, ScriptVariable.INPUT, ScriptedDhisResource.class ) );
         final ResourceSystem resourceSystem = context.getResourceSystem( ruleInfo.getRule().getFhirResourceType() );
+        final ResourceIdentifiers resourceIdentifiers = new ResourceIdentifiers();
 
         if ( resourceSystem != null )
         {
@@ -419,49 +464,81 @@ public abstract class AbstractDhisToFhirTransformer<R extends ScriptedDhisResour
                     logger.info( "Tracked entity identifier \"{}\" does not start with required prefix \"{}\" for resource type {}.",
                         identifierValue, resourceSystem.getCodePrefix(), ruleInfo.getRule().getFhirResourceType() );
 
-                    return false;
-                }
-
-                final SystemCodeValue identifier = new SystemCodeValue( resourceSystem.getSystem(), identifierValue.substring( StringUtils.length( resourceSystem.getCodePrefix() ) ) );
-
-                if ( sync )
-                {
-                    lockFhirIdentifier( context, identifier );
+                    return null;
                 }
 
-                identifierUtils.addOrUpdateIdentifier( resource, identifier, resourceSystem.getFhirDisplayName() );
+                resourceIdentifiers.identifier = new SystemCodeValue( resourceSystem.getSystem(), identifierValue.substring( StringUtils.length( resourceSystem.getCodePrefix() ) ) );
+                resourceIdentifiers.identifierDisplayName = resourceSystem.getFhirDisplayName();
             }
         }
 
         if ( context.isUseAdapterIdentifier() )
         {
             final System adapterIdentifierSystem = getAdapterIdentifierSystem();
-            final SystemCodeValue identifier = new SystemCodeValue( adapterIdentifierSystem.getSystemUri(), createAdapterIdentifierValue( ruleInfo, scriptedDhisResource ) );
-
-            if ( sync )
-            {
-                lockFhirIdentifier( context, identifier );
-            }
-
-            identifierUtils.addOrUpdateIdentifier( resource, identifier, adapterIdentifierSystem.getFhirDisplayName(), true );
+            resourceIdentifiers.adapterIdentifier = new SystemCodeValue( adapterIdentifierSystem.getSystemUri(), createAdapterIdentifierValue( ruleInfo, scriptedDhisResource ) );
+            resourceIdentifiers.adapterIdentifierDisplayName = adapterIdentifierSystem.getFhirDisplayName();
         }
 
-        return true;
+        return resourceIdentifiers;
     }
 
-    protected abstract void lockResource( @Nonnull FhirClient fhirClient, @Nonnull DhisToFhirTransformerContext context, @Nonnull RuleInfo<U> rule,
+    /**
+     * Returns the keys of the locks that must be held while the FHIR resource for the
+     * DHIS2 resource is looked up and created.
+     *
+     * @param fhirClient      the FHIR client to which the resource belongs to.
+     * @param context         the current transformer context.
+     * @param rule            the rule that is used for the transformation.
+     * @param scriptVariables the script variables of the transformation.
+     * @return the lock keys of the resource.
+     * @throws TransformerException thrown if the lock keys cannot be determined.
+     */
+    @Nonnull
+    protected abstract Collection<String> getResourceLockKeys( @Nonnull FhirClient fhirClient, @Nonnull DhisToFhirTransformerContext context, @Nonnull RuleInfo<U> rule,
         @Nonnull Map<String, Object> scriptVariables ) throws TransformerException;
 
+    protected void lockResource( @Nonnull FhirClient fhirClient, @Nonnull DhisToFhirTransformerContext context, @Nonnull RuleInfo<U> rule,
+        @Nonnull Map<String, Object> scriptVariables ) throws TransformerException
+    {
+        lockAll( getResourceLockKeys( fhirClient, context, rule, scriptVariables ) );
+    }
+
     @Nullable
     protected abstract String getIdentifierValue( @Nonnull DhisToFhirTransformerContext context, @Nonnull RuleInfo<U> ruleInfo,
         @Nullable ExecutableScript identifierLookupScript, @Nonnull R scriptedDhisResource, @Nonnull Map<String, Object> scriptVariables );
 
-    protected void lockFhirIdentifier( @Nonnull DhisToFhirTransformerContext context, @Nonnull SystemCodeValue systemCodeValue )
+    @Nonnull
+    private List<String> getFhirIdentifierLockKeys( @Nonnull DhisToFhirTransformerContext context, @Nonnull ResourceIdentifiers resourceIdentifiers )
     {
+        final List<String> lockKeys = new ArrayList<>();
+
         if ( !context.getDhisRequest().isDhisFhirId() )
+        {
+            if ( resourceIdentifiers.identifier != null )
+            {
+                lockKeys.add( "fhir-identifier:" + resourceIdentifiers.identifier.toString() );
+            }
+
+            if ( resourceIdentifiers.adapterIdentifier != null )
+            {
+                lockKeys.add( "fhir-identifier:" + resourceIdentifiers.adapterIdentifier.toString() );
+            }
+        }
+
+        return lockKeys;
+    }
+
+    /**
+     * Locks all specified keys with a single request to the current lock context.
+     *
+     * @param lockKeys the keys that should be locked.
+     */
+    protected void lockAll( @Nonnull Collection<String> lockKeys )
+    {
+        if ( !lockKeys.isEmpty() )
         {
             getLockManager().getCurrentLockContext().orElseThrow( () -> new FatalTransformerException( "No lock context available." ) )
-                .lock( "fhir-identifier:" + systemCodeValue.toString() );
+                .lockAll( lockKeys );
         }
     }
 
@@ -566,6 +643,21 @@ public abstract class AbstractDhisToFhirTransformer<R extends ScriptedDhisResour
             .orElseThrow( () -> new FatalTransformerException( "No FHIR context for FHIR version " + context.getVersion() ) );
     }
 
+    /**
+     * Creates the copy of the resource that will be modified by the transformation.
+     * Existing resources are returned by the FHIR resource repository without a copy
+     * since the unmodified resource is used read-only to evaluate if the copy has
+     * been modified by the transformation. The unmodified resource must therefore
+     * not be modified by the transformation.
+     *
+     * @param context         the current transformer context.
+     * @param ruleInfo        the rule that is used for the transformation.
+     * @param resource        the unmodified resource that must not be modified.
+     * @param scriptVariables the script variables of the transformation.
+     * @param <T>             the concrete type of the resource.
+     * @return the copy of the resource that can be modified or <code>null</code>
+     * if the identifiers of the resource could not be updated.
+     */
     @Nullable
     protected <T extends IBaseResource> T cloneToModified( @Nonnull DhisToFhirTransformerContext context, @Nonnull RuleInfo<U> ruleInfo, T resource, @Nonnull Map<String, Object> scriptVariables )
     {
@@ -692,4 +784,18 @@ public abstract class AbstractDhisToFhirTransformer<R extends ScriptedDhisResour
             return AbstractDhisToFhirTransformer.this.getTrackedEntityIdentifierValue( context, ruleInfo, scriptedDhisResource, scriptVariables );
         }
     }
+
+    /**
+     * The identifiers that are set on a FHIR resource that is created for a DHIS2 resource.
+     */
+    private static class ResourceIdentifiers
+    {
+        private SystemCodeValue identifier;
+
+        private String identifierDisplayName;
+
+        private SystemCodeValue adapterIdentifier;
+
+        private String adapterIdentifierDisplayName;
+    }
 }
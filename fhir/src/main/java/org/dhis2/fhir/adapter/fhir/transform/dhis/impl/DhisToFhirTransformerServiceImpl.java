@@ -479,6 +479,7 @@ public class DhisToFhirTransformerServiceImpl implements DhisToFhirTransformerSe
         final DhisToFhirTransformerRequestImpl transformerRequestImpl = (DhisToFhirTransformerRequestImpl) transformerRequest;
 
         final boolean firstRule = transformerRequestImpl.isFirstRule();
+        final Map<String, Object> scriptVariables = new HashMap<>( transformerRequestImpl.getTransformerUtils() );
         RuleInfo<? extends AbstractRule> ruleInfo;
 
         while ( (ruleInfo = transformerRequestImpl.nextRule()) != null )
@@ -510,7 +511,8 @@ public class DhisToFhirTransformerServiceImpl implements DhisToFhirTransformerSe
                     transformerRequestImpl.getContext().getVersion() + " mapping of DHIS resource type " + ruleInfo.getRule().getDhisResourceType() );
             }
 
-            final Map<String, Object> scriptVariables = new HashMap<>( transformerRequestImpl.getTransformerUtils() );
+            // variables that have been added for a previous rule must not be visible to this rule
+            scriptVariables.keySet().retainAll( transformerRequestImpl.getTransformerUtils().keySet() );
             scriptVariables.put( ScriptVariable.CONTEXT.getVariableName(), transformerRequestImpl.getContext() );
             scriptVariables.put( ScriptVariable.INPUT.getVariableName(), transformerRequestImpl.getInput() );
             scriptVariables.put( ScriptVariable.ORGANIZATION_UNIT_ID.getVariableName(), transformerRequestImpl.getInput().getOrganizationUnitId() );
@@ -65,6 +65,7 @@ import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -216,7 +217,8 @@ public abstract class AbstractEnrollmentToFhirCarePlanTransformer extends Abstra
     }
 
     @Override
-    protected void lockResource( @Nonnull FhirClient fhirClient, @Nonnull DhisToFhirTransformerContext context, @Nonnull RuleInfo<EnrollmentRule> ruleInfo, @Nonnull Map<String, Object> scriptVariables ) throws TransformerException
+    @Nonnull
+    protected Collection<String> getResourceLockKeys( @Nonnull FhirClient fhirClient, @Nonnull DhisToFhirTransformerContext context, @Nonnull RuleInfo<EnrollmentRule> ruleInfo, @Nonnull Map<String, Object> scriptVariables ) throws TransformerException
     {
         if ( !context.getDhisRequest().isDhisFhirId() )
         {
@@ -225,10 +227,11 @@ public abstract class AbstractEnrollmentToFhirCarePlanTransformer extends Abstra
 
             if ( scriptedEnrollment.getId() != null )
             {
-                final String lockKey = "out-en:" + scriptedEnrollment.getId();
-                getLockManager().getCurrentLockContext().orElseThrow( () -> new FatalTransformerException( "No lock context available." ) ).lock( lockKey );
+                return Collections.singletonList( "out-en:" + scriptedEnrollment.getId() );
             }
         }
+
+        return Collections.emptyList();
     }
 
     @Nullable
@@ -37,7 +37,6 @@ import org.dhis2.fhir.adapter.fhir.metadata.model.ScriptVariable;
 import org.dhis2.fhir.adapter.fhir.metadata.repository.SystemRepository;
 import org.dhis2.fhir.adapter.fhir.repository.FhirResourceRepository;
 import org.dhis2.fhir.adapter.fhir.script.ScriptExecutor;
-import org.dhis2.fhir.adapter.fhir.transform.FatalTransformerException;
 import org.dhis2.fhir.adapter.fhir.transform.TransformerException;
 import org.dhis2.fhir.adapter.fhir.transform.dhis.DhisToFhirTransformOutcome;
 import org.dhis2.fhir.adapter.fhir.transform.dhis.DhisToFhirTransformerContext;
@@ -52,6 +51,8 @@ import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
@@ -135,15 +136,17 @@ public abstract class AbstractReadOnlyDhisMetadataToFhirTransformer<R extends Sc
     }
 
     @Override
-    protected void lockResource( @Nonnull FhirClient fhirClient, @Nonnull DhisToFhirTransformerContext context, @Nonnull RuleInfo<U> rule, @Nonnull Map<String, Object> scriptVariables ) throws TransformerException
+    @Nonnull
+    protected Collection<String> getResourceLockKeys( @Nonnull FhirClient fhirClient, @Nonnull DhisToFhirTransformerContext context, @Nonnull RuleInfo<U> rule, @Nonnull Map<String, Object> scriptVariables ) throws TransformerException
     {
-        if ( !context.getDhisRequest().isDhisFhirId() )
+        if ( context.getDhisRequest().isDhisFhirId() )
         {
-            final ScriptedDhisMetadata scriptedMetadata =
-                TransformerUtils.getScriptVariable( scriptVariables, ScriptVariable.INPUT, ScriptedDhisMetadata.class );
-            getLockManager().getCurrentLockContext().orElseThrow( () -> new FatalTransformerException( "No lock context available." ) )
-                .lock( "out-" + scriptedMetadata.getResourceType() + ":" + scriptedMetadata.getId() );
+            return Collections.emptyList();
         }
+
+        final ScriptedDhisMetadata scriptedMetadata =
+            TransformerUtils.getScriptVariable( scriptVariables, ScriptVariable.INPUT, ScriptedDhisMetadata.class );
+        return Collections.singletonList( "out-" + scriptedMetadata.getResourceType() + ":" + scriptedMetadata.getId() );
     }
 
     @Nullable
@@ -57,7 +57,9 @@ import org.hl7.fhir.instance.model.api.IBaseResource;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
  * Provided to the transformation script to perform lookups.
@@ -106,6 +108,14 @@ public class OrganizationUnitResolver
         return new ImmutableScriptedOrganizationUnit( new WritableScriptedOrganizationUnit( organizationUnit, scriptExecutionContext ) );
     }
 
+    @Nonnull
+    public List<ScriptedOrganizationUnit> getParentsById( @Nonnull String id )
+    {
+        return organizationUnitService.findMetadataParentsById( id ).stream()
+            .map( ou -> new ImmutableScriptedOrganizationUnit( new WritableScriptedOrganizationUnit( ou, scriptExecutionContext ) ) )
+            .collect( Collectors.toList() );
+    }
+
     @Nullable
     public IBaseResource getFhirResource( @Nonnull ScriptedOrganizationUnit scriptedOrganizationUnit )
     {
@@ -65,6 +65,7 @@ import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -223,7 +224,8 @@ public abstract class AbstractProgramStageToFhirQuestionnaireResponseTransformer
     }
 
     @Override
-    protected void lockResource( @Nonnull FhirClient fhirClient, @Nonnull DhisToFhirTransformerContext context, @Nonnull RuleInfo<ProgramStageRule> ruleInfo, @Nonnull Map<String, Object> scriptVariables ) throws TransformerException
+    @Nonnull
+    protected Collection<String> getResourceLockKeys( @Nonnull FhirClient fhirClient, @Nonnull DhisToFhirTransformerContext context, @Nonnull RuleInfo<ProgramStageRule> ruleInfo, @Nonnull Map<String, Object> scriptVariables ) throws TransformerException
     {
         if ( !context.getDhisRequest().isDhisFhirId() )
         {
@@ -232,10 +234,11 @@ public abstract class AbstractProgramStageToFhirQuestionnaireResponseTransformer
 
             if ( scriptedEvent.getId() != null )
             {
-                final String lockKey = "out-ps:" + scriptedEvent.getId();
-                getLockManager().getCurrentLockContext().orElseThrow( () -> new FatalTransformerException( "No lock context available." ) ).lock( lockKey );
+                return Collections.singletonList( "out-ps:" + scriptedEvent.getId() );
             }
         }
+
+        return Collections.emptyList();
     }
 
     @Nullable
@@ -63,6 +63,7 @@ import org.springframework.stereotype.Component;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -150,7 +151,7 @@ public class ProgramStageToFhirTransformer extends AbstractDhisToFhirTransformer
             () -> new MissingDhisResourceException( Objects.requireNonNull( input.getTrackedEntityInstance().getResourceId() ) ) );
         variables.put( ScriptVariable.TEI_FHIR_RESOURCE.getVariableName(), trackedEntityFhirResource );
 
-        final IBaseResource resource = getResource( fhirClient, context, ruleInfo, variables ).orElse( null );
+        IBaseResource resource = getResource( fhirClient, context, ruleInfo, variables ).orElse( null );
 
         if ( resource == null )
         {
@@ -178,6 +179,12 @@ public class ProgramStageToFhirTransformer extends AbstractDhisToFhirTransformer
 
         if ( context.getDhisRequest().isCompleteTransformation() )
         {
+            if ( resource != modifiedResource )
+            {
+                // unmodified resource may be shared with the FHIR resource repository
+                resource = clone( context, resource );
+            }
+
             TransformerUtils.getScriptVariable( scriptVariables, ScriptVariable.CODE_UTILS, AbstractCodeDhisToFhirTransformerUtils.class )
                 .setRuleCodeableConcept( ruleInfo, resource );
         }
@@ -312,16 +319,17 @@ public class ProgramStageToFhirTransformer extends AbstractDhisToFhirTransformer
     }
 
     @Override
-    protected void lockResource( @Nonnull FhirClient fhirClient, @Nonnull DhisToFhirTransformerContext context, @Nonnull RuleInfo<ProgramStageRule> ruleInfo, @Nonnull Map<String, Object> scriptVariables ) throws TransformerException
+    @Nonnull
+    protected Collection<String> getResourceLockKeys( @Nonnull FhirClient fhirClient, @Nonnull DhisToFhirTransformerContext context, @Nonnull RuleInfo<ProgramStageRule> ruleInfo, @Nonnull Map<String, Object> scriptVariables ) throws TransformerException
     {
-        if ( !context.getDhisRequest().isDhisFhirId() )
+        if ( context.getDhisRequest().isDhisFhirId() )
         {
-            final ScriptedEvent scriptedEvent =
-                TransformerUtils.getScriptVariable( scriptVariables, ScriptVariable.INPUT, ScriptedEvent.class );
-            final String lockKey = (scriptedEvent.getEnrollmentId() == null) ? ("out-ev:" + scriptedEvent.getId()) : ("out-en:" + scriptedEvent.getEnrollmentId());
-            getLockManager().getCurrentLockContext().orElseThrow( () -> new FatalTransformerException( "No lock context available." ) )
-                .lock( lockKey );
+            return Collections.emptyList();
         }
+
+        final ScriptedEvent scriptedEvent =
+            TransformerUtils.getScriptVariable( scriptVariables, ScriptVariable.INPUT, ScriptedEvent.class );
+        return Collections.singletonList( (scriptedEvent.getEnrollmentId() == null) ? ("out-ev:" + scriptedEvent.getId()) : ("out-en:" + scriptedEvent.getEnrollmentId()) );
     }
 
     @Nullable
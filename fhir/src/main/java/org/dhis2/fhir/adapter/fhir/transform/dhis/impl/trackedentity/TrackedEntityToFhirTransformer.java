@@ -57,6 +57,8 @@ import org.springframework.stereotype.Component;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
@@ -180,16 +182,18 @@ public class TrackedEntityToFhirTransformer extends AbstractDhisToFhirTransforme
     }
 
     @Override
-    protected void lockResource( @Nonnull FhirClient fhirClient, @Nonnull DhisToFhirTransformerContext context,
+    @Nonnull
+    protected Collection<String> getResourceLockKeys( @Nonnull FhirClient fhirClient, @Nonnull DhisToFhirTransformerContext context,
         @Nonnull RuleInfo<TrackedEntityRule> ruleInfo, @Nonnull Map<String, Object> scriptVariables ) throws TransformerException
     {
-        if ( !context.getDhisRequest().isDhisFhirId() )
+        if ( context.getDhisRequest().isDhisFhirId() )
         {
-            final ScriptedTrackedEntityInstance scriptedTrackedEntityInstance =
-                TransformerUtils.getScriptVariable( scriptVariables, ScriptVariable.INPUT, ScriptedTrackedEntityInstance.class );
-            getLockManager().getCurrentLockContext().orElseThrow( () -> new FatalTransformerException( "No lock context available." ) )
-                .lock( "out-te:" + scriptedTrackedEntityInstance.getId() );
+            return Collections.emptyList();
         }
+
+        final ScriptedTrackedEntityInstance scriptedTrackedEntityInstance =
+            TransformerUtils.getScriptVariable( scriptVariables, ScriptVariable.INPUT, ScriptedTrackedEntityInstance.class );
+        return Collections.singletonList( "out-te:" + scriptedTrackedEntityInstance.getId() );
     }
 
     @Override
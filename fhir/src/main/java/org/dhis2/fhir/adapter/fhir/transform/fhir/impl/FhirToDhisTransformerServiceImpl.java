@@ -37,6 +37,7 @@ import org.dhis2.fhir.adapter.fhir.metadata.model.FhirResourceType;
 import org.dhis2.fhir.adapter.fhir.metadata.model.RuleInfo;
 import org.dhis2.fhir.adapter.fhir.metadata.model.ScriptVariable;
 import org.dhis2.fhir.adapter.fhir.metadata.repository.RuleRepository;
+import org.dhis2.fhir.adapter.fhir.metadata.service.RuleIndexService;
 import org.dhis2.fhir.adapter.fhir.model.FhirVersion;
 import org.dhis2.fhir.adapter.fhir.model.FhirVersionedValue;
 import org.dhis2.fhir.adapter.fhir.repository.DhisFhirResourceId;
@@ -91,6 +92,8 @@ public class FhirToDhisTransformerServiceImpl implements FhirToDhisTransformerSe
 
     private final RuleRepository ruleRepository;
 
+    private final RuleIndexService ruleIndexService;
+
     private final Map<FhirVersionedValue<DhisResourceType>, SortedSet<FhirToDhisTransformer<?, ?>>> transformers = new HashMap<>();
 
     private final Map<FhirVersion, Map<String, FhirToDhisTransformerUtils>> transformerUtils = new HashMap<>();
@@ -99,13 +102,14 @@ public class FhirToDhisTransformerServiceImpl implements FhirToDhisTransformerSe
 
     public FhirToDhisTransformerServiceImpl( @Nonnull LockManager lockManager,
         @Nonnull FhirResourceRepository fhirResourceRepository, @Nonnull RuleRepository ruleRepository,
-        @Nonnull ObjectProvider<List<FhirToDhisTransformer<?, ?>>> transformersProvider,
+        @Nonnull RuleIndexService ruleIndexService, @Nonnull ObjectProvider<List<FhirToDhisTransformer<?, ?>>> transformersProvider,
         @Nonnull ObjectProvider<List<FhirToDhisTransformerUtils>> transformUtilsProvider,
         @Nonnull ScriptExecutor scriptExecutor )
     {
         this.lockManager = lockManager;
         this.fhirResourceRepository = fhirResourceRepository;
         this.ruleRepository = ruleRepository;
+        this.ruleIndexService = ruleIndexService;
         this.scriptExecutor = scriptExecutor;
 
         transformersProvider.ifAvailable( transformers ->
@@ -154,7 +158,7 @@ public class FhirToDhisTransformerServiceImpl implements FhirToDhisTransformerSe
         final List<RuleInfo<? extends AbstractRule>> rules;
         if ( fhirRequest.getRuleId() == null )
         {
-            rules = ruleRepository.findAllImpByInputData( fhirRequest.getResourceType(), codeTransformerUtils.getResourceCodes( input ) )
+            rules = ruleIndexService.findAllImpByInputData( fhirRequest.getResourceType(), codeTransformerUtils.getResourceCodes( input ) )
                 .stream().filter( r -> !contained || r.getRule().isContainedAllowed() ).sorted().collect( Collectors.toList() );
         }
         else
@@ -235,6 +239,7 @@ public class FhirToDhisTransformerServiceImpl implements FhirToDhisTransformerSe
         }
 
         final boolean firstRule = transformerRequestImpl.isFirstRule();
+        final Map<String, Object> scriptVariables = new HashMap<>( transformerUtils );
         RuleInfo<? extends AbstractRule> ruleInfo;
         while ( (ruleInfo = transformerRequestImpl.nextRule()) != null )
         {
@@ -247,7 +252,8 @@ public class FhirToDhisTransformerServiceImpl implements FhirToDhisTransformerSe
                     transformerRequestImpl.getContext().getFhirRequest().getVersion() + " mapping of DHIS resource type " + ruleInfo.getRule().getDhisResourceType() );
             }
 
-            final Map<String, Object> scriptVariables = new HashMap<>( transformerUtils );
+            // variables that have been added for a previous rule must not be visible to this rule
+            scriptVariables.keySet().retainAll( transformerUtils.keySet() );
             scriptVariables.put( ScriptVariable.CONTEXT.getVariableName(), transformerRequestImpl.getContext() );
             scriptVariables.put( ScriptVariable.INPUT.getVariableName(), transformerRequestImpl.getInput() );
             if ( isApplicable( transformerRequestImpl.getContext(), transformerRequestImpl.getInput(), ruleInfo, scriptVariables ) )
@@ -28,11 +28,8 @@ package org.dhis2.fhir.adapter.fhir.transform.fhir.impl.util;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
-import org.dhis2.fhir.adapter.fhir.metadata.model.Code;
 import org.dhis2.fhir.adapter.fhir.metadata.model.ScriptArgUtils;
-import org.dhis2.fhir.adapter.fhir.metadata.model.SystemCode;
-import org.dhis2.fhir.adapter.fhir.metadata.repository.CodeRepository;
-import org.dhis2.fhir.adapter.fhir.metadata.repository.SystemCodeRepository;
+import org.dhis2.fhir.adapter.fhir.metadata.service.CodeDictionaryService;
 import org.dhis2.fhir.adapter.fhir.model.SystemCodeValue;
 import org.dhis2.fhir.adapter.fhir.script.ScriptExecutionContext;
 import org.dhis2.fhir.adapter.fhir.script.ScriptExecutionRequired;
@@ -61,10 +58,10 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 /**
  * FHIR to DHIS2 transformer utility methods for code mappings and FHIR codeable concepts.
+ * Code mappings are looked up in the in-memory code dictionary.
  *
  * @author volsch
  */
@@ -77,23 +74,20 @@ public abstract class AbstractCodeFhirToDhisTransformerUtils extends AbstractFhi
 
     private static final List<String> GET_CODE_METHOD_NAMES = Collections.unmodifiableList( Arrays.asList( "getCode", "getVaccineCode", "getMedicationCodeableConcept" ) );
 
-    private final CodeRepository codeRepository;
-
-    private final SystemCodeRepository systemCodeRepository;
+    private final CodeDictionaryService codeDictionaryService;
 
     private volatile Map<Class<? extends IDomainResource>, Method> codeMethods = new HashMap<>();
 
-    protected AbstractCodeFhirToDhisTransformerUtils( @Nonnull ScriptExecutionContext scriptExecutionContext, @Nonnull CodeRepository codeRepository, @Nonnull SystemCodeRepository systemCodeRepository )
+    protected AbstractCodeFhirToDhisTransformerUtils( @Nonnull ScriptExecutionContext scriptExecutionContext, @Nonnull CodeDictionaryService codeDictionaryService )
     {
         super( scriptExecutionContext );
-        this.codeRepository = codeRepository;
-        this.systemCodeRepository = systemCodeRepository;
+        this.codeDictionaryService = codeDictionaryService;
     }
 
     @Nonnull
-    protected SystemCodeRepository getSystemCodeRepository()
+    protected CodeDictionaryService getCodeDictionaryService()
     {
-        return systemCodeRepository;
+        return codeDictionaryService;
     }
 
     @Nonnull
@@ -185,16 +179,7 @@ public abstract class AbstractCodeFhirToDhisTransformerUtils extends AbstractFhi
 
         // map must be returned ordered
         final Map<String, List<SystemCodeValue>> result = new LinkedHashMap<>();
-        convertedCodes.forEach( c -> result.put( c, new ArrayList<>() ) );
-
-        final Collection<SystemCode> systemCodes = getSystemCodeRepository().findAllByCodes( convertedCodes );
-        for ( final SystemCode systemCode : systemCodes )
-        {
-            result.computeIfPresent( systemCode.getCode().getCode(), ( k, v ) -> {
-                v.add( systemCode.getCalculatedSystemCodeValue() );
-                return v;
-            } );
-        }
+        convertedCodes.forEach( c -> result.put( c, new ArrayList<>( codeDictionaryService.findSystemCodeValuesByCode( c ) ) ) );
         return result;
     }
 
@@ -241,13 +226,7 @@ public abstract class AbstractCodeFhirToDhisTransformerUtils extends AbstractFhi
         }
 
         final ResourceSystem resourceSystem = getMandatoryResourceSystem( convertFhirResourceType( fhirResourceType ) );
-        final Code c = codeRepository.findAllBySystemCodes( Collections.singleton( new SystemCodeValue( resourceSystem.getSystem(), code ).toString() ) )
-            .stream().findFirst().orElse( null );
-        if ( c == null )
-        {
-            return null;
-        }
-        return (c.getMappedCode() == null) ? c.getCode() : c.getMappedCode();
+        return codeDictionaryService.findMappedCode( new SystemCodeValue( resourceSystem.getSystem(), code ) );
     }
 
     @ScriptMethod( description = "Returns the mapped value set code for the specified codeable concept.",
@@ -264,17 +243,7 @@ public abstract class AbstractCodeFhirToDhisTransformerUtils extends AbstractFhi
             return null;
         }
 
-        final List<SystemCodeValue> systemCodeValues = getSystemCodeValues( codeableConcept );
-
-        if ( systemCodeValues.isEmpty() )
-        {
-            return null;
-        }
-
-        final Code c = codeRepository.findFirstMappedByCodeSetAndSystemCodes( codeSetCode,
-            systemCodeValues.stream().map( SystemCodeValue::toString ).collect( Collectors.toList() ) ).orElse( null );
-
-        return c == null ? null : c.getMappedCode();
+        return codeDictionaryService.findFirstMappedCodeByCodeSet( codeSetCode, getSystemCodeValues( codeableConcept ) );
     }
 
     @Nullable
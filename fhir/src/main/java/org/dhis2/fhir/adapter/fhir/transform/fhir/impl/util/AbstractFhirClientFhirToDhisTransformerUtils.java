@@ -38,7 +38,7 @@ import org.dhis2.fhir.adapter.fhir.metadata.model.SystemCode;
 import org.dhis2.fhir.adapter.fhir.metadata.repository.FhirClientResourceRepository;
 import org.dhis2.fhir.adapter.fhir.metadata.repository.SystemCodeRepository;
 import org.dhis2.fhir.adapter.fhir.model.SystemCodeValue;
-import org.dhis2.fhir.adapter.fhir.repository.FhirClientUtils;
+import org.dhis2.fhir.adapter.fhir.repository.FhirClientRegistry;
 import org.dhis2.fhir.adapter.fhir.script.ScriptExecutionContext;
 import org.dhis2.fhir.adapter.fhir.script.ScriptExecutionException;
 import org.dhis2.fhir.adapter.fhir.transform.TransformerMappingException;
@@ -82,14 +82,17 @@ public abstract class AbstractFhirClientFhirToDhisTransformerUtils extends Abstr
 
     private final FhirClientResourceRepository fhirClientResourceRepository;
 
+    private final FhirClientRegistry fhirClientRegistry;
+
     private final SystemCodeRepository systemCodeRepository;
 
     protected AbstractFhirClientFhirToDhisTransformerUtils( @Nonnull ScriptExecutionContext scriptExecutionContext, @Nonnull FhirContext fhirContext,
-        @Nonnull FhirClientResourceRepository fhirClientResourceRepository, @Nonnull SystemCodeRepository systemCodeRepository )
+        @Nonnull FhirClientResourceRepository fhirClientResourceRepository, @Nonnull FhirClientRegistry fhirClientRegistry, @Nonnull SystemCodeRepository systemCodeRepository )
     {
         super( scriptExecutionContext );
         this.fhirContext = fhirContext;
         this.fhirClientResourceRepository = fhirClientResourceRepository;
+        this.fhirClientRegistry = fhirClientRegistry;
         this.systemCodeRepository = systemCodeRepository;
     }
 
@@ -249,6 +252,6 @@ public abstract class AbstractFhirClientFhirToDhisTransformerUtils extends Abstr
         {
             return Optional.empty();
         }
-        return Optional.of( FhirClientUtils.createClient( fhirContext, fhirClientResource.getFhirClient().getFhirEndpoint() ) );
+        return Optional.of( fhirClientRegistry.getClient( fhirContext, fhirClientResource.getFhirClient().getId(), fhirClientResource.getFhirClient().getFhirEndpoint() ) );
     }
 }
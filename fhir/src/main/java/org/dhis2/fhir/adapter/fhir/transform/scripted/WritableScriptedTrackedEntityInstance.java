@@ -56,9 +56,7 @@ import org.dhis2.fhir.adapter.scriptable.Scriptable;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.time.ZonedDateTime;
-import java.util.Locale;
 import java.util.Objects;
-import java.util.Optional;
 
 /**
  * Writable scripted tracked entity instance that is used in evaluation and transformation
@@ -336,42 +334,18 @@ public class WritableScriptedTrackedEntityInstance extends WritableScriptedLazyD
 
         if ( convertedValue != null && attribute.isOptionSetValue() )
         {
-            String checked1 = convertedValue.toString();
-            boolean found = attribute.getOptionSet().getOptions().stream().anyMatch( o -> Objects.equals( checked1, o.getCode() ) );
+            final String checked = convertedValue.toString();
+            // try exact match first and locale independent case insensitive match afterwards
+            final Option option = attribute.getOptionSet().getOptionalOptionByCode( checked )
+                .orElseGet( () -> attribute.getOptionSet().getOptionalOptionByCodeIgnoreCase( checked ).orElse( null ) );
 
-            if ( found )
-            {
-                convertedValue = checked1;
-            }
-            else
-            {
-                // try locale independent upper case match
-                final String checked2 = checked1.toUpperCase( Locale.ROOT );
-                // try locale independent upper case match
-                found = attribute.getOptionSet().getOptions().stream().anyMatch( o -> checked2.equals( o.getCode() ) );
-
-                if ( found )
-                {
-                    convertedValue = checked2;
-                }
-                else
-                {
-                    final Optional<? extends Option> option = attribute.getOptionSet().getOptions().stream().filter( o -> o.getCode() != null )
-                        .filter( o -> checked2.equals( o.getCode().toUpperCase( Locale.ROOT ) ) ).findFirst();
-
-                    if ( option.isPresent() )
-                    {
-                        convertedValue = option.get().getCode();
-                        found = true;
-                    }
-                }
-            }
-
-            if ( !found )
+            if ( option == null )
             {
                 throw new TransformerMappingException( "Code \"" + convertedValue + "\" is not a valid option of \"" +
                     attribute.getOptionSet().getName() + "\" for attribute \"" + attribute.getName() + "\"." );
             }
+
+            convertedValue = option.getCode();
         }
 
         final TrackedEntityAttributeValue attributeValue = getInternalResource().getAttribute( attribute.getId() );
@@ -31,16 +31,18 @@ package org.dhis2.fhir.adapter.fhir.transform.util;
 import org.dhis2.fhir.adapter.fhir.metadata.model.FhirResourceType;
 import org.dhis2.fhir.adapter.fhir.script.ScriptExecutionContext;
 import org.dhis2.fhir.adapter.fhir.transform.scripted.TransformerScriptException;
+import org.dhis2.fhir.adapter.script.StatelessScriptVariable;
 import org.dhis2.fhir.adapter.util.NameUtils;
 
 import javax.annotation.Nonnull;
 
 /**
- * Abstract base class for transformer utilities.
+ * Abstract base class for transformer utilities. Transformer utilities do not keep
+ * the state of a script execution and may remain bound to reused script contexts.
  *
  * @author volsch
  */
-public abstract class AbstractTransformerUtils
+public abstract class AbstractTransformerUtils implements StatelessScriptVariable
 {
     private final ScriptExecutionContext scriptExecutionContext;
 
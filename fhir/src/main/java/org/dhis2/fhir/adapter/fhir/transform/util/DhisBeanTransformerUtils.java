@@ -30,6 +30,7 @@ package org.dhis2.fhir.adapter.fhir.transform.util;
 
 import org.apache.commons.lang3.SerializationException;
 import org.apache.commons.lang3.SerializationUtils;
+import org.dhis2.fhir.adapter.dhis.model.DeepCopyable;
 import org.dhis2.fhir.adapter.dhis.model.DhisResource;
 import org.dhis2.fhir.adapter.fhir.transform.FatalTransformerException;
 
@@ -37,19 +38,33 @@ import javax.annotation.Nullable;
 
 /**
  * Transformer utilities that clone a bean (cached instances must not be modified
- * by several thread, e.g. DHIS2 objects).
+ * by several thread, e.g. DHIS2 objects). Resources that implement {@link DeepCopyable}
+ * are copied directly, all other resources are cloned by serialization.
  *
  * @author volsch
  */
 public abstract class DhisBeanTransformerUtils
 {
     @Nullable
+    @SuppressWarnings( "unchecked" )
     public static <T extends DhisResource> T clone( @Nullable T object )
     {
         if ( object == null )
         {
             return null;
         }
+
+        if ( object instanceof DeepCopyable )
+        {
+            final Object copy = ( (DeepCopyable<?>) object ).deepCopy();
+
+            // a subclass that does not override the deep copy cannot be copied directly
+            if ( copy.getClass() == object.getClass() )
+            {
+                return (T) copy;
+            }
+        }
+
         try
         {
             return SerializationUtils.clone( object );
@@ -29,23 +29,45 @@ package org.dhis2.fhir.adapter.fhir.transform.util;
  */
 
 import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.model.primitive.IdDt;
 import ca.uhn.fhir.parser.IParser;
+import ca.uhn.fhir.util.BundleUtil;
+import org.apache.commons.lang3.StringUtils;
+import org.dhis2.fhir.adapter.fhir.transform.FatalTransformerException;
+import org.hl7.fhir.instance.model.api.IAnyResource;
+import org.hl7.fhir.instance.model.api.IBaseBundle;
+import org.hl7.fhir.instance.model.api.IBaseReference;
 import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IDomainResource;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.springframework.util.ReflectionUtils;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.lang.reflect.Method;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
  * Transformer utilities that clone a bean (cached instances must not be modified
- * by several thread, e.g. HAPI FHIR objects).
+ * by several thread, e.g. HAPI FHIR objects). Resources of the FHIR model (DSTU3
+ * and newer) are copied with their model copy method. The result is adjusted to
+ * the result of a JSON round trip (resource ID without server base and links to
+ * contained resources). All other resources are cloned by a JSON round trip.
  *
  * @author volsch
  */
 public abstract class FhirBeanTransformerUtils
 {
+    private static final String COPY_METHOD_NAME = "copy";
+
+    private static final String LOCAL_REFERENCE_PREFIX = "#";
+
+    private static volatile Map<Class<? extends IBaseResource>, Method> copyMethods = new HashMap<>();
+
     @Nullable
     @SuppressWarnings( { "unchecked" } )
     public static <T extends IBaseResource> T clone( @Nonnull FhirContext fhirContext, @Nullable T object )
@@ -54,8 +76,26 @@ public abstract class FhirBeanTransformerUtils
         {
             return null;
         }
-        final IParser parser = fhirContext.newJsonParser();
-        return (T) parser.parseResource( object.getClass(), parser.encodeResourceToString( object ) );
+
+        final Method copyMethod = getCopyMethod( object.getClass() );
+
+        if ( copyMethod == null )
+        {
+            final IParser parser = fhirContext.newJsonParser();
+            return (T) parser.parseResource( object.getClass(), parser.encodeResourceToString( object ) );
+        }
+
+        final T copy = (T) ReflectionUtils.invokeMethod( copyMethod, object );
+
+        if ( copy == null )
+        {
+            throw new FatalTransformerException( "Copy of FHIR resource " + object.getClass().getSimpleName() + " returned null." );
+        }
+
+        normalizeId( fhirContext, copy );
+        linkContainedResources( fhirContext, copy );
+
+        return copy;
     }
 
     @Nullable
@@ -72,6 +112,86 @@ public abstract class FhirBeanTransformerUtils
         return objects.stream().map( o -> clone( fhirContext, o ) ).collect( Collectors.toList() );
     }
 
+    @Nullable
+    private static Method getCopyMethod( @Nonnull Class<? extends IBaseResource> resourceClass )
+    {
+        final Map<Class<? extends IBaseResource>, Method> copyMethods = FhirBeanTransformerUtils.copyMethods;
+
+        if ( copyMethods.containsKey( resourceClass ) )
+        {
+            return copyMethods.get( resourceClass );
+        }
+
+        Method method;
+
+        try
+        {
+            // returns the method with the most specific return type if there are bridge methods
+            method = resourceClass.getMethod( COPY_METHOD_NAME );
+        }
+        catch ( NoSuchMethodException e )
+        {
+            method = null;
+        }
+
+        if ( (method != null) && (method.getReturnType() != resourceClass) )
+        {
+            // a subclass that does not override the copy method would be copied to its superclass
+            method = null;
+        }
+
+        final Map<Class<? extends IBaseResource>, Method> copiedCopyMethods = new HashMap<>( copyMethods );
+        copiedCopyMethods.put( resourceClass, method );
+        FhirBeanTransformerUtils.copyMethods = copiedCopyMethods;
+
+        return method;
+    }
+
+    private static void normalizeId( @Nonnull FhirContext fhirContext, @Nonnull IBaseResource resource )
+    {
+        final IIdType id = resource.getIdElement();
+
+        if ( (id == null) || !id.hasIdPart() || id.isLocal() )
+        {
+            return;
+        }
+
+        String versionId = id.getVersionIdPart();
+
+        if ( versionId == null )
+        {
+            versionId = resource.getMeta().getVersionId();
+        }
+        else if ( resource.getMeta().getVersionId() == null )
+        {
+            resource.getMeta().setVersionId( versionId );
+        }
+
+        resource.setId( new IdDt( fhirContext.getResourceDefinition( resource ).getName(), id.getIdPart(), versionId ) );
+    }
+
+    private static void linkContainedResources( @Nonnull FhirContext fhirContext, @Nonnull IBaseResource resource )
+    {
+        if ( resource instanceof IBaseBundle )
+        {
+            BundleUtil.toListOfResources( fhirContext, (IBaseBundle) resource ).forEach( r -> linkContainedResources( fhirContext, r ) );
+            return;
+        }
+
+        if ( !(resource instanceof IDomainResource) || ((IDomainResource) resource).getContained().isEmpty() )
+        {
+            return;
+        }
+
+        final Map<String, IAnyResource> containedResources = new HashMap<>();
+        ((IDomainResource) resource).getContained().stream().filter( c -> c.getIdElement().hasIdPart() )
+            .forEach( c -> containedResources.put( StringUtils.removeStart( c.getIdElement().getIdPart(), LOCAL_REFERENCE_PREFIX ), c ) );
+
+        fhirContext.newTerser().getAllPopulatedChildElementsOfType( resource, IBaseReference.class ).stream()
+            .filter( r -> (r.getResource() == null) && r.getReferenceElement().isLocal() )
+            .forEach( r -> r.setResource( containedResources.get( StringUtils.removeStart( r.getReferenceElement().getValue(), LOCAL_REFERENCE_PREFIX ) ) ) );
+    }
+
     private FhirBeanTransformerUtils()
     {
         super();
@@ -0,0 +1,44 @@
+/*
+ *  Copyright (c) 2004-2019, University of Oslo
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions are met:
+ *  Redistributions of source code must retain the above copyright notice, this
+ *  list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *  this list of conditions and the following disclaimer in the documentation
+ *  and/or other materials provided with the distribution.
+ *  Neither the name of the HISP project nor the names of its contributors may
+ *  be used to endorse or promote products derived from this software without
+ *  specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO PROGRAM_STAGE_EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+-- @formatter:off
+
+ALTER TABLE fhir_dhis_sync_group_update ADD COLUMN resource_base_last_updated TIMESTAMP(3) WITHOUT TIME ZONE;
+COMMENT ON COLUMN fhir_dhis_sync_group_update.resource_base_last_updated IS 'The last updated timestamp of the group on which the last updated timestamps of the polled DHIS2 resources are based.';
+
+CREATE TABLE fhir_dhis_sync_group_update_resource (
+  dhis_sync_group_update_id UUID                           NOT NULL,
+  resource_key              VARCHAR(60)                    NOT NULL,
+  last_updated              TIMESTAMP(3) WITHOUT TIME ZONE NOT NULL,
+  CONSTRAINT fhir_dhis_sync_group_update_resource_pk PRIMARY KEY (dhis_sync_group_update_id, resource_key),
+  CONSTRAINT fhir_dhis_sync_group_update_resource_fk1 FOREIGN KEY (dhis_sync_group_update_id) REFERENCES fhir_dhis_sync_group_update (id) ON DELETE CASCADE
+);
+COMMENT ON TABLE fhir_dhis_sync_group_update_resource IS 'Contains the timestamps up to which polled DHIS2 resources have been processed when polling in streaming mode.';
+COMMENT ON COLUMN fhir_dhis_sync_group_update_resource.dhis_sync_group_update_id IS 'References the DHIS2 synchronization group update to which this timestamp belongs to.';
+COMMENT ON COLUMN fhir_dhis_sync_group_update_resource.resource_key IS 'The key of the DHIS2 resources that are polled independently (DHIS2 resource type and optionally the ID of the program).';
+COMMENT ON COLUMN fhir_dhis_sync_group_update_resource.last_updated IS 'The last updated timestamp up to which all polled DHIS2 resources have been processed.';
@@ -0,0 +1,127 @@
+/*
+ *  Copyright (c) 2004-2019, University of Oslo
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions are met:
+ *  Redistributions of source code must retain the above copyright notice, this
+ *  list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *  this list of conditions and the following disclaimer in the documentation
+ *  and/or other materials provided with the distribution.
+ *  Neither the name of the HISP project nor the names of its contributors may
+ *  be used to endorse or promote products derived from this software without
+ *  specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO PROGRAM_STAGE_EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+-- @formatter:off
+
+-- Processed and stored resources are kept for a few days only. The tables are
+-- partitioned by day so that expired rows are removed by dropping the partitions
+-- of past days instead of deleting rows. The adapter creates the partitions of the
+-- next days in advance. Rows for which no partition exists are stored in the default
+-- partition. Since the partition key must be part of the primary key, processed
+-- IDs are partitioned by the UTC day of processing and are unique per day. Stored
+-- IDs are no longer unique.
+
+ALTER TABLE fhir_processed_resource RENAME TO fhir_processed_resource_old;
+ALTER TABLE fhir_processed_resource_old RENAME CONSTRAINT fhir_processed_resource_pk TO fhir_processed_resource_old_pk;
+CREATE TABLE fhir_processed_resource (
+  fhir_client_resource_id    UUID         NOT NULL,
+  versioned_fhir_resource_id VARCHAR(120) NOT NULL,
+  processed_at               TIMESTAMP(3) NOT NULL DEFAULT (CURRENT_TIMESTAMP AT TIME ZONE 'UTC'),
+  processed_day              DATE         NOT NULL DEFAULT ((CURRENT_TIMESTAMP AT TIME ZONE 'UTC')::DATE),
+  CONSTRAINT fhir_processed_resource_pk PRIMARY KEY (fhir_client_resource_id, versioned_fhir_resource_id, processed_day),
+  CONSTRAINT fhir_processed_resource_fk1 FOREIGN KEY (fhir_client_resource_id) REFERENCES fhir_client_resource(id) ON DELETE CASCADE
+) PARTITION BY RANGE (processed_day);
+CREATE TABLE fhir_processed_resource_default PARTITION OF fhir_processed_resource DEFAULT;
+COMMENT ON TABLE fhir_processed_resource IS 'Contains the versioned FHIR resource IDs that have been processed in the last few hours.';
+COMMENT ON COLUMN fhir_processed_resource.fhir_client_resource_id IS 'References the FHIR client resource to which the subscription belongs to.';
+COMMENT ON COLUMN fhir_processed_resource.versioned_fhir_resource_id IS 'The unique string that identifies a distinct version of a remote FHIR resource.';
+COMMENT ON COLUMN fhir_processed_resource.processed_at IS 'Timestamp when the resource has been processed. Used for deleting the data after some hours mainly.';
+COMMENT ON COLUMN fhir_processed_resource.processed_day IS 'UTC day when the resource has been processed. Partition key of the table.';
+
+ALTER TABLE fhir_stored_resource RENAME TO fhir_stored_resource_old;
+ALTER TABLE fhir_stored_resource_old RENAME CONSTRAINT fhir_stored_resource_pk TO fhir_stored_resource_old_pk;
+CREATE TABLE fhir_stored_resource (
+  fhir_client_id UUID         NOT NULL,
+  stored_id      VARCHAR(120) NOT NULL,
+  stored_at      TIMESTAMP(3) NOT NULL DEFAULT (CURRENT_TIMESTAMP AT TIME ZONE 'UTC'),
+  CONSTRAINT fhir_stored_resource_pk PRIMARY KEY (fhir_client_id, stored_id, stored_at),
+  CONSTRAINT fhir_stored_resource_fk1 FOREIGN KEY (fhir_client_id) REFERENCES fhir_client(id) ON DELETE CASCADE
+) PARTITION BY RANGE (stored_at);
+CREATE TABLE fhir_stored_resource_default PARTITION OF fhir_stored_resource DEFAULT;
+COMMENT ON TABLE fhir_stored_resource IS 'Contains the versioned FHIR resource IDs that have been stored in the last few hours.';
+COMMENT ON COLUMN fhir_stored_resource.fhir_client_id IS 'References the FHIR client to which the subscription belongs to.';
+COMMENT ON COLUMN fhir_stored_resource.stored_id IS 'The unique string that identifies a distinct version of a remote FHIR resource.';
+COMMENT ON COLUMN fhir_stored_resource.stored_at IS 'Timestamp when the resource has been stored. Used for deleting the data after some hours mainly.';
+
+ALTER TABLE fhir_processed_dhis_resource RENAME TO fhir_processed_dhis_resource_old;
+ALTER TABLE fhir_processed_dhis_resource_old RENAME CONSTRAINT fhir_processed_dhis_resource_pk TO fhir_processed_dhis_resource_old_pk;
+CREATE TABLE fhir_processed_dhis_resource (
+  dhis_sync_group_id UUID         NOT NULL,
+  processed_id       VARCHAR(120) NOT NULL,
+  processed_at       TIMESTAMP(3) NOT NULL DEFAULT (CURRENT_TIMESTAMP AT TIME ZONE 'UTC'),
+  processed_day      DATE         NOT NULL DEFAULT ((CURRENT_TIMESTAMP AT TIME ZONE 'UTC')::DATE),
+  CONSTRAINT fhir_processed_dhis_resource_pk PRIMARY KEY (dhis_sync_group_id, processed_id, processed_day),
+  CONSTRAINT fhir_processed_dhis_resource_fk1 FOREIGN KEY (dhis_sync_group_id) REFERENCES fhir_dhis_sync_group(id) ON DELETE CASCADE
+) PARTITION BY RANGE (processed_day);
+CREATE TABLE fhir_processed_dhis_resource_default PARTITION OF fhir_processed_dhis_resource DEFAULT;
+COMMENT ON TABLE fhir_processed_dhis_resource IS 'Contains the versioned DHIS2 IDs that have been processed in the last few hours.';
+COMMENT ON COLUMN fhir_processed_dhis_resource.dhis_sync_group_id IS 'References the DHIS2 sync group to which the processed data belongs to.';
+COMMENT ON COLUMN fhir_processed_dhis_resource.processed_id IS 'The unique string that identifies a distinct version of a DHIS2 resource.';
+COMMENT ON COLUMN fhir_processed_dhis_resource.processed_at IS 'Timestamp when the resource has been processed. Used for deleting the data after some hours mainly.';
+COMMENT ON COLUMN fhir_processed_dhis_resource.processed_day IS 'UTC day when the resource has been processed. Partition key of the table.';
+
+ALTER TABLE fhir_stored_dhis_resource RENAME TO fhir_stored_dhis_resource_old;
+ALTER TABLE fhir_stored_dhis_resource_old RENAME CONSTRAINT fhir_stored_dhis_resource_pk TO fhir_stored_dhis_resource_old_pk;
+CREATE TABLE fhir_stored_dhis_resource (
+  dhis_sync_group_id UUID         NOT NULL,
+  stored_id          VARCHAR(120) NOT NULL,
+  stored_at          TIMESTAMP(3) NOT NULL DEFAULT (CURRENT_TIMESTAMP AT TIME ZONE 'UTC'),
+  CONSTRAINT fhir_stored_dhis_resource_pk PRIMARY KEY (dhis_sync_group_id, stored_id, stored_at),
+  CONSTRAINT fhir_stored_dhis_resource_fk1 FOREIGN KEY (dhis_sync_group_id) REFERENCES fhir_dhis_sync_group(id) ON DELETE CASCADE
+) PARTITION BY RANGE (stored_at);
+CREATE TABLE fhir_stored_dhis_resource_default PARTITION OF fhir_stored_dhis_resource DEFAULT;
+COMMENT ON TABLE fhir_stored_dhis_resource IS 'Contains the versioned DHIS2 IDs that have been stored in the last few hours.';
+COMMENT ON COLUMN fhir_stored_dhis_resource.dhis_sync_group_id IS 'References the DHIS2 sync group to which the stored data belongs to.';
+COMMENT ON COLUMN fhir_stored_dhis_resource.stored_id IS 'The unique string that identifies a distinct version of a DHIS2 resource.';
+COMMENT ON COLUMN fhir_stored_dhis_resource.stored_at IS 'Timestamp when the resource has been stored. Used for deleting the data after some hours mainly.';
+
+-- The partitions of the UTC days of the existing rows and of the next three days
+-- are created before the existing rows are copied (partition names must match the
+-- ones that are created by the adapter).
+DO $$
+DECLARE
+  t RECORD;
+  d DATE;
+  today DATE := (CURRENT_TIMESTAMP AT TIME ZONE 'UTC')::DATE;
+BEGIN
+  FOR t IN SELECT * FROM (VALUES
+    ('fhir_processed_resource', 'processed_at', ', processed_at::DATE'),
+    ('fhir_stored_resource', 'stored_at', ''),
+    ('fhir_processed_dhis_resource', 'processed_at', ', processed_at::DATE'),
+    ('fhir_stored_dhis_resource', 'stored_at', '')) AS v(table_name, column_name, day_column)
+  LOOP
+    EXECUTE format('SELECT LEAST(MIN(%I)::DATE, $1) FROM %I', t.column_name, t.table_name || '_old') INTO d USING today;
+    WHILE d <= today + 3 LOOP
+      EXECUTE format('CREATE TABLE %I PARTITION OF %I FOR VALUES FROM (%L) TO (%L)',
+        t.table_name || '_p' || to_char(d, 'YYYYMMDD'), t.table_name, d, d + 1);
+      d := d + 1;
+    END LOOP;
+    EXECUTE format('INSERT INTO %I SELECT *%s FROM %I', t.table_name, t.day_column, t.table_name || '_old');
+    EXECUTE format('DROP TABLE %I', t.table_name || '_old');
+  END LOOP;
+END $$;
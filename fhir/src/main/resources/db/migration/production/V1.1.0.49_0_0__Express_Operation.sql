@@ -0,0 +1,58 @@
+/*
+ *  Copyright (c) 2004-2019, University of Oslo
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions are met:
+ *  Redistributions of source code must retain the above copyright notice, this
+ *  list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *  this list of conditions and the following disclaimer in the documentation
+ *  and/or other materials provided with the distribution.
+ *  Neither the name of the HISP project nor the names of its contributors may
+ *  be used to endorse or promote products derived from this software without
+ *  specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO PROGRAM_STAGE_EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+-- @formatter:off
+
+CREATE TABLE fhir_express_operation (
+  id                  UUID                           NOT NULL,
+  fhir_client_id      UUID                           NOT NULL,
+  fhir_resource_type  VARCHAR(30)                    NOT NULL,
+  fhir_resource_id    VARCHAR(200)                   NOT NULL,
+  status              VARCHAR(20)                    NOT NULL,
+  outcome_resource_id VARCHAR(200),
+  outcome_created     BOOLEAN,
+  message             VARCHAR(1000),
+  created_at          TIMESTAMP(3) WITHOUT TIME ZONE NOT NULL,
+  finished_at         TIMESTAMP(3) WITHOUT TIME ZONE,
+  CONSTRAINT fhir_express_operation_pk PRIMARY KEY (id),
+  CONSTRAINT fhir_express_operation_fk1 FOREIGN KEY (fhir_client_id) REFERENCES fhir_client (id) ON DELETE CASCADE
+);
+CREATE INDEX fhir_express_operation_i1 ON fhir_express_operation(status, created_at);
+CREATE INDEX fhir_express_operation_i2 ON fhir_express_operation(fhir_client_id, status, created_at);
+CREATE INDEX fhir_express_operation_i3 ON fhir_express_operation(finished_at);
+COMMENT ON TABLE fhir_express_operation IS 'Contains the express operations that have been accepted for asynchronous processing by any adapter instance.';
+COMMENT ON COLUMN fhir_express_operation.id IS 'Unique ID of the operation that is returned to the FHIR client.';
+COMMENT ON COLUMN fhir_express_operation.fhir_client_id IS 'References the FHIR client that requested the operation.';
+COMMENT ON COLUMN fhir_express_operation.fhir_resource_type IS 'The type of the FHIR resource that is processed by the operation.';
+COMMENT ON COLUMN fhir_express_operation.fhir_resource_id IS 'The ID of the FHIR resource that is processed by the operation.';
+COMMENT ON COLUMN fhir_express_operation.status IS 'The status of the operation (QUEUED, COMPLETED or FAILED).';
+COMMENT ON COLUMN fhir_express_operation.outcome_resource_id IS 'The ID of the resource that has been created or updated by a completed operation.';
+COMMENT ON COLUMN fhir_express_operation.outcome_created IS 'Specifies if the resource has been created by a completed operation.';
+COMMENT ON COLUMN fhir_express_operation.message IS 'The message that describes why the operation has failed.';
+COMMENT ON COLUMN fhir_express_operation.created_at IS 'The timestamp when the operation has been accepted.';
+COMMENT ON COLUMN fhir_express_operation.finished_at IS 'The timestamp when the operation has been finished.';
@@ -31,8 +31,11 @@ package org.dhis2.fhir.adapter.fhir;
 import org.apache.commons.lang3.StringUtils;
 import org.dhis2.fhir.adapter.cache.CacheBasePackage;
 import org.dhis2.fhir.adapter.converter.ZonedDateTimeToDateConverter;
+import org.dhis2.fhir.adapter.fhir.client.impl.FhirClientConfig;
 import org.dhis2.fhir.adapter.fhir.data.DataBasePackage;
 import org.dhis2.fhir.adapter.fhir.metadata.MetadataBasePackage;
+import org.dhis2.fhir.adapter.fhir.repository.FhirClientRegistry;
+import org.dhis2.fhir.adapter.fhir.repository.impl.FhirClientRegistryImpl;
 import org.dhis2.fhir.adapter.rest.RestBasePackage;
 import org.dhis2.fhir.adapter.script.ScriptEvaluator;
 import org.dhis2.fhir.adapter.script.impl.ScriptEvaluatorImpl;
@@ -143,6 +146,13 @@ public class MockMvcTestConfig
         };
     }
 
+    @Nonnull
+    @Bean
+    protected FhirClientRegistry fhirClientRegistry()
+    {
+        return new FhirClientRegistryImpl( new FhirClientConfig() );
+    }
+
     @Nonnull
     @Bean
     protected BuildProperties buildProperties()
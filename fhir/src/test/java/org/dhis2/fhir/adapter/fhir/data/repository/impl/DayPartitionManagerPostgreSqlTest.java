@@ -0,0 +1,182 @@
+package org.dhis2.fhir.adapter.fhir.data.repository.impl;
+
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.dhis2.fhir.adapter.data.repository.impl.DayPartitionManager;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Integration tests for {@link DayPartitionManager} with a PostgreSQL database
+ * that contains a table that is partitioned like the tables of the processed
+ * and stored resources. The tests are skipped unless the JDBC URL of the
+ * database has been specified with system property <code>test.postgresql.url</code>
+ * (user and password with <code>test.postgresql.username</code> and
+ * <code>test.postgresql.password</code>).
+ *
+ * @author volsch
+ */
+public class DayPartitionManagerPostgreSqlTest
+{
+    private static final String TABLE_NAME = "test_processed_resource";
+
+    private SingleConnectionDataSource dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private DayPartitionManager partitionManager;
+
+    @Before
+    public void before()
+    {
+        final String url = System.getProperty( "test.postgresql.url" );
+        Assume.assumeTrue( "PostgreSQL database has not been specified.", url != null );
+
+        dataSource = new SingleConnectionDataSource( url, System.getProperty( "test.postgresql.username" ), System.getProperty( "test.postgresql.password" ), true );
+        jdbcTemplate = new JdbcTemplate( dataSource );
+        jdbcTemplate.execute( "DROP TABLE IF EXISTS " + TABLE_NAME );
+        jdbcTemplate.execute( "CREATE TABLE " + TABLE_NAME + " (group_id UUID NOT NULL, processed_id VARCHAR(120) NOT NULL, processed_at TIMESTAMP(3) NOT NULL, " +
+            "processed_day DATE NOT NULL, CONSTRAINT " + TABLE_NAME + "_pk PRIMARY KEY (group_id, processed_id, processed_day)) PARTITION BY RANGE (processed_day)" );
+        jdbcTemplate.execute( "CREATE TABLE " + TABLE_NAME + "_default PARTITION OF " + TABLE_NAME + " DEFAULT" );
+        partitionManager = new DayPartitionManager( jdbcTemplate, TABLE_NAME, "processed_at" );
+    }
+
+    @After
+    public void after()
+    {
+        if ( dataSource != null )
+        {
+            jdbcTemplate.execute( "DROP TABLE IF EXISTS " + TABLE_NAME );
+            dataSource.destroy();
+        }
+    }
+
+    @Test
+    public void isPartitioned()
+    {
+        Assert.assertTrue( partitionManager.isPartitioned() );
+        Assert.assertFalse( new DayPartitionManager( jdbcTemplate, "pg_class", "relname" ).isPartitioned() );
+    }
+
+    @Test
+    public void maintainCreatesPartitions()
+    {
+        Assert.assertEquals( 0, partitionManager.maintain( Instant.now().minus( 1, ChronoUnit.DAYS ) ) );
+
+        final LocalDate today = LocalDate.now( ZoneOffset.UTC );
+        for ( int i = 0; i <= DayPartitionManager.AHEAD_DAYS; i++ )
+        {
+            Assert.assertEquals( 1, countTables( getPartitionName( today.plusDays( i ) ) ) );
+        }
+        Assert.assertEquals( 0, countTables( getPartitionName( today.plusDays( DayPartitionManager.AHEAD_DAYS + 1 ) ) ) );
+
+        insert( "a", Instant.now() );
+        Assert.assertEquals( 1, countRows( getPartitionName( today ) ) );
+        Assert.assertEquals( 0, countRows( TABLE_NAME + "_default" ) );
+    }
+
+    @Test
+    public void maintainDropsExpiredPartitions()
+    {
+        final LocalDate day = LocalDate.now( ZoneOffset.UTC ).minusDays( 10 );
+        jdbcTemplate.execute( "CREATE TABLE " + getPartitionName( day ) + " PARTITION OF " + TABLE_NAME +
+            " FOR VALUES FROM ('" + day + "') TO ('" + day.plusDays( 1 ) + "')" );
+        insert( "a", Instant.now().minus( 10, ChronoUnit.DAYS ) );
+        insert( "b", Instant.now().minus( 20, ChronoUnit.DAYS ) );
+        insert( "c", Instant.now().minus( 1, ChronoUnit.HOURS ) );
+        Assert.assertEquals( 1, countRows( getPartitionName( day ) ) );
+        Assert.assertEquals( 2, countRows( TABLE_NAME + "_default" ) );
+
+        Assert.assertEquals( 1, partitionManager.maintain( Instant.now().minus( 2, ChronoUnit.DAYS ) ) );
+
+        Assert.assertEquals( 0, countTables( getPartitionName( day ) ) );
+        Assert.assertEquals( 1, countRows( TABLE_NAME + "_default" ) );
+        Assert.assertEquals( 1, countRows( TABLE_NAME ) );
+    }
+
+    @Test
+    public void maintainKeepsCurrentPartitions()
+    {
+        partitionManager.maintain( Instant.now().minus( 1, ChronoUnit.DAYS ) );
+        insert( "a", Instant.now() );
+
+        Assert.assertEquals( 0, partitionManager.maintain( Instant.now().minus( 1, ChronoUnit.HOURS ) ) );
+        Assert.assertEquals( 1, countRows( TABLE_NAME ) );
+    }
+
+    @Test
+    public void duplicateIdsOfSameDay()
+    {
+        partitionManager.maintain( Instant.now().minus( 1, ChronoUnit.DAYS ) );
+        final Instant startOfDay = LocalDate.now( ZoneOffset.UTC ).atStartOfDay().toInstant( ZoneOffset.UTC );
+        Assert.assertEquals( 1, insert( "a", startOfDay ) );
+        Assert.assertEquals( 0, insert( "a", startOfDay.plus( 1, ChronoUnit.MINUTES ) ) );
+        Assert.assertEquals( 1, insert( "a", startOfDay.minus( 1, ChronoUnit.MINUTES ) ) );
+
+        Assert.assertEquals( 2, countRows( TABLE_NAME ) );
+    }
+
+    private int insert( String processedId, Instant processedAt )
+    {
+        final LocalDateTime utcProcessedAt = LocalDateTime.ofInstant( processedAt, ZoneOffset.UTC );
+        return jdbcTemplate.update( "INSERT INTO " + TABLE_NAME + " (group_id, processed_id, processed_at, processed_day) " +
+                "VALUES ('00000000-0000-0000-0000-000000000001', ?, ?, ?) ON CONFLICT DO NOTHING",
+            processedId, Timestamp.valueOf( utcProcessedAt ), Date.valueOf( utcProcessedAt.toLocalDate() ) );
+    }
+
+    private int countTables( String tableName )
+    {
+        return jdbcTemplate.queryForObject( "SELECT COUNT(*) FROM pg_class WHERE relname=?", Integer.class, tableName );
+    }
+
+    private int countRows( String tableName )
+    {
+        return jdbcTemplate.queryForObject( "SELECT COUNT(*) FROM " + tableName, Integer.class );
+    }
+
+    private String getPartitionName( LocalDate day )
+    {
+        return TABLE_NAME + "_p" + DateTimeFormatter.BASIC_ISO_DATE.format( day );
+    }
+}
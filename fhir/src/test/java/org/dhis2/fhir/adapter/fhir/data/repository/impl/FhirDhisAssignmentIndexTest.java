@@ -0,0 +1,139 @@
+package org.dhis2.fhir.adapter.fhir.data.repository.impl;
+
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.UUID;
+
+/**
+ * Unit tests for {@link FhirDhisAssignmentIndex}.
+ *
+ * @author volsch
+ */
+public class FhirDhisAssignmentIndexTest
+{
+    private final UUID ruleId = UUID.randomUUID();
+
+    private final UUID fhirClientId = UUID.randomUUID();
+
+    private final FhirDhisAssignmentIndex index = new FhirDhisAssignmentIndex( new FhirDhisAssignmentConfig() );
+
+    @Test
+    public void assigned()
+    {
+        index.assigned( ruleId, fhirClientId, "f1", "d1" );
+
+        Assert.assertEquals( "d1", index.getDhisResourceId( ruleId, fhirClientId, "f1" ) );
+        Assert.assertEquals( "f1", index.getFhirResourceId( ruleId, fhirClientId, "d1" ) );
+        Assert.assertNull( index.getDhisResourceId( UUID.randomUUID(), fhirClientId, "f1" ) );
+    }
+
+    @Test
+    public void assignedReplaced()
+    {
+        index.assigned( ruleId, fhirClientId, "f1", "d1" );
+        index.assigned( ruleId, fhirClientId, "f1", "d2" );
+
+        Assert.assertEquals( "d2", index.getDhisResourceId( ruleId, fhirClientId, "f1" ) );
+        Assert.assertEquals( "f1", index.getFhirResourceId( ruleId, fhirClientId, "d2" ) );
+        Assert.assertNull( index.getFhirResourceId( ruleId, fhirClientId, "d1" ) );
+    }
+
+    @Test
+    public void assignedReplacedFhir()
+    {
+        index.assigned( ruleId, fhirClientId, "f1", "d1" );
+        index.assigned( ruleId, fhirClientId, "f2", "d1" );
+
+        Assert.assertEquals( "f2", index.getFhirResourceId( ruleId, fhirClientId, "d1" ) );
+        Assert.assertEquals( "d1", index.getDhisResourceId( ruleId, fhirClientId, "f2" ) );
+        Assert.assertNull( index.getDhisResourceId( ruleId, fhirClientId, "f1" ) );
+    }
+
+    @Test
+    public void unassignedFhirResourceId()
+    {
+        index.assigned( ruleId, fhirClientId, "f1", "d1" );
+        index.assigned( ruleId, fhirClientId, "f2", "d2" );
+        index.unassignedFhirResourceId( ruleId, fhirClientId, "f1" );
+
+        Assert.assertNull( index.getDhisResourceId( ruleId, fhirClientId, "f1" ) );
+        Assert.assertNull( index.getFhirResourceId( ruleId, fhirClientId, "d1" ) );
+        Assert.assertEquals( "d2", index.getDhisResourceId( ruleId, fhirClientId, "f2" ) );
+    }
+
+    @Test
+    public void unassignedDhisResourceId()
+    {
+        index.assigned( ruleId, fhirClientId, "f1", "d1" );
+        index.unassignedDhisResourceId( ruleId, fhirClientId, "d1" );
+
+        Assert.assertNull( index.getDhisResourceId( ruleId, fhirClientId, "f1" ) );
+        Assert.assertNull( index.getFhirResourceId( ruleId, fhirClientId, "d1" ) );
+    }
+
+    @Test
+    public void unassignedOtherRule()
+    {
+        final UUID otherRuleId = UUID.randomUUID();
+        index.assigned( ruleId, fhirClientId, "f1", "d1" );
+        index.assigned( otherRuleId, fhirClientId, "f1", "d1" );
+        index.unassignedFhirResourceId( otherRuleId, fhirClientId, "f1" );
+
+        Assert.assertEquals( "d1", index.getDhisResourceId( ruleId, fhirClientId, "f1" ) );
+        Assert.assertNull( index.getDhisResourceId( otherRuleId, fhirClientId, "f1" ) );
+    }
+
+    @Test
+    public void invalidate()
+    {
+        index.assigned( ruleId, fhirClientId, "f1", "d1" );
+        index.assigned( ruleId, fhirClientId, "f2", "d2" );
+        index.invalidate( ruleId, fhirClientId, "f1", "d2" );
+
+        Assert.assertNull( index.getDhisResourceId( ruleId, fhirClientId, "f1" ) );
+        Assert.assertNull( index.getFhirResourceId( ruleId, fhirClientId, "d1" ) );
+        Assert.assertNull( index.getDhisResourceId( ruleId, fhirClientId, "f2" ) );
+        Assert.assertNull( index.getFhirResourceId( ruleId, fhirClientId, "d2" ) );
+    }
+
+    @Test
+    public void disabled()
+    {
+        final FhirDhisAssignmentConfig config = new FhirDhisAssignmentConfig();
+        config.setIndexMaxSize( 0 );
+        final FhirDhisAssignmentIndex disabledIndex = new FhirDhisAssignmentIndex( config );
+        disabledIndex.assigned( ruleId, fhirClientId, "f1", "d1" );
+
+        Assert.assertNull( disabledIndex.getDhisResourceId( ruleId, fhirClientId, "f1" ) );
+    }
+}
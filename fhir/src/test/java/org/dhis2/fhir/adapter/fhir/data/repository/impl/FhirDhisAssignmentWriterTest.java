@@ -0,0 +1,115 @@
+package org.dhis2.fhir.adapter.fhir.data.repository.impl;
+
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+import org.springframework.dao.support.PersistenceExceptionTranslator;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Unit tests for {@link FhirDhisAssignmentWriter}.
+ *
+ * @author volsch
+ */
+public class FhirDhisAssignmentWriterTest
+{
+    private final UUID ruleId = UUID.randomUUID();
+
+    private final UUID fhirClientId = UUID.randomUUID();
+
+    @Mock
+    private FhirDhisAssignmentIndex index;
+
+    @Mock
+    private PlatformTransactionManager platformTransactionManager;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private PersistenceExceptionTranslator persistenceExceptionTranslator;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Rule
+    public MockitoRule rule = MockitoJUnit.rule();
+
+    private FhirDhisAssignmentWriter writer;
+
+    @Before
+    public void before()
+    {
+        final FhirDhisAssignmentConfig config = new FhirDhisAssignmentConfig();
+        config.setWriteBehindEnabled( true );
+        Mockito.when( jdbcTemplate.execute( ArgumentMatchers.<ConnectionCallback<String>>any() ) ).thenReturn( "PostgreSQL" );
+        writer = new FhirDhisAssignmentWriter( config, index, platformTransactionManager, entityManager, persistenceExceptionTranslator, jdbcTemplate );
+    }
+
+    @Test
+    public void flushMatching()
+    {
+        Assert.assertTrue( writer.write( new FhirDhisAssignmentWriter.PendingAssignment( ruleId, fhirClientId, "f1", "d1", false ) ) );
+        Assert.assertTrue( writer.write( new FhirDhisAssignmentWriter.PendingAssignment( ruleId, fhirClientId, "f2", "d2", false ) ) );
+        Mockito.verifyZeroInteractions( platformTransactionManager );
+
+        writer.flush( a -> "f2".equals( a.getFhirResourceId() ) );
+        Mockito.verify( jdbcTemplate ).batchUpdate( Mockito.eq( FhirDhisAssignmentWriter.UPSERT_BY_FHIR_RESOURCE_ID_SQL ),
+            ArgumentMatchers.<List<Object[]>>argThat( args -> (args.size() == 1) && "f2".equals( args.get( 0 )[4] ) ) );
+
+        writer.flush();
+        Mockito.verify( jdbcTemplate ).batchUpdate( Mockito.eq( FhirDhisAssignmentWriter.UPSERT_BY_FHIR_RESOURCE_ID_SQL ),
+            ArgumentMatchers.<List<Object[]>>argThat( args -> (args.size() == 1) && "f1".equals( args.get( 0 )[4] ) ) );
+    }
+
+    @Test
+    public void flushNotMatching()
+    {
+        Assert.assertTrue( writer.write( new FhirDhisAssignmentWriter.PendingAssignment( ruleId, fhirClientId, "f1", "d1", false ) ) );
+
+        writer.flush( a -> "f2".equals( a.getFhirResourceId() ) );
+        Mockito.verifyZeroInteractions( platformTransactionManager );
+        Mockito.verify( jdbcTemplate, Mockito.never() ).batchUpdate( Mockito.anyString(), ArgumentMatchers.<Object[]>anyList() );
+    }
+}
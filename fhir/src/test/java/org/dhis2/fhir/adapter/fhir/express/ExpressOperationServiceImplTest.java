@@ -0,0 +1,155 @@
+package org.dhis2.fhir.adapter.fhir.express;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import org.dhis2.fhir.adapter.fhir.repository.FhirRepositoryOperationOutcome;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+/**
+ * Tests for {@link ExpressOperationServiceImpl} with an embedded database.
+ *
+ * @author volsch
+ */
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@ContextConfiguration(classes = ExpressOperationServiceImplTest.TestConfig.class)
+@TestPropertySource(properties = {"spring.flyway.enabled=false", "spring.datasource.initialization-mode=never"})
+public class ExpressOperationServiceImplTest {
+
+    private final UUID fhirClientId = UUID.randomUUID();
+
+    @Autowired
+    private TestEntityManager testEntityManager;
+
+    private ExpressConfig expressConfig;
+
+    private ExpressOperationServiceImpl service;
+
+    @Before
+    public void before() {
+        expressConfig = new ExpressConfig();
+        expressConfig.setMaxConcurrentRequests(2);
+        expressConfig.setMaxQueuedOperations(3);
+        expressConfig.setMaxQueuedOperationsPerClient(2);
+        service = new ExpressOperationServiceImpl(expressConfig, testEntityManager.getEntityManager());
+    }
+
+    @Test
+    public void completed() {
+        final ExpressOperation operation = service.createQueued(fhirClientId, "Patient", "1");
+        Assert.assertNotNull(operation);
+        testEntityManager.flush();
+        testEntityManager.clear();
+        Assert.assertEquals(ExpressOperationStatus.QUEUED, service.findById(operation.getId()).get().getStatus());
+
+        service.completed(operation.getId(), new FhirRepositoryOperationOutcome("abc", true));
+        testEntityManager.flush();
+        testEntityManager.clear();
+        final ExpressOperation completed = service.findById(operation.getId()).get();
+        Assert.assertEquals(ExpressOperationStatus.COMPLETED, completed.getStatus());
+        Assert.assertEquals("abc", completed.getOutcome().getId());
+        Assert.assertTrue(completed.getOutcome().isCreated());
+        Assert.assertNotNull(completed.getFinishedAt());
+    }
+
+    @Test
+    public void finishedOnlyOnce() {
+        final ExpressOperation operation = service.createQueued(fhirClientId, "Patient", "1");
+        Assert.assertNotNull(operation);
+        service.failed(operation.getId(), "Conflict");
+        service.completed(operation.getId(), null);
+        testEntityManager.flush();
+        testEntityManager.clear();
+
+        final ExpressOperation failed = service.findById(operation.getId()).get();
+        Assert.assertEquals(ExpressOperationStatus.FAILED, failed.getStatus());
+        Assert.assertEquals("Conflict", failed.getMessage());
+        Assert.assertNull(failed.getOutcome());
+    }
+
+    @Test
+    public void queueLimits() {
+        Assert.assertNotNull(service.createQueued(fhirClientId, "Patient", "1"));
+        final ExpressOperation operation = service.createQueued(fhirClientId, "Patient", "2");
+        Assert.assertNotNull(operation);
+        Assert.assertNull(service.createQueued(fhirClientId, "Patient", "3"));
+
+        final UUID otherFhirClientId = UUID.randomUUID();
+        Assert.assertNotNull(service.createQueued(otherFhirClientId, "Patient", "4"));
+        Assert.assertNull(service.createQueued(otherFhirClientId, "Patient", "5"));
+
+        service.completed(operation.getId(), null);
+        Assert.assertNotNull(service.createQueued(otherFhirClientId, "Patient", "6"));
+        Assert.assertNull(service.createQueued(fhirClientId, "Patient", "7"));
+    }
+
+    @Test
+    public void queueLimitsShared() {
+        // another adapter instance has queued the operations
+        final ExpressOperationServiceImpl otherService = new ExpressOperationServiceImpl(expressConfig, testEntityManager.getEntityManager());
+        Assert.assertNotNull(otherService.createQueued(fhirClientId, "Patient", "1"));
+        Assert.assertNotNull(otherService.createQueued(fhirClientId, "Patient", "2"));
+        Assert.assertNull(service.createQueued(fhirClientId, "Patient", "3"));
+    }
+
+    @Test
+    public void purge() {
+        final ExpressOperation expired = service.createQueued(fhirClientId, "Patient", "1");
+        Assert.assertNotNull(expired);
+        expired.setCreatedAt(Instant.now().minus(Duration.ofHours(2)));
+        final ExpressOperation finished = service.createQueued(fhirClientId, "Patient", "2");
+        Assert.assertNotNull(finished);
+        finished.setStatus(ExpressOperationStatus.COMPLETED);
+        finished.setFinishedAt(Instant.now().minus(Duration.ofHours(2)));
+        final ExpressOperation queued = service.createQueued(fhirClientId, "Patient", "3");
+        Assert.assertNotNull(queued);
+        testEntityManager.flush();
+
+        // expired operations do no longer count as queued
+        Assert.assertNotNull(service.createQueued(fhirClientId, "Patient", "4"));
+
+        service.purge();
+        testEntityManager.flush();
+        testEntityManager.clear();
+        Assert.assertEquals(ExpressOperationStatus.FAILED, service.findById(expired.getId()).get().getStatus());
+        Assert.assertFalse(service.findById(finished.getId()).isPresent());
+        Assert.assertEquals(ExpressOperationStatus.QUEUED, service.findById(queued.getId()).get().getStatus());
+    }
+
+    @Test
+    public void concurrentRequests() {
+        Assert.assertTrue(service.tryAcquireRequest(fhirClientId));
+        Assert.assertTrue(service.tryAcquireRequest(fhirClientId));
+        Assert.assertFalse(service.tryAcquireRequest(fhirClientId));
+        Assert.assertTrue(service.tryAcquireRequest(UUID.randomUUID()));
+
+        service.releaseRequest(fhirClientId);
+        Assert.assertTrue(service.tryAcquireRequest(fhirClientId));
+    }
+
+    @Test
+    public void unlimitedConcurrentRequests() {
+        expressConfig.setMaxConcurrentRequests(0);
+        for (int i = 0; i < 100; i++) {
+            Assert.assertTrue(service.tryAcquireRequest(fhirClientId));
+        }
+    }
+
+    @Configuration
+    @EnableAutoConfiguration
+    public static class TestConfig {
+    }
+
+}
@@ -0,0 +1,143 @@
+package org.dhis2.fhir.adapter.fhir.metadata.service.impl;
+
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.dhis2.fhir.adapter.fhir.metadata.model.Code;
+import org.dhis2.fhir.adapter.fhir.metadata.model.System;
+import org.dhis2.fhir.adapter.fhir.metadata.model.SystemCode;
+import org.dhis2.fhir.adapter.fhir.model.SystemCodeValue;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Unit tests for {@link CodeDictionary}.
+ *
+ * @author volsch
+ */
+public class CodeDictionaryTest
+{
+    private CodeDictionary codeDictionary;
+
+    @Before
+    public void before()
+    {
+        final System loinc = createSystem( "http://loinc.org" );
+        final System other = createSystem( "http://other.org" );
+
+        final Code bodyWeight = createCode( "LOINC_29463-7", null );
+        final Code bodyHeight = createCode( "LOINC_8302-2", "HEIGHT" );
+        final Code heartRate = createCode( "LOINC_8867-4", "HEART_RATE" );
+
+        final Map<UUID, List<String>> codeSetCodes = new HashMap<>();
+        codeSetCodes.put( bodyWeight.getId(), Collections.singletonList( "VITAL_SIGNS" ) );
+        codeSetCodes.put( heartRate.getId(), Arrays.asList( "VITAL_SIGNS", "HEART" ) );
+
+        codeDictionary = new CodeDictionary( Arrays.asList(
+            createSystemCode( loinc, "29463-7", "Body weight", bodyWeight ),
+            createSystemCode( other, "BW", "Weight", bodyWeight ),
+            createSystemCode( loinc, "8302-2", "Body height", bodyHeight ),
+            createSystemCode( loinc, "8867-4", "Heart rate", heartRate ) ), codeSetCodes, 3 );
+    }
+
+    @Test
+    public void generation()
+    {
+        Assert.assertEquals( 3, codeDictionary.getGeneration() );
+    }
+
+    @Test
+    public void findMappedCode()
+    {
+        Assert.assertEquals( "LOINC_29463-7", codeDictionary.findMappedCode( new SystemCodeValue( "http://other.org", "BW" ) ) );
+        Assert.assertEquals( "HEIGHT", codeDictionary.findMappedCode( new SystemCodeValue( "http://loinc.org", "8302-2" ) ) );
+        Assert.assertNull( codeDictionary.findMappedCode( new SystemCodeValue( "http://other.org", "8302-2" ) ) );
+    }
+
+    @Test
+    public void findFirstMappedCodeByCodeSet()
+    {
+        Assert.assertEquals( "HEART_RATE", codeDictionary.findFirstMappedCodeByCodeSet( "VITAL_SIGNS", Arrays.asList(
+            new SystemCodeValue( "http://loinc.org", "29463-7" ), new SystemCodeValue( "http://loinc.org", "8302-2" ),
+            new SystemCodeValue( "http://loinc.org", "8867-4" ) ) ) );
+        Assert.assertEquals( "HEART_RATE", codeDictionary.findFirstMappedCodeByCodeSet( "HEART", Collections.singletonList( new SystemCodeValue( "http://loinc.org", "8867-4" ) ) ) );
+        Assert.assertNull( codeDictionary.findFirstMappedCodeByCodeSet( "VITAL_SIGNS", Collections.singletonList( new SystemCodeValue( "http://loinc.org", "8302-2" ) ) ) );
+        Assert.assertNull( codeDictionary.findFirstMappedCodeByCodeSet( "OTHER", Collections.singletonList( new SystemCodeValue( "http://loinc.org", "8867-4" ) ) ) );
+    }
+
+    @Test
+    public void findSystemCodeValuesByCode()
+    {
+        final List<SystemCodeValue> systemCodeValues = codeDictionary.findSystemCodeValuesByCode( "LOINC_29463-7" );
+        Assert.assertEquals( Arrays.asList( new SystemCodeValue( "http://loinc.org", "29463-7" ), new SystemCodeValue( "http://other.org", "BW" ) ), systemCodeValues );
+        Assert.assertEquals( "Body weight", systemCodeValues.get( 0 ).getDisplayName() );
+        Assert.assertTrue( codeDictionary.findSystemCodeValuesByCode( "LOINC_1234-5" ).isEmpty() );
+    }
+
+    @Nonnull
+    private static System createSystem( @Nonnull String systemUri )
+    {
+        final System system = new System();
+        system.setId( UUID.randomUUID() );
+        system.setSystemUri( systemUri );
+        return system;
+    }
+
+    @Nonnull
+    private static Code createCode( @Nonnull String code, @Nullable String mappedCode )
+    {
+        final Code c = new Code();
+        c.setId( UUID.randomUUID() );
+        c.setCode( code );
+        c.setMappedCode( mappedCode );
+        return c;
+    }
+
+    @Nonnull
+    private static SystemCode createSystemCode( @Nonnull System system, @Nonnull String systemCode, @Nonnull String displayName, @Nonnull Code code )
+    {
+        final SystemCode sc = new SystemCode();
+        sc.setId( UUID.randomUUID() );
+        sc.setSystem( system );
+        sc.setSystemCode( systemCode );
+        sc.setDisplayName( displayName );
+        sc.setCode( code );
+        return sc;
+    }
+}
@@ -65,8 +65,10 @@ import org.dhis2.fhir.adapter.fhir.metadata.repository.SystemCodeRepository;
 import org.dhis2.fhir.adapter.fhir.metadata.repository.SystemRepository;
 import org.dhis2.fhir.adapter.fhir.metadata.repository.TrackedEntityRuleRepository;
 import org.dhis2.fhir.adapter.fhir.metadata.repository.validator.MetadataValidator;
+import org.dhis2.fhir.adapter.fhir.metadata.service.CodeDictionaryService;
 import org.dhis2.fhir.adapter.fhir.metadata.service.MetadataImportParams;
 import org.dhis2.fhir.adapter.fhir.metadata.service.MetadataImportResult;
+import org.dhis2.fhir.adapter.fhir.metadata.service.RuleIndexService;
 import org.dhis2.fhir.adapter.model.Metadata;
 import org.dhis2.fhir.adapter.model.VersionedBaseMetadata;
 import org.hamcrest.Matchers;
@@ -167,6 +169,12 @@ public class MetadataImportServiceImplTest
     @Mock
     private CacheManager cacheManager;
 
+    @Mock
+    private RuleIndexService ruleIndexService;
+
+    @Mock
+    private CodeDictionaryService codeDictionaryService;
+
     private MetadataImportServiceImpl service;
 
     private List<? extends MetadataRepository<? extends Metadata>> metadataRepositories;
@@ -206,7 +214,7 @@ public class MetadataImportServiceImplTest
 
         service = new MetadataImportServiceImpl( messageSource, trackerProgramRepository, programStageRuleRepository,
             fhirResourceMappingRepository, Arrays.asList( programStageRuleMetadataValidator, otherMetadataValidator ),
-            new ArrayList<>( metadataRepositories ), entityManager, cacheManager );
+            new ArrayList<>( metadataRepositories ), entityManager, cacheManager, ruleIndexService, codeDictionaryService );
     }
 
     @SuppressWarnings( "unchecked" )
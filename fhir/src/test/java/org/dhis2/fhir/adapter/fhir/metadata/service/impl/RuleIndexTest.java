@@ -0,0 +1,152 @@
+package org.dhis2.fhir.adapter.fhir.metadata.service.impl;
+
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.dhis2.fhir.adapter.fhir.metadata.model.AbstractRule;
+import org.dhis2.fhir.adapter.fhir.metadata.model.CodeSet;
+import org.dhis2.fhir.adapter.fhir.metadata.model.FhirResourceType;
+import org.dhis2.fhir.adapter.fhir.metadata.model.ProgramStageRule;
+import org.dhis2.fhir.adapter.fhir.metadata.model.RuleInfo;
+import org.dhis2.fhir.adapter.fhir.metadata.model.System;
+import org.dhis2.fhir.adapter.fhir.metadata.model.TrackedEntityRule;
+import org.dhis2.fhir.adapter.fhir.model.SystemCodeValue;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Unit tests for {@link RuleIndex}.
+ *
+ * @author volsch
+ */
+public class RuleIndexTest
+{
+    private CodeSet vitalSigns;
+
+    private CodeSet bodyWeight;
+
+    private RuleInfo<? extends AbstractRule> patientRule;
+
+    private RuleInfo<? extends AbstractRule> defaultObservationRule;
+
+    private RuleInfo<? extends AbstractRule> vitalSignRule;
+
+    private RuleInfo<? extends AbstractRule> bodyWeightRule;
+
+    private RuleIndex ruleIndex;
+
+    @Before
+    public void before()
+    {
+        vitalSigns = createCodeSet( "VITAL_SIGNS" );
+        bodyWeight = createCodeSet( "BODY_WEIGHT" );
+
+        patientRule = createRule( new TrackedEntityRule(), FhirResourceType.PATIENT, 0, null );
+        defaultObservationRule = createRule( new ProgramStageRule(), FhirResourceType.OBSERVATION, 0, null );
+        vitalSignRule = createRule( new ProgramStageRule(), FhirResourceType.OBSERVATION, 10, vitalSigns );
+        bodyWeightRule = createRule( new ProgramStageRule(), FhirResourceType.OBSERVATION, 20, bodyWeight );
+
+        final Map<UUID, List<String>> codeSetSystemCodeValues = new HashMap<>();
+        codeSetSystemCodeValues.put( vitalSigns.getId(), Arrays.asList( "http://loinc.org|29463-7", "http://loinc.org|8310-5" ) );
+        codeSetSystemCodeValues.put( bodyWeight.getId(), Collections.singletonList( "http://loinc.org|29463-7" ) );
+
+        ruleIndex = new RuleIndex( Arrays.asList( vitalSignRule, patientRule, defaultObservationRule, bodyWeightRule ), codeSetSystemCodeValues, 7 );
+    }
+
+    @Test
+    public void generation()
+    {
+        Assert.assertEquals( 7, ruleIndex.getGeneration() );
+    }
+
+    @Test
+    public void findAllUnknownResourceType()
+    {
+        Assert.assertTrue( ruleIndex.findAll( FhirResourceType.IMMUNIZATION, null ).isEmpty() );
+    }
+
+    @Test
+    public void findAllWithoutCodes()
+    {
+        Assert.assertEquals( Collections.singletonList( defaultObservationRule ), ruleIndex.findAll( FhirResourceType.OBSERVATION, null ) );
+        Assert.assertEquals( Collections.singletonList( defaultObservationRule ), ruleIndex.findAll( FhirResourceType.OBSERVATION, Collections.emptyList() ) );
+    }
+
+    @Test
+    public void findAllBySystemCode()
+    {
+        Assert.assertEquals( Arrays.asList( bodyWeightRule, vitalSignRule, defaultObservationRule ),
+            ruleIndex.findAll( FhirResourceType.OBSERVATION, Collections.singletonList( new SystemCodeValue( "http://loinc.org", "29463-7" ) ) ) );
+        Assert.assertEquals( Arrays.asList( vitalSignRule, defaultObservationRule ),
+            ruleIndex.findAll( FhirResourceType.OBSERVATION, Arrays.asList( new SystemCodeValue( "http://loinc.org", "8310-5" ), new SystemCodeValue( "http://loinc.org", "1234-5" ) ) ) );
+    }
+
+    @Test
+    public void findAllByUnknownSystemCode()
+    {
+        Assert.assertEquals( Collections.singletonList( defaultObservationRule ),
+            ruleIndex.findAll( FhirResourceType.OBSERVATION, Collections.singletonList( new SystemCodeValue( "http://loinc.org", "1234-5" ) ) ) );
+    }
+
+    @Test
+    public void findAllByCodeSetCode()
+    {
+        Assert.assertEquals( Collections.singletonList( bodyWeightRule ),
+            ruleIndex.findAll( FhirResourceType.OBSERVATION, Collections.singletonList( new SystemCodeValue( System.DHIS2_FHIR_CODE_SET_URI, "BODY_WEIGHT" ) ) ) );
+    }
+
+    @Nonnull
+    private static CodeSet createCodeSet( @Nonnull String code )
+    {
+        final CodeSet codeSet = new CodeSet();
+        codeSet.setId( UUID.randomUUID() );
+        codeSet.setCode( code );
+        return codeSet;
+    }
+
+    @Nonnull
+    private static RuleInfo<? extends AbstractRule> createRule( @Nonnull AbstractRule rule, @Nonnull FhirResourceType fhirResourceType, int evaluationOrder, @Nullable CodeSet applicableCodeSet )
+    {
+        rule.setId( UUID.randomUUID() );
+        rule.setFhirResourceType( fhirResourceType );
+        rule.setEvaluationOrder( evaluationOrder );
+        rule.setApplicableCodeSet( applicableCodeSet );
+        return new RuleInfo<>( rule, Collections.emptyList() );
+    }
+}
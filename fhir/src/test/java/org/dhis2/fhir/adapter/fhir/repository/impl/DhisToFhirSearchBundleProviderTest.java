@@ -0,0 +1,276 @@
+package org.dhis2.fhir.adapter.fhir.repository.impl;
+
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.dhis2.fhir.adapter.auth.UnauthorizedException;
+import org.dhis2.fhir.adapter.cache.RequestCacheService;
+import org.dhis2.fhir.adapter.dhis.model.DhisResource;
+import org.dhis2.fhir.adapter.dhis.tracker.trackedentity.TrackedEntityInstance;
+import org.dhis2.fhir.adapter.fhir.metadata.model.AbstractRule;
+import org.dhis2.fhir.adapter.fhir.metadata.model.FhirClient;
+import org.dhis2.fhir.adapter.fhir.metadata.model.RuleInfo;
+import org.dhis2.fhir.adapter.fhir.metadata.model.TrackedEntityRule;
+import org.dhis2.fhir.adapter.fhir.security.AdapterSystemAuthenticationToken;
+import org.dhis2.fhir.adapter.fhir.transform.dhis.DhisToFhirDataProvider;
+import org.dhis2.fhir.adapter.fhir.transform.dhis.DhisToFhirSearchResult;
+import org.dhis2.fhir.adapter.fhir.transform.dhis.DhisToFhirSearchState;
+import org.dhis2.fhir.adapter.fhir.transform.dhis.DhisToFhirTransformOutcome;
+import org.dhis2.fhir.adapter.fhir.transform.dhis.DhisToFhirTransformerRequest;
+import org.dhis2.fhir.adapter.fhir.transform.dhis.DhisToFhirTransformerService;
+import org.dhis2.fhir.adapter.fhir.transform.dhis.PreparedDhisToFhirSearch;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for {@link DhisToFhirSearchBundleProvider}.
+ *
+ * @author volsch
+ */
+public class DhisToFhirSearchBundleProviderTest
+{
+    @Mock
+    private RequestCacheService requestCacheService;
+
+    @Mock
+    private DhisToFhirTransformerService dhisToFhirTransformerService;
+
+    @Mock
+    private FhirClient fhirClient;
+
+    @Mock
+    private DhisToFhirDataProvider<? extends AbstractRule> dataProvider;
+
+    @Mock
+    private PreparedDhisToFhirSearch preparedSearch;
+
+    @Mock
+    private DhisToFhirSearchState searchState;
+
+    @Rule
+    public MockitoRule mockitoRule = MockitoJUnit.rule();
+
+    private final TrackedEntityRule rule = new TrackedEntityRule();
+
+    private final List<RuleInfo<? extends AbstractRule>> rules = Collections.singletonList( new RuleInfo<>( rule, Collections.emptyList() ) );
+
+    private final List<TrackedEntityInstance> trackedEntityInstances = new ArrayList<>();
+
+    private final Map<DhisResource, IBaseResource> transformedResources = new HashMap<>();
+
+    private final Map<DhisResource, DhisToFhirTransformerRequest> transformerRequests = new HashMap<>();
+
+    private int searchCount;
+
+    @Before
+    public void setUp()
+    {
+        SecurityContextHolder.getContext().setAuthentication( new AdapterSystemAuthenticationToken() );
+
+        for ( int i = 0; i < 5; i++ )
+        {
+            final TrackedEntityInstance tei = new TrackedEntityInstance();
+            tei.setId( "a123456789" + i );
+            trackedEntityInstances.add( tei );
+            transformedResources.put( tei, Mockito.mock( IBaseResource.class ) );
+
+            final DhisToFhirTransformerRequest transformerRequest = Mockito.mock( DhisToFhirTransformerRequest.class );
+            transformerRequests.put( tei, transformerRequest );
+            Mockito.doReturn( new DhisToFhirTransformOutcome<>( rule, transformedResources.get( tei ) ) )
+                .when( dhisToFhirTransformerService ).transform( Mockito.same( transformerRequest ) );
+        }
+
+        Mockito.doAnswer( invocation -> {
+            final int max = invocation.getArgument( 2 );
+            final int from = searchCount;
+            if ( from >= trackedEntityInstances.size() )
+            {
+                return null;
+            }
+            searchCount = Math.min( from + max, trackedEntityInstances.size() );
+            return new DhisToFhirSearchResult<>( new ArrayList<>( trackedEntityInstances.subList( from, searchCount ) ), searchState );
+        } ).when( dataProvider ).search( Mockito.same( preparedSearch ), Mockito.any(), Mockito.anyInt() );
+
+        Mockito.doAnswer( invocation -> transformerRequests.get( invocation.<DhisResource>getArgument( 2 ) ) ).when( dhisToFhirTransformerService ).createTransformerRequest( Mockito.same( fhirClient ), Mockito.any(), Mockito.any( DhisResource.class ), Mockito.same( rules ) );
+    }
+
+    @After
+    public void tearDown()
+    {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void getResourcesPaged()
+    {
+        final DhisToFhirSearchBundleProvider bundleProvider = createBundleProvider( 2, 10 );
+        Assert.assertEquals( 2, (int) bundleProvider.preferredPageSize() );
+
+        List<IBaseResource> resources = bundleProvider.getResources( 0, 2 );
+        Assert.assertEquals( 2, resources.size() );
+        Assert.assertSame( transformedResources.get( trackedEntityInstances.get( 0 ) ), resources.get( 0 ) );
+        Assert.assertSame( transformedResources.get( trackedEntityInstances.get( 1 ) ), resources.get( 1 ) );
+        Assert.assertNull( bundleProvider.size() );
+        Assert.assertFalse( bundleProvider.isCompleted() );
+        Mockito.verify( dataProvider, Mockito.times( 1 ) ).search( Mockito.same( preparedSearch ), Mockito.isNull(), Mockito.eq( 2 ) );
+        Mockito.verify( dhisToFhirTransformerService, Mockito.times( 2 ) ).transform( Mockito.any() );
+
+        resources = bundleProvider.getResources( 2, 4 );
+        Assert.assertEquals( 2, resources.size() );
+        Assert.assertSame( transformedResources.get( trackedEntityInstances.get( 2 ) ), resources.get( 0 ) );
+        Assert.assertSame( transformedResources.get( trackedEntityInstances.get( 3 ) ), resources.get( 1 ) );
+        Assert.assertNull( bundleProvider.size() );
+        Mockito.verify( dataProvider, Mockito.times( 1 ) ).search( Mockito.same( preparedSearch ), Mockito.same( searchState ), Mockito.eq( 2 ) );
+        Mockito.verify( dhisToFhirTransformerService, Mockito.times( 4 ) ).transform( Mockito.any() );
+
+        resources = bundleProvider.getResources( 4, 6 );
+        Assert.assertEquals( 1, resources.size() );
+        Assert.assertSame( transformedResources.get( trackedEntityInstances.get( 4 ) ), resources.get( 0 ) );
+        Assert.assertEquals( 5, (int) bundleProvider.size() );
+        Assert.assertTrue( bundleProvider.isCompleted() );
+
+        resources = bundleProvider.getResources( 0, 2 );
+        Assert.assertEquals( 2, resources.size() );
+        Assert.assertSame( transformedResources.get( trackedEntityInstances.get( 0 ) ), resources.get( 0 ) );
+        Mockito.verify( dataProvider, Mockito.times( 4 ) ).search( Mockito.any(), Mockito.any(), Mockito.anyInt() );
+        Mockito.verify( dhisToFhirTransformerService, Mockito.times( 5 ) ).transform( Mockito.any() );
+    }
+
+    @Test
+    public void getResourcesMaxCount()
+    {
+        final DhisToFhirSearchBundleProvider bundleProvider = createBundleProvider( 2, 3 );
+
+        Assert.assertEquals( 2, bundleProvider.getResources( 0, 2 ).size() );
+        Assert.assertNull( bundleProvider.size() );
+
+        final List<IBaseResource> resources = bundleProvider.getResources( 2, 4 );
+        Assert.assertEquals( 1, resources.size() );
+        Assert.assertSame( transformedResources.get( trackedEntityInstances.get( 2 ) ), resources.get( 0 ) );
+        Assert.assertEquals( 3, (int) bundleProvider.size() );
+        Assert.assertTrue( bundleProvider.getResources( 4, 6 ).isEmpty() );
+        Mockito.verify( dhisToFhirTransformerService, Mockito.times( 3 ) ).transform( Mockito.any() );
+    }
+
+    @Test
+    public void getResourcesContinuesTransformation()
+    {
+        final IBaseResource nextResource = Mockito.mock( IBaseResource.class );
+        final DhisToFhirTransformerRequest transformerRequest = Mockito.mock( DhisToFhirTransformerRequest.class );
+        final DhisToFhirTransformerRequest nextTransformerRequest = Mockito.mock( DhisToFhirTransformerRequest.class );
+        Mockito.doReturn( transformerRequest ).when( dhisToFhirTransformerService )
+            .createTransformerRequest( Mockito.same( fhirClient ), Mockito.any(), Mockito.same( trackedEntityInstances.get( 0 ) ), Mockito.same( rules ) );
+        Mockito.doReturn( new DhisToFhirTransformOutcome<>( new DhisToFhirTransformOutcome<>( rule, transformedResources.get( trackedEntityInstances.get( 0 ) ) ), nextTransformerRequest ) )
+            .when( dhisToFhirTransformerService ).transform( Mockito.same( transformerRequest ) );
+        Mockito.doReturn( new DhisToFhirTransformOutcome<>( rule, nextResource ) )
+            .when( dhisToFhirTransformerService ).transform( Mockito.same( nextTransformerRequest ) );
+
+        final DhisToFhirSearchBundleProvider bundleProvider = createBundleProvider( 1, 10 );
+
+        List<IBaseResource> resources = bundleProvider.getResources( 0, 1 );
+        Assert.assertEquals( 1, resources.size() );
+        Assert.assertSame( transformedResources.get( trackedEntityInstances.get( 0 ) ), resources.get( 0 ) );
+
+        resources = bundleProvider.getResources( 1, 2 );
+        Assert.assertEquals( 1, resources.size() );
+        Assert.assertSame( nextResource, resources.get( 0 ) );
+        Mockito.verify( dataProvider, Mockito.times( 1 ) ).search( Mockito.any(), Mockito.any(), Mockito.anyInt() );
+
+        resources = bundleProvider.getResources( 2, 3 );
+        Assert.assertEquals( 1, resources.size() );
+        Assert.assertSame( transformedResources.get( trackedEntityInstances.get( 1 ) ), resources.get( 0 ) );
+        Mockito.verify( dataProvider, Mockito.times( 2 ) ).search( Mockito.any(), Mockito.any(), Mockito.anyInt() );
+    }
+
+    @Test
+    public void getResourcesFetchListener()
+    {
+        final Runnable fetchListener = Mockito.mock( Runnable.class );
+        final DhisToFhirSearchBundleProvider bundleProvider = createBundleProvider( 2, 10 );
+        bundleProvider.setFetchListener( fetchListener );
+
+        Assert.assertEquals( 0, bundleProvider.getResourceCount() );
+        Assert.assertEquals( 2, bundleProvider.getResources( 0, 2 ).size() );
+        Assert.assertEquals( 2, bundleProvider.getResourceCount() );
+        Mockito.verify( fetchListener, Mockito.times( 1 ) ).run();
+
+        Assert.assertEquals( 2, bundleProvider.getResources( 0, 2 ).size() );
+        Mockito.verify( fetchListener, Mockito.times( 1 ) ).run();
+    }
+
+    @Test( expected = UnauthorizedException.class )
+    public void getResourcesUnauthenticated()
+    {
+        SecurityContextHolder.clearContext();
+
+        final DhisToFhirSearchBundleProvider bundleProvider = createBundleProvider( 2, 10 );
+        try
+        {
+            bundleProvider.getResources( 0, 2 );
+        }
+        finally
+        {
+            Mockito.verifyZeroInteractions( dataProvider );
+        }
+    }
+
+    @Test
+    public void fetchEmpty()
+    {
+        trackedEntityInstances.clear();
+
+        final DhisToFhirSearchBundleProvider bundleProvider = createBundleProvider( 2, 10 );
+        bundleProvider.fetch( 2 );
+
+        Assert.assertEquals( 0, (int) bundleProvider.size() );
+        Assert.assertTrue( bundleProvider.getResources( 0, 2 ).isEmpty() );
+        Mockito.verify( dataProvider, Mockito.times( 1 ) ).search( Mockito.any(), Mockito.any(), Mockito.anyInt() );
+        Mockito.verify( requestCacheService, Mockito.never() ).createRequestCacheContext( Mockito.anyBoolean() );
+    }
+
+    private DhisToFhirSearchBundleProvider createBundleProvider( int pageSize, int maxCount )
+    {
+        return new DhisToFhirSearchBundleProvider( requestCacheService, dhisToFhirTransformerService, fhirClient, rules, dataProvider, preparedSearch, pageSize, maxCount, "Basic 123" );
+    }
+}
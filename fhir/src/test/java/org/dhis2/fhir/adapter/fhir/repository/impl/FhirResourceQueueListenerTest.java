@@ -0,0 +1,212 @@
+package org.dhis2.fhir.adapter.fhir.repository.impl;
+
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.dhis2.fhir.adapter.auth.AuthorizationContext;
+import org.dhis2.fhir.adapter.cache.RequestCacheService;
+import org.dhis2.fhir.adapter.dhis.sync.DhisResourceRepository;
+import org.dhis2.fhir.adapter.fhir.client.StoredFhirResourceService;
+import org.dhis2.fhir.adapter.fhir.data.repository.FhirDhisAssignmentRepository;
+import org.dhis2.fhir.adapter.fhir.data.repository.SubscriptionFhirResourceRepository;
+import org.dhis2.fhir.adapter.fhir.express.ExpressOperationService;
+import org.dhis2.fhir.adapter.fhir.metadata.model.FhirClientResource;
+import org.dhis2.fhir.adapter.fhir.metadata.repository.FhirClientResourceRepository;
+import org.dhis2.fhir.adapter.fhir.metadata.repository.FhirClientSystemRepository;
+import org.dhis2.fhir.adapter.fhir.repository.FhirRepository;
+import org.dhis2.fhir.adapter.fhir.repository.FhirRepositoryOperationOutcome;
+import org.dhis2.fhir.adapter.fhir.repository.FhirResource;
+import org.dhis2.fhir.adapter.fhir.repository.FhirResourceRepository;
+import org.dhis2.fhir.adapter.fhir.transform.fhir.FhirToDhisTransformerService;
+import org.dhis2.fhir.adapter.lock.LockManager;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Unit tests for {@link FhirResourceQueueListener}.
+ *
+ * @author volsch
+ */
+public class FhirResourceQueueListenerTest
+{
+    @Mock
+    private AuthorizationContext authorizationContext;
+
+    @Mock
+    private LockManager lockManager;
+
+    @Mock
+    private RequestCacheService requestCacheService;
+
+    @Mock
+    private FhirClientSystemRepository fhirClientSystemRepository;
+
+    @Mock
+    private FhirClientResourceRepository fhirClientResourceRepository;
+
+    @Mock
+    private SubscriptionFhirResourceRepository subscriptionFhirResourceRepository;
+
+    @Mock
+    private StoredFhirResourceService storedItemService;
+
+    @Mock
+    private FhirResourceRepository fhirResourceRepository;
+
+    @Mock
+    private FhirRepository fhirRepository;
+
+    @Mock
+    private FhirToDhisTransformerService fhirToDhisTransformerService;
+
+    @Mock
+    private DhisResourceRepository dhisResourceRepository;
+
+    @Mock
+    private FhirDhisAssignmentRepository fhirDhisAssignmentRepository;
+
+    @Mock
+    private ExpressOperationService expressOperationService;
+
+    @Rule
+    public MockitoRule rule = MockitoJUnit.rule();
+
+    private RepositoryConfig repositoryConfig;
+
+    private FhirResourceQueueListener listener;
+
+    private FhirResource fhirResource;
+
+    @Before
+    public void before()
+    {
+        repositoryConfig = new RepositoryConfig();
+        repositoryConfig.getFhirResourceQueue().getEmbeddedAddressSettings().setMaxDeliveryAttempts( 3 );
+        listener = new FhirResourceQueueListener( authorizationContext, lockManager, requestCacheService, fhirClientSystemRepository, fhirClientResourceRepository,
+            subscriptionFhirResourceRepository, storedItemService, fhirResourceRepository, fhirRepository, fhirToDhisTransformerService, dhisResourceRepository,
+            fhirDhisAssignmentRepository, expressOperationService, repositoryConfig );
+
+        fhirResource = new FhirResource();
+        fhirResource.setFhirClientResourceId( UUID.randomUUID() );
+        fhirResource.setId( "Patient/1" );
+        fhirResource.setOperationId( UUID.randomUUID() );
+        fhirResource.setAuthorization( "Basic 123" );
+    }
+
+    @Test
+    public void receiveFailedRetried()
+    {
+        Mockito.doThrow( new IllegalStateException( "Test" ) ).when( fhirClientResourceRepository ).findOneByIdCached( ArgumentMatchers.any() );
+        try
+        {
+            listener.receive( fhirResource, 2 );
+            Assert.fail( "Exception expected." );
+        }
+        catch ( IllegalStateException e )
+        {
+            // expected
+        }
+        Mockito.verify( expressOperationService, Mockito.never() ).failed( ArgumentMatchers.any(), ArgumentMatchers.any() );
+    }
+
+    @Test
+    public void receiveFailedLastDelivery()
+    {
+        Mockito.doThrow( new IllegalStateException( "Test" ) ).when( fhirClientResourceRepository ).findOneByIdCached( ArgumentMatchers.any() );
+        try
+        {
+            listener.receive( fhirResource, 3 );
+            Assert.fail( "Exception expected." );
+        }
+        catch ( IllegalStateException e )
+        {
+            // expected
+        }
+        Mockito.verify( expressOperationService ).failed( ArgumentMatchers.eq( fhirResource.getOperationId() ), ArgumentMatchers.contains( "Test" ) );
+    }
+
+    @Test
+    public void receiveFhirClientResourceNotAvailable()
+    {
+        Mockito.doReturn( Optional.empty() ).when( fhirClientResourceRepository ).findOneByIdCached( ArgumentMatchers.any() );
+        listener.receive( fhirResource, 1 );
+        Mockito.verify( expressOperationService ).failed( ArgumentMatchers.eq( fhirResource.getOperationId() ), ArgumentMatchers.any() );
+    }
+
+    @Test
+    public void receiveWithoutAuthorization()
+    {
+        fhirResource.setAuthorization( null );
+        listener.receive( fhirResource, 1 );
+        Mockito.verify( expressOperationService ).failed( ArgumentMatchers.eq( fhirResource.getOperationId() ), ArgumentMatchers.contains( "authorization" ) );
+        Mockito.verifyZeroInteractions( fhirClientResourceRepository, fhirRepository );
+    }
+
+    @Test
+    public void saveWithAuthorization()
+    {
+        final FhirClientResource fhirClientResource = new FhirClientResource();
+        final IBaseResource resource = Mockito.mock( IBaseResource.class );
+        final FhirRepositoryOperationOutcome outcome = new FhirRepositoryOperationOutcome( "A1234567890", true );
+        fhirResource.setAuthorization( "Bearer 123" );
+        Mockito.doReturn( outcome ).when( fhirRepository ).save( ArgumentMatchers.same( fhirClientResource ), ArgumentMatchers.same( resource ), ArgumentMatchers.isNull() );
+
+        Assert.assertSame( outcome, listener.save( fhirResource, fhirClientResource, resource ) );
+
+        final InOrder inOrder = Mockito.inOrder( authorizationContext, fhirRepository );
+        inOrder.verify( authorizationContext ).setAuthorization( ArgumentMatchers.argThat( a -> "Bearer 123".equals( a.getAuthorization() ) ) );
+        inOrder.verify( fhirRepository ).save( ArgumentMatchers.same( fhirClientResource ), ArgumentMatchers.same( resource ), ArgumentMatchers.isNull() );
+        inOrder.verify( authorizationContext ).resetAuthorization();
+    }
+
+    @Test
+    public void saveWithoutOperation()
+    {
+        final FhirClientResource fhirClientResource = new FhirClientResource();
+        final IBaseResource resource = Mockito.mock( IBaseResource.class );
+        fhirResource.setOperationId( null );
+
+        listener.save( fhirResource, fhirClientResource, resource );
+
+        Mockito.verify( fhirRepository ).save( ArgumentMatchers.same( fhirClientResource ), ArgumentMatchers.same( resource ), ArgumentMatchers.isNull() );
+        Mockito.verifyZeroInteractions( authorizationContext );
+    }
+}
@@ -34,6 +34,7 @@ import ca.uhn.fhir.model.api.IFhirVersion;
 import ca.uhn.fhir.model.primitive.IdDt;
 import org.dhis2.fhir.adapter.fhir.client.StoredFhirResourceService;
 import org.dhis2.fhir.adapter.fhir.metadata.repository.FhirClientResourceRepository;
+import org.dhis2.fhir.adapter.fhir.repository.FhirClientRegistry;
 import org.dhis2.fhir.adapter.fhir.script.ScriptExecutor;
 import org.dhis2.fhir.adapter.spring.StaticObjectProvider;
 import org.hl7.fhir.instance.model.api.IBaseMetaType;
@@ -68,6 +69,9 @@ public class FhirResourceRepositoryImplTest
     @Mock
     private FhirClientResourceRepository fhirClientResourceRepository;
 
+    @Mock
+    private FhirClientRegistry fhirClientRegistry;
+
     @Mock
     private FhirContext fhirContextDstu3;
 
@@ -93,7 +97,7 @@ public class FhirResourceRepositoryImplTest
         Mockito.when( fhirContextR4.getVersion() ).thenReturn( fhirVersionR4 );
         Mockito.when( fhirVersionR4.getVersion() ).thenReturn( FhirVersionEnum.R4 );
 
-        repository = new FhirResourceRepositoryImpl( scriptExecutor, storedItemService, fhirClientResourceRepository,
+        repository = new FhirResourceRepositoryImpl( scriptExecutor, storedItemService, fhirClientResourceRepository, fhirClientRegistry,
             new StaticObjectProvider<>( Arrays.asList( fhirContextDstu3, fhirContextR4 ) ), new StaticObjectProvider<>( Collections.emptyList() ) );
     }
 
@@ -28,14 +28,21 @@ package org.dhis2.fhir.adapter.fhir.server.provider;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.context.FhirVersionEnum;
 import ca.uhn.fhir.model.primitive.IdDt;
 import ca.uhn.fhir.rest.api.server.RequestDetails;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import org.dhis2.fhir.adapter.auth.Authorization;
+import org.dhis2.fhir.adapter.auth.AuthorizationContext;
 import org.dhis2.fhir.adapter.cache.RequestCacheContext;
 import org.dhis2.fhir.adapter.cache.RequestCacheService;
+import org.dhis2.fhir.adapter.dhis.config.DhisBulkWriteConfig;
+import org.dhis2.fhir.adapter.dhis.local.LocalDhisRepositoryPersistCallback;
 import org.dhis2.fhir.adapter.dhis.local.LocalDhisResourceRepositoryContainer;
 import org.dhis2.fhir.adapter.dhis.local.LocalDhisResourceRepositoryTemplate;
+import org.dhis2.fhir.adapter.dhis.local.impl.LocalDhisResourceRepositoryContainerImpl;
+import org.dhis2.fhir.adapter.dhis.tracker.trackedentity.TrackedEntityInstance;
 import org.dhis2.fhir.adapter.fhir.metadata.model.FhirClient;
 import org.dhis2.fhir.adapter.fhir.metadata.model.FhirClientResource;
 import org.dhis2.fhir.adapter.fhir.metadata.model.FhirClientSystem;
@@ -54,6 +61,7 @@ import org.dhis2.fhir.adapter.fhir.repository.FhirRepository;
 import org.dhis2.fhir.adapter.fhir.repository.FhirRepositoryOperation;
 import org.dhis2.fhir.adapter.fhir.repository.FhirRepositoryOperationOutcome;
 import org.dhis2.fhir.adapter.fhir.repository.FhirRepositoryOperationType;
+import org.dhis2.fhir.adapter.fhir.transform.config.FhirRestInterfaceConfig;
 import org.hamcrest.Matchers;
 import org.hl7.fhir.instance.model.api.IBaseBundle;
 import org.hl7.fhir.instance.model.api.IBaseMetaType;
@@ -63,6 +71,7 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnit;
@@ -70,9 +79,12 @@ import org.mockito.junit.MockitoRule;
 
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.dhis2.fhir.adapter.fhir.metadata.model.FhirClient.FHIR_REST_INTERFACE_DSTU3_ID;
@@ -131,6 +143,9 @@ public class AbstractBundleResourceProviderTest
     @Mock
     private RequestCacheContext requestCacheContext;
 
+    @Mock
+    private AuthorizationContext authorizationContext;
+
     @Mock
     private RequestDetails requestDetails;
 
@@ -150,7 +165,8 @@ public class AbstractBundleResourceProviderTest
     public void setUp()
     {
         bundleResourceProvider = Mockito.mock( AbstractBundleResourceProvider.class, Mockito.withSettings()
-            .useConstructor( fhirClientResourceRepository, fhirClientSystemRepository, fhirRepository, dhisRepository, requestCacheService )
+            .useConstructor( fhirClientResourceRepository, fhirClientSystemRepository, fhirRepository, dhisRepository, requestCacheService,
+                authorizationContext, new FhirRestInterfaceConfig(), (FhirContext) null, (Executor) null, new DhisBulkWriteConfig(), (Executor) null )
             .defaultAnswer( Mockito.CALLS_REAL_METHODS ) );
 
         fhirClient.setId( FhirClient.getIdByFhirVersion( FhirVersion.DSTU3 ) );
@@ -310,6 +326,106 @@ public class AbstractBundleResourceProviderTest
         Assert.assertNull( operations.get( 0 ).getResult().getId() );
     }
 
+    @Test
+    @SuppressWarnings( "unchecked" )
+    public void processPartitionsConflict()
+    {
+        final AbstractBundleResourceProvider<IBaseBundle> parallelBundleResourceProvider = Mockito.mock( AbstractBundleResourceProvider.class, Mockito.withSettings()
+            .useConstructor( fhirClientResourceRepository, fhirClientSystemRepository, fhirRepository, dhisRepository, requestCacheService,
+                authorizationContext, new FhirRestInterfaceConfig(), Mockito.mock( FhirContext.class ), (Executor) Runnable::run, new DhisBulkWriteConfig(), (Executor) null )
+            .defaultAnswer( Mockito.CALLS_REAL_METHODS ) );
+        final LocalDhisRepositoryPersistCallback<TrackedEntityInstance> persistCallback = Mockito.mock( LocalDhisRepositoryPersistCallback.class );
+
+        final FhirOperation operation1 = new FhirOperation( FhirOperationType.PUT, FhirResourceType.PATIENT, patientClientResource, "ldXIdLNUNE1", baseResource1, null );
+        final FhirOperation operation2 = new FhirOperation( FhirOperationType.PUT, FhirResourceType.PATIENT, patientClientResource, "ldXIdLNUNE2", baseResource2, null );
+        final FhirBatchRequest partition1 = new FhirBatchRequest( Collections.singletonList( operation1 ), false );
+        final FhirBatchRequest partition2 = new FhirBatchRequest( Collections.singletonList( operation2 ), false );
+        final LocalDhisResourceRepositoryContainer repositoryContainer = new LocalDhisResourceRepositoryContainerImpl( Collections.singleton( TrackedEntityInstance.class ) );
+
+        // both partitions modify the same tracked entity instance
+        Mockito.doAnswer( invocation -> {
+            final FhirBatchRequest partition = invocation.getArgument( 0 );
+            partition.getOperations().get( 0 ).getResult().internalServerError( "Test" );
+
+            final LocalDhisResourceRepositoryContainer partitionRepositoryContainer =
+                new LocalDhisResourceRepositoryContainerImpl( Collections.singleton( TrackedEntityInstance.class ) );
+            final TrackedEntityInstance trackedEntityInstance = new TrackedEntityInstance();
+            trackedEntityInstance.setId( "A1234567890" );
+            partitionRepositoryContainer.getRepository( TrackedEntityInstance.class, persistCallback ).save( trackedEntityInstance, partition.getOperations().get( 0 ) );
+
+            return partitionRepositoryContainer;
+        } ).when( parallelBundleResourceProvider ).processPartition( Mockito.any(), Mockito.any() );
+        Mockito.doAnswer( invocation -> {
+            Assert.assertFalse( operation2.isProcessed() );
+            Assert.assertNull( operation2.getResult().getIssue() );
+            operation2.getResult().ok();
+
+            return null;
+        } ).when( parallelBundleResourceProvider ).processOperations( Mockito.same( requestCacheContext ), Mockito.same( partition2 ) );
+
+        parallelBundleResourceProvider.processPartitions( requestCacheContext, repositoryContainer, Arrays.asList( partition1, partition2 ), new Authorization( "Basic 123" ) );
+
+        Mockito.verify( parallelBundleResourceProvider, Mockito.never() ).processOperations( Mockito.any(), Mockito.same( partition1 ) );
+        Mockito.verify( parallelBundleResourceProvider ).processOperations( Mockito.same( requestCacheContext ), Mockito.same( partition2 ) );
+
+        Assert.assertEquals( FhirOperationResult.INTERNAL_SERVER_ERROR_STATUS_CODE, operation1.getResult().getStatusCode() );
+        Assert.assertEquals( FhirOperationResult.OK_STATUS_CODE, operation2.getResult().getStatusCode() );
+        Assert.assertTrue( repositoryContainer.getRepository( TrackedEntityInstance.class, persistCallback ).findOneById( "A1234567890" ).isPresent() );
+    }
+
+    @Test
+    @SuppressWarnings( "unchecked" )
+    public void processPartitionsConflictRestoresResourceIds()
+    {
+        final AbstractBundleResourceProvider<IBaseBundle> parallelBundleResourceProvider = Mockito.mock( AbstractBundleResourceProvider.class, Mockito.withSettings()
+            .useConstructor( fhirClientResourceRepository, fhirClientSystemRepository, fhirRepository, dhisRepository, requestCacheService,
+                authorizationContext, new FhirRestInterfaceConfig(), Mockito.mock( FhirContext.class ), (Executor) Runnable::run, new DhisBulkWriteConfig(), (Executor) null )
+            .defaultAnswer( Mockito.CALLS_REAL_METHODS ) );
+        final LocalDhisRepositoryPersistCallback<TrackedEntityInstance> persistCallback = Mockito.mock( LocalDhisRepositoryPersistCallback.class );
+
+        final FhirOperation operation1 = new FhirOperation( FhirOperationType.POST, FhirResourceType.PATIENT, patientClientResource, null, baseResource1, null );
+        final FhirOperation operation2 = new FhirOperation( FhirOperationType.POST, FhirResourceType.PATIENT, patientClientResource, null, baseResource2, null );
+        final FhirBatchRequest partition1 = new FhirBatchRequest( Collections.singletonList( operation1 ), false );
+        final FhirBatchRequest partition2 = new FhirBatchRequest( Collections.singletonList( operation2 ), false );
+        final LocalDhisResourceRepositoryContainer repositoryContainer = new LocalDhisResourceRepositoryContainerImpl( Collections.singleton( TrackedEntityInstance.class ) );
+
+        Mockito.when( baseResource1.getIdElement() ).thenReturn( new IdDt( "Patient/f1" ) );
+        Mockito.when( baseResource2.getIdElement() ).thenReturn( new IdDt() );
+
+        // both partitions create the same tracked entity instance and assign its ID to the created resource
+        Mockito.doAnswer( invocation -> {
+            final FhirBatchRequest partition = invocation.getArgument( 0 );
+            final FhirOperation operation = partition.getOperations().get( 0 );
+            operation.getResult().created( new IdDt( "A1234567890" ) );
+            operation.getResource().setId( new IdDt( "Patient/te-A1234567890" ) );
+
+            final LocalDhisResourceRepositoryContainer partitionRepositoryContainer =
+                new LocalDhisResourceRepositoryContainerImpl( Collections.singleton( TrackedEntityInstance.class ) );
+            final TrackedEntityInstance trackedEntityInstance = new TrackedEntityInstance();
+            trackedEntityInstance.setId( "A1234567890" );
+            partitionRepositoryContainer.getRepository( TrackedEntityInstance.class, persistCallback ).save( trackedEntityInstance, operation );
+
+            return partitionRepositoryContainer;
+        } ).when( parallelBundleResourceProvider ).processPartition( Mockito.any(), Mockito.any() );
+        Mockito.doAnswer( invocation -> {
+            Assert.assertFalse( operation2.isProcessed() );
+            operation2.getResult().created( new IdDt( "B1234567890" ) );
+
+            return null;
+        } ).when( parallelBundleResourceProvider ).processOperations( Mockito.same( requestCacheContext ), Mockito.same( partition2 ) );
+
+        parallelBundleResourceProvider.processPartitions( requestCacheContext, repositoryContainer, Arrays.asList( partition1, partition2 ), new Authorization( "Basic 123" ) );
+
+        final InOrder inOrder = Mockito.inOrder( baseResource2, parallelBundleResourceProvider );
+        inOrder.verify( baseResource2 ).setId( Mockito.any( IIdType.class ) );
+        inOrder.verify( baseResource2 ).setId( (String) Mockito.isNull() );
+        inOrder.verify( parallelBundleResourceProvider ).processOperations( Mockito.same( requestCacheContext ), Mockito.same( partition2 ) );
+        Mockito.verify( baseResource1, Mockito.never() ).setId( Mockito.anyString() );
+
+        Assert.assertEquals( new IdDt( "A1234567890" ), operation1.getResult().getId() );
+        Assert.assertEquals( new IdDt( "B1234567890" ), operation2.getResult().getId() );
+    }
+
     @Test
     public void createOperationUrlWithoutResourceType()
     {
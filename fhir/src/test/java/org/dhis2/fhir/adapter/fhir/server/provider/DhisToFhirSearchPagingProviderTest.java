@@ -0,0 +1,149 @@
+package org.dhis2.fhir.adapter.fhir.server.provider;
+
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import ca.uhn.fhir.rest.server.SimpleBundleProvider;
+import org.dhis2.fhir.adapter.auth.Authorization;
+import org.dhis2.fhir.adapter.auth.AuthorizationContext;
+import org.dhis2.fhir.adapter.fhir.repository.impl.DhisToFhirSearchBundleProvider;
+import org.dhis2.fhir.adapter.fhir.transform.config.FhirRestInterfaceConfig;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import java.util.Collections;
+
+/**
+ * Unit tests for {@link DhisToFhirSearchPagingProvider}.
+ *
+ * @author volsch
+ */
+public class DhisToFhirSearchPagingProviderTest
+{
+    @Mock
+    private AuthorizationContext authorizationContext;
+
+    @Mock
+    private DhisToFhirSearchBundleProvider bundleProvider;
+
+    @Mock
+    private DhisToFhirSearchBundleProvider otherBundleProvider;
+
+    @Rule
+    public MockitoRule mockitoRule = MockitoJUnit.rule();
+
+    private FhirRestInterfaceConfig restInterfaceConfig;
+
+    @Before
+    public void setUp()
+    {
+        restInterfaceConfig = new FhirRestInterfaceConfig();
+        restInterfaceConfig.setDefaultSearchCount( 20 );
+        restInterfaceConfig.setMaxSearchCount( 200 );
+
+        Mockito.doReturn( "4a3d1fbc-5a1d-4c4e-9e6b-0ce1e4b5e6a1" ).when( bundleProvider ).getUuid();
+        Mockito.doReturn( "Basic 123" ).when( bundleProvider ).getAuthorization();
+    }
+
+    @Test
+    public void pageSizes()
+    {
+        final DhisToFhirSearchPagingProvider pagingProvider = new DhisToFhirSearchPagingProvider( restInterfaceConfig, authorizationContext );
+        Assert.assertEquals( 20, pagingProvider.getDefaultPageSize() );
+        Assert.assertEquals( 200, pagingProvider.getMaximumPageSize() );
+    }
+
+    @Test
+    public void storeAndRetrieve()
+    {
+        Mockito.doReturn( new Authorization( "Basic 123" ) ).when( authorizationContext ).getAuthorization();
+
+        final DhisToFhirSearchPagingProvider pagingProvider = new DhisToFhirSearchPagingProvider( restInterfaceConfig, authorizationContext );
+        Assert.assertEquals( "4a3d1fbc-5a1d-4c4e-9e6b-0ce1e4b5e6a1", pagingProvider.storeResultList( bundleProvider ) );
+        Assert.assertSame( bundleProvider, pagingProvider.retrieveResultList( "4a3d1fbc-5a1d-4c4e-9e6b-0ce1e4b5e6a1" ) );
+        Assert.assertNull( pagingProvider.retrieveResultList( "5a3d1fbc-5a1d-4c4e-9e6b-0ce1e4b5e6a1" ) );
+    }
+
+    @Test
+    public void retrieveOtherAuthorization()
+    {
+        Mockito.doReturn( new Authorization( "Basic 456" ) ).when( authorizationContext ).getAuthorization();
+
+        final DhisToFhirSearchPagingProvider pagingProvider = new DhisToFhirSearchPagingProvider( restInterfaceConfig, authorizationContext );
+        Assert.assertEquals( "4a3d1fbc-5a1d-4c4e-9e6b-0ce1e4b5e6a1", pagingProvider.storeResultList( bundleProvider ) );
+        Assert.assertNull( pagingProvider.retrieveResultList( "4a3d1fbc-5a1d-4c4e-9e6b-0ce1e4b5e6a1" ) );
+    }
+
+    @Test
+    public void storeOtherBundleProvider()
+    {
+        final DhisToFhirSearchPagingProvider pagingProvider = new DhisToFhirSearchPagingProvider( restInterfaceConfig, authorizationContext );
+        Assert.assertNull( pagingProvider.storeResultList( new SimpleBundleProvider( Collections.emptyList() ) ) );
+    }
+
+    @Test
+    public void storeDisabled()
+    {
+        restInterfaceConfig.setMaxSearchStateResources( 0 );
+
+        final DhisToFhirSearchPagingProvider pagingProvider = new DhisToFhirSearchPagingProvider( restInterfaceConfig, authorizationContext );
+        Assert.assertNull( pagingProvider.storeResultList( bundleProvider ) );
+    }
+
+    @Test
+    public void storeWeighedByResources()
+    {
+        Mockito.doReturn( new Authorization( "Basic 123" ) ).when( authorizationContext ).getAuthorization();
+        Mockito.doReturn( "5a3d1fbc-5a1d-4c4e-9e6b-0ce1e4b5e6a1" ).when( otherBundleProvider ).getUuid();
+        Mockito.doReturn( "Basic 123" ).when( otherBundleProvider ).getAuthorization();
+        restInterfaceConfig.setMaxSearchStateResources( 10 );
+
+        final DhisToFhirSearchPagingProvider pagingProvider = new DhisToFhirSearchPagingProvider( restInterfaceConfig, authorizationContext, Runnable::run );
+        pagingProvider.storeResultList( bundleProvider );
+        pagingProvider.storeResultList( otherBundleProvider );
+        Assert.assertSame( bundleProvider, pagingProvider.retrieveResultList( "4a3d1fbc-5a1d-4c4e-9e6b-0ce1e4b5e6a1" ) );
+        Assert.assertSame( otherBundleProvider, pagingProvider.retrieveResultList( "5a3d1fbc-5a1d-4c4e-9e6b-0ce1e4b5e6a1" ) );
+
+        // further resources have been transformed and the weight of the search state is updated
+        final ArgumentCaptor<Runnable> fetchListener = ArgumentCaptor.forClass( Runnable.class );
+        Mockito.verify( bundleProvider ).setFetchListener( fetchListener.capture() );
+        Mockito.doReturn( 10 ).when( bundleProvider ).getResourceCount();
+        fetchListener.getValue().run();
+
+        Assert.assertTrue( pagingProvider.retrieveResultList( "4a3d1fbc-5a1d-4c4e-9e6b-0ce1e4b5e6a1" ) == null ||
+            pagingProvider.retrieveResultList( "5a3d1fbc-5a1d-4c4e-9e6b-0ce1e4b5e6a1" ) == null );
+    }
+}
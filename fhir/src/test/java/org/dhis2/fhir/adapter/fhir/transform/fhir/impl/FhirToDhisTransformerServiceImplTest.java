@@ -35,6 +35,7 @@ import org.dhis2.fhir.adapter.fhir.metadata.model.FhirResourceType;
 import org.dhis2.fhir.adapter.fhir.metadata.model.RuleInfo;
 import org.dhis2.fhir.adapter.fhir.metadata.model.TrackedEntityRule;
 import org.dhis2.fhir.adapter.fhir.metadata.repository.RuleRepository;
+import org.dhis2.fhir.adapter.fhir.metadata.service.RuleIndexService;
 import org.dhis2.fhir.adapter.fhir.repository.DhisFhirResourceId;
 import org.dhis2.fhir.adapter.fhir.repository.FhirResourceRepository;
 import org.dhis2.fhir.adapter.fhir.script.ScriptExecutor;
@@ -70,6 +71,9 @@ public class FhirToDhisTransformerServiceImplTest
     @Mock
     private RuleRepository ruleRepository;
 
+    @Mock
+    private RuleIndexService ruleIndexService;
+
     @Mock
     private ScriptExecutor scriptExecutor;
 
@@ -84,7 +88,7 @@ public class FhirToDhisTransformerServiceImplTest
     @Before
     public void setUp()
     {
-        service = new FhirToDhisTransformerServiceImpl( lockManager, fhirResourceRepository, ruleRepository,
+        service = new FhirToDhisTransformerServiceImpl( lockManager, fhirResourceRepository, ruleRepository, ruleIndexService,
             new StaticObjectProvider<>( new ArrayList<>() ), new StaticObjectProvider<>( new ArrayList<>() ),
             scriptExecutor );
         service = Mockito.spy( service );
@@ -0,0 +1,267 @@
+package org.dhis2.fhir.adapter.fhir.transform.util;
+
+/*
+ * Copyright (c) 2004-2019, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.apache.commons.lang3.SerializationUtils;
+import org.dhis2.fhir.adapter.dhis.aggregate.DataValueSet;
+import org.dhis2.fhir.adapter.dhis.model.DhisResource;
+import org.dhis2.fhir.adapter.dhis.model.WritableDataValue;
+import org.dhis2.fhir.adapter.dhis.orgunit.OrganizationUnit;
+import org.dhis2.fhir.adapter.dhis.tracker.program.Enrollment;
+import org.dhis2.fhir.adapter.dhis.tracker.program.EnrollmentStatus;
+import org.dhis2.fhir.adapter.dhis.tracker.program.Event;
+import org.dhis2.fhir.adapter.dhis.tracker.program.EventStatus;
+import org.dhis2.fhir.adapter.dhis.tracker.trackedentity.TrackedEntityAttributeValue;
+import org.dhis2.fhir.adapter.dhis.tracker.trackedentity.TrackedEntityInstance;
+import org.dhis2.fhir.adapter.geo.Location;
+import org.dhis2.fhir.adapter.model.Id;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.function.UnaryOperator;
+
+/**
+ * Unit tests for {@link DhisBeanTransformerUtils}. The deep copies of the resources
+ * must be equal to the clones that are created by serialization. The tests also log
+ * the execution times of both ways to clone a resource.
+ *
+ * @author volsch
+ */
+public class DhisBeanTransformerUtilsTest
+{
+    private static final int ITERATIONS = 20_000;
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    @Test
+    public void cloneNull()
+    {
+        Assert.assertNull( DhisBeanTransformerUtils.clone( null ) );
+    }
+
+    @Test
+    public void cloneTrackedEntityInstance()
+    {
+        final TrackedEntityInstance tei = createTrackedEntityInstance();
+        final TrackedEntityInstance copy = assertClone( tei );
+
+        Assert.assertNotSame( tei.getAttributes(), copy.getAttributes() );
+        copy.getAttribute( "a1" ).setValue( "changed" );
+        Assert.assertEquals( "Test", tei.getAttribute( "a1" ).getValue() );
+    }
+
+    @Test
+    public void cloneEnrollment()
+    {
+        final Enrollment enrollment = createEnrollment();
+        final Enrollment copy = assertClone( enrollment );
+
+        Assert.assertNotSame( enrollment.getTrackedEntityInstance(), copy.getTrackedEntityInstance() );
+        Assert.assertNotSame( enrollment.getEvents().get( 0 ), copy.getEvents().get( 0 ) );
+        Assert.assertNull( copy.getEvents().get( 0 ).getEnrollment() );
+    }
+
+    @Test
+    public void cloneEvent()
+    {
+        final Event event = createEvent();
+        event.setEnrollment( createEnrollment() );
+        event.setTrackedEntityInstance( createTrackedEntityInstance() );
+        final Event copy = assertClone( event );
+
+        Assert.assertNull( copy.getEnrollment() );
+        Assert.assertNull( copy.getTrackedEntityInstance() );
+        copy.getDataValue( "d1" ).setValue( "changed" );
+        Assert.assertEquals( "Value 1", event.getDataValue( "d1" ).getValue() );
+    }
+
+    @Test
+    public void cloneOrganizationUnit()
+    {
+        final OrganizationUnit organizationUnit = createOrganizationUnit();
+        final OrganizationUnit copy = assertClone( organizationUnit );
+
+        Assert.assertNotSame( organizationUnit.getParent(), copy.getParent() );
+    }
+
+    @Test
+    public void cloneDataValueSet()
+    {
+        final DataValueSet dataValueSet = createDataValueSet();
+        final DataValueSet copy = assertClone( dataValueSet );
+
+        Assert.assertNotSame( dataValueSet.getDataValues().get( 0 ), copy.getDataValues().get( 0 ) );
+    }
+
+    @Test
+    public void cloneSubclass()
+    {
+        final TrackedEntityInstance tei = new ExtendedTrackedEntityInstance();
+        tei.setId( "a0123456789" );
+
+        final TrackedEntityInstance copy = DhisBeanTransformerUtils.clone( tei );
+        Assert.assertNotNull( copy );
+        Assert.assertNotSame( tei, copy );
+        Assert.assertSame( tei.getClass(), copy.getClass() );
+    }
+
+    @Test
+    public void executionTimes()
+    {
+        final Enrollment enrollment = createEnrollment();
+        final long serializationTime = measure( enrollment, SerializationUtils::clone );
+        final long deepCopyTime = measure( enrollment, DhisBeanTransformerUtils::clone );
+
+        logger.info( "Average clone time of an enrollment {} ns by serialization and {} ns by deep copy.",
+            serializationTime / ITERATIONS, deepCopyTime / ITERATIONS );
+    }
+
+    private long measure( @Nonnull Enrollment enrollment, @Nonnull UnaryOperator<Enrollment> cloner )
+    {
+        for ( int i = 0; i < ITERATIONS; i++ )
+        {
+            cloner.apply( enrollment );
+        }
+
+        final long start = System.nanoTime();
+        for ( int i = 0; i < ITERATIONS; i++ )
+        {
+            cloner.apply( enrollment );
+        }
+        return System.nanoTime() - start;
+    }
+
+    @Nonnull
+    private static <T extends DhisResource> T assertClone( @Nonnull T resource )
+    {
+        final T copy = DhisBeanTransformerUtils.clone( resource );
+
+        Assert.assertNotNull( copy );
+        Assert.assertNotSame( resource, copy );
+        Assert.assertSame( resource.getClass(), copy.getClass() );
+        Assert.assertArrayEquals( SerializationUtils.serialize( SerializationUtils.clone( resource ) ), SerializationUtils.serialize( copy ) );
+        return copy;
+    }
+
+    @Nonnull
+    private static TrackedEntityInstance createTrackedEntityInstance()
+    {
+        final TrackedEntityInstance tei = new TrackedEntityInstance( "a0123456789" );
+        tei.setLastUpdated( ZonedDateTime.now() );
+        tei.setIdentifier( "PT_88372" );
+        tei.setTypeId( "b0123456789" );
+        tei.setOrgUnitId( "c0123456789" );
+        tei.setCoordinates( "[10.2,20.3]" );
+        tei.setLocal( true );
+        tei.setModified( true );
+        tei.setAttributes( new ArrayList<>( Arrays.asList(
+            new TrackedEntityAttributeValue( "a1", "Test" ), new TrackedEntityAttributeValue( "a2", 17 ) ) ) );
+        return tei;
+    }
+
+    @Nonnull
+    private static Event createEvent()
+    {
+        final Event event = new Event( true );
+        event.setId( "e0123456789" );
+        event.setLastUpdated( ZonedDateTime.now() );
+        event.setOrgUnitId( "c0123456789" );
+        event.setProgramId( "f0123456789" );
+        event.setProgramStageId( "g0123456789" );
+        event.setEnrollmentId( "h0123456789" );
+        event.setTrackedEntityInstanceId( "a0123456789" );
+        event.setStatus( EventStatus.ACTIVE );
+        event.setEventDate( ZonedDateTime.now() );
+        event.setDueDate( ZonedDateTime.now().plusDays( 1 ) );
+        event.setCoordinate( new Location( 10.2, 20.3 ) );
+        event.getDataValue( "d1" ).setValue( "Value 1" );
+        event.getDataValue( "d2" ).setValue( 2 );
+        event.getDataValue( "d2" ).setProvidedElsewhere( true );
+        return event;
+    }
+
+    @Nonnull
+    private static Enrollment createEnrollment()
+    {
+        final Enrollment enrollment = new Enrollment( false );
+        enrollment.setId( "h0123456789" );
+        enrollment.setLastUpdated( ZonedDateTime.now() );
+        enrollment.setOrgUnitId( "c0123456789" );
+        enrollment.setProgramId( "f0123456789" );
+        enrollment.setTrackedEntityInstance( createTrackedEntityInstance() );
+        enrollment.setStatus( EnrollmentStatus.ACTIVE );
+        enrollment.setEnrollmentDate( ZonedDateTime.now() );
+        enrollment.setIncidentDate( ZonedDateTime.now().minusDays( 1 ) );
+        enrollment.setCoordinate( new Location( 10.2, 20.3 ) );
+        enrollment.setEvents( new ArrayList<>( Collections.singletonList( createEvent() ) ) );
+        enrollment.getEvents().get( 0 ).setEnrollment( enrollment );
+        return enrollment;
+    }
+
+    @Nonnull
+    private static OrganizationUnit createOrganizationUnit()
+    {
+        final OrganizationUnit organizationUnit = new OrganizationUnit();
+        organizationUnit.setId( "c0123456789" );
+        organizationUnit.setCode( "OU_1" );
+        organizationUnit.setName( "Organization Unit 1" );
+        organizationUnit.setShortName( "OU 1" );
+        organizationUnit.setDisplayName( "Organization Unit 1" );
+        organizationUnit.setLevel( 3 );
+        organizationUnit.setOpeningDate( ZonedDateTime.now() );
+        organizationUnit.setParent( new Id( "i0123456789" ) );
+        organizationUnit.setCoordinates( "[10.2,20.3]" );
+        return organizationUnit;
+    }
+
+    @Nonnull
+    private static DataValueSet createDataValueSet()
+    {
+        final DataValueSet dataValueSet = new DataValueSet( true );
+        dataValueSet.setId( "j0123456789" );
+        dataValueSet.setDataSetId( "k0123456789" );
+        dataValueSet.setOrgUnitId( "c0123456789" );
+        dataValueSet.setPeriod( "201904" );
+        dataValueSet.setDataValues( new ArrayList<>( Collections.singletonList( new WritableDataValue( "d3", 3 ) ) ) );
+        dataValueSet.getDataValue( "d1" ).setValue( "Value 1" );
+        return dataValueSet;
+    }
+
+    public static class ExtendedTrackedEntityInstance extends TrackedEntityInstance
+    {
+        private static final long serialVersionUID = -5405848787563155137L;
+    }
+}